@@ -0,0 +1,127 @@
+package benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dominio.GarantiaExtendida;
+import dominio.Producto;
+import dominio.Vendedor;
+import dominio.calendario.CalendarioLunesNoHabil;
+import dominio.concurrencia.BloqueosPorCodigo;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioProducto;
+
+/**
+ * Mide cuantas garantias por milisegundo emite Vendedor.generarGarantia con 1, 2, 4 y 8 hilos que piden codigos
+ * distintos. Los repositorios no guardan nada y en cada llamada esperan como si consultaran la base de datos,
+ * dentro de la seccion bloqueada, de modo que solo se mide la serializacion: con un segmento todos los hilos
+ * comparten un bloqueo, como un mutex global, y con los segmentos predeterminados el rendimiento debe crecer casi
+ * en proporcion a los hilos. Cada garantia se emite en su propia unidad de trabajo, que retiene el segmento hasta
+ * terminar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BloqueosPorCodigoBenchmark {
+
+	private static final String DANILO_ROMAN = "Danilo Roman";
+	private static final long ESPERA_BASE_DE_DATOS_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	@Param({"1", "" + BloqueosPorCodigo.SEGMENTOS_PREDETERMINADOS})
+	private int segmentos;
+
+	private final AtomicInteger hilos = new AtomicInteger();
+	private Vendedor vendedor;
+
+	@Setup(Level.Trial)
+	public void preparar() {
+
+		Producto producto = new Producto("F01TSA0150", "Computador Lenovo", 600000);
+		RepositorioProducto repositorioProducto = simular(RepositorioProducto.class, "obtenerPorCodigo", producto);
+		RepositorioGarantiaExtendida repositorioGarantia = simular(RepositorioGarantiaExtendida.class, "existeGarantia", false);
+		vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date(), new CalendarioLunesNoHabil(),
+				new BloqueosPorCodigo(segmentos, false));
+	}
+
+	@State(Scope.Thread)
+	public static class Codigos {
+
+		private String prefijo;
+		private int siguiente;
+
+		@Setup(Level.Trial)
+		public void preparar(BloqueosPorCodigoBenchmark benchmark) {
+			prefijo = String.format("H%02d", benchmark.hilos.getAndIncrement());
+		}
+
+		String siguiente() {
+			siguiente = (siguiente + 1) % 1000000;
+			return prefijo + siguiente;
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public GarantiaExtendida unHilo(Codigos codigos) {
+		return generarGarantia(codigos);
+	}
+
+	@Benchmark
+	@Threads(2)
+	public GarantiaExtendida dosHilos(Codigos codigos) {
+		return generarGarantia(codigos);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public GarantiaExtendida cuatroHilos(Codigos codigos) {
+		return generarGarantia(codigos);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public GarantiaExtendida ochoHilos(Codigos codigos) {
+		return generarGarantia(codigos);
+	}
+
+	private GarantiaExtendida generarGarantia(Codigos codigos) {
+
+		BloqueosPorCodigo.iniciarRetencion();
+		try {
+			return vendedor.generarGarantia(codigos.siguiente(), DANILO_ROMAN);
+		} finally {
+			BloqueosPorCodigo.liberarRetenidos();
+		}
+	}
+
+	/**
+	 * Repositorio que responde el valor dado en el metodo dado, null o nada en los demas, y espera en cada llamada
+	 * como si consultara la base de datos
+	 */
+	private static <T> T simular(Class<T> tipo, String metodo, Object respuesta) {
+		return tipo.cast(Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[] {tipo}, (proxy, llamado, argumentos) -> {
+			LockSupport.parkNanos(ESPERA_BASE_DE_DATOS_NANOS);
+			return metodo.equals(llamado.getName()) ? respuesta : null;
+		}));
+	}
+}
@@ -0,0 +1,136 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dominio.Producto;
+import persistencia.conexion.ConexionJPA;
+import persistencia.repositorio.RepositorioGarantiaPersistente;
+import persistencia.repositorio.RepositorioProductoPersistente;
+import persistencia.sistema.SistemaDePersistencia;
+
+/**
+ * Mide las consultas por codigo de producto y de garantia sobre H2 en memoria, con y sin los indices unicos de
+ * ProductoEntity y GarantiaExtendidaEntity. Uno de cada diez productos no tiene garantia. El contexto de
+ * persistencia se limpia despues de cada consulta, como al terminar una solicitud.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dhibernate.show_sql=false")
+public class ConsultaGarantiaBenchmark {
+
+	private static final int CADA_CUANTOS_SIN_GARANTIA = 10;
+
+	@Param({"100000", "1000000"})
+	private int filas;
+
+	@Param({"true", "false"})
+	private boolean indices;
+
+	private final ConexionJPA conexionJPA = new ConexionJPA();
+	private EntityManager entityManager;
+	private RepositorioProductoPersistente repositorioProducto;
+	private RepositorioGarantiaPersistente repositorioGarantia;
+	private int siguiente;
+
+	@Setup(Level.Trial)
+	public void preparar() {
+
+		entityManager = conexionJPA.createEntityManager();
+		ejecutar("INSERT INTO Producto (id, codigo, nombre, precio) "
+				+ "SELECT X, 'P' || LPAD(X, 9, '0'), 'Producto ' || X, MOD(X, 1000) * 1000 FROM SYSTEM_RANGE(1, " + filas + ")");
+		ejecutar("INSERT INTO GarantiaExtendida (id, fechaSolicitudGarantia, fechaFinGarantia, nombreCliente, precio, ID_PRODUCTO) "
+				+ "SELECT X, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 'Cliente ' || X, 1000, X FROM SYSTEM_RANGE(1, " + filas + ") "
+				+ "WHERE MOD(X, " + CADA_CUANTOS_SIN_GARANTIA + ") <> 0");
+		if (!indices) {
+			ejecutar("ALTER TABLE GarantiaExtendida DROP CONSTRAINT UK_GARANTIA_PRODUCTO");
+			ejecutar("ALTER TABLE Producto DROP CONSTRAINT UK_PRODUCTO_CODIGO");
+		}
+
+		repositorioProducto = new RepositorioProductoPersistente(entityManager);
+		repositorioGarantia = new RepositorioGarantiaPersistente(entityManager);
+	}
+
+	@TearDown(Level.Trial)
+	public void apagar() {
+
+		entityManager.close();
+		SistemaDePersistencia.apagar();
+	}
+
+	@Benchmark
+	public Producto obtenerPorCodigo() {
+		try {
+			return repositorioProducto.obtenerPorCodigo(siguienteCodigo(false));
+		} finally {
+			entityManager.clear();
+		}
+	}
+
+	@Benchmark
+	public boolean existeGarantiaConGarantia() {
+		try {
+			return repositorioGarantia.existeGarantia(siguienteCodigo(false));
+		} finally {
+			entityManager.clear();
+		}
+	}
+
+	@Benchmark
+	public boolean existeGarantiaSinGarantia() {
+		try {
+			return repositorioGarantia.existeGarantia(siguienteCodigo(true));
+		} finally {
+			entityManager.clear();
+		}
+	}
+
+	@Benchmark
+	public Producto obtenerProductoConGarantiaPorCodigo() {
+		try {
+			return repositorioGarantia.obtenerProductoConGarantiaPorCodigo(siguienteCodigo(false));
+		} finally {
+			entityManager.clear();
+		}
+	}
+
+	/**
+	 * Permite obtener el siguiente codigo a consultar, recorriendo la tabla a saltos para no leer filas contiguas
+	 * @param sinGarantia si el producto no debe tener garantia
+	 * @return el codigo del producto
+	 */
+	private String siguienteCodigo(boolean sinGarantia) {
+		siguiente = (siguiente + 7919) % filas;
+		int numero = siguiente + 1;
+		if (sinGarantia) {
+			numero = Math.max(numero / CADA_CUANTOS_SIN_GARANTIA, 1) * CADA_CUANTOS_SIN_GARANTIA;
+		} else if (numero % CADA_CUANTOS_SIN_GARANTIA == 0) {
+			numero--;
+		}
+		return String.format("P%09d", numero);
+	}
+
+	private void ejecutar(String sql) {
+		entityManager.getTransaction().begin();
+		entityManager.createNativeQuery(sql).executeUpdate();
+		entityManager.getTransaction().commit();
+	}
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dominio.Vendedor;
+
+/**
+ * Mide Vendedor.calcularFechaFinGarantia para las dos duraciones de garantia, empezando en cada dia de la semana
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FechaFinGarantiaBenchmark {
+
+	@Param({"100", "200"})
+	private int dias;
+
+	@Param({"MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY", "SATURDAY", "SUNDAY"})
+	private DayOfWeek diaSolicitud;
+
+	private Vendedor vendedor;
+
+	@Setup
+	public void preparar() {
+
+		LocalDate fecha = LocalDate.of(2018, 8, 1).with(TemporalAdjusters.nextOrSame(diaSolicitud));
+		Date fechaSolicitud = Date.from(fecha.atTime(10, 30).atZone(ZoneId.systemDefault()).toInstant());
+		// calcularFechaFinGarantia no usa los repositorios
+		vendedor = new Vendedor(null, null, fechaSolicitud);
+	}
+
+	@Benchmark
+	public Date calcularFechaFinGarantia() {
+		return vendedor.calcularFechaFinGarantia(dias);
+	}
+}
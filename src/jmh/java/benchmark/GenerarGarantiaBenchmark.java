@@ -0,0 +1,112 @@
+package benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dominio.GarantiaExtendida;
+import dominio.Vendedor;
+import persistencia.conexion.ConexionJPA;
+import persistencia.repositorio.RepositorioGarantiaPersistente;
+import persistencia.repositorio.RepositorioProductoPersistente;
+import persistencia.sistema.SistemaDePersistencia;
+
+/**
+ * Mide Vendedor.generarGarantia de punta a punta sobre H2 en memoria, incluida la transaccion. Con el contexto
+ * caliente se reutiliza el mismo EntityManager, que se limpia despues de cada garantia; con el contexto frio
+ * cada garantia usa un EntityManager nuevo. Las garantias se borran al inicio de cada iteracion.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dhibernate.show_sql=false")
+public class GenerarGarantiaBenchmark {
+
+	private static final int CANTIDAD_PRODUCTOS = 200000;
+	private static final String CALIENTE = "caliente";
+	private static final String DANILO_ROMAN = "Danilo Roman";
+
+	@Param({CALIENTE, "frio"})
+	private String contextoPersistencia;
+
+	private final ConexionJPA conexionJPA = new ConexionJPA();
+	private SistemaDePersistencia sistemaPersistencia;
+	private EntityManager entityManager;
+	private Vendedor vendedor;
+	private int siguiente;
+
+	@Setup(Level.Trial)
+	public void preparar() {
+
+		sistemaPersistencia = new SistemaDePersistencia();
+		entityManager = conexionJPA.createEntityManager();
+		ejecutar("INSERT INTO Producto (id, codigo, nombre, precio) "
+				+ "SELECT X, 'P' || LPAD(X, 9, '0'), 'Producto ' || X, MOD(X, 1000) * 1000 FROM SYSTEM_RANGE(1, " + CANTIDAD_PRODUCTOS + ")");
+
+		RepositorioProductoPersistente repositorioProducto = new RepositorioProductoPersistente(() -> entityManager);
+		RepositorioGarantiaPersistente repositorioGarantia = new RepositorioGarantiaPersistente(() -> entityManager,
+				sistemaPersistencia.obtenerFiltroGarantias());
+		vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
+	}
+
+	@Setup(Level.Iteration)
+	public void borrarGarantias() {
+
+		ejecutar("DELETE FROM GarantiaExtendida");
+		sistemaPersistencia.reconstruirFiltroGarantias();
+		sistemaPersistencia.cerrar();
+		siguiente = 0;
+	}
+
+	@TearDown(Level.Trial)
+	public void apagar() {
+
+		entityManager.close();
+		SistemaDePersistencia.apagar();
+	}
+
+	@Benchmark
+	public GarantiaExtendida generarGarantia() {
+
+		String codigo = String.format("P%09d", siguiente++ % CANTIDAD_PRODUCTOS + 1);
+		entityManager.getTransaction().begin();
+		try {
+			GarantiaExtendida garantia = vendedor.generarGarantia(codigo, DANILO_ROMAN);
+			entityManager.getTransaction().commit();
+			return garantia;
+		} finally {
+			if (entityManager.getTransaction().isActive()) {
+				entityManager.getTransaction().rollback();
+			}
+			if (CALIENTE.equals(contextoPersistencia)) {
+				entityManager.clear();
+			} else {
+				entityManager.close();
+				entityManager = conexionJPA.createEntityManager();
+			}
+		}
+	}
+
+	private void ejecutar(String sql) {
+		entityManager.getTransaction().begin();
+		entityManager.createNativeQuery(sql).executeUpdate();
+		entityManager.getTransaction().commit();
+	}
+}
@@ -0,0 +1,99 @@
+package benchmark;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import persistencia.conexion.ConexionJPA;
+import persistencia.entitad.GarantiaExtendidaEntity;
+import persistencia.entitad.GeneradorSecuenciaAgrupada;
+import persistencia.entitad.ProductoEntity;
+import persistencia.sistema.SistemaDePersistencia;
+
+/**
+ * Mide cuanto tarda insertar un millon de GarantiaExtendidaEntity sobre H2 en memoria, por bloques de mil filas
+ * con flush, clear y commit, segun cuantos ids reserva cada llamada a la secuencia. Con tamanioAsignacion=1 cada
+ * fila consulta la secuencia, como con GenerationType.AUTO. El resultado es el tiempo del millon de filas; las
+ * filas por segundo son 1e6 / resultado.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Dhibernate.show_sql=false", "-Xmx3g"})
+public class InsercionGarantiasBenchmark {
+
+	private static final int FILAS = 1000000;
+	private static final int TAMANIO_BLOQUE = 1000;
+
+	@Param({"1", "50", "1000"})
+	private String tamanioAsignacion;
+
+	private final ConexionJPA conexionJPA = new ConexionJPA();
+	private EntityManager entityManager;
+
+	@Setup(Level.Trial)
+	public void preparar() {
+
+		ConexionJPA.configurar(Collections.<String, Object>singletonMap(GeneradorSecuenciaAgrupada.TAMANIO_ASIGNACION, tamanioAsignacion));
+		entityManager = conexionJPA.createEntityManager();
+		ejecutar("INSERT INTO Producto (id, codigo, nombre, precio) "
+				+ "SELECT X, 'P' || LPAD(X, 9, '0'), 'Producto ' || X, MOD(X, 1000) * 1000 FROM SYSTEM_RANGE(1, " + FILAS + ")");
+	}
+
+	@Setup(Level.Iteration)
+	public void borrarGarantias() {
+		ejecutar("TRUNCATE TABLE GarantiaExtendida");
+	}
+
+	@TearDown(Level.Trial)
+	public void apagar() {
+
+		entityManager.close();
+		SistemaDePersistencia.apagar();
+	}
+
+	@Benchmark
+	public void insertar() {
+
+		Date hoy = new Date();
+		for (int inicio = 1; inicio <= FILAS; inicio += TAMANIO_BLOQUE) {
+			entityManager.getTransaction().begin();
+			for (long id = inicio; id < inicio + TAMANIO_BLOQUE; id++) {
+				GarantiaExtendidaEntity garantiaEntity = new GarantiaExtendidaEntity();
+				garantiaEntity.setProducto(entityManager.getReference(ProductoEntity.class, id));
+				garantiaEntity.setFechaSolicitudGarantia(hoy);
+				garantiaEntity.setFechaFinGarantia(hoy);
+				garantiaEntity.setNombreCliente("Cliente " + id);
+				garantiaEntity.setPrecio(1000);
+				entityManager.persist(garantiaEntity);
+			}
+			entityManager.flush();
+			entityManager.clear();
+			entityManager.getTransaction().commit();
+		}
+	}
+
+	private void ejecutar(String sql) {
+		entityManager.getTransaction().begin();
+		entityManager.createNativeQuery(sql).executeUpdate();
+		entityManager.getTransaction().commit();
+	}
+}
@@ -0,0 +1,93 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dominio.GarantiaExtendida;
+import dominio.Producto;
+import persistencia.conexion.ConexionJPA;
+import persistencia.repositorio.RepositorioGarantiaPersistente;
+import persistencia.sistema.SistemaDePersistencia;
+
+/**
+ * Mide las lecturas de una garantia por codigo de producto sobre H2 en memoria, sin filtro de garantias para que
+ * siempre se consulte la base de datos. El contexto de persistencia se limpia despues de cada lectura, como al
+ * terminar una solicitud. Con -prof gc se obtiene la memoria asignada por lectura.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dhibernate.show_sql=false")
+public class LecturaGarantiaBenchmark {
+
+	private static final int CANTIDAD_GARANTIAS = 100000;
+
+	private final ConexionJPA conexionJPA = new ConexionJPA();
+	private EntityManager entityManager;
+	private RepositorioGarantiaPersistente repositorioGarantia;
+	private int siguiente;
+
+	@Setup(Level.Trial)
+	public void preparar() {
+
+		entityManager = conexionJPA.createEntityManager();
+		ejecutar("INSERT INTO Producto (id, codigo, nombre, precio) "
+				+ "SELECT X, 'P' || LPAD(X, 9, '0'), 'Producto ' || X, MOD(X, 1000) * 1000 FROM SYSTEM_RANGE(1, " + CANTIDAD_GARANTIAS + ")");
+		ejecutar("INSERT INTO GarantiaExtendida (id, fechaSolicitudGarantia, fechaFinGarantia, nombreCliente, precio, ID_PRODUCTO) "
+				+ "SELECT X, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 'Cliente ' || X, 1000, X FROM SYSTEM_RANGE(1, " + CANTIDAD_GARANTIAS + ")");
+
+		repositorioGarantia = new RepositorioGarantiaPersistente(() -> entityManager, null);
+	}
+
+	@TearDown(Level.Trial)
+	public void apagar() {
+
+		entityManager.close();
+		SistemaDePersistencia.apagar();
+	}
+
+	@Benchmark
+	public GarantiaExtendida obtener() {
+		try {
+			return repositorioGarantia.obtener(siguienteCodigo());
+		} finally {
+			entityManager.clear();
+		}
+	}
+
+	@Benchmark
+	public Producto obtenerProductoConGarantiaPorCodigo() {
+		try {
+			return repositorioGarantia.obtenerProductoConGarantiaPorCodigo(siguienteCodigo());
+		} finally {
+			entityManager.clear();
+		}
+	}
+
+	private String siguienteCodigo() {
+		siguiente = (siguiente + 7919) % CANTIDAD_GARANTIAS;
+		return String.format("P%09d", siguiente + 1);
+	}
+
+	private void ejecutar(String sql) {
+		entityManager.getTransaction().begin();
+		entityManager.createNativeQuery(sql).executeUpdate();
+		entityManager.getTransaction().commit();
+	}
+}
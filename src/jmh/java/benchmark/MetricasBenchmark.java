@@ -0,0 +1,63 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dominio.metrica.Contador;
+import dominio.metrica.Metricas;
+import dominio.metrica.Temporizador;
+
+/**
+ * Mide el costo de registrar una medicion con un temporizador y de incrementar un contador, con las metricas
+ * habilitadas y deshabilitadas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricasBenchmark {
+
+	@Param({"true", "false"})
+	private boolean habilitadas;
+
+	private Temporizador temporizador;
+	private Contador contador;
+
+	@Setup
+	public void preparar() {
+
+		Metricas.habilitar(habilitadas);
+		temporizador = Metricas.temporizador("benchmark.temporizador");
+		contador = Metricas.contador("benchmark.contador");
+	}
+
+	@Benchmark
+	public void medir() {
+		temporizador.detener(temporizador.iniciar());
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void medirConcurrente() {
+		temporizador.detener(temporizador.iniciar());
+	}
+
+	@Benchmark
+	public void contar() {
+		contador.incrementar();
+	}
+}
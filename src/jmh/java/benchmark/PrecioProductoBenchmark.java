@@ -0,0 +1,100 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import persistencia.conexion.ConexionJPA;
+import persistencia.indice.IndicePrecios;
+import persistencia.repositorio.RepositorioProductoPersistente;
+import persistencia.sistema.SistemaDePersistencia;
+
+/**
+ * Compara las formas de obtener el precio de un producto sobre H2 en memoria: cargando el producto, con la
+ * consulta de solo el precio y con el indice de precios fuera del heap. Con -prof gc se obtiene la memoria
+ * asignada por consulta, que con el indice debe ser cero.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dhibernate.show_sql=false")
+public class PrecioProductoBenchmark {
+
+	private static final int CANTIDAD_PRODUCTOS = 100000;
+
+	private final ConexionJPA conexionJPA = new ConexionJPA();
+	private EntityManager entityManager;
+	private RepositorioProductoPersistente repositorioProducto;
+	private IndicePrecios indicePrecios;
+	private String[] codigos;
+	private int siguiente;
+
+	@Setup(Level.Trial)
+	public void preparar() {
+
+		entityManager = conexionJPA.createEntityManager();
+		entityManager.getTransaction().begin();
+		entityManager.createNativeQuery("INSERT INTO Producto (id, codigo, nombre, precio) "
+				+ "SELECT X, 'P' || LPAD(X, 9, '0'), 'Producto ' || X, MOD(X, 1000) * 1000 FROM SYSTEM_RANGE(1, " + CANTIDAD_PRODUCTOS + ")")
+				.executeUpdate();
+		entityManager.getTransaction().commit();
+
+		repositorioProducto = new RepositorioProductoPersistente(() -> entityManager);
+		indicePrecios = new IndicePrecios(CANTIDAD_PRODUCTOS);
+		repositorioProducto.recorrerPrecios(indicePrecios::actualizar);
+		codigos = new String[CANTIDAD_PRODUCTOS];
+		for (int i = 0; i < CANTIDAD_PRODUCTOS; i++) {
+			codigos[i] = String.format("P%09d", i + 1);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void apagar() {
+
+		entityManager.close();
+		SistemaDePersistencia.apagar();
+	}
+
+	@Benchmark
+	public double cargandoElProducto() {
+		try {
+			return repositorioProducto.obtenerPorCodigo(siguienteCodigo()).getPrecio();
+		} finally {
+			entityManager.clear();
+		}
+	}
+
+	@Benchmark
+	public double consultandoSoloElPrecio() {
+		try {
+			return repositorioProducto.obtenerPrecioPorCodigo(siguienteCodigo());
+		} finally {
+			entityManager.clear();
+		}
+	}
+
+	@Benchmark
+	public double conIndiceDePrecios() {
+		return indicePrecios.obtener(siguienteCodigo());
+	}
+
+	private String siguienteCodigo() {
+		siguiente = (siguiente + 1) % CANTIDAD_PRODUCTOS;
+		return codigos[siguiente];
+	}
+}
@@ -0,0 +1,74 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dominio.tarifa.MotorTarifas;
+import dominio.tarifa.ReglaTarifa;
+import dominio.tarifa.TablaTarifas;
+
+/**
+ * Mide la tarificacion de una garantia con la tabla predeterminada y con una tabla de diez tramos. Con -prof gc
+ * se comprueba que buscar el tramo no asigna memoria.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TarifaBenchmark {
+
+	private static final int CANTIDAD_PRECIOS = 1024;
+
+	private MotorTarifas predeterminado;
+	private MotorTarifas diezTramos;
+	private double[] precios;
+	private int siguiente;
+
+	@Setup(Level.Trial)
+	public void preparar() {
+
+		predeterminado = new MotorTarifas(TablaTarifas.PREDETERMINADA);
+		ReglaTarifa[] reglas = new ReglaTarifa[10];
+		for (int i = 0; i < reglas.length - 1; i++) {
+			reglas[i] = new ReglaTarifa((i + 1) * 200000, 0.05 + i * 0.02, 30 + i * 30);
+		}
+		reglas[reglas.length - 1] = new ReglaTarifa(Double.POSITIVE_INFINITY, 0.3, 400);
+		diezTramos = new MotorTarifas(new TablaTarifas(Arrays.asList(reglas)));
+		precios = new double[CANTIDAD_PRECIOS];
+		for (int i = 0; i < CANTIDAD_PRECIOS; i++) {
+			precios[i] = (i * 7919L) % 2500000;
+		}
+	}
+
+	@Benchmark
+	public double tablaPredeterminada() {
+		return tarificar(predeterminado);
+	}
+
+	@Benchmark
+	public double tablaDeDiezTramos() {
+		return tarificar(diezTramos);
+	}
+
+	private double tarificar(MotorTarifas motor) {
+		siguiente = (siguiente + 1) & (CANTIDAD_PRECIOS - 1);
+		double precio = precios[siguiente];
+		TablaTarifas tabla = motor.getTabla();
+		int tramo = tabla.buscarTramo(precio);
+		return precio * tabla.getPorcentaje(tramo) + tabla.getDias(tramo);
+	}
+}
@@ -0,0 +1,62 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dominio.Vendedor;
+
+/**
+ * Mide Vendedor.tieneXVocales sobre codigos alfanumericos aleatorios. Los codigos de la tienda tienen 10
+ * caracteres, como F01TSA0150
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TieneXVocalesBenchmark {
+
+	private static final String CARACTERES = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+	private static final int CANTIDAD_CODIGOS = 1024;
+
+	@Param({"6", "10", "16"})
+	private int longitud;
+
+	private String[] codigos;
+	private int siguiente;
+	private Vendedor vendedor;
+
+	@Setup
+	public void preparar() {
+
+		Random aleatorio = new Random(42);
+		codigos = new String[CANTIDAD_CODIGOS];
+		for (int i = 0; i < CANTIDAD_CODIGOS; i++) {
+			StringBuilder codigo = new StringBuilder(longitud);
+			for (int j = 0; j < longitud; j++) {
+				codigo.append(CARACTERES.charAt(aleatorio.nextInt(CARACTERES.length())));
+			}
+			codigos[i] = codigo.toString();
+		}
+		vendedor = new Vendedor(null, null, null);
+	}
+
+	@Benchmark
+	public boolean tieneXVocales() {
+		siguiente = (siguiente + 1) & (CANTIDAD_CODIGOS - 1);
+		return vendedor.tieneXVocales(codigos[siguiente]);
+	}
+}
@@ -0,0 +1,143 @@
+package dominio;
+
+import java.time.Clock;
+import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioMarcaBarrido;
+import dominio.repositorio.UnidadDeTrabajo;
+
+/**
+ * Notifica las garantias que terminan pronto. Cada barrido continua desde la marca guardada por el anterior, de modo
+ * que cada garantia se lee una sola vez, y avanza por lotes acotados, cada uno en su propia transaccion junto con la
+ * marca. Si la notificacion de un lote falla, el lote se repite en el siguiente barrido.
+ */
+public class BarredorVencimientos {
+
+	public static final String MARCA_VENCIMIENTOS = "vencimientos";
+
+	private static final Logger LOGGER = Logger.getLogger(BarredorVencimientos.class);
+	private static final int MAXIMO_LOTES_POR_BARRIDO = Integer.getInteger("tienda.vencimientos.maximoLotes", 100);
+
+	private final RepositorioGarantiaExtendida repositorioGarantia;
+	private final RepositorioMarcaBarrido repositorioMarcas;
+	private final UnidadDeTrabajo unidadDeTrabajo;
+	private final Consumer<GarantiaExtendida> notificador;
+	private final long anticipacion;
+	private final int tamanioLote;
+	private final Clock reloj;
+
+	public BarredorVencimientos(RepositorioGarantiaExtendida repositorioGarantia, RepositorioMarcaBarrido repositorioMarcas,
+			UnidadDeTrabajo unidadDeTrabajo, Consumer<GarantiaExtendida> notificador, long anticipacion, TimeUnit unidad, int tamanioLote) {
+		this(repositorioGarantia, repositorioMarcas, unidadDeTrabajo, notificador, anticipacion, unidad, tamanioLote, Clock.systemDefaultZone());
+	}
+
+	/**
+	 * @param repositorioGarantia
+	 * @param repositorioMarcas
+	 * @param unidadDeTrabajo
+	 * @param notificador recibe cada garantia que termina dentro de la anticipacion
+	 * @param anticipacion cuanto antes de la fecha de fin se notifica
+	 * @param unidad
+	 * @param tamanioLote garantias por transaccion
+	 * @param reloj
+	 */
+	public BarredorVencimientos(RepositorioGarantiaExtendida repositorioGarantia, RepositorioMarcaBarrido repositorioMarcas,
+			UnidadDeTrabajo unidadDeTrabajo, Consumer<GarantiaExtendida> notificador, long anticipacion, TimeUnit unidad, int tamanioLote,
+			Clock reloj) {
+
+		this.repositorioGarantia = repositorioGarantia;
+		this.repositorioMarcas = repositorioMarcas;
+		this.unidadDeTrabajo = unidadDeTrabajo;
+		this.notificador = notificador;
+		this.anticipacion = unidad.toMillis(anticipacion);
+		this.tamanioLote = tamanioLote;
+		this.reloj = reloj;
+	}
+
+	/**
+	 * Permite procesar las garantias que terminan antes de ahora mas la anticipacion y que no se habian procesado.
+	 * En la primera ejecucion empieza desde ahora, sin notificar las garantias ya vencidas
+	 * @return cantidad de garantias notificadas
+	 */
+	public long barrer() {
+
+		long notificadas = 0;
+		for (int lote = 0; lote < MAXIMO_LOTES_POR_BARRIDO; lote++) {
+			Pagina<GarantiaExtendida> pagina = procesarLote();
+			notificadas += pagina.getElementos().size();
+			if (!pagina.tieneSiguiente()) {
+				break;
+			}
+		}
+		return notificadas;
+	}
+
+	/**
+	 * Permite ejecutar el barrido periodicamente. Un barrido que falla se registra y se reintenta en el siguiente
+	 * @param programador
+	 * @param periodo
+	 * @param unidad
+	 * @return
+	 */
+	public ScheduledFuture<?> programar(ScheduledExecutorService programador, long periodo, TimeUnit unidad) {
+
+		return programador.scheduleWithFixedDelay(() -> {
+			try {
+				barrer();
+			} catch (RuntimeException e) {
+				LOGGER.warn("El barrido de vencimientos fallo, se reintentara desde la ultima marca", e);
+			}
+		}, 0, periodo, unidad);
+	}
+
+	/**
+	 * @return la pagina notificada; si tiene siguiente, la ventana actual no se ha terminado
+	 */
+	private Pagina<GarantiaExtendida> procesarLote() {
+
+		unidadDeTrabajo.iniciar();
+		try {
+			Date ahora = Date.from(reloj.instant());
+			MarcaBarrido marca = repositorioMarcas.obtener(MARCA_VENCIMIENTOS);
+			if (marca == null) {
+				marca = new MarcaBarrido(MARCA_VENCIMIENTOS, ahora, null, null);
+			}
+
+			// Una ventana iniciada se termina con el mismo limite para que la continuacion siga siendo valida
+			Date hasta = marca.getContinuacion() != null ? marca.getVentanaHasta() : new Date(ahora.getTime() + anticipacion);
+			if (hasta.before(marca.getProcesadoHasta())) {
+				hasta = marca.getProcesadoHasta();
+			}
+
+			Pagina<GarantiaExtendida> pagina = repositorioGarantia.buscarPorFechaFin(marca.getProcesadoHasta(), hasta, marca.getContinuacion(), tamanioLote);
+			pagina.getElementos().forEach(notificador);
+
+			MarcaBarrido siguiente = pagina.tieneSiguiente()
+					? new MarcaBarrido(MARCA_VENCIMIENTOS, marca.getProcesadoHasta(), hasta, pagina.getContinuacion())
+					: new MarcaBarrido(MARCA_VENCIMIENTOS, hasta, null, null);
+			repositorioMarcas.guardar(siguiente);
+			unidadDeTrabajo.terminar();
+			return pagina;
+		} catch (RuntimeException e) {
+			deshacer(e);
+			throw e;
+		} finally {
+			unidadDeTrabajo.cerrar();
+		}
+	}
+
+	private void deshacer(RuntimeException causa) {
+		try {
+			unidadDeTrabajo.deshacer();
+		} catch (RuntimeException e) {
+			causa.addSuppressed(e);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package dominio;
+
+import java.util.Date;
+
+/**
+ * Hasta donde llego un barrido incremental: todo lo anterior a procesadoHasta ya se proceso, y si hay una
+ * continuacion, la ventana [procesadoHasta, ventanaHasta) quedo procesada hasta esa continuacion
+ */
+public class MarcaBarrido {
+
+	private final String nombre;
+	private final Date procesadoHasta;
+	private final Date ventanaHasta;
+	private final String continuacion;
+
+	public MarcaBarrido(String nombre, Date procesadoHasta, Date ventanaHasta, String continuacion) {
+
+		this.nombre = nombre;
+		this.procesadoHasta = procesadoHasta;
+		this.ventanaHasta = ventanaHasta;
+		this.continuacion = continuacion;
+	}
+
+	public String getNombre() {
+		return nombre;
+	}
+
+	public Date getProcesadoHasta() {
+		return procesadoHasta;
+	}
+
+	public Date getVentanaHasta() {
+		return ventanaHasta;
+	}
+
+	public String getContinuacion() {
+		return continuacion;
+	}
+
+}
@@ -0,0 +1,66 @@
+package dominio;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import dominio.metrica.Contador;
+import dominio.metrica.Metricas;
+import dominio.metrica.Temporizador;
+
+/**
+ * Metricas de las etapas de Vendedor.generarGarantia y de cada resultado posible
+ */
+final class MetricasVendedor {
+
+	static final Temporizador GENERAR_GARANTIA = Metricas.temporizador("vendedor.generarGarantia");
+	static final Temporizador TIENE_GARANTIA = Metricas.temporizador("vendedor.tieneGarantia");
+	static final Temporizador OBTENER_PRODUCTO = Metricas.temporizador("vendedor.obtenerProducto");
+	static final Temporizador AGREGAR_GARANTIA = Metricas.temporizador("vendedor.agregarGarantia");
+
+	static final String CREADAS_EN_TRAMO = "garantia.creada.tramo";
+	static final Contador RECHAZADAS_TIENE_GARANTIA = Metricas.contador("garantia.rechazada.tieneGarantia");
+	static final Contador RECHAZADAS_SIN_GARANTIA_EXTENDIDA = Metricas.contador("garantia.rechazada.sinGarantiaExtendida");
+	static final Contador RECHAZADAS_PRODUCTO_NO_ENCONTRADO = Metricas.contador("garantia.rechazada.productoNoEncontrado");
+	static final Contador RECHAZADAS_LOTE_NO_GUARDADO = Metricas.contador("garantia.rechazada.loteNoGuardado");
+
+	/**
+	 * Contadores de los primeros tramos, para no buscarlos por nombre en cada garantia
+	 */
+	private static final AtomicReferenceArray<Contador> CREADAS_POR_TRAMO = new AtomicReferenceArray<>(8);
+
+	private MetricasVendedor() {
+	}
+
+	/**
+	 * Cuenta una garantia creada en el contador garantia.creada.tramo&lt;N&gt; de su tramo de la tabla de tarifas,
+	 * 0 para el tramo de los precios menores
+	 * @param tramo
+	 */
+	static void registrarCreada(int tramo) {
+		creadasEnTramo(tramo).incrementar();
+	}
+
+	static void registrarRechazo(String motivo) {
+		if (Vendedor.EL_PRODUCTO_TIENE_GARANTIA.equals(motivo)) {
+			RECHAZADAS_TIENE_GARANTIA.incrementar();
+		} else if (Vendedor.ESTE_PRODUCTo_HO_CUENTA_CON_GARANTIA_EXTENDIDA.equals(motivo)) {
+			RECHAZADAS_SIN_GARANTIA_EXTENDIDA.incrementar();
+		} else if (Vendedor.NO_SE_ENCUETRA_UN_PRODUCTO_CON_ESTE_CODIGO.equals(motivo)) {
+			RECHAZADAS_PRODUCTO_NO_ENCONTRADO.incrementar();
+		} else if (Vendedor.EL_LOTE_NO_SE_GUARDO.equals(motivo)) {
+			RECHAZADAS_LOTE_NO_GUARDADO.incrementar();
+		}
+	}
+
+	private static Contador creadasEnTramo(int tramo) {
+
+		if (tramo >= CREADAS_POR_TRAMO.length()) {
+			return Metricas.contador(CREADAS_EN_TRAMO + tramo);
+		}
+		Contador contador = CREADAS_POR_TRAMO.get(tramo);
+		if (contador == null) {
+			contador = Metricas.contador(CREADAS_EN_TRAMO + tramo);
+			CREADAS_POR_TRAMO.set(tramo, contador);
+		}
+		return contador;
+	}
+}
@@ -0,0 +1,33 @@
+package dominio;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Una pagina de resultados. La continuacion es un valor opaco que se envia para obtener la pagina siguiente,
+ * y es null en la ultima pagina
+ */
+public class Pagina<T> {
+
+	private final List<T> elementos;
+	private final String continuacion;
+
+	public Pagina(List<T> elementos, String continuacion) {
+
+		this.elementos = Collections.unmodifiableList(elementos);
+		this.continuacion = continuacion;
+	}
+
+	public List<T> getElementos() {
+		return elementos;
+	}
+
+	public String getContinuacion() {
+		return continuacion;
+	}
+
+	public boolean tieneSiguiente() {
+		return continuacion != null;
+	}
+
+}
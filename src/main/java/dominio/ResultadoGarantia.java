@@ -0,0 +1,40 @@
+package dominio;
+
+public class ResultadoGarantia {
+
+	private SolicitudGarantia solicitud;
+	private GarantiaExtendida garantia;
+	private String motivoRechazo;
+
+	private ResultadoGarantia(SolicitudGarantia solicitud, GarantiaExtendida garantia, String motivoRechazo) {
+
+		this.solicitud = solicitud;
+		this.garantia = garantia;
+		this.motivoRechazo = motivoRechazo;
+	}
+
+	public static ResultadoGarantia creada(SolicitudGarantia solicitud, GarantiaExtendida garantia) {
+		return new ResultadoGarantia(solicitud, garantia, null);
+	}
+
+	public static ResultadoGarantia rechazada(SolicitudGarantia solicitud, String motivoRechazo) {
+		return new ResultadoGarantia(solicitud, null, motivoRechazo);
+	}
+
+	public boolean fueCreada() {
+		return garantia != null;
+	}
+
+	public SolicitudGarantia getSolicitud() {
+		return solicitud;
+	}
+
+	public GarantiaExtendida getGarantia() {
+		return garantia;
+	}
+
+	public String getMotivoRechazo() {
+		return motivoRechazo;
+	}
+
+}
@@ -0,0 +1,22 @@
+package dominio;
+
+public class SolicitudGarantia {
+
+	private String codigo;
+	private String nombreCliente;
+
+	public SolicitudGarantia(String codigo, String nombreCliente) {
+
+		this.codigo = codigo;
+		this.nombreCliente = nombreCliente;
+	}
+
+	public String getCodigo() {
+		return codigo;
+	}
+
+	public String getNombreCliente() {
+		return nombreCliente;
+	}
+
+}
@@ -2,56 +2,257 @@ package dominio;
 
 import dominio.repositorio.RepositorioProducto;
 
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 import javax.persistence.NoResultException;
 
+import dominio.calendario.CalendarioHabil;
+import dominio.calendario.CalendarioLunesNoHabil;
+import dominio.concurrencia.BloqueosPorCodigo;
 import dominio.excepcion.GarantiaExtendidaException;
 import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.UnidadDeTrabajo;
+import dominio.tarifa.MotorTarifas;
+import dominio.tarifa.TablaTarifas;
 
 public class Vendedor {
 
     public static final String EL_PRODUCTO_TIENE_GARANTIA = "El producto ya cuenta con una garanta extendida";
     public static final String ESTE_PRODUCTo_HO_CUENTA_CON_GARANTIA_EXTENDIDA = "Este producto no cuenta con garanta extendida";
     public static final String NO_SE_ENCUETRA_UN_PRODUCTO_CON_ESTE_CODIGO = "No se encuentra un producto con este cdigo";
+    public static final String EL_LOTE_NO_SE_GUARDO = "Otra solicitud registr en paralelo la garanta de un producto del lote y el lote no se guard";
     private static final int CANTIDAD_VOCALES = 3;
-    private static final double PRECIO_PRODUCTO = 500000;
-    private static final double VEINTE_PORCIENTO = 0.2;
-    private static final double DIEZ_PORCIENTO = 0.1;
-    private static final int DOSCIENTOS_DIAS_DE_GARANTIA = 200;
-    private static final int CIEN_DIAS_DE_GARANTIA = 100;
     private static final boolean INCLUIR_FECHA_SOLICITUD_GARANTIA = true;
+    private static final CalendarioHabil CALENDARIO_PREDETERMINADO = new CalendarioLunesNoHabil();
+    private static final MotorTarifas TARIFAS_PREDETERMINADAS = new MotorTarifas(TablaTarifas.PREDETERMINADA);
 
     private RepositorioProducto repositorioProducto;
     private RepositorioGarantiaExtendida repositorioGarantia;
     private Date fechaSolicitudGarantia;
+    private CalendarioHabil calendarioHabil;
+    private BloqueosPorCodigo bloqueosPorCodigo;
+    private MotorTarifas motorTarifas;
+    private UnidadDeTrabajo unidadDeTrabajo;
 
     public Vendedor(RepositorioProducto repositorioProducto, RepositorioGarantiaExtendida repositorioGarantia, Date fechaSolicitudGarantia) {
+        this(repositorioProducto, repositorioGarantia, fechaSolicitudGarantia, CALENDARIO_PREDETERMINADO);
+    }
+
+    public Vendedor(RepositorioProducto repositorioProducto, RepositorioGarantiaExtendida repositorioGarantia, Date fechaSolicitudGarantia, CalendarioHabil calendarioHabil) {
+        this(repositorioProducto, repositorioGarantia, fechaSolicitudGarantia, calendarioHabil, BloqueosPorCodigo.compartidos());
+    }
+
+    public Vendedor(RepositorioProducto repositorioProducto, RepositorioGarantiaExtendida repositorioGarantia, Date fechaSolicitudGarantia, CalendarioHabil calendarioHabil, BloqueosPorCodigo bloqueosPorCodigo) {
+        this(repositorioProducto, repositorioGarantia, fechaSolicitudGarantia, calendarioHabil, bloqueosPorCodigo, TARIFAS_PREDETERMINADAS);
+    }
+
+    public Vendedor(RepositorioProducto repositorioProducto, RepositorioGarantiaExtendida repositorioGarantia, Date fechaSolicitudGarantia, CalendarioHabil calendarioHabil, BloqueosPorCodigo bloqueosPorCodigo, MotorTarifas motorTarifas) {
+        this(repositorioProducto, repositorioGarantia, fechaSolicitudGarantia, calendarioHabil, bloqueosPorCodigo, motorTarifas, null);
+    }
+
+    /**
+     * @param unidadDeTrabajo la de las transacciones en las que se agregan las garantias, para contarlas como creadas
+     * solo cuando se confirman; si es null se cuentan al agregarlas
+     */
+    public Vendedor(RepositorioProducto repositorioProducto, RepositorioGarantiaExtendida repositorioGarantia, Date fechaSolicitudGarantia, CalendarioHabil calendarioHabil, BloqueosPorCodigo bloqueosPorCodigo, MotorTarifas motorTarifas, UnidadDeTrabajo unidadDeTrabajo) {
         this.repositorioProducto = repositorioProducto;
         this.repositorioGarantia = repositorioGarantia;
         this.fechaSolicitudGarantia = fechaSolicitudGarantia;
+        this.calendarioHabil = calendarioHabil;
+        this.bloqueosPorCodigo = bloqueosPorCodigo;
+        this.motorTarifas = motorTarifas;
+        this.unidadDeTrabajo = unidadDeTrabajo;
     }
 
-    public void generarGarantia(String codigo, String nombreCliente) {    	
+    /**
+     * Permite obtener un vendedor igual a este que cuenta las garantias creadas cuando se confirma la transaccion de
+     * la unidad de trabajo
+     * @param unidadDeTrabajo
+     * @return
+     */
+    public Vendedor conUnidadDeTrabajo(UnidadDeTrabajo unidadDeTrabajo) {
+        return new Vendedor(repositorioProducto, repositorioGarantia, fechaSolicitudGarantia, calendarioHabil, bloqueosPorCodigo, motorTarifas, unidadDeTrabajo);
+    }
+
+    public GarantiaExtendida generarGarantia(String codigo, String nombreCliente) {    	
+    	long inicio = MetricasVendedor.GENERAR_GARANTIA.iniciar();
+    	// Solo se serializan las solicitudes del mismo codigo; la restriccion unica sigue siendo la garantia final.
+    	// Dentro de una unidad de trabajo el bloqueo se libera al confirmar o deshacer la transaccion, no al salir de aqui;
+    	// si otra transaccion retiene el segmento mas de la espera maxima se rechaza la solicitud y se debe deshacer
+    	Lock bloqueo = bloqueosPorCodigo.adquirir(codigo);
+    	try{
+    		GarantiaTarificada tarificada = verificarYAgregarGarantia(codigo, nombreCliente);
+    		registrarCreadas(Collections.singletonList(tarificada.tramo));
+    		return tarificada.garantia;
+    	}catch (GarantiaExtendidaException e){
+    		MetricasVendedor.registrarRechazo(e.getMessage());
+    		throw e;
+    	}finally{
+    		BloqueosPorCodigo.liberarAlTerminar(bloqueo);
+    		MetricasVendedor.GENERAR_GARANTIA.detener(inicio);
+    	}
+    }
+
+    private GarantiaTarificada verificarYAgregarGarantia(String codigo, String nombreCliente) {
     	try{
     		if(tieneGarantia(codigo)){
         		throw new GarantiaExtendidaException(EL_PRODUCTO_TIENE_GARANTIA);
         	}else if(tieneXVocales(codigo)){
         		throw new GarantiaExtendidaException(ESTE_PRODUCTo_HO_CUENTA_CON_GARANTIA_EXTENDIDA);
-        	}else if(precioMayorA(repositorioProducto.obtenerPorCodigo(codigo).getPrecio())){    		
-        		double precioGarantia = repositorioProducto.obtenerPorCodigo(codigo).getPrecio() * VEINTE_PORCIENTO;    	
-        		Date fechaFinGarantia = calcularFechaFinGarantia(DOSCIENTOS_DIAS_DE_GARANTIA);    		
-        		repositorioGarantia.agregar(new GarantiaExtendida(repositorioProducto.obtenerPorCodigo(codigo), fechaSolicitudGarantia, fechaFinGarantia, precioGarantia, nombreCliente));
-        	}else{        		
-        		double precioGarantia = repositorioProducto.obtenerPorCodigo(codigo).getPrecio() * DIEZ_PORCIENTO;  
-        		Date fechaFinGarantia = calcularFechaFinGarantia(CIEN_DIAS_DE_GARANTIA);    		
-        		repositorioGarantia.agregar(new GarantiaExtendida(repositorioProducto.obtenerPorCodigo(codigo), fechaSolicitudGarantia, fechaFinGarantia, precioGarantia, nombreCliente));
         	}
+    		GarantiaTarificada tarificada = construirGarantia(obtenerProducto(codigo), nombreCliente);
+    		agregarGarantia(tarificada.garantia);
+    		return tarificada;
+    	}catch (NoResultException nre){
+    		throw new GarantiaExtendidaException(NO_SE_ENCUETRA_UN_PRODUCTO_CON_ESTE_CODIGO);
+    	}
+    }
+
+    private Producto obtenerProducto(String codigo) {
+    	long inicio = MetricasVendedor.OBTENER_PRODUCTO.iniciar();
+    	try{
+    		return repositorioProducto.obtenerPorCodigo(codigo);
+    	}finally{
+    		MetricasVendedor.OBTENER_PRODUCTO.detener(inicio);
+    	}
+    }
+
+    private void agregarGarantia(GarantiaExtendida garantia) {
+    	long inicio = MetricasVendedor.AGREGAR_GARANTIA.iniciar();
+    	try{
+    		repositorioGarantia.agregar(garantia);
+    	}finally{
+    		MetricasVendedor.AGREGAR_GARANTIA.detener(inicio);
+    	}
+    }
+
+    /**
+     * Permite conocer el precio de la garantia de un producto sin generarla. Solo se consulta el precio del
+     * producto, que el repositorio puede responder sin cargar el producto
+     * @param codigo
+     * @return
+     */
+    public double cotizarGarantia(String codigo) {
+    	if(tieneXVocales(codigo)){
+    		throw new GarantiaExtendidaException(ESTE_PRODUCTo_HO_CUENTA_CON_GARANTIA_EXTENDIDA);
+    	}
+    	try{
+    		double precio = repositorioProducto.obtenerPrecioPorCodigo(codigo);
+    		TablaTarifas tarifas = motorTarifas.getTabla();
+    		return precio * tarifas.getPorcentaje(tarifas.buscarTramo(precio));
     	}catch (NoResultException nre){
     		throw new GarantiaExtendidaException(NO_SE_ENCUETRA_UN_PRODUCTO_CON_ESTE_CODIGO);
     	}
     }
+
+    /**
+     * Permite generar las garantias de un lote de solicitudes. Los bloqueos de todos los codigos se toman antes de
+     * verificar cuales ya tienen garantia, asi que otra solicitud de este proceso no puede crear una en medio. Si
+     * aun asi otro proceso crea una al mismo tiempo, el lote no se guarda: todas las solicitudes que se iban a crear
+     * se rechazan con EL_LOTE_NO_SE_GUARDO y la transaccion se debe deshacer; al reintentarlas se rechaza solo la
+     * duplicada. Si algun bloqueo sigue retenido por otra transaccion al agotar su espera maxima, se lanza
+     * GarantiaExtendidaException sin verificar ninguna solicitud
+     * @param solicitudes
+     * @return un resultado por solicitud, en el mismo orden
+     */
+    public List<ResultadoGarantia> generarGarantias(Collection<SolicitudGarantia> solicitudes) {
+    	Set<String> codigos = new HashSet<>();
+    	for (SolicitudGarantia solicitud : solicitudes) {
+    		codigos.add(solicitud.getCodigo());
+    	}
+    	List<Lock> bloqueos = bloqueosPorCodigo.adquirirTodos(codigos);
+    	try{
+    		return verificarYAgregarGarantias(solicitudes, codigos);
+    	}finally{
+    		for (Lock bloqueo : bloqueos) {
+    			BloqueosPorCodigo.liberarAlTerminar(bloqueo);
+    		}
+    	}
+    }
+
+    private List<ResultadoGarantia> verificarYAgregarGarantias(Collection<SolicitudGarantia> solicitudes, Set<String> codigos) {
+    	Set<String> codigosConGarantia = new HashSet<>(repositorioGarantia.obtenerCodigosConGarantia(codigos));
+    	Map<String, Producto> productos = repositorioProducto.obtenerPorCodigos(codigos);
+
+    	List<ResultadoGarantia> resultados = new ArrayList<>(solicitudes.size());
+    	List<GarantiaExtendida> garantias = new ArrayList<>();
+    	List<Integer> tramos = new ArrayList<>();
+    	for (SolicitudGarantia solicitud : solicitudes) {
+    		String codigo = solicitud.getCodigo();
+    		Producto producto = productos.get(codigo);
+    		if(codigosConGarantia.contains(codigo)){
+    			resultados.add(rechazar(solicitud, EL_PRODUCTO_TIENE_GARANTIA));
+    		}else if(tieneXVocales(codigo)){
+    			resultados.add(rechazar(solicitud, ESTE_PRODUCTo_HO_CUENTA_CON_GARANTIA_EXTENDIDA));
+    		}else if(producto == null){
+    			resultados.add(rechazar(solicitud, NO_SE_ENCUETRA_UN_PRODUCTO_CON_ESTE_CODIGO));
+    		}else{
+    			GarantiaTarificada tarificada = construirGarantia(producto, solicitud.getNombreCliente());
+    			codigosConGarantia.add(codigo);
+    			garantias.add(tarificada.garantia);
+    			tramos.add(tarificada.tramo);
+    			resultados.add(ResultadoGarantia.creada(solicitud, tarificada.garantia));
+    		}
+    	}
+    	if(!garantias.isEmpty()){
+    		try{
+    			repositorioGarantia.agregarTodas(garantias);
+    		}catch (GarantiaExtendidaException e){
+    			return rechazarCreadas(resultados);
+    		}
+    		registrarCreadas(tramos);
+    	}
+    	return resultados;
+    }
+
+    /**
+     * Una garantia que se deshace con su transaccion no cuenta como creada
+     */
+    private void registrarCreadas(List<Integer> tramos) {
+    	Runnable registrar = () -> {
+    		for (int tramo : tramos) {
+    			MetricasVendedor.registrarCreada(tramo);
+    		}
+    	};
+    	if(unidadDeTrabajo == null){
+    		registrar.run();
+    	}else{
+    		unidadDeTrabajo.alConfirmar(registrar);
+    	}
+    }
+
+    private static List<ResultadoGarantia> rechazarCreadas(List<ResultadoGarantia> resultados) {
+    	List<ResultadoGarantia> rechazados = new ArrayList<>(resultados.size());
+    	for (ResultadoGarantia resultado : resultados) {
+    		rechazados.add(resultado.fueCreada() ? rechazar(resultado.getSolicitud(), EL_LOTE_NO_SE_GUARDO) : resultado);
+    	}
+    	return rechazados;
+    }
+
+    private static ResultadoGarantia rechazar(SolicitudGarantia solicitud, String motivo) {
+    	MetricasVendedor.registrarRechazo(motivo);
+    	return ResultadoGarantia.rechazada(solicitud, motivo);
+    }
+
+    /**
+     * Se toma la tabla una sola vez para que una recarga no mezcle el porcentaje de una tabla con los dias de otra,
+     * ni con el tramo que se cuenta en las metricas
+     */
+    private GarantiaTarificada construirGarantia(Producto producto, String nombreCliente) {
+    	TablaTarifas tarifas = motorTarifas.getTabla();
+    	int tramo = tarifas.buscarTramo(producto.getPrecio());
+    	double precioGarantia = producto.getPrecio() * tarifas.getPorcentaje(tramo);
+    	Date fechaFinGarantia = calcularFechaFinGarantia(tarifas.getDias(tramo));
+    	return new GarantiaTarificada(new GarantiaExtendida(producto, fechaSolicitudGarantia, fechaFinGarantia, precioGarantia, nombreCliente), tramo);
+    }
     
     public boolean tieneXVocales(String codigo){
     	int cantidadVocales = 0;
@@ -70,39 +271,43 @@ public class Vendedor {
     	}    	
     }
     
+    /**
+     * Permite saber si un precio queda por encima del primer tramo de la tabla de tarifas, que con la tabla
+     * predeterminada son los productos de mas de 500000
+     * @param precio
+     * @return
+     */
     public boolean precioMayorA(double precio){
-    	if(precio > PRECIO_PRODUCTO){
-    		return true;
-    	}else{
-    		return false;
-    	}
+    	return motorTarifas.getTabla().buscarTramo(precio) > 0;
     }
     
     public Date calcularFechaFinGarantia(int diasExtensionGarantia){
-    	diasExtensionGarantia = (INCLUIR_FECHA_SOLICITUD_GARANTIA) ? diasExtensionGarantia - 1 : diasExtensionGarantia;
-    	Calendar calendario = Calendar.getInstance();
-    	calendario.setTime(fechaSolicitudGarantia);
-    	for (int i = 0; i < diasExtensionGarantia; i++) {
-			calendario.add(Calendar.DATE, 1);
-			//Saltarse los das lunes
-			if(calendario.get(Calendar.DAY_OF_WEEK) == (Calendar.MONDAY)){
-				 calendario.add(Calendar.DATE, 1);
-			 }	
-		}
-    	//Si la fecha final de la garanta cae un domingo, entonces aumentar 2 das (ya que el lunes no se cuenta)
-    	if(calendario.get(Calendar.DAY_OF_WEEK) == (Calendar.SUNDAY)){
-			 calendario.add(Calendar.DATE, 2);
-		 }
-    	return calendario.getTime();
+    	int diasContados = (INCLUIR_FECHA_SOLICITUD_GARANTIA) ? diasExtensionGarantia - 1 : diasExtensionGarantia;
+    	return calendarioHabil.calcularFechaFin(fechaSolicitudGarantia, diasContados);
     }
     
 
     public boolean tieneGarantia(String codigo) {
-        if(repositorioGarantia.obtenerProductoConGarantiaPorCodigo(codigo)!=null) {
-        	return true;
-        }else {
-        	return false;
+        long inicio = MetricasVendedor.TIENE_GARANTIA.iniciar();
+        try{
+        	return repositorioGarantia.existeGarantia(codigo);
+        }finally{
+        	MetricasVendedor.TIENE_GARANTIA.detener(inicio);
         }
     }
 
+    /**
+     * Garantia con el tramo de la tabla de tarifas con el que se calculo
+     */
+    private static final class GarantiaTarificada {
+
+    	private final GarantiaExtendida garantia;
+    	private final int tramo;
+
+    	private GarantiaTarificada(GarantiaExtendida garantia, int tramo) {
+    		this.garantia = garantia;
+    		this.tramo = tramo;
+    	}
+    }
+
 }
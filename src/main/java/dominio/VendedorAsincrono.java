@@ -0,0 +1,213 @@
+package dominio;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dominio.repositorio.UnidadDeTrabajo;
+
+/**
+ * Genera garantias sin bloquear al hilo que las solicita. Cada solicitud se ejecuta en su propia transaccion en un
+ * hilo del ejecutor, y si falla el futuro se completa con la misma GarantiaExtendidaException que lanza el Vendedor.
+ */
+public class VendedorAsincrono {
+
+	private static final int HILOS_PREDETERMINADOS = Integer.getInteger("tienda.vendedor.hilos", 10);
+	private static final int CAPACIDAD_COLA_PREDETERMINADA = Integer.getInteger("tienda.vendedor.capacidadCola", 1000);
+
+	private final Vendedor vendedor;
+	private final UnidadDeTrabajo unidadDeTrabajo;
+	private final Executor ejecutor;
+
+	/**
+	 * Usa hilos virtuales si el runtime los soporta, o un pool acotado en Java 8
+	 * @param vendedor
+	 * @param unidadDeTrabajo
+	 */
+	public VendedorAsincrono(Vendedor vendedor, UnidadDeTrabajo unidadDeTrabajo) {
+		this(vendedor, unidadDeTrabajo, EjecutorPredeterminado.EJECUTOR);
+	}
+
+	/**
+	 * Las garantias se cuentan como creadas cuando se confirma su transaccion, no al generarlas
+	 * @param vendedor
+	 * @param unidadDeTrabajo
+	 * @param ejecutor
+	 */
+	public VendedorAsincrono(Vendedor vendedor, UnidadDeTrabajo unidadDeTrabajo, Executor ejecutor) {
+		this.vendedor = vendedor.conUnidadDeTrabajo(unidadDeTrabajo);
+		this.unidadDeTrabajo = unidadDeTrabajo;
+		this.ejecutor = ejecutor;
+	}
+
+	/**
+	 * Al cancelar el futuro se interrumpe el hilo que atiende la solicitud y su transaccion se deshace. Una vez que
+	 * la transaccion empieza a confirmarse ya no se puede cancelar ni vencer, y el futuro informa lo que resulte
+	 * @param codigo
+	 * @param nombreCliente
+	 * @return
+	 */
+	public CompletableFuture<GarantiaExtendida> generarGarantiaAsync(String codigo, String nombreCliente) {
+
+		Solicitud resultado = new Solicitud();
+		FutureTask<Void> tarea = new FutureTask<>(() -> generarGarantia(codigo, nombreCliente, resultado), null);
+		resultado.whenComplete((garantia, error) -> {
+			if (resultado.isCancelled() || error instanceof TimeoutException) {
+				tarea.cancel(true);
+			}
+		});
+		try {
+			ejecutor.execute(tarea);
+		} catch (RejectedExecutionException e) {
+			resultado.informar(null, e);
+		}
+		return resultado;
+	}
+
+	/**
+	 * Igual que generarGarantiaAsync, pero si la garantia no se genera dentro del tiempo dado el futuro se completa
+	 * con una TimeoutException y la solicitud se cancela
+	 * @param codigo
+	 * @param nombreCliente
+	 * @param tiempoMaximo
+	 * @param unidad
+	 * @return
+	 */
+	public CompletableFuture<GarantiaExtendida> generarGarantiaAsync(String codigo, String nombreCliente, long tiempoMaximo, TimeUnit unidad) {
+
+		CompletableFuture<GarantiaExtendida> resultado = generarGarantiaAsync(codigo, nombreCliente);
+		ScheduledFuture<?> vencimiento = Temporizador.TEMPORIZADOR.schedule(
+				() -> resultado.completeExceptionally(new TimeoutException("La garantia no se genero en " + tiempoMaximo + " " + unidad)),
+				tiempoMaximo, unidad);
+		resultado.whenComplete((garantia, error) -> vencimiento.cancel(false));
+		return resultado;
+	}
+
+	private void generarGarantia(String codigo, String nombreCliente, Solicitud resultado) {
+
+		if (resultado.isDone()) {
+			return;
+		}
+		GarantiaExtendida garantia = null;
+		Throwable error = null;
+		try {
+			unidadDeTrabajo.iniciar();
+			garantia = vendedor.generarGarantia(codigo, nombreCliente);
+			if (!resultado.reclamar()) {
+				// Cancelada o vencida mientras se generaba
+				unidadDeTrabajo.deshacer();
+				return;
+			}
+			unidadDeTrabajo.terminar();
+		} catch (Throwable e) {
+			error = e;
+			deshacer(e);
+		} finally {
+			unidadDeTrabajo.cerrar();
+		}
+		resultado.informar(garantia, error);
+	}
+
+	private void deshacer(Throwable causa) {
+		try {
+			unidadDeTrabajo.deshacer();
+		} catch (RuntimeException e) {
+			causa.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * Futuro de una solicitud. Quien lo cancela o lo completa desde afuera, como el vencimiento, compite con el hilo
+	 * que confirma la transaccion: si el hilo la reclama primero, la cancelacion no tiene efecto y el futuro informa
+	 * el resultado de confirmar; si no, la transaccion se deshace
+	 */
+	private static final class Solicitud extends CompletableFuture<GarantiaExtendida> {
+
+		private final AtomicBoolean reclamada = new AtomicBoolean();
+
+		/**
+		 * Reserva el futuro para informar el resultado de confirmar la transaccion
+		 * @return false si ya se cancelo o se completo
+		 */
+		private boolean reclamar() {
+			return reclamada.compareAndSet(false, true);
+		}
+
+		private void informar(GarantiaExtendida garantia, Throwable error) {
+
+			reclamada.set(true);
+			if (error != null) {
+				super.completeExceptionally(error);
+			} else {
+				super.complete(garantia);
+			}
+		}
+
+		@Override
+		public boolean complete(GarantiaExtendida garantia) {
+			return reclamar() && super.complete(garantia);
+		}
+
+		@Override
+		public boolean completeExceptionally(Throwable error) {
+			return reclamar() && super.completeExceptionally(error);
+		}
+
+		@Override
+		public boolean cancel(boolean interrumpir) {
+			return reclamar() && super.cancel(interrumpir);
+		}
+	}
+
+	private static ThreadFactory hilosDemonio(String nombre) {
+
+		AtomicInteger consecutivo = new AtomicInteger();
+		return tarea -> {
+			Thread hilo = new Thread(tarea, nombre + "-" + consecutivo.incrementAndGet());
+			hilo.setDaemon(true);
+			return hilo;
+		};
+	}
+
+	/**
+	 * Se crea solo cuando se usa el constructor sin ejecutor
+	 */
+	private static final class EjecutorPredeterminado {
+
+		private static final Executor EJECUTOR = crear();
+
+		private static Executor crear() {
+			try {
+				return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (ReflectiveOperationException e) {
+				ThreadPoolExecutor pool = new ThreadPoolExecutor(HILOS_PREDETERMINADOS, HILOS_PREDETERMINADOS, 60, TimeUnit.SECONDS,
+						new ArrayBlockingQueue<>(CAPACIDAD_COLA_PREDETERMINADA), hilosDemonio("vendedor-asincrono"));
+				pool.allowCoreThreadTimeOut(true);
+				return pool;
+			}
+		}
+	}
+
+	private static final class Temporizador {
+
+		private static final ScheduledExecutorService TEMPORIZADOR = crear();
+
+		private static ScheduledExecutorService crear() {
+			ScheduledThreadPoolExecutor temporizador = new ScheduledThreadPoolExecutor(1, hilosDemonio("vendedor-asincrono-temporizador"));
+			temporizador.setRemoveOnCancelPolicy(true);
+			return temporizador;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package dominio.calendario;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+/**
+ * Calcula la fecha fin de una garantia sin recorrer el calendario dia a dia:
+ * los lunes no se cuentan y, si la fecha final cae un domingo, se corre hasta el martes.
+ */
+public final class CalculadoraFechaFinGarantia {
+
+	private static final int DIAS_POR_SEMANA = 7;
+	private static final int DIAS_CONTADOS_POR_SEMANA = 6;
+	private static final int DIAS_AJUSTE_DOMINGO = 2;
+
+	private CalculadoraFechaFinGarantia() {}
+
+	/**
+	 * Permite obtener la fecha fin a partir de la fecha de solicitud
+	 * @param fechaSolicitud
+	 * @param diasContados dias a contar despues de la fecha de solicitud
+	 * @return
+	 */
+	public static LocalDate calcular(LocalDate fechaSolicitud, int diasContados) {
+		return fechaSolicitud.plusDays(diasHastaFechaFin(fechaSolicitud.getDayOfWeek(), diasContados));
+	}
+
+	/**
+	 * Cantidad de dias calendario entre la solicitud y la fecha fin: semanas completas de seis dias
+	 * contados mas el resto, saltando el lunes si cae dentro del resto
+	 */
+	static long diasHastaFechaFin(DayOfWeek diaSolicitud, int diasContados) {
+
+		long dias = 0;
+		if (diasContados > 0) {
+			int semanas = (diasContados - 1) / DIAS_CONTADOS_POR_SEMANA;
+			int resto = diasContados - semanas * DIAS_CONTADOS_POR_SEMANA;
+			int diasHastaLunes = DIAS_POR_SEMANA + 1 - diaSolicitud.getValue();
+			dias = (long) semanas * DIAS_POR_SEMANA + (resto < diasHastaLunes ? resto : resto + 1);
+		}
+
+		long diaFin = (diaSolicitud.getValue() - 1 + dias) % DIAS_POR_SEMANA + 1;
+		if (diaFin == DayOfWeek.SUNDAY.getValue()) {
+			dias += DIAS_AJUSTE_DOMINGO;
+		}
+		return dias;
+	}
+}
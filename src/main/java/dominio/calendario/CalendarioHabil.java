@@ -0,0 +1,33 @@
+package dominio.calendario;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+public interface CalendarioHabil {
+
+	/**
+	 * Permite obtener la fecha fin de una garantia contando solo los dias habiles
+	 * posteriores a la fecha de solicitud
+	 * @param fechaSolicitud
+	 * @param diasContados
+	 * @return
+	 */
+	LocalDate calcularFechaFin(LocalDate fechaSolicitud, int diasContados);
+
+	/**
+	 * Permite obtener la fecha fin conservando la hora de la fecha de solicitud
+	 * @param fechaSolicitud
+	 * @param diasContados
+	 * @return
+	 */
+	default Date calcularFechaFin(Date fechaSolicitud, int diasContados) {
+
+		ZoneId zona = ZoneId.systemDefault();
+		LocalDateTime solicitud = LocalDateTime.ofInstant(fechaSolicitud.toInstant(), zona);
+		LocalDate fechaFin = calcularFechaFin(solicitud.toLocalDate(), diasContados);
+
+		return Date.from(fechaFin.atTime(solicitud.toLocalTime()).atZone(zona).toInstant());
+	}
+}
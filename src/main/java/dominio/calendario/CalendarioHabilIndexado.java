@@ -0,0 +1,165 @@
+package dominio.calendario;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Calendario con dias de la semana y festivos que no se cuentan. Por cada anio precalcula un bitset
+ * de los dias no contados y la suma acumulada de dias contados, de modo que avanzar N dias contados
+ * es una busqueda binaria y no un recorrido dia a dia.
+ */
+public class CalendarioHabilIndexado implements CalendarioHabil {
+
+	private static final int BITS_POR_PALABRA = 64;
+	private static final DayOfWeek[] DIAS_SEMANA = DayOfWeek.values();
+
+	private final EnumSet<DayOfWeek> diasNoContados;
+	private final EnumSet<DayOfWeek> diasSinVencimiento;
+	private final Set<LocalDate> festivos;
+	private final ConcurrentMap<Integer, IndiceAnual> indices = new ConcurrentHashMap<>();
+
+	/**
+	 * @param diasNoContados dias de la semana que no se cuentan
+	 * @param diasSinVencimiento dias de la semana en los que no puede terminar una garantia; se corre al siguiente dia contado
+	 * @param festivos fechas que no se cuentan
+	 */
+	public CalendarioHabilIndexado(Set<DayOfWeek> diasNoContados, Set<DayOfWeek> diasSinVencimiento, Collection<LocalDate> festivos) {
+
+		this.diasNoContados = copiar(diasNoContados);
+		this.diasSinVencimiento = copiar(diasSinVencimiento);
+		this.festivos = new HashSet<>(festivos);
+
+		EnumSet<DayOfWeek> diasDeVencimiento = EnumSet.complementOf(this.diasNoContados);
+		diasDeVencimiento.removeAll(this.diasSinVencimiento);
+		if (diasDeVencimiento.isEmpty()) {
+			throw new IllegalArgumentException("El calendario debe tener al menos un dia de la semana en el que pueda terminar una garantia");
+		}
+	}
+
+	/**
+	 * Permite obtener el calendario predeterminado (lunes no contados, sin vencimientos en domingo) con festivos
+	 * @param festivos
+	 * @return
+	 */
+	public static CalendarioHabilIndexado conFestivos(Collection<LocalDate> festivos) {
+		return new CalendarioHabilIndexado(EnumSet.of(DayOfWeek.MONDAY), EnumSet.of(DayOfWeek.SUNDAY), festivos);
+	}
+
+	@Override
+	public LocalDate calcularFechaFin(LocalDate fechaSolicitud, int diasContados) {
+
+		LocalDate fechaFin = avanzar(fechaSolicitud, diasContados);
+		while (diasSinVencimiento.contains(fechaFin.getDayOfWeek())) {
+			fechaFin = avanzar(fechaFin, 1);
+		}
+		return fechaFin;
+	}
+
+	/**
+	 * Permite saber si una fecha se cuenta como dia habil
+	 * @param fecha
+	 * @return
+	 */
+	public boolean esDiaContado(LocalDate fecha) {
+		return indice(fecha.getYear()).esContado(fecha.getDayOfYear());
+	}
+
+	private LocalDate avanzar(LocalDate fecha, int diasContados) {
+
+		if (diasContados <= 0) {
+			return fecha;
+		}
+
+		int anio = fecha.getYear();
+		IndiceAnual indice = indice(anio);
+		int objetivo = indice.contadosHasta(fecha.getDayOfYear()) + diasContados;
+		while (objetivo > indice.totalContados()) {
+			objetivo -= indice.totalContados();
+			indice = indice(++anio);
+		}
+
+		return LocalDate.ofYearDay(anio, indice.diaConContados(objetivo));
+	}
+
+	private IndiceAnual indice(int anio) {
+		return indices.computeIfAbsent(anio, this::construirIndice);
+	}
+
+	private IndiceAnual construirIndice(int anio) {
+
+		int diasAnio = Year.of(anio).length();
+		long[] noContados = new long[(diasAnio + BITS_POR_PALABRA - 1) / BITS_POR_PALABRA];
+
+		int diaSemana = LocalDate.ofYearDay(anio, 1).getDayOfWeek().ordinal();
+		for (int dia = 0; dia < diasAnio; dia++) {
+			if (diasNoContados.contains(DIAS_SEMANA[(diaSemana + dia) % DIAS_SEMANA.length])) {
+				noContados[dia / BITS_POR_PALABRA] |= 1L << dia;
+			}
+		}
+		for (LocalDate festivo : festivos) {
+			if (festivo.getYear() == anio) {
+				int dia = festivo.getDayOfYear() - 1;
+				noContados[dia / BITS_POR_PALABRA] |= 1L << dia;
+			}
+		}
+
+		return new IndiceAnual(noContados, diasAnio);
+	}
+
+	private static EnumSet<DayOfWeek> copiar(Set<DayOfWeek> dias) {
+		return dias.isEmpty() ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(dias);
+	}
+
+	private static final class IndiceAnual {
+
+		private final long[] noContados;
+		private final int[] contadosAcumulados;
+
+		IndiceAnual(long[] noContados, int diasAnio) {
+
+			this.noContados = noContados;
+			this.contadosAcumulados = new int[diasAnio + 1];
+			for (int dia = 1; dia <= diasAnio; dia++) {
+				contadosAcumulados[dia] = contadosAcumulados[dia - 1] + (esContado(dia) ? 1 : 0);
+			}
+		}
+
+		boolean esContado(int diaDelAnio) {
+			int indice = diaDelAnio - 1;
+			return (noContados[indice / BITS_POR_PALABRA] & (1L << indice)) == 0;
+		}
+
+		int contadosHasta(int diaDelAnio) {
+			return contadosAcumulados[diaDelAnio];
+		}
+
+		int totalContados() {
+			return contadosAcumulados[contadosAcumulados.length - 1];
+		}
+
+		/**
+		 * Primer dia del anio en el que la cantidad acumulada de dias contados alcanza el objetivo
+		 */
+		int diaConContados(int objetivo) {
+
+			int desde = 1;
+			int hasta = contadosAcumulados.length - 1;
+			while (desde < hasta) {
+				int medio = (desde + hasta) >>> 1;
+				if (contadosAcumulados[medio] < objetivo) {
+					desde = medio + 1;
+				} else {
+					hasta = medio;
+				}
+			}
+			return desde;
+		}
+	}
+}
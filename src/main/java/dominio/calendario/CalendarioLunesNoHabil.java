@@ -0,0 +1,14 @@
+package dominio.calendario;
+
+import java.time.LocalDate;
+
+/**
+ * Calendario predeterminado: los lunes no se cuentan y, si la fecha fin cae un domingo, se corre hasta el martes
+ */
+public class CalendarioLunesNoHabil implements CalendarioHabil {
+
+	@Override
+	public LocalDate calcularFechaFin(LocalDate fechaSolicitud, int diasContados) {
+		return CalculadoraFechaFinGarantia.calcular(fechaSolicitud, diasContados);
+	}
+}
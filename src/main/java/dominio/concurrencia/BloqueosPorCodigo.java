@@ -0,0 +1,255 @@
+package dominio.concurrencia;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import dominio.excepcion.GarantiaExtendidaException;
+
+/**
+ * Bloqueos segmentados por codigo de producto: las solicitudes de un mismo codigo se serializan y las de
+ * codigos en segmentos distintos no se bloquean entre si. La cantidad de segmentos es fija, de modo que la
+ * memoria no crece con la cantidad de codigos.
+ * Dentro de una unidad de trabajo los bloqueos se retienen hasta que la transaccion se confirma o se deshace, para
+ * que otra solicitud del mismo codigo no vea la garantia como inexistente mientras aun no se ha confirmado.
+ * Como dos codigos distintos pueden compartir segmento, dos unidades de trabajo pueden quedar esperando cada una el
+ * segmento que retiene la otra aunque pidan sus codigos en el mismo orden; por eso la espera de un segmento tiene un
+ * limite, configurable con tienda.bloqueos.esperaMaxima en milisegundos, y al agotarlo se rechaza la solicitud.
+ */
+public class BloqueosPorCodigo {
+
+	public static final int SEGMENTOS_PREDETERMINADOS = 1024;
+	public static final long ESPERA_MAXIMA_PREDETERMINADA = Long.getLong("tienda.bloqueos.esperaMaxima", 10000L);
+	public static final String SE_AGOTO_LA_ESPERA = "Se agoto la espera del bloqueo de un codigo retenido por otra transaccion";
+
+	private static final BloqueosPorCodigo COMPARTIDOS = new BloqueosPorCodigo(SEGMENTOS_PREDETERMINADOS, false);
+
+	/**
+	 * Bloqueos que el hilo actual libera al terminar su unidad de trabajo, o null si no tiene una iniciada
+	 */
+	private static final ThreadLocal<Deque<Lock>> RETENIDOS = new ThreadLocal<>();
+
+	private final ReentrantLock[] segmentos;
+	private final int mascara;
+	private final long esperaMaximaNanos;
+
+	private final LongAdder adquisiciones = new LongAdder();
+	private final LongAdder esperas = new LongAdder();
+	private final LongAdder esperasAgotadas = new LongAdder();
+	private final LongAdder nanosEsperando = new LongAdder();
+	private final AtomicLong maximaEsperaNanos = new AtomicLong();
+
+	/**
+	 * @param cantidadSegmentos se redondea a la siguiente potencia de dos
+	 * @param justo si los hilos adquieren cada segmento en orden de llegada
+	 */
+	public BloqueosPorCodigo(int cantidadSegmentos, boolean justo) {
+		this(cantidadSegmentos, justo, ESPERA_MAXIMA_PREDETERMINADA, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param cantidadSegmentos se redondea a la siguiente potencia de dos
+	 * @param justo si los hilos adquieren cada segmento en orden de llegada
+	 * @param esperaMaxima lo que se espera un segmento ocupado antes de rechazar la solicitud
+	 * @param unidad
+	 */
+	public BloqueosPorCodigo(int cantidadSegmentos, boolean justo, long esperaMaxima, TimeUnit unidad) {
+
+		if (cantidadSegmentos <= 0) {
+			throw new IllegalArgumentException("La cantidad de segmentos debe ser positiva");
+		}
+		if (esperaMaxima < 0) {
+			throw new IllegalArgumentException("La espera maxima no puede ser negativa");
+		}
+		this.esperaMaximaNanos = unidad.toNanos(esperaMaxima);
+		int tamanio = Integer.highestOneBit(cantidadSegmentos - 1 << 1 | 1);
+		this.segmentos = new ReentrantLock[tamanio];
+		this.mascara = tamanio - 1;
+		for (int i = 0; i < tamanio; i++) {
+			segmentos[i] = new ReentrantLock(justo);
+		}
+	}
+
+	/**
+	 * Permite obtener los bloqueos compartidos por todos los vendedores del proceso
+	 * @return
+	 */
+	public static BloqueosPorCodigo compartidos() {
+		return COMPARTIDOS;
+	}
+
+	/**
+	 * Adquiere el bloqueo del codigo y lo retorna para liberarlo con unlock en un bloque finally
+	 * @param codigo
+	 * @return
+	 * @throws GarantiaExtendidaException si el segmento sigue ocupado al agotar la espera maxima
+	 */
+	public Lock adquirir(String codigo) {
+		return adquirir(segmentos[segmento(codigo)]);
+	}
+
+	private Lock adquirir(ReentrantLock bloqueo) {
+
+		adquisiciones.increment();
+		if (!intentarSinEsperar(bloqueo)) {
+			long inicio = System.nanoTime();
+			boolean adquirido;
+			try {
+				adquirido = bloqueo.tryLock(esperaMaximaNanos, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				adquirido = false;
+			}
+			registrarEspera(System.nanoTime() - inicio);
+			if (!adquirido) {
+				esperasAgotadas.increment();
+				throw new GarantiaExtendidaException(SE_AGOTO_LA_ESPERA);
+			}
+		}
+		return bloqueo;
+	}
+
+	/**
+	 * tryLock sin espera se adelanta a los hilos que ya esperan aunque el bloqueo sea justo; con espera cero respeta
+	 * el orden de llegada
+	 */
+	private static boolean intentarSinEsperar(ReentrantLock bloqueo) {
+
+		if (!bloqueo.isFair()) {
+			return bloqueo.tryLock();
+		}
+		try {
+			return bloqueo.tryLock(0, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Adquiere los bloqueos de varios codigos, cada segmento una sola vez y en orden ascendente, de modo que dos
+	 * hilos que piden conjuntos de codigos que se cruzan no se bloquean mutuamente. Si uno de los segmentos no se
+	 * consigue a tiempo se liberan los que ya se habian adquirido
+	 * @param codigos
+	 * @return los bloqueos adquiridos, para liberarlos con unlock en un bloque finally
+	 * @throws GarantiaExtendidaException si un segmento sigue ocupado al agotar la espera maxima
+	 */
+	public List<Lock> adquirirTodos(Collection<String> codigos) {
+
+		BitSet usados = new BitSet(segmentos.length);
+		for (String codigo : codigos) {
+			usados.set(segmento(codigo));
+		}
+		List<Lock> adquiridos = new ArrayList<>(usados.cardinality());
+		try {
+			for (int i = usados.nextSetBit(0); i >= 0; i = usados.nextSetBit(i + 1)) {
+				adquiridos.add(adquirir(segmentos[i]));
+			}
+		} catch (GarantiaExtendidaException e) {
+			for (Lock bloqueo : adquiridos) {
+				bloqueo.unlock();
+			}
+			throw e;
+		}
+		return adquiridos;
+	}
+
+	/**
+	 * Marca el inicio de una unidad de trabajo en el hilo actual: desde aqui los bloqueos que se liberen con
+	 * liberarAlTerminar se mantienen hasta liberarRetenidos
+	 */
+	public static void iniciarRetencion() {
+		if (RETENIDOS.get() == null) {
+			RETENIDOS.set(new ArrayDeque<>());
+		}
+	}
+
+	/**
+	 * Libera el bloqueo, salvo que el hilo actual este en una unidad de trabajo; en ese caso se libera al terminarla
+	 * @param bloqueo adquirido por el hilo actual
+	 */
+	public static void liberarAlTerminar(Lock bloqueo) {
+
+		Deque<Lock> retenidos = RETENIDOS.get();
+		if (retenidos == null) {
+			bloqueo.unlock();
+		} else {
+			retenidos.push(bloqueo);
+		}
+	}
+
+	/**
+	 * Libera, en orden inverso al de adquisicion, los bloqueos retenidos por la unidad de trabajo del hilo actual
+	 * y la da por terminada
+	 */
+	public static void liberarRetenidos() {
+
+		Deque<Lock> retenidos = RETENIDOS.get();
+		RETENIDOS.remove();
+		if (retenidos != null) {
+			for (Lock bloqueo = retenidos.poll(); bloqueo != null; bloqueo = retenidos.poll()) {
+				bloqueo.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Permite saber en que segmento queda un codigo
+	 * @param codigo
+	 * @return
+	 */
+	public int segmento(String codigo) {
+		int hash = codigo.hashCode();
+		return (hash ^ (hash >>> 16)) & mascara;
+	}
+
+	public int getCantidadSegmentos() {
+		return segmentos.length;
+	}
+
+	public long getAdquisiciones() {
+		return adquisiciones.sum();
+	}
+
+	/**
+	 * Cantidad de adquisiciones que encontraron el segmento ocupado
+	 * @return
+	 */
+	public long getEsperas() {
+		return esperas.sum();
+	}
+
+	/**
+	 * Cantidad de adquisiciones que se rechazaron porque el segmento siguio ocupado toda la espera maxima
+	 * @return
+	 */
+	public long getEsperasAgotadas() {
+		return esperasAgotadas.sum();
+	}
+
+	public long getTiempoTotalEspera(TimeUnit unidad) {
+		return unidad.convert(nanosEsperando.sum(), TimeUnit.NANOSECONDS);
+	}
+
+	public long getMaximaEspera(TimeUnit unidad) {
+		return unidad.convert(maximaEsperaNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	private void registrarEspera(long nanos) {
+
+		esperas.increment();
+		nanosEsperando.add(nanos);
+		long maxima = maximaEsperaNanos.get();
+		while (nanos > maxima && !maximaEsperaNanos.compareAndSet(maxima, nanos)) {
+			maxima = maximaEsperaNanos.get();
+		}
+	}
+}
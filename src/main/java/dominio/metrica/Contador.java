@@ -0,0 +1,38 @@
+package dominio.metrica;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Contador implements ContadorMBean {
+
+	private final String nombre;
+	private final LongAdder valor = new LongAdder();
+
+	public Contador(String nombre) {
+		this.nombre = nombre;
+	}
+
+	public void incrementar() {
+		if (Metricas.estanHabilitadas()) {
+			valor.increment();
+		}
+	}
+
+	public String getNombre() {
+		return nombre;
+	}
+
+	@Override
+	public long getValor() {
+		return valor.sum();
+	}
+
+	@Override
+	public void reiniciar() {
+		valor.reset();
+	}
+
+	@Override
+	public String toString() {
+		return nombre + " " + valor.sum();
+	}
+}
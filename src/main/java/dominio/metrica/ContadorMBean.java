@@ -0,0 +1,8 @@
+package dominio.metrica;
+
+public interface ContadorMBean {
+
+	long getValor();
+
+	void reiniciar();
+}
@@ -0,0 +1,117 @@
+package dominio.metrica;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de valores positivos con cubetas log-lineales al estilo HDR: cada potencia de dos se divide en
+ * 16 cubetas, de modo que el error relativo de los percentiles es menor al 6.25% y registrar un valor no reserva
+ * memoria ni toma bloqueos.
+ */
+public class Histograma {
+
+	private static final int BITS_SUBCUBETA = 4;
+	private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+	private static final int CANTIDAD_CUBETAS = (63 - BITS_SUBCUBETA + 1) * SUBCUBETAS;
+
+	private final AtomicLongArray cubetas = new AtomicLongArray(CANTIDAD_CUBETAS);
+	private final LongAdder suma = new LongAdder();
+	private final AtomicLong maximo = new AtomicLong();
+
+	/**
+	 * @param valor los valores negativos se registran como cero
+	 */
+	public void registrar(long valor) {
+
+		long positivo = Math.max(valor, 0);
+		cubetas.getAndIncrement(cubeta(positivo));
+		suma.add(positivo);
+		long maximoActual = maximo.get();
+		while (positivo > maximoActual && !maximo.compareAndSet(maximoActual, positivo)) {
+			maximoActual = maximo.get();
+		}
+	}
+
+	/**
+	 * Permite obtener una copia que ya no cambia, para calcular varios percentiles sobre los mismos datos
+	 * @return
+	 */
+	public Histograma instantanea() {
+
+		Histograma copia = new Histograma();
+		for (int i = 0; i < CANTIDAD_CUBETAS; i++) {
+			copia.cubetas.set(i, cubetas.get(i));
+		}
+		copia.suma.add(suma.sum());
+		copia.maximo.set(maximo.get());
+		return copia;
+	}
+
+	public void reiniciar() {
+
+		for (int i = 0; i < CANTIDAD_CUBETAS; i++) {
+			cubetas.set(i, 0);
+		}
+		suma.reset();
+		maximo.set(0);
+	}
+
+	public long getCantidad() {
+
+		long total = 0;
+		for (int i = 0; i < CANTIDAD_CUBETAS; i++) {
+			total += cubetas.get(i);
+		}
+		return total;
+	}
+
+	public double getPromedio() {
+		long total = getCantidad();
+		return total == 0 ? 0 : (double) suma.sum() / total;
+	}
+
+	public long getMaximo() {
+		return maximo.get();
+	}
+
+	/**
+	 * @param percentil entre 0 y 100
+	 * @return el mayor valor de la cubeta donde cae el percentil, sin superar el maximo registrado
+	 */
+	public long getPercentil(double percentil) {
+
+		long total = getCantidad();
+		if (total == 0) {
+			return 0;
+		}
+		long objetivo = Math.max(1, (long) Math.ceil(percentil / 100 * total));
+		long acumulado = 0;
+		for (int i = 0; i < CANTIDAD_CUBETAS; i++) {
+			acumulado += cubetas.get(i);
+			if (acumulado >= objetivo) {
+				return Math.min(limiteSuperior(i), maximo.get());
+			}
+		}
+		return maximo.get();
+	}
+
+	static int cubeta(long valor) {
+
+		if (valor < SUBCUBETAS) {
+			return (int) valor;
+		}
+		int desplazamiento = 63 - Long.numberOfLeadingZeros(valor) - BITS_SUBCUBETA;
+		return desplazamiento * SUBCUBETAS + (int) (valor >>> desplazamiento);
+	}
+
+	static long limiteSuperior(int cubeta) {
+
+		if (cubeta < SUBCUBETAS) {
+			return cubeta;
+		}
+		int desplazamiento = cubeta / SUBCUBETAS - 1;
+		long mantisa = cubeta % SUBCUBETAS + SUBCUBETAS;
+		return ((mantisa + 1) << desplazamiento) - 1;
+	}
+}
@@ -0,0 +1,169 @@
+package dominio.metrica;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Registro de los temporizadores y contadores del proceso. Cada metrica se publica por JMX en el dominio
+ * "tienda.metricas" y el resumen de todas se puede volcar periodicamente al log. Las metricas se pueden
+ * deshabilitar con la propiedad del sistema tienda.metricas.habilitadas=false o desde JMX.
+ */
+public final class Metricas implements MetricasMBean {
+
+	private static final String DOMINIO_JMX = "tienda.metricas";
+	private static final Logger LOGGER = Logger.getLogger(Metricas.class);
+
+	private static final Metricas INSTANCIA = new Metricas();
+
+	private static volatile boolean habilitadas = Boolean.parseBoolean(System.getProperty("tienda.metricas.habilitadas", "true"));
+
+	private final Map<String, Temporizador> temporizadores = new ConcurrentHashMap<>();
+	private final Map<String, Contador> contadores = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService volcador;
+	private ScheduledFuture<?> volcado;
+
+	static {
+		registrarEnJMX(INSTANCIA, "type=Metricas");
+	}
+
+	private Metricas() {
+	}
+
+	/**
+	 * Permite obtener el temporizador con el nombre dado, creandolo en el primer uso
+	 * @param nombre
+	 * @return
+	 */
+	public static Temporizador temporizador(String nombre) {
+		return INSTANCIA.temporizadores.computeIfAbsent(nombre, n -> registrar(new Temporizador(n), "type=Temporizador,name=" + n));
+	}
+
+	/**
+	 * Permite obtener el contador con el nombre dado, creandolo en el primer uso
+	 * @param nombre
+	 * @return
+	 */
+	public static Contador contador(String nombre) {
+		return INSTANCIA.contadores.computeIfAbsent(nombre, n -> registrar(new Contador(n), "type=Contador,name=" + n));
+	}
+
+	public static boolean estanHabilitadas() {
+		return habilitadas;
+	}
+
+	public static void habilitar(boolean habilitar) {
+		habilitadas = habilitar;
+	}
+
+	/**
+	 * @return una linea por cada metrica, ordenadas por nombre
+	 */
+	public static String resumen() {
+
+		StringBuilder resumen = new StringBuilder();
+		for (Temporizador temporizador : new TreeMap<>(INSTANCIA.temporizadores).values()) {
+			resumen.append(temporizador).append(System.lineSeparator());
+		}
+		for (Contador contador : new TreeMap<>(INSTANCIA.contadores).values()) {
+			resumen.append(contador).append(System.lineSeparator());
+		}
+		return resumen.toString();
+	}
+
+	public static void reiniciar() {
+
+		for (Temporizador temporizador : INSTANCIA.temporizadores.values()) {
+			temporizador.reiniciar();
+		}
+		for (Contador contador : INSTANCIA.contadores.values()) {
+			contador.reiniciar();
+		}
+	}
+
+	/**
+	 * Vuelca el resumen de las metricas al log cada periodo, reemplazando un volcado programado antes
+	 * @param periodo
+	 * @param unidad
+	 */
+	public static void programarVolcado(long periodo, TimeUnit unidad) {
+
+		synchronized (INSTANCIA) {
+			detenerVolcado();
+			if (INSTANCIA.volcador == null) {
+				INSTANCIA.volcador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+					Thread hilo = new Thread(tarea, "volcado-metricas");
+					hilo.setDaemon(true);
+					return hilo;
+				});
+			}
+			INSTANCIA.volcado = INSTANCIA.volcador.scheduleAtFixedRate(() -> LOGGER.info("Metricas" + System.lineSeparator() + resumen()),
+					periodo, periodo, unidad);
+		}
+	}
+
+	public static void detenerVolcado() {
+
+		synchronized (INSTANCIA) {
+			if (INSTANCIA.volcado != null) {
+				INSTANCIA.volcado.cancel(false);
+				INSTANCIA.volcado = null;
+			}
+		}
+	}
+
+	@Override
+	public boolean isHabilitadas() {
+		return estanHabilitadas();
+	}
+
+	@Override
+	public void setHabilitadas(boolean habilitadas) {
+		habilitar(habilitadas);
+	}
+
+	@Override
+	public String getResumen() {
+		return resumen();
+	}
+
+	@Override
+	public void reiniciarTodas() {
+		reiniciar();
+	}
+
+	private static <T> T registrar(T metrica, String propiedades) {
+		registrarEnJMX(metrica, propiedades);
+		return metrica;
+	}
+
+	/**
+	 * Permite publicar en JMX, bajo el dominio de las metricas, un MBean que no es un temporizador ni un contador.
+	 * Si ya hay uno publicado con las mismas propiedades se conserva el existente
+	 * @param mbean
+	 * @param propiedades por ejemplo "type=CacheSegundoNivel"
+	 */
+	public static void registrarEnJMX(Object mbean, String propiedades) {
+
+		try {
+			ObjectName nombre = new ObjectName(DOMINIO_JMX + ":" + propiedades);
+			if (!ManagementFactory.getPlatformMBeanServer().isRegistered(nombre)) {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, nombre);
+			}
+		} catch (JMException e) {
+			// Las metricas siguen disponibles en el resumen aunque no se puedan publicar
+			LOGGER.warn("No se pudo registrar " + propiedades + " en JMX", e);
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package dominio.metrica;
+
+public interface MetricasMBean {
+
+	boolean isHabilitadas();
+
+	void setHabilitadas(boolean habilitadas);
+
+	String getResumen();
+
+	void reiniciarTodas();
+}
@@ -0,0 +1,88 @@
+package dominio.metrica;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la latencia de una operacion en nanosegundos. Se usa como
+ * <pre>
+ * long inicio = temporizador.iniciar();
+ * try { ... } finally { temporizador.detener(inicio); }
+ * </pre>
+ */
+public class Temporizador implements TemporizadorMBean {
+
+	private static final long SIN_MEDICION = Long.MIN_VALUE;
+	private static final double NANOS_POR_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+
+	private final String nombre;
+	private final Histograma histograma = new Histograma();
+
+	public Temporizador(String nombre) {
+		this.nombre = nombre;
+	}
+
+	/**
+	 * @return el instante de inicio, o una marca que detener ignora si las metricas estan deshabilitadas
+	 */
+	public long iniciar() {
+		return Metricas.estanHabilitadas() ? System.nanoTime() : SIN_MEDICION;
+	}
+
+	public void detener(long inicio) {
+		if (inicio != SIN_MEDICION) {
+			histograma.registrar(System.nanoTime() - inicio);
+		}
+	}
+
+	public String getNombre() {
+		return nombre;
+	}
+
+	public Histograma getHistograma() {
+		return histograma;
+	}
+
+	@Override
+	public long getCantidad() {
+		return histograma.getCantidad();
+	}
+
+	@Override
+	public double getPromedioMicros() {
+		return histograma.getPromedio() / NANOS_POR_MICRO;
+	}
+
+	@Override
+	public double getPercentil50Micros() {
+		return histograma.getPercentil(50) / NANOS_POR_MICRO;
+	}
+
+	@Override
+	public double getPercentil99Micros() {
+		return histograma.getPercentil(99) / NANOS_POR_MICRO;
+	}
+
+	@Override
+	public double getPercentil999Micros() {
+		return histograma.getPercentil(99.9) / NANOS_POR_MICRO;
+	}
+
+	@Override
+	public double getMaximoMicros() {
+		return histograma.getMaximo() / NANOS_POR_MICRO;
+	}
+
+	@Override
+	public void reiniciar() {
+		histograma.reiniciar();
+	}
+
+	@Override
+	public String toString() {
+
+		Histograma datos = histograma.instantanea();
+		return String.format("%s cantidad=%d promedio=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus", nombre,
+				datos.getCantidad(), datos.getPromedio() / NANOS_POR_MICRO, datos.getPercentil(50) / NANOS_POR_MICRO,
+				datos.getPercentil(99) / NANOS_POR_MICRO, datos.getPercentil(99.9) / NANOS_POR_MICRO, datos.getMaximo() / NANOS_POR_MICRO);
+	}
+}
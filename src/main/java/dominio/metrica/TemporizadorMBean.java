@@ -0,0 +1,18 @@
+package dominio.metrica;
+
+public interface TemporizadorMBean {
+
+	long getCantidad();
+
+	double getPromedioMicros();
+
+	double getPercentil50Micros();
+
+	double getPercentil99Micros();
+
+	double getPercentil999Micros();
+
+	double getMaximoMicros();
+
+	void reiniciar();
+}
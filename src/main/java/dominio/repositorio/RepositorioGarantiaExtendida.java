@@ -1,7 +1,13 @@
 package dominio.repositorio;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.Set;
+import java.util.function.Consumer;
+
 import dominio.Producto;
 import dominio.GarantiaExtendida;
+import dominio.Pagina;
 
 public interface RepositorioGarantiaExtendida {
 
@@ -12,6 +18,13 @@ public interface RepositorioGarantiaExtendida {
 	 */
 	Producto obtenerProductoConGarantiaPorCodigo(String codigo);
 	
+	/**
+	 * Permite saber si un producto tiene garantia extendida sin cargar la garantia
+	 * @param codigo
+	 * @return
+	 */
+	boolean existeGarantia(String codigo);
+	
 	/**
 	 * Permite agregar una garantia al repositorio de garantia
 	 * @param garantia
@@ -21,7 +34,57 @@ public interface RepositorioGarantiaExtendida {
 	/**
 	 * Permite obtener una garantia extendida por el codigo del producto
 	 * @param codigo
+	 * @return null si el producto no tiene garantia
 	 */
 	GarantiaExtendida obtener(String codigo);
+	
+	/**
+	 * Permite obtener, en una sola consulta por lote, los codigos de producto que ya cuentan con garantia extendida
+	 * @param codigos
+	 * @return
+	 */
+	Set<String> obtenerCodigosConGarantia(Collection<String> codigos);
+	
+	/**
+	 * Permite agregar varias garantias al repositorio de garantia usando inserciones por lotes
+	 * @param garantias
+	 */
+	void agregarTodas(Collection<GarantiaExtendida> garantias);
+	
+	/**
+	 * Permite recorrer todas las garantias extendidas una a una, sin cargarlas todas en memoria
+	 * @param consumidor recibe cada garantia, que no se debe conservar si se recorren muchas
+	 * @return cantidad de garantias recorridas
+	 */
+	long recorrer(Consumer<GarantiaExtendida> consumidor);
+	
+	/**
+	 * Permite buscar las garantias de un cliente por paginas, en el orden en que se crearon
+	 * @param nombreCliente
+	 * @param continuacion null para la primera pagina, o la continuacion de la pagina anterior
+	 * @param tamanio
+	 * @return
+	 */
+	Pagina<GarantiaExtendida> buscarPorNombreCliente(String nombreCliente, String continuacion, int tamanio);
+	
+	/**
+	 * Permite buscar por paginas las garantias solicitadas en un rango de fechas, ordenadas por fecha de solicitud
+	 * @param desde inclusive
+	 * @param hasta exclusive
+	 * @param continuacion null para la primera pagina, o la continuacion de la pagina anterior
+	 * @param tamanio
+	 * @return
+	 */
+	Pagina<GarantiaExtendida> buscarPorFechaSolicitud(Date desde, Date hasta, String continuacion, int tamanio);
+	
+	/**
+	 * Permite buscar por paginas las garantias que terminan en un rango de fechas, ordenadas por fecha de fin
+	 * @param desde inclusive
+	 * @param hasta exclusive
+	 * @param continuacion null para la primera pagina, o la continuacion de la pagina anterior
+	 * @param tamanio
+	 * @return
+	 */
+	Pagina<GarantiaExtendida> buscarPorFechaFin(Date desde, Date hasta, String continuacion, int tamanio);
 
 }
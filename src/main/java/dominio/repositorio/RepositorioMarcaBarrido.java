@@ -0,0 +1,20 @@
+package dominio.repositorio;
+
+import dominio.MarcaBarrido;
+
+public interface RepositorioMarcaBarrido {
+
+	/**
+	 * Permite obtener la marca de un barrido por su nombre
+	 * @param nombre
+	 * @return null si el barrido nunca se ha ejecutado
+	 */
+	MarcaBarrido obtener(String nombre);
+
+	/**
+	 * Permite crear o reemplazar la marca de un barrido
+	 * @param marca
+	 */
+	void guardar(MarcaBarrido marca);
+
+}
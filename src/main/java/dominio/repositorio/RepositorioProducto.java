@@ -1,5 +1,8 @@
 package dominio.repositorio;
 
+import java.util.Collection;
+import java.util.Map;
+
 import dominio.Producto;
 
 public interface RepositorioProducto {
@@ -10,11 +13,28 @@ public interface RepositorioProducto {
 	 * @return
 	 */
 	Producto obtenerPorCodigo(String codigo);
+	
+	/**
+	 * Permite obtener solo el precio de un producto, sin cargar el producto cuando el repositorio lo permite
+	 * @param codigo
+	 * @return
+	 */
+	default double obtenerPrecioPorCodigo(String codigo) {
+		return obtenerPorCodigo(codigo).getPrecio();
+	}
 
 	/**
 	 * Permite agregar un producto al repositorio
 	 * @param producto
 	 */
 	void agregar(Producto producto);
+	
+	/**
+	 * Permite obtener, en una sola consulta por lote, los productos de varios codigos.
+	 * Los codigos que no existen no aparecen en el resultado
+	 * @param codigos
+	 * @return
+	 */
+	Map<String, Producto> obtenerPorCodigos(Collection<String> codigos);
 
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package dominio.repositorio;
+
+/**
+ * Transaccion del hilo actual sobre los repositorios
+ */
+public interface UnidadDeTrabajo {
+
+	void iniciar();
+
+	void terminar();
+
+	/**
+	 * Deshace la transaccion del hilo actual, si esta activa
+	 */
+	void deshacer();
+
+	/**
+	 * Libera los recursos que el hilo actual tenga asociados
+	 */
+	void cerrar();
+
+	/**
+	 * Permite saber si el hilo actual tiene una transaccion activa
+	 * @return
+	 */
+	boolean enTransaccion();
+
+	/**
+	 * Ejecuta la accion cuando se confirme la transaccion del hilo actual y la descarta si se deshace. Si el hilo no
+	 * tiene una transaccion activa la ejecuta de inmediato
+	 * @param accion
+	 */
+	void alConfirmar(Runnable accion);
+}
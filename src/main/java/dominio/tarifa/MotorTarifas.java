@@ -0,0 +1,233 @@
+package dominio.tarifa;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import dominio.metrica.Contador;
+import dominio.metrica.Metricas;
+
+/**
+ * Tablas de tarifas vigentes por categoria de producto. Las tablas se leen de un archivo CSV con las columnas
+ * categoria,hasta,porcentaje,dias, donde hasta es * para el tramo mas alto; las lineas vacias y las que empiezan
+ * con # se omiten, y la categoria general es obligatoria. Al recargar el archivo, las tablas nuevas reemplazan a
+ * las anteriores con una sola asignacion, asi que quien tarifica nunca se bloquea ni ve una mezcla de las dos.
+ * Un archivo invalido no reemplaza las tablas vigentes; conviene escribirlo aparte y moverlo sobre el original.
+ */
+public class MotorTarifas {
+
+	public static final String GENERAL = "general";
+
+	private static final Logger LOGGER = Logger.getLogger(MotorTarifas.class);
+	private static final String ENCABEZADO = "categoria,hasta,porcentaje,dias";
+	private static final String SIN_LIMITE = "*";
+	private static final String COMENTARIO = "#";
+	private static final int COLUMNAS = 4;
+	private static final Contador RECARGAS = Metricas.contador("tarifas.recargas");
+	private static final Contador RECARGAS_FALLIDAS = Metricas.contador("tarifas.recargasFallidas");
+
+	private final Path archivo;
+
+	private volatile Vigentes vigentes;
+
+	private FileTime ultimaModificacion;
+	private ScheduledExecutorService vigilante;
+
+	/**
+	 * Motor con una sola tabla para todas las categorias, que no se recarga
+	 * @param general
+	 */
+	public MotorTarifas(TablaTarifas general) {
+		this.archivo = null;
+		this.vigentes = new Vigentes(Collections.singletonMap(GENERAL, general));
+	}
+
+	private MotorTarifas(Path archivo) {
+		this.archivo = archivo;
+	}
+
+	/**
+	 * Permite crear un motor con las tablas de un archivo, que se puede recargar despues
+	 * @param archivo
+	 * @return
+	 * @throws IOException si no se puede leer el archivo
+	 * @throws IllegalArgumentException si el archivo no es una tabla de tarifas valida
+	 */
+	public static MotorTarifas desdeArchivo(Path archivo) throws IOException {
+
+		MotorTarifas motor = new MotorTarifas(archivo);
+		motor.ultimaModificacion = Files.getLastModifiedTime(archivo);
+		motor.vigentes = new Vigentes(leerArchivo(archivo));
+		return motor;
+	}
+
+	/**
+	 * Permite obtener la tabla de la categoria general
+	 * @return
+	 */
+	public TablaTarifas getTabla() {
+		return vigentes.general;
+	}
+
+	/**
+	 * Permite obtener la tabla de una categoria de producto
+	 * @param categoria
+	 * @return la tabla de la categoria, o la general si la categoria no tiene tabla propia
+	 */
+	public TablaTarifas getTabla(String categoria) {
+
+		Vigentes actuales = vigentes;
+		TablaTarifas tabla = actuales.porCategoria.get(categoria);
+		return tabla == null ? actuales.general : tabla;
+	}
+
+	/**
+	 * Permite volver a leer el archivo de tarifas. Si el archivo no es valido se conservan las tablas vigentes
+	 * @return true si se reemplazaron las tablas
+	 */
+	public synchronized boolean recargar() {
+
+		if (archivo == null) {
+			throw new IllegalStateException("Las tarifas no se leyeron de un archivo");
+		}
+		FileTime modificacion = null;
+		try {
+			modificacion = Files.getLastModifiedTime(archivo);
+			vigentes = new Vigentes(leerArchivo(archivo));
+			RECARGAS.incrementar();
+			return true;
+		} catch (IOException | IllegalArgumentException e) {
+			RECARGAS_FALLIDAS.incrementar();
+			LOGGER.warn("No se pudieron recargar las tarifas de " + archivo + "; se conservan las vigentes", e);
+			return false;
+		} finally {
+			// Un archivo invalido no se vuelve a intentar hasta que cambie otra vez
+			if (modificacion != null) {
+				ultimaModificacion = modificacion;
+			}
+		}
+	}
+
+	/**
+	 * Permite recargar el archivo cada vez que cambie su fecha de modificacion, revisandola periodicamente en un
+	 * hilo de fondo
+	 * @param periodo
+	 * @param unidad
+	 */
+	public synchronized void vigilar(long periodo, TimeUnit unidad) {
+
+		if (archivo == null) {
+			throw new IllegalStateException("Las tarifas no se leyeron de un archivo");
+		}
+		if (vigilante != null) {
+			return;
+		}
+		vigilante = Executors.newSingleThreadScheduledExecutor(tarea -> {
+			Thread hilo = new Thread(tarea, "vigilante-tarifas");
+			hilo.setDaemon(true);
+			return hilo;
+		});
+		vigilante.scheduleWithFixedDelay(this::recargarSiCambio, periodo, periodo, unidad);
+	}
+
+	/**
+	 * Deja de vigilar el archivo de tarifas
+	 */
+	public synchronized void cerrar() {
+		if (vigilante != null) {
+			vigilante.shutdownNow();
+			vigilante = null;
+		}
+	}
+
+	/**
+	 * Permite leer tablas de tarifas por categoria en formato CSV
+	 * @param lector
+	 * @return las tablas por categoria, con la categoria general
+	 * @throws IllegalArgumentException si alguna linea o tabla no es valida
+	 */
+	public static Map<String, TablaTarifas> leer(Reader lector) throws IOException {
+
+		BufferedReader lineas = lector instanceof BufferedReader ? (BufferedReader) lector : new BufferedReader(lector);
+		Map<String, List<ReglaTarifa>> reglas = new LinkedHashMap<>();
+		String linea;
+		long numero = 0;
+		while ((linea = lineas.readLine()) != null) {
+			numero++;
+			String contenido = linea.trim();
+			if (contenido.isEmpty() || contenido.startsWith(COMENTARIO) || ENCABEZADO.equalsIgnoreCase(contenido)) {
+				continue;
+			}
+			String[] campos = contenido.split(",");
+			if (campos.length != COLUMNAS) {
+				throw new IllegalArgumentException("La linea " + numero + " no tiene las columnas " + ENCABEZADO + ": " + linea);
+			}
+			try {
+				String hasta = campos[1].trim();
+				reglas.computeIfAbsent(campos[0].trim(), categoria -> new ArrayList<>()).add(new ReglaTarifa(
+						SIN_LIMITE.equals(hasta) ? Double.POSITIVE_INFINITY : Double.parseDouble(hasta),
+						Double.parseDouble(campos[2].trim()), Integer.parseInt(campos[3].trim())));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("La linea " + numero + " tiene un numero invalido: " + linea, e);
+			}
+		}
+		if (!reglas.containsKey(GENERAL)) {
+			throw new IllegalArgumentException("Las tarifas no tienen la categoria " + GENERAL);
+		}
+		Map<String, TablaTarifas> tablas = new HashMap<>();
+		for (Map.Entry<String, List<ReglaTarifa>> categoria : reglas.entrySet()) {
+			tablas.put(categoria.getKey(), new TablaTarifas(categoria.getValue()));
+		}
+		return tablas;
+	}
+
+	private void recargarSiCambio() {
+
+		try {
+			FileTime modificacion = Files.getLastModifiedTime(archivo);
+			synchronized (this) {
+				if (modificacion.equals(ultimaModificacion)) {
+					return;
+				}
+			}
+			recargar();
+		} catch (IOException e) {
+			LOGGER.warn("No se pudo revisar el archivo de tarifas " + archivo, e);
+		}
+	}
+
+	private static Map<String, TablaTarifas> leerArchivo(Path archivo) throws IOException {
+		try (Reader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+			return leer(lector);
+		}
+	}
+
+	/**
+	 * Tablas que se reemplazan juntas al recargar
+	 */
+	private static final class Vigentes {
+
+		private final Map<String, TablaTarifas> porCategoria;
+		private final TablaTarifas general;
+
+		Vigentes(Map<String, TablaTarifas> porCategoria) {
+			this.porCategoria = porCategoria;
+			this.general = porCategoria.get(GENERAL);
+		}
+	}
+}
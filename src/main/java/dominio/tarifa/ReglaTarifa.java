@@ -0,0 +1,39 @@
+package dominio.tarifa;
+
+/**
+ * Tramo de precios de productos con el porcentaje del precio que cuesta la garantia y sus dias de duracion.
+ * El tramo empieza despues del limite del tramo anterior y llega hasta su limite, inclusive
+ */
+public class ReglaTarifa {
+
+	private final double hasta;
+	private final double porcentaje;
+	private final int dias;
+
+	/**
+	 * @param hasta precio maximo del tramo, inclusive; Double.POSITIVE_INFINITY para el ultimo tramo
+	 * @param porcentaje fraccion del precio del producto, por ejemplo 0.1 para el diez por ciento
+	 * @param dias duracion de la garantia
+	 */
+	public ReglaTarifa(double hasta, double porcentaje, int dias) {
+
+		if (Double.isNaN(hasta) || Double.isNaN(porcentaje) || porcentaje < 0 || dias < 1) {
+			throw new IllegalArgumentException("Regla de tarifa invalida: hasta " + hasta + ", porcentaje " + porcentaje + ", dias " + dias);
+		}
+		this.hasta = hasta;
+		this.porcentaje = porcentaje;
+		this.dias = dias;
+	}
+
+	public double getHasta() {
+		return hasta;
+	}
+
+	public double getPorcentaje() {
+		return porcentaje;
+	}
+
+	public int getDias() {
+		return dias;
+	}
+}
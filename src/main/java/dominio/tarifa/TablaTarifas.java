@@ -0,0 +1,91 @@
+package dominio.tarifa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reglas de tarifa compiladas en arreglos primitivos ordenados por el limite de cada tramo. Buscar el tramo de
+ * un precio es una busqueda binaria que no reserva memoria, y la tabla es inmutable, asi que se puede compartir
+ * entre hilos sin bloqueos.
+ */
+public class TablaTarifas {
+
+	private static final double PRECIO_PRODUCTO = 500000;
+	private static final double VEINTE_PORCIENTO = 0.2;
+	private static final double DIEZ_PORCIENTO = 0.1;
+	private static final int DOSCIENTOS_DIAS_DE_GARANTIA = 200;
+	private static final int CIEN_DIAS_DE_GARANTIA = 100;
+
+	/**
+	 * Diez por ciento y cien dias hasta 500000, veinte por ciento y doscientos dias por encima
+	 */
+	public static final TablaTarifas PREDETERMINADA = new TablaTarifas(Arrays.asList(
+			new ReglaTarifa(PRECIO_PRODUCTO, DIEZ_PORCIENTO, CIEN_DIAS_DE_GARANTIA),
+			new ReglaTarifa(Double.POSITIVE_INFINITY, VEINTE_PORCIENTO, DOSCIENTOS_DIAS_DE_GARANTIA)));
+
+	private final double[] limites;
+	private final double[] porcentajes;
+	private final int[] dias;
+
+	/**
+	 * @param reglas en cualquier orden; el tramo mas alto debe llegar hasta Double.POSITIVE_INFINITY
+	 */
+	public TablaTarifas(Collection<ReglaTarifa> reglas) {
+
+		List<ReglaTarifa> ordenadas = new ArrayList<>(reglas);
+		ordenadas.sort(Comparator.comparingDouble(ReglaTarifa::getHasta));
+		if (ordenadas.isEmpty() || ordenadas.get(ordenadas.size() - 1).getHasta() != Double.POSITIVE_INFINITY) {
+			throw new IllegalArgumentException("El ultimo tramo de la tabla de tarifas debe cubrir todos los precios mayores");
+		}
+		limites = new double[ordenadas.size()];
+		porcentajes = new double[ordenadas.size()];
+		dias = new int[ordenadas.size()];
+		for (int i = 0; i < ordenadas.size(); i++) {
+			ReglaTarifa regla = ordenadas.get(i);
+			if (i > 0 && regla.getHasta() == limites[i - 1]) {
+				throw new IllegalArgumentException("La tabla de tarifas tiene dos tramos hasta " + regla.getHasta());
+			}
+			limites[i] = regla.getHasta();
+			porcentajes[i] = regla.getPorcentaje();
+			dias[i] = regla.getDias();
+		}
+	}
+
+	/**
+	 * Permite obtener el tramo de un precio
+	 * @param precio
+	 * @return posicion del tramo, 0 para el tramo de los precios menores
+	 */
+	public int buscarTramo(double precio) {
+
+		if (Double.isNaN(precio)) {
+			throw new IllegalArgumentException("El precio no es un numero");
+		}
+		int desde = 0;
+		int hasta = limites.length - 1;
+		while (desde < hasta) {
+			int medio = (desde + hasta) >>> 1;
+			if (precio <= limites[medio]) {
+				hasta = medio;
+			} else {
+				desde = medio + 1;
+			}
+		}
+		return desde;
+	}
+
+	public double getPorcentaje(int tramo) {
+		return porcentajes[tramo];
+	}
+
+	public int getDias(int tramo) {
+		return dias[tramo];
+	}
+
+	public int getCantidadTramos() {
+		return limites.length;
+	}
+}
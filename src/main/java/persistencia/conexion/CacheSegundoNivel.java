@@ -0,0 +1,194 @@
+package persistencia.conexion;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.cache.ehcache.internal.regions.EhcacheDataRegion;
+import org.hibernate.cache.spi.access.NaturalIdRegionAccessStrategy;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.store.FifoPolicy;
+import net.sf.ehcache.store.LfuPolicy;
+import net.sf.ehcache.store.LruPolicy;
+import net.sf.ehcache.store.Policy;
+import persistencia.entitad.ProductoEntity;
+
+/**
+ * Administra la cache de segundo nivel (Ehcache en el mismo proceso) de la EntityManagerFactory compartida.
+ * Cada region se puede ajustar desde persistence.xml con las propiedades
+ * tienda.cache.&lt;region&gt;.maximoEntradas, .segundosDeVida, .segundosInactividad y .politicaDesalojo (LRU, LFU o FIFO).
+ */
+public class CacheSegundoNivel implements CacheSegundoNivelMBean {
+
+	public static final String REGION_PRODUCTOS = "producto";
+	public static final String REGION_PRODUCTOS_POR_CODIGO = "productoPorCodigo";
+	public static final String REGION_CONSULTAS_PRODUCTO = "consultasProducto";
+
+	private static final String PREFIJO = "tienda.cache.";
+	private static final String MAXIMO_ENTRADAS = ".maximoEntradas";
+	private static final String SEGUNDOS_DE_VIDA = ".segundosDeVida";
+	private static final String SEGUNDOS_INACTIVIDAD = ".segundosInactividad";
+	private static final String POLITICA_DESALOJO = ".politicaDesalojo";
+	private static final String PRODUCTO_FIND_ID_BY_CODIGO = "Producto.findIdByCodigo";
+	private static final String CODIGO = "codigo";
+
+	/**
+	 * Aplica a las regiones de la fabrica los limites configurados en sus propiedades
+	 * @param entityManagerFactory
+	 */
+	static void configurarRegiones(EntityManagerFactory entityManagerFactory) {
+
+		SessionFactoryImplementor fabrica = fabricaDeSesiones(entityManagerFactory);
+		// La region de una consulta se crea con su primera ejecucion; se crea aqui para que tenga sus limites desde el inicio
+		fabrica.getCache().getQueryCache(REGION_CONSULTAS_PRODUCTO);
+		CacheManager administrador = administrador(fabrica);
+		for (String region : administrador.getCacheNames()) {
+			configurar(administrador.getEhcache(region), entityManagerFactory.getProperties());
+		}
+	}
+
+	/**
+	 * Permite desalojar un producto, por ejemplo despues de cambiar su precio o su codigo por fuera de JPA. Se
+	 * desaloja la entidad y la entrada del codigo en la region de ids naturales, aunque el codigo ya no exista en la
+	 * base de datos; en ese caso no se sabe que entidad lo tenia y se desaloja toda la region de productos. Ademas se
+	 * invalidan las tablas del producto en la cache de consultas, para que ninguna consulta en cache siga resolviendo
+	 * el codigo anterior
+	 * @param codigo
+	 */
+	public void desalojarProducto(String codigo) {
+
+		EntityManagerFactory entityManagerFactory = ConexionJPA.obtenerEntityManagerFactory();
+		SessionFactoryImplementor fabrica = fabricaDeSesiones(entityManagerFactory);
+		EntityManager entityManager = entityManagerFactory.createEntityManager();
+		try {
+			List<Long> ids = entityManager.createNamedQuery(PRODUCTO_FIND_ID_BY_CODIGO, Long.class)
+					.setParameter(CODIGO, codigo)
+					.getResultList();
+			if (ids.isEmpty()) {
+				fabrica.getCache().evictEntityRegion(ProductoEntity.class);
+			}
+			for (Long id : ids) {
+				entityManagerFactory.getCache().evict(ProductoEntity.class, id);
+			}
+			SharedSessionContractImplementor sesion = entityManager.unwrap(SharedSessionContractImplementor.class);
+			EntityPersister persistidor = fabrica.getMetamodel().entityPersister(ProductoEntity.class);
+			NaturalIdRegionAccessStrategy productosPorCodigo = persistidor.getNaturalIdCacheAccessStrategy();
+			productosPorCodigo.evict(productosPorCodigo.generateCacheKey(new Object[] {codigo}, persistidor, sesion));
+			fabrica.getCache().getUpdateTimestampsCache().invalidate(persistidor.getPropertySpaces(), sesion);
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	@Override
+	public void desalojarProductos() {
+
+		SessionFactoryImplementor fabrica = fabricaDeSesiones(ConexionJPA.obtenerEntityManagerFactory());
+		fabrica.getCache().evictEntityRegion(ProductoEntity.class);
+		fabrica.getCache().evictNaturalIdRegion(ProductoEntity.class);
+		fabrica.getCache().evictQueryRegion(REGION_CONSULTAS_PRODUCTO);
+	}
+
+	@Override
+	public double getTasaAciertosProductos() {
+		return getTasaAciertos(REGION_PRODUCTOS);
+	}
+
+	@Override
+	public double getTasaAciertosProductosPorCodigo() {
+		return getTasaAciertos(REGION_PRODUCTOS_POR_CODIGO);
+	}
+
+	@Override
+	public double getTasaAciertosConsultasProducto() {
+		return getTasaAciertos(REGION_CONSULTAS_PRODUCTO);
+	}
+
+	/**
+	 * @param region
+	 * @return aciertos sobre lecturas de la region, o 0 si aun no tiene lecturas
+	 */
+	public double getTasaAciertos(String region) {
+
+		Ehcache cache = obtenerCache(region);
+		if (cache == null) {
+			return 0;
+		}
+		long aciertos = cache.getStatistics().cacheHitCount();
+		long lecturas = aciertos + cache.getStatistics().cacheMissCount();
+		return lecturas == 0 ? 0 : (double) aciertos / lecturas;
+	}
+
+	public long getAciertos(String region) {
+		Ehcache cache = obtenerCache(region);
+		return cache == null ? 0 : cache.getStatistics().cacheHitCount();
+	}
+
+	public long getFallos(String region) {
+		Ehcache cache = obtenerCache(region);
+		return cache == null ? 0 : cache.getStatistics().cacheMissCount();
+	}
+
+	/**
+	 * @param region
+	 * @return la cache de la region, o null si la region no existe
+	 */
+	public Ehcache obtenerCache(String region) {
+		return administrador(fabricaDeSesiones(ConexionJPA.obtenerEntityManagerFactory())).getEhcache(region);
+	}
+
+	private static void configurar(Ehcache cache, Map<String, Object> propiedades) {
+
+		String prefijo = PREFIJO + cache.getName();
+		CacheConfiguration configuracion = cache.getCacheConfiguration();
+		Object maximoEntradas = propiedades.get(prefijo + MAXIMO_ENTRADAS);
+		if (maximoEntradas != null) {
+			configuracion.setMaxEntriesLocalHeap(Long.parseLong(maximoEntradas.toString().trim()));
+		}
+		Object segundosDeVida = propiedades.get(prefijo + SEGUNDOS_DE_VIDA);
+		if (segundosDeVida != null) {
+			configuracion.setTimeToLiveSeconds(Long.parseLong(segundosDeVida.toString().trim()));
+		}
+		Object segundosInactividad = propiedades.get(prefijo + SEGUNDOS_INACTIVIDAD);
+		if (segundosInactividad != null) {
+			configuracion.setTimeToIdleSeconds(Long.parseLong(segundosInactividad.toString().trim()));
+		}
+		Object politica = propiedades.get(prefijo + POLITICA_DESALOJO);
+		if (politica != null && cache instanceof Cache) {
+			((Cache) cache).setMemoryStoreEvictionPolicy(politica(politica.toString()));
+		}
+	}
+
+	private static Policy politica(String nombre) {
+
+		switch (nombre.trim().toUpperCase(Locale.ROOT)) {
+		case "LRU":
+			return new LruPolicy();
+		case "LFU":
+			return new LfuPolicy();
+		case "FIFO":
+			return new FifoPolicy();
+		default:
+			throw new IllegalArgumentException("Politica de desalojo desconocida: " + nombre);
+		}
+	}
+
+	private static CacheManager administrador(SessionFactoryImplementor fabrica) {
+		EhcacheDataRegion regionProductos = (EhcacheDataRegion) fabrica.getCache().getEntityRegionAccess(REGION_PRODUCTOS).getRegion();
+		return regionProductos.getEhcache().getCacheManager();
+	}
+
+	private static SessionFactoryImplementor fabricaDeSesiones(EntityManagerFactory entityManagerFactory) {
+		return entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+	}
+}
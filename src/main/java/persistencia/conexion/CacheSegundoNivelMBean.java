@@ -0,0 +1,12 @@
+package persistencia.conexion;
+
+public interface CacheSegundoNivelMBean {
+
+	double getTasaAciertosProductos();
+
+	double getTasaAciertosProductosPorCodigo();
+
+	double getTasaAciertosConsultasProducto();
+
+	void desalojarProductos();
+}
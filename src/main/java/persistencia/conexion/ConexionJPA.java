@@ -1,19 +1,122 @@
 package persistencia.conexion;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 
+import dominio.metrica.Metricas;
+
+/**
+ * Da acceso a una unica EntityManagerFactory por proceso, creada de forma perezosa y segura entre hilos.
+ * Las propiedades del sistema que empiezan por "hibernate.hikari.", "hibernate.jdbc.", "javax.persistence.jdbc." o
+ * "tienda.id.", y "hibernate.show_sql", reemplazan las de persistence.xml, para ajustar el pool de conexiones, los
+ * batches JDBC y la asignacion de ids sin recompilar.
+ */
 public class ConexionJPA {
 	
 	private static final String TIENDA = "tienda";
-	private static EntityManagerFactory entityManagerFactory;
+	private static final String[] PREFIJOS_CONFIGURABLES = {"hibernate.hikari.", "hibernate.jdbc.", "javax.persistence.jdbc.", "tienda.id.", "hibernate.show_sql"};
+
+	private static final Object BLOQUEO = new Object();
+	private static volatile EntityManagerFactory entityManagerFactory;
+	private static Map<String, Object> propiedadesAdicionales = new HashMap<>();
 
-	public ConexionJPA() {
-		entityManagerFactory = Persistence.createEntityManagerFactory(TIENDA);
+	public EntityManager createEntityManager() {
+		return obtenerEntityManagerFactory().createEntityManager();
 	}
 	
-	public EntityManager createEntityManager() {
-		return entityManagerFactory.createEntityManager();
+	/**
+	 * Permite crear un EntityManager que trabaja sobre una conexion que administra el llamador
+	 * @param conexion no se cierra al cerrar el EntityManager
+	 * @return
+	 */
+	public EntityManager createEntityManager(Connection conexion) {
+		return obtenerEntityManagerFactory().unwrap(SessionFactory.class).withOptions().connection(conexion).openSession();
+	}
+	
+	/**
+	 * Permite tomar una conexion del pool para usarla con createEntityManager(Connection)
+	 * @return se devuelve al pool al cerrarla
+	 */
+	public Connection obtenerConexion() {
+		
+		ConnectionProvider proveedor = obtenerEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+				.getServiceRegistry().getService(ConnectionProvider.class);
+		try {
+			return proveedor.getConnection();
+		} catch (SQLException e) {
+			throw new PersistenceException("No se pudo obtener una conexion del pool", e);
+		}
+	}
+	
+	/**
+	 * Permite obtener la fabrica compartida, creandola en el primer uso
+	 * @return
+	 */
+	public static EntityManagerFactory obtenerEntityManagerFactory() {
+		
+		EntityManagerFactory fabrica = entityManagerFactory;
+		if (fabrica == null) {
+			synchronized (BLOQUEO) {
+				fabrica = entityManagerFactory;
+				if (fabrica == null) {
+					Map<String, Object> propiedades = propiedadesDelSistema();
+					propiedades.putAll(propiedadesAdicionales);
+					fabrica = Persistence.createEntityManagerFactory(TIENDA, propiedades);
+					CacheSegundoNivel.configurarRegiones(fabrica);
+					Metricas.registrarEnJMX(new CacheSegundoNivel(), "type=CacheSegundoNivel");
+					entityManagerFactory = fabrica;
+				}
+			}
+		}
+		return fabrica;
+	}
+	
+	/**
+	 * Permite reemplazar propiedades de persistence.xml con objetos, por ejemplo un StatementInspector. Se aplican
+	 * la proxima vez que se crea la fabrica, por lo que se debe llamar antes del primer uso o despues de cerrar
+	 * @param propiedades
+	 */
+	public static void configurar(Map<String, Object> propiedades) {
+		
+		synchronized (BLOQUEO) {
+			propiedadesAdicionales = new HashMap<>(propiedades);
+		}
+	}
+	
+	/**
+	 * Permite cerrar la fabrica compartida y su pool de conexiones. El siguiente uso crea una nueva
+	 */
+	public static void cerrar() {
+		
+		synchronized (BLOQUEO) {
+			if (entityManagerFactory != null) {
+				entityManagerFactory.close();
+				entityManagerFactory = null;
+			}
+		}
+	}
+	
+	private static Map<String, Object> propiedadesDelSistema() {
+		
+		Map<String, Object> propiedades = new HashMap<>();
+		for (String nombre : System.getProperties().stringPropertyNames()) {
+			for (String prefijo : PREFIJOS_CONFIGURABLES) {
+				if (nombre.startsWith(prefijo)) {
+					propiedades.put(nombre, System.getProperty(nombre));
+				}
+			}
+		}
+		return propiedades;
 	}
 }
@@ -3,22 +3,80 @@ package persistencia.entitad;
 import java.util.Date;
 
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 @Entity(name = "GarantiaExtendida")
-@NamedQuery(name = "GarantiaExtendida.findByCodigo", query = "SELECT garantia from GarantiaExtendida garantia where garantia.producto.codigo = :codigo")
+@Table(uniqueConstraints = @UniqueConstraint(name = GarantiaExtendidaEntity.UK_GARANTIA_PRODUCTO, columnNames = "ID_PRODUCTO"),
+		indexes = {
+			// Cubre la consulta paginada por cliente; si la base de datos tuviera que leer cada fila de la tabla
+			// preferiria recorrer la clave primaria desde el ultimo id
+			@Index(name = "IDX_GARANTIA_CLIENTE", columnList = "nombreCliente, id, ID_PRODUCTO, fechaSolicitudGarantia, fechaFinGarantia, precio"),
+			@Index(name = "IDX_GARANTIA_FECHA_SOLICITUD", columnList = "fechaSolicitudGarantia, id"),
+			@Index(name = "IDX_GARANTIA_FECHA_FIN", columnList = "fechaFinGarantia, id")
+		})
+@NamedQueries({
+	@NamedQuery(name = "GarantiaExtendida.findResumenByCodigo", query = "SELECT producto.codigo, producto.nombre, producto.precio, "
+			+ "garantia.fechaSolicitudGarantia, garantia.fechaFinGarantia, garantia.precio, garantia.nombreCliente "
+			+ "from GarantiaExtendida garantia join garantia.producto producto where producto.codigo = :codigo"),
+	@NamedQuery(name = "GarantiaExtendida.findProductoByCodigo", query = "SELECT new dominio.Producto(producto.codigo, producto.nombre, producto.precio) "
+			+ "from GarantiaExtendida garantia join garantia.producto producto where producto.codigo = :codigo"),
+	@NamedQuery(name = "GarantiaExtendida.findCodigosByCodigos", query = "SELECT garantia.producto.codigo from GarantiaExtendida garantia where garantia.producto.codigo IN :codigos"),
+	@NamedQuery(name = "GarantiaExtendida.existsByCodigo", query = "SELECT garantia.id from GarantiaExtendida garantia where garantia.producto.codigo = :codigo"),
+	@NamedQuery(name = "GarantiaExtendida.findCodigos", query = "SELECT garantia.producto.codigo from GarantiaExtendida garantia"),
+	@NamedQuery(name = "GarantiaExtendida.findResumenes", query = "SELECT producto.codigo, producto.nombre, producto.precio, "
+			+ "garantia.fechaSolicitudGarantia, garantia.fechaFinGarantia, garantia.precio, garantia.nombreCliente "
+			+ "from GarantiaExtendida garantia join garantia.producto producto"),
+	@NamedQuery(name = "GarantiaExtendida.findPaginaByNombreCliente", query = "SELECT garantia.id, producto.codigo, producto.nombre, producto.precio, "
+			+ "garantia.fechaSolicitudGarantia, garantia.fechaFinGarantia, garantia.precio, garantia.nombreCliente "
+			+ "from GarantiaExtendida garantia join garantia.producto producto "
+			+ "where garantia.nombreCliente = :nombreCliente and garantia.id > :ultimoId "
+			+ "order by garantia.nombreCliente, garantia.id"),
+	@NamedQuery(name = "GarantiaExtendida.findPaginaByFechaSolicitud", query = "SELECT garantia.id, producto.codigo, producto.nombre, producto.precio, "
+			+ "garantia.fechaSolicitudGarantia, garantia.fechaFinGarantia, garantia.precio, garantia.nombreCliente "
+			+ "from GarantiaExtendida garantia join garantia.producto producto "
+			+ "where garantia.fechaSolicitudGarantia >= :desde and garantia.fechaSolicitudGarantia < :hasta "
+			+ "and garantia.fechaSolicitudGarantia >= :ultimaFecha "
+			+ "and (garantia.fechaSolicitudGarantia > :ultimaFecha or (garantia.fechaSolicitudGarantia = :ultimaFecha and garantia.id > :ultimoId)) "
+			+ "order by garantia.fechaSolicitudGarantia, garantia.id"),
+	@NamedQuery(name = "GarantiaExtendida.findPaginaByFechaFin", query = "SELECT garantia.id, producto.codigo, producto.nombre, producto.precio, "
+			+ "garantia.fechaSolicitudGarantia, garantia.fechaFinGarantia, garantia.precio, garantia.nombreCliente "
+			+ "from GarantiaExtendida garantia join garantia.producto producto "
+			+ "where garantia.fechaFinGarantia >= :desde and garantia.fechaFinGarantia < :hasta "
+			+ "and garantia.fechaFinGarantia >= :ultimaFecha "
+			+ "and (garantia.fechaFinGarantia > :ultimaFecha or (garantia.fechaFinGarantia = :ultimaFecha and garantia.id > :ultimoId)) "
+			+ "order by garantia.fechaFinGarantia, garantia.id")
+})
 public class GarantiaExtendidaEntity {
 
+	/**
+	 * Restriccion que impide dos garantias del mismo producto
+	 */
+	public static final String UK_GARANTIA_PRODUCTO = "UK_GARANTIA_PRODUCTO";
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "secuenciaGarantia")
+	@GenericGenerator(name = "secuenciaGarantia", strategy = GeneradorSecuenciaAgrupada.NOMBRE,
+			parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "SEQ_GARANTIA"))
 	private Long id;
 
-	@ManyToOne
+	/**
+	 * Las consultas que necesitan el producto lo leen con un join explicito
+	 */
+	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "ID_PRODUCTO", referencedColumnName = "id")
 	private ProductoEntity producto;
 
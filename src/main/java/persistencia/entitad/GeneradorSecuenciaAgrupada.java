@@ -0,0 +1,40 @@
+package persistencia.entitad;
+
+import java.util.Map;
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Generador de ids con una secuencia por entidad y el optimizador pooled-lo: cada llamada a la secuencia reserva
+ * un bloque de ids que se asignan en memoria, en lugar de una llamada por fila. El tamano del bloque se configura
+ * con tienda.id.tamanioAsignacion, o tienda.id.tamanioAsignacion.&lt;secuencia&gt; para una sola secuencia.
+ */
+public class GeneradorSecuenciaAgrupada extends SequenceStyleGenerator {
+
+	public static final String NOMBRE = "persistencia.entitad.GeneradorSecuenciaAgrupada";
+	public static final String TAMANIO_ASIGNACION = "tienda.id.tamanioAsignacion";
+
+	private static final String TAMANIO_ASIGNACION_PREDETERMINADO = "50";
+
+	@Override
+	public void configure(Type type, Properties parametros, ServiceRegistry serviceRegistry) throws MappingException {
+
+		Map<?, ?> configuracion = serviceRegistry.getService(ConfigurationService.class).getSettings();
+		Object tamanio = configuracion.get(TAMANIO_ASIGNACION + "." + parametros.getProperty(SEQUENCE_PARAM));
+		if (tamanio == null) {
+			tamanio = configuracion.get(TAMANIO_ASIGNACION);
+		}
+
+		Properties ajustados = new Properties();
+		ajustados.putAll(parametros);
+		ajustados.setProperty(INCREMENT_PARAM, tamanio != null ? tamanio.toString().trim() : TAMANIO_ASIGNACION_PREDETERMINADO);
+		ajustados.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+		super.configure(type, ajustados, serviceRegistry);
+	}
+}
@@ -0,0 +1,66 @@
+package persistencia.entitad;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Version;
+
+@Entity(name = "MarcaBarrido")
+public class MarcaBarridoEntity {
+
+	@Id
+	private String nombre;
+
+	@Column(nullable = false)
+	private Date procesadoHasta;
+
+	private Date ventanaHasta;
+
+	@Column(length = 512)
+	private String continuacion;
+
+	/**
+	 * Si dos barridos avanzan la misma marca a la vez, el segundo en confirmar falla en lugar de retrocederla
+	 */
+	@Version
+	private long version;
+
+	public String getNombre() {
+		return nombre;
+	}
+
+	public void setNombre(String nombre) {
+		this.nombre = nombre;
+	}
+
+	public Date getProcesadoHasta() {
+		return procesadoHasta;
+	}
+
+	public void setProcesadoHasta(Date procesadoHasta) {
+		this.procesadoHasta = procesadoHasta;
+	}
+
+	public Date getVentanaHasta() {
+		return ventanaHasta;
+	}
+
+	public void setVentanaHasta(Date ventanaHasta) {
+		this.ventanaHasta = ventanaHasta;
+	}
+
+	public String getContinuacion() {
+		return continuacion;
+	}
+
+	public void setContinuacion(String continuacion) {
+		this.continuacion = continuacion;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+}
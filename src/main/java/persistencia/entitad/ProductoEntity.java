@@ -1,20 +1,51 @@
 package persistencia.entitad;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 @Entity(name = "Producto")
-@NamedQuery(name = "Producto.findByCodigo", query = "SELECT producto FROM Producto producto WHERE producto.codigo = :codigo")
+@Table(uniqueConstraints = @UniqueConstraint(name = "UK_PRODUCTO_CODIGO", columnNames = "codigo"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "producto")
+@NaturalIdCache(region = "productoPorCodigo")
+@NamedQueries({
+	@NamedQuery(name = "Producto.findByCodigo", query = "SELECT producto FROM Producto producto WHERE producto.codigo = :codigo",
+			hints = {
+				@QueryHint(name = QueryHints.CACHEABLE, value = "true"),
+				@QueryHint(name = QueryHints.CACHE_REGION, value = "consultasProducto")
+			}),
+	@NamedQuery(name = "Producto.findByCodigos", query = "SELECT producto FROM Producto producto WHERE producto.codigo IN :codigos"),
+	@NamedQuery(name = "Producto.findIdByCodigo", query = "SELECT producto.id FROM Producto producto WHERE producto.codigo = :codigo"),
+	@NamedQuery(name = "Producto.findPrecioByCodigo", query = "SELECT producto.precio FROM Producto producto WHERE producto.codigo = :codigo"),
+	@NamedQuery(name = "Producto.findPrecios", query = "SELECT producto.codigo, producto.precio FROM Producto producto")
+})
 public class ProductoEntity {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "secuenciaProducto")
+	@GenericGenerator(name = "secuenciaProducto", strategy = GeneradorSecuenciaAgrupada.NOMBRE,
+			parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "SEQ_PRODUCTO"))
 	private Long id;
 
+	@NaturalId
 	@Column(nullable = false)
 	private String codigo;
 	
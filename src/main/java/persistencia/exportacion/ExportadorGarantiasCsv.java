@@ -0,0 +1,158 @@
+package persistencia.exportacion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+import dominio.GarantiaExtendida;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+
+/**
+ * Exporta todas las garantias extendidas a CSV en UTF-8. Cada garantia se codifica en un buffer de tamano fijo que
+ * se escribe al canal cuando se llena, por lo que la memoria usada no depende de la cantidad de garantias
+ */
+public class ExportadorGarantiasCsv {
+
+	public static final String ENCABEZADO = "nombreCliente,codigoProducto,nombreProducto,precioProducto,fechaSolicitudGarantia,fechaFinGarantia,precioGarantia";
+
+	private static final int TAMANIO_BUFFER = Integer.getInteger("tienda.exportacion.tamanioBuffer", 64 * 1024);
+	private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+	private static final char SEPARADOR = ',';
+	private static final char COMILLAS = '"';
+	private static final double ENTERO_EXACTO = 1L << 53;
+
+	private final RepositorioGarantiaExtendida repositorioGarantia;
+
+	public ExportadorGarantiasCsv(RepositorioGarantiaExtendida repositorioGarantia) {
+		this.repositorioGarantia = repositorioGarantia;
+	}
+
+	/**
+	 * Permite exportar las garantias. La salida no se cierra
+	 * @param salida
+	 * @return cantidad de garantias exportadas
+	 * @throws IOException
+	 */
+	public long exportar(OutputStream salida) throws IOException {
+
+		Escritor escritor = new Escritor(Channels.newChannel(salida));
+		escritor.escribir(ENCABEZADO);
+		long cantidad;
+		try {
+			cantidad = repositorioGarantia.recorrer(escritor::escribir);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		escritor.terminar();
+		salida.flush();
+		return cantidad;
+	}
+
+	private static final class Escritor {
+
+		private final WritableByteChannel canal;
+		private final CharsetEncoder codificador = StandardCharsets.UTF_8.newEncoder();
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANIO_BUFFER);
+		private final StringBuilder linea = new StringBuilder(256);
+
+		private Escritor(WritableByteChannel canal) {
+			this.canal = canal;
+		}
+
+		private void escribir(GarantiaExtendida garantia) {
+
+			linea.setLength(0);
+			agregarTexto(garantia.getNombreCliente()).append(SEPARADOR);
+			agregarTexto(garantia.getProducto().getCodigo()).append(SEPARADOR);
+			agregarTexto(garantia.getProducto().getNombre()).append(SEPARADOR);
+			agregarNumero(garantia.getProducto().getPrecio()).append(SEPARADOR);
+			agregarFecha(garantia.getFechaSolicitudGarantia()).append(SEPARADOR);
+			agregarFecha(garantia.getFechaFinGarantia()).append(SEPARADOR);
+			agregarNumero(garantia.getPrecioGarantia());
+			try {
+				codificar(linea.append('\n'));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void escribir(String texto) throws IOException {
+			linea.setLength(0);
+			codificar(linea.append(texto).append('\n'));
+		}
+
+		private void terminar() throws IOException {
+			vaciar();
+		}
+
+		private StringBuilder agregarTexto(String texto) {
+
+			if (texto == null) {
+				return linea;
+			}
+			boolean requiereComillas = false;
+			for (int i = 0; i < texto.length() && !requiereComillas; i++) {
+				char caracter = texto.charAt(i);
+				requiereComillas = caracter == SEPARADOR || caracter == COMILLAS || caracter == '\n' || caracter == '\r';
+			}
+			if (!requiereComillas) {
+				return linea.append(texto);
+			}
+			linea.append(COMILLAS);
+			for (int i = 0; i < texto.length(); i++) {
+				char caracter = texto.charAt(i);
+				if (caracter == COMILLAS) {
+					linea.append(COMILLAS);
+				}
+				linea.append(caracter);
+			}
+			return linea.append(COMILLAS);
+		}
+
+		private StringBuilder agregarNumero(double numero) {
+			if (numero == Math.rint(numero) && Math.abs(numero) < ENTERO_EXACTO) {
+				return linea.append((long) numero);
+			}
+			// Double.toString usaria notacion cientifica desde 10^7
+			return linea.append(BigDecimal.valueOf(numero).toPlainString());
+		}
+
+		private StringBuilder agregarFecha(Date fecha) {
+			if (fecha != null) {
+				FORMATO_FECHA.formatTo(fecha.toInstant(), linea);
+			}
+			return linea;
+		}
+
+		private void codificar(CharSequence texto) throws IOException {
+
+			CharBuffer caracteres = CharBuffer.wrap(texto);
+			CoderResult resultado;
+			while ((resultado = codificador.encode(caracteres, buffer, false)).isOverflow()) {
+				vaciar();
+			}
+			if (resultado.isError()) {
+				resultado.throwException();
+			}
+		}
+
+		private void vaciar() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				canal.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+}
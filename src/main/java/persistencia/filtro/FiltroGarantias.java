@@ -0,0 +1,208 @@
+package persistencia.filtro;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filtro de Bloom con los codigos de producto que tienen garantia extendida. Un "no" del filtro es
+ * definitivo y permite evitar la consulta a la base de datos; un "tal vez" se debe confirmar con la consulta.
+ * Es seguro para uso concurrente y no bloqueante.
+ */
+public class FiltroGarantias {
+
+	private static final int BITS_POR_PALABRA = 64;
+	private static final double LN2 = Math.log(2);
+
+	private final long cantidadEsperada;
+	private final double tasaFalsosPositivosObjetivo;
+
+	private volatile Bits bits;
+	private volatile Bits enReconstruccion;
+
+	private final LongAdder positivos = new LongAdder();
+	private final LongAdder falsosPositivos = new LongAdder();
+
+	/**
+	 * @param cantidadEsperada cantidad de codigos con garantia para la que se dimensiona el filtro
+	 * @param tasaFalsosPositivosObjetivo tasa de falsos positivos esperada al llegar a la cantidad esperada
+	 */
+	public FiltroGarantias(long cantidadEsperada, double tasaFalsosPositivosObjetivo) {
+
+		if (cantidadEsperada <= 0 || tasaFalsosPositivosObjetivo <= 0 || tasaFalsosPositivosObjetivo >= 1) {
+			throw new IllegalArgumentException("Dimensiones invalidas para el filtro de garantias");
+		}
+		this.cantidadEsperada = cantidadEsperada;
+		this.tasaFalsosPositivosObjetivo = tasaFalsosPositivosObjetivo;
+		this.bits = nuevosBits();
+	}
+
+	/**
+	 * Permite registrar que un codigo tiene garantia
+	 * @param codigo
+	 */
+	public void agregar(String codigo) {
+
+		long hash = hash(codigo);
+		Bits actuales = bits;
+		actuales.agregar(hash);
+		Bits reconstruccion = enReconstruccion;
+		if (reconstruccion != null) {
+			reconstruccion.agregar(hash);
+		}
+		// Si la reconstruccion reemplazo los bits mientras tanto, el codigo tambien debe quedar en los nuevos
+		Bits despues = bits;
+		if (despues != actuales && despues != reconstruccion) {
+			despues.agregar(hash);
+		}
+	}
+
+	/**
+	 * Permite saber si un codigo podria tener garantia. Si retorna false el codigo no tiene garantia
+	 * @param codigo
+	 * @return
+	 */
+	public boolean podriaContener(String codigo) {
+
+		boolean contiene = bits.contiene(hash(codigo));
+		if (contiene) {
+			positivos.increment();
+		}
+		return contiene;
+	}
+
+	/**
+	 * Permite informar que la base de datos no confirmo un "tal vez" del filtro
+	 */
+	public void registrarFalsoPositivo() {
+		falsosPositivos.increment();
+	}
+
+	/**
+	 * Permite reconstruir el filtro a partir de todos los codigos con garantia, descartando los que ya no estan,
+	 * como los de transacciones deshechas. Los codigos agregados mientras se reconstruye quedan tanto en el filtro
+	 * actual como en el nuevo. Un codigo agregado antes, cuya transaccion aun no se confirma cuando se leen los
+	 * codigos, no queda en el nuevo filtro: quien lo agrega lo debe volver a agregar al confirmar la transaccion
+	 * @param codigos
+	 */
+	public synchronized void reconstruir(Iterator<String> codigos) {
+
+		Bits nuevos = nuevosBits();
+		enReconstruccion = nuevos;
+		try {
+			while (codigos.hasNext()) {
+				nuevos.agregar(hash(codigos.next()));
+			}
+			bits = nuevos;
+		} finally {
+			enReconstruccion = null;
+		}
+		positivos.reset();
+		falsosPositivos.reset();
+	}
+
+	/**
+	 * Tasa de falsos positivos estimada a partir de la proporcion de bits encendidos
+	 * @return
+	 */
+	public double getTasaFalsosPositivosEstimada() {
+		Bits actuales = bits;
+		return Math.pow((double) actuales.encendidos.get() / actuales.tamanio, actuales.funciones);
+	}
+
+	/**
+	 * Proporcion de respuestas "tal vez" que la base de datos no confirmo
+	 * @return
+	 */
+	public double getTasaFalsosPositivosObservada() {
+		long totalPositivos = positivos.sum();
+		return totalPositivos == 0 ? 0 : (double) falsosPositivos.sum() / totalPositivos;
+	}
+
+	public long getTamanioEnBits() {
+		return bits.tamanio;
+	}
+
+	public int getCantidadFunciones() {
+		return bits.funciones;
+	}
+
+	public long getCantidadEsperada() {
+		return cantidadEsperada;
+	}
+
+	private Bits nuevosBits() {
+
+		long tamanio = (long) Math.ceil(-cantidadEsperada * Math.log(tasaFalsosPositivosObjetivo) / (LN2 * LN2));
+		tamanio = Math.max(BITS_POR_PALABRA, tamanio);
+		int funciones = Math.max(1, (int) Math.round((double) tamanio / cantidadEsperada * LN2));
+
+		return new Bits(tamanio, funciones);
+	}
+
+	/**
+	 * Hash de 64 bits (FNV-1a con mezcla final) calculado sobre los caracteres del codigo sin copiarlos
+	 */
+	private static long hash(String codigo) {
+
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < codigo.length(); i++) {
+			hash ^= codigo.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private static final class Bits {
+
+		private final AtomicLongArray palabras;
+		private final long tamanio;
+		private final int funciones;
+		private final AtomicLong encendidos = new AtomicLong();
+
+		Bits(long tamanio, int funciones) {
+			int cantidadPalabras = (int) ((tamanio + BITS_POR_PALABRA - 1) / BITS_POR_PALABRA);
+			this.palabras = new AtomicLongArray(cantidadPalabras);
+			this.tamanio = (long) cantidadPalabras * BITS_POR_PALABRA;
+			this.funciones = funciones;
+		}
+
+		void agregar(long hash) {
+
+			long primero = hash;
+			long segundo = (hash >>> 32) | 1;
+			for (int i = 0; i < funciones; i++) {
+				long indice = ((primero + i * segundo) & Long.MAX_VALUE) % tamanio;
+				int palabra = (int) (indice / BITS_POR_PALABRA);
+				long mascara = 1L << indice;
+				long actual;
+				do {
+					actual = palabras.get(palabra);
+					if ((actual & mascara) != 0) {
+						break;
+					}
+				} while (!palabras.compareAndSet(palabra, actual, actual | mascara));
+				if ((actual & mascara) == 0) {
+					encendidos.incrementAndGet();
+				}
+			}
+		}
+
+		boolean contiene(long hash) {
+
+			long primero = hash;
+			long segundo = (hash >>> 32) | 1;
+			for (int i = 0; i < funciones; i++) {
+				long indice = ((primero + i * segundo) & Long.MAX_VALUE) % tamanio;
+				if ((palabras.get((int) (indice / BITS_POR_PALABRA)) & (1L << indice)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package persistencia.importacion;
+
+/**
+ * Indica que una importacion se detuvo. Los productos confirmados ya estan en la base de datos, y la importacion
+ * se puede reanudar omitiendo esa misma cantidad de productos de la fuente
+ */
+public class ImportacionException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long productosConfirmados;
+
+	public ImportacionException(long productosConfirmados, Throwable causa) {
+		super("La importacion se detuvo despues de confirmar " + productosConfirmados + " productos: " + causa.getMessage(), causa);
+		this.productosConfirmados = productosConfirmados;
+	}
+
+	public long getProductosConfirmados() {
+		return productosConfirmados;
+	}
+}
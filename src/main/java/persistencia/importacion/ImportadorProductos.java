@@ -0,0 +1,148 @@
+package persistencia.importacion;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+
+import dominio.Producto;
+import dominio.metrica.Metricas;
+import dominio.metrica.Temporizador;
+import dominio.repositorio.UnidadDeTrabajo;
+import persistencia.builder.ProductoBuilder;
+
+/**
+ * Importa catalogos de productos de cualquier tamano con memoria acotada. Los productos se insertan por bloques,
+ * cada bloque en su propia transaccion: se envia como batch JDBC, se confirma y se libera del contexto de
+ * persistencia. Si la importacion falla, solo se deshace el bloque en curso.
+ */
+public class ImportadorProductos {
+
+	public static final int TAMANIO_BLOQUE_PREDETERMINADO = Integer.getInteger("tienda.importacion.tamanioBloque", 1000);
+
+	private static final Temporizador TIEMPO_BLOQUE = Metricas.temporizador("importacion.Producto.bloque");
+
+	private final Supplier<EntityManager> entityManager;
+	private final UnidadDeTrabajo unidadDeTrabajo;
+	private final int tamanioBloque;
+	private final ProgresoImportacion progreso;
+
+	/**
+	 * @param entityManager proveedor del EntityManager del hilo actual, el mismo que usa la unidad de trabajo
+	 * @param unidadDeTrabajo
+	 * @param tamanioBloque productos por transaccion
+	 * @param progreso
+	 */
+	public ImportadorProductos(Supplier<EntityManager> entityManager, UnidadDeTrabajo unidadDeTrabajo, int tamanioBloque, ProgresoImportacion progreso) {
+		if (tamanioBloque < 1) {
+			throw new IllegalArgumentException("El tamano del bloque debe ser positivo: " + tamanioBloque);
+		}
+		this.entityManager = entityManager;
+		this.unidadDeTrabajo = unidadDeTrabajo;
+		this.tamanioBloque = tamanioBloque;
+		this.progreso = progreso;
+	}
+
+	/**
+	 * Permite importar todos los productos
+	 * @param productos
+	 * @return cantidad de productos confirmados
+	 */
+	public long importar(Iterator<Producto> productos) {
+		return importar(productos, 0);
+	}
+
+	/**
+	 * Permite reanudar una importacion que fallo, omitiendo los productos que ya se habian confirmado
+	 * @param productos la misma fuente de la importacion que fallo, desde el principio
+	 * @param productosConfirmados el valor de ImportacionException.getProductosConfirmados()
+	 * @return cantidad total de productos confirmados, incluidos los omitidos
+	 */
+	public long importar(Iterator<Producto> productos, long productosConfirmados) {
+
+		long confirmados = 0;
+		long inicio = System.nanoTime();
+		List<Producto> bloque = new ArrayList<>(tamanioBloque);
+		try {
+			while (confirmados < productosConfirmados && productos.hasNext()) {
+				productos.next();
+				confirmados++;
+			}
+			long omitidos = confirmados;
+			while (productos.hasNext()) {
+				while (bloque.size() < tamanioBloque && productos.hasNext()) {
+					bloque.add(productos.next());
+				}
+				importarBloque(bloque);
+				confirmados += bloque.size();
+				bloque.clear();
+				if (progreso != null) {
+					progreso.bloqueConfirmado(confirmados, productosPorSegundo(confirmados - omitidos, inicio));
+				}
+			}
+			return confirmados;
+		} catch (RuntimeException e) {
+			throw new ImportacionException(confirmados, e);
+		} finally {
+			unidadDeTrabajo.cerrar();
+		}
+	}
+
+	/**
+	 * Permite importar un CSV con las columnas codigo,nombre,precio. El csv se cierra al terminar, aunque falle
+	 * @param csv
+	 * @param productosConfirmados 0, o los confirmados antes de un fallo para reanudar
+	 * @return cantidad total de productos confirmados
+	 */
+	public long importarCsv(Reader csv, long productosConfirmados) {
+		try (LectorCsvProductos productos = new LectorCsvProductos(csv)) {
+			return importar(productos, productosConfirmados);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void importarBloque(List<Producto> bloque) {
+
+		long inicio = TIEMPO_BLOQUE.iniciar();
+		unidadDeTrabajo.iniciar();
+		try {
+			EntityManager contexto = entityManager.get();
+			// Los productos importados no se consultan enseguida, no vale la pena llenar la cache de segundo nivel
+			contexto.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+			for (Producto producto : bloque) {
+				contexto.persist(ProductoBuilder.convertirAEntity(producto));
+			}
+			contexto.flush();
+			contexto.clear();
+			unidadDeTrabajo.terminar();
+		} catch (RuntimeException e) {
+			deshacer(e);
+			throw e;
+		} finally {
+			TIEMPO_BLOQUE.detener(inicio);
+		}
+	}
+
+	private void deshacer(RuntimeException causa) {
+		try {
+			unidadDeTrabajo.deshacer();
+		} catch (RuntimeException e) {
+			causa.addSuppressed(e);
+		}
+	}
+
+	private static double productosPorSegundo(long productos, long inicio) {
+		long transcurrido = System.nanoTime() - inicio;
+		return transcurrido > 0 ? productos * (double) TimeUnit.SECONDS.toNanos(1) / transcurrido : 0;
+	}
+}
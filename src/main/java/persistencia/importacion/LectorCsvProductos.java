@@ -0,0 +1,111 @@
+package persistencia.importacion;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import dominio.Producto;
+
+/**
+ * Lee productos de un CSV con las columnas codigo,nombre,precio sin cargar el archivo en memoria.
+ * La primera linea se omite si es el encabezado, y los campos entre comillas dobles pueden contener comas
+ */
+public class LectorCsvProductos implements Iterator<Producto>, Closeable {
+
+	private static final String ENCABEZADO = "codigo,nombre,precio";
+	private static final char SEPARADOR = ',';
+	private static final char COMILLAS = '"';
+	private static final int COLUMNAS = 3;
+
+	private final BufferedReader lector;
+	private String siguienteLinea;
+	private long numeroLinea;
+
+	public LectorCsvProductos(Reader lector) {
+		this.lector = lector instanceof BufferedReader ? (BufferedReader) lector : new BufferedReader(lector);
+		this.siguienteLinea = leerLinea();
+		if (siguienteLinea != null && ENCABEZADO.equalsIgnoreCase(siguienteLinea.trim())) {
+			siguienteLinea = leerLinea();
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return siguienteLinea != null;
+	}
+
+	@Override
+	public Producto next() {
+
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		String linea = siguienteLinea;
+		long numero = numeroLinea;
+		siguienteLinea = leerLinea();
+
+		List<String> campos = separar(linea);
+		if (campos.size() != COLUMNAS) {
+			throw new IllegalArgumentException("La linea " + numero + " no tiene las columnas " + ENCABEZADO + ": " + linea);
+		}
+		try {
+			return new Producto(campos.get(0).trim(), campos.get(1), Double.parseDouble(campos.get(2).trim()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("La linea " + numero + " tiene un precio invalido: " + campos.get(2), e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		lector.close();
+	}
+
+	private String leerLinea() {
+
+		try {
+			String linea;
+			do {
+				linea = lector.readLine();
+				numeroLinea++;
+			} while (linea != null && linea.trim().isEmpty());
+			return linea;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static List<String> separar(String linea) {
+
+		List<String> campos = new ArrayList<>(COLUMNAS);
+		StringBuilder campo = new StringBuilder();
+		boolean entreComillas = false;
+		for (int i = 0; i < linea.length(); i++) {
+			char caracter = linea.charAt(i);
+			if (entreComillas) {
+				if (caracter == COMILLAS && i + 1 < linea.length() && linea.charAt(i + 1) == COMILLAS) {
+					campo.append(COMILLAS);
+					i++;
+				} else if (caracter == COMILLAS) {
+					entreComillas = false;
+				} else {
+					campo.append(caracter);
+				}
+			} else if (caracter == COMILLAS) {
+				entreComillas = true;
+			} else if (caracter == SEPARADOR) {
+				campos.add(campo.toString());
+				campo.setLength(0);
+			} else {
+				campo.append(caracter);
+			}
+		}
+		campos.add(campo.toString());
+		return campos;
+	}
+}
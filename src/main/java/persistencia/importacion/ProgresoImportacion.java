@@ -0,0 +1,14 @@
+package persistencia.importacion;
+
+/**
+ * Recibe el avance de una importacion cada vez que se confirma un bloque de productos
+ */
+@FunctionalInterface
+public interface ProgresoImportacion {
+
+	/**
+	 * @param productosConfirmados total de productos confirmados, incluidos los de ejecuciones anteriores
+	 * @param productosPorSegundo productos confirmados por segundo en esta ejecucion
+	 */
+	void bloqueConfirmado(long productosConfirmados, double productosPorSegundo);
+}
@@ -0,0 +1,324 @@
+package persistencia.indice;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Indice del codigo de cada producto a su precio, guardado fuera del heap en buffers directos con
+ * direccionamiento abierto y sondeo lineal. Cada ranura ocupa 48 bytes: el hash del codigo, su longitud,
+ * hasta 17 caracteres del codigo y el precio, asi que el heap no crece con el catalogo. Los codigos mas largos
+ * no se indexan y siempre se consultan en la base de datos.
+ * <p>
+ * Las busquedas no reservan memoria ni bloquean: leen con una lectura optimista y solo la repiten con el
+ * bloqueo de lectura si una escritura concurrente la invalido. Un precio NaN marca un producto desconocido.
+ */
+public class IndicePrecios {
+
+	public static final int MAXIMO_CARACTERES = 17;
+
+	private static final int TAMANIO_RANURA = 48;
+	private static final int POSICION_LONGITUD = 4;
+	private static final int POSICION_CODIGO = 6;
+	private static final int POSICION_PRECIO = 40;
+	private static final int VACIA = 0;
+	private static final double FACTOR_CARGA = 0.7;
+	private static final int RANURAS_MINIMAS = 16;
+	private static final int RANURAS_POR_BLOQUE = 1 << 22;
+	private static final int CAPACIDAD_MAXIMA = 1 << 30;
+
+	private final StampedLock bloqueo = new StampedLock();
+
+	private Tabla tabla;
+	private int ocupadas;
+	private volatile long version;
+
+	/**
+	 * @param cantidadEsperada cantidad de productos para la que se dimensiona el indice; si se supera, el indice crece
+	 */
+	public IndicePrecios(long cantidadEsperada) {
+
+		if (cantidadEsperada < 0 || cantidadEsperada / FACTOR_CARGA > CAPACIDAD_MAXIMA) {
+			throw new IllegalArgumentException("Cantidad esperada invalida para el indice de precios: " + cantidadEsperada);
+		}
+		int capacidad = RANURAS_MINIMAS;
+		while (capacidad * FACTOR_CARGA < cantidadEsperada) {
+			capacidad <<= 1;
+		}
+		this.tabla = new Tabla(capacidad);
+	}
+
+	/**
+	 * Permite obtener el precio de un producto
+	 * @param codigo
+	 * @return el precio, o NaN si el producto no esta en el indice
+	 */
+	public double obtener(String codigo) {
+
+		if (codigo.length() > MAXIMO_CARACTERES) {
+			return Double.NaN;
+		}
+		int hash = hash(codigo);
+		long marca = bloqueo.tryOptimisticRead();
+		double precio = buscar(tabla, codigo, hash);
+		if (!bloqueo.validate(marca)) {
+			marca = bloqueo.readLock();
+			try {
+				precio = buscar(tabla, codigo, hash);
+			} finally {
+				bloqueo.unlockRead(marca);
+			}
+		}
+		return precio;
+	}
+
+	/**
+	 * Permite agregar un producto al indice o cambiar su precio
+	 * @param codigo
+	 * @param precio
+	 * @return false si el codigo es demasiado largo para el indice
+	 */
+	public boolean actualizar(String codigo, double precio) {
+
+		if (codigo.length() > MAXIMO_CARACTERES) {
+			return false;
+		}
+		long marca = bloqueo.writeLock();
+		try {
+			escribir(codigo, hash(codigo), precio);
+			return true;
+		} finally {
+			bloqueo.unlockWrite(marca);
+		}
+	}
+
+	/**
+	 * Permite agregar un precio leido de la base de datos solo si ningun precio se invalido desde que se tomo la
+	 * version, porque la lectura pudo ver el precio anterior a un cambio
+	 * @param codigo
+	 * @param precio
+	 * @param version la de getVersion antes de leer el precio
+	 * @return false si algun precio se invalido desde esa version o el codigo es demasiado largo para el indice
+	 */
+	public boolean actualizarSiVigente(String codigo, double precio, long version) {
+
+		if (codigo.length() > MAXIMO_CARACTERES) {
+			return false;
+		}
+		long marca = bloqueo.writeLock();
+		try {
+			if (this.version != version) {
+				return false;
+			}
+			escribir(codigo, hash(codigo), precio);
+			return true;
+		} finally {
+			bloqueo.unlockWrite(marca);
+		}
+	}
+
+	/**
+	 * Permite olvidar el precio de un producto, por ejemplo cuando cambia, para que se vuelva a consultar
+	 * @param codigo
+	 */
+	public void invalidar(String codigo) {
+
+		if (codigo.length() > MAXIMO_CARACTERES) {
+			return;
+		}
+		int hash = hash(codigo);
+		long marca = bloqueo.writeLock();
+		try {
+			version++;
+			int ranura = ubicar(tabla, codigo, hash);
+			ByteBuffer bloque = tabla.bloque(ranura);
+			int posicion = tabla.posicion(ranura);
+			if (bloque.getInt(posicion) != VACIA) {
+				bloque.putDouble(posicion + POSICION_PRECIO, Double.NaN);
+			}
+		} finally {
+			bloqueo.unlockWrite(marca);
+		}
+	}
+
+	/**
+	 * @return cantidad de invalidaciones hechas, que cambia cada vez que se invalida un precio
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return cantidad de codigos en el indice, incluidos los invalidados
+	 */
+	public int getCantidad() {
+
+		long marca = bloqueo.readLock();
+		try {
+			return ocupadas;
+		} finally {
+			bloqueo.unlockRead(marca);
+		}
+	}
+
+	/**
+	 * @return bytes reservados fuera del heap
+	 */
+	public long getTamanioEnBytes() {
+
+		long marca = bloqueo.readLock();
+		try {
+			return (long) tabla.capacidad * TAMANIO_RANURA;
+		} finally {
+			bloqueo.unlockRead(marca);
+		}
+	}
+
+	/**
+	 * Agrega el codigo o cambia su precio; se llama con el bloqueo de escritura
+	 */
+	private void escribir(String codigo, int hash, double precio) {
+
+		int ranura = ubicar(tabla, codigo, hash);
+		ByteBuffer bloque = tabla.bloque(ranura);
+		int posicion = tabla.posicion(ranura);
+		if (bloque.getInt(posicion) == VACIA) {
+			if (ocupadas + 1 > tabla.capacidad * FACTOR_CARGA) {
+				crecer();
+				ranura = ubicar(tabla, codigo, hash);
+				bloque = tabla.bloque(ranura);
+				posicion = tabla.posicion(ranura);
+			}
+			bloque.putShort(posicion + POSICION_LONGITUD, (short) codigo.length());
+			for (int i = 0; i < codigo.length(); i++) {
+				bloque.putChar(posicion + POSICION_CODIGO + 2 * i, codigo.charAt(i));
+			}
+			bloque.putInt(posicion, hash);
+			ocupadas++;
+		}
+		bloque.putDouble(posicion + POSICION_PRECIO, precio);
+	}
+
+	/**
+	 * Duplica la capacidad copiando cada ranura ocupada a su lugar en la tabla nueva
+	 */
+	private void crecer() {
+
+		if (tabla.capacidad == CAPACIDAD_MAXIMA) {
+			throw new IllegalStateException("El indice de precios llego a su capacidad maxima");
+		}
+		Tabla nueva = new Tabla(tabla.capacidad << 1);
+		for (int ranura = 0; ranura < tabla.capacidad; ranura++) {
+			ByteBuffer origen = tabla.bloque(ranura);
+			int posicionOrigen = tabla.posicion(ranura);
+			int hash = origen.getInt(posicionOrigen);
+			if (hash != VACIA) {
+				int destino = hash & nueva.mascara;
+				while (nueva.bloque(destino).getInt(nueva.posicion(destino)) != VACIA) {
+					destino = (destino + 1) & nueva.mascara;
+				}
+				ByteBuffer bloqueDestino = nueva.bloque(destino);
+				int posicionDestino = nueva.posicion(destino);
+				for (int i = 0; i < TAMANIO_RANURA; i += 8) {
+					bloqueDestino.putLong(posicionDestino + i, origen.getLong(posicionOrigen + i));
+				}
+			}
+		}
+		tabla = nueva;
+	}
+
+	/**
+	 * Una lectura optimista puede ver la tabla a medio escribir; la busqueda nunca sale de la ranura ni da mas
+	 * vueltas que la capacidad, y el resultado se descarta si la lectura no se valida
+	 */
+	private static double buscar(Tabla tabla, String codigo, int hash) {
+
+		int ranura = hash & tabla.mascara;
+		for (int sondeos = 0; sondeos < tabla.capacidad; sondeos++) {
+			ByteBuffer bloque = tabla.bloque(ranura);
+			int posicion = tabla.posicion(ranura);
+			int hashRanura = bloque.getInt(posicion);
+			if (hashRanura == VACIA) {
+				return Double.NaN;
+			}
+			if (hashRanura == hash && mismoCodigo(bloque, posicion, codigo)) {
+				return bloque.getDouble(posicion + POSICION_PRECIO);
+			}
+			ranura = (ranura + 1) & tabla.mascara;
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * @return la ranura del codigo, o la ranura vacia donde se debe agregar
+	 */
+	private static int ubicar(Tabla tabla, String codigo, int hash) {
+
+		int ranura = hash & tabla.mascara;
+		while (true) {
+			ByteBuffer bloque = tabla.bloque(ranura);
+			int posicion = tabla.posicion(ranura);
+			int hashRanura = bloque.getInt(posicion);
+			if (hashRanura == VACIA || (hashRanura == hash && mismoCodigo(bloque, posicion, codigo))) {
+				return ranura;
+			}
+			ranura = (ranura + 1) & tabla.mascara;
+		}
+	}
+
+	private static boolean mismoCodigo(ByteBuffer bloque, int posicion, String codigo) {
+
+		if (bloque.getShort(posicion + POSICION_LONGITUD) != codigo.length()) {
+			return false;
+		}
+		for (int i = 0; i < codigo.length(); i++) {
+			if (bloque.getChar(posicion + POSICION_CODIGO + 2 * i) != codigo.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Mezcla el hash del String, que ya esta calculado en el codigo, para repartir los codigos parecidos;
+	 * el cero se reserva para las ranuras vacias
+	 */
+	private static int hash(String codigo) {
+
+		int hash = codigo.hashCode() * 0x9E3779B9;
+		hash ^= hash >>> 16;
+		return hash == VACIA ? 1 : hash;
+	}
+
+	/**
+	 * Ranuras repartidas en bloques, porque un buffer no puede pasar de 2 GB
+	 */
+	private static final class Tabla {
+
+		private final int capacidad;
+		private final int mascara;
+		private final int desplazamientoBloque;
+		private final int mascaraBloque;
+		private final ByteBuffer[] bloques;
+
+		Tabla(int capacidad) {
+
+			this.capacidad = capacidad;
+			this.mascara = capacidad - 1;
+			int ranurasPorBloque = Math.min(capacidad, RANURAS_POR_BLOQUE);
+			this.desplazamientoBloque = Integer.numberOfTrailingZeros(ranurasPorBloque);
+			this.mascaraBloque = ranurasPorBloque - 1;
+			this.bloques = new ByteBuffer[capacidad / ranurasPorBloque];
+			for (int i = 0; i < bloques.length; i++) {
+				bloques[i] = ByteBuffer.allocateDirect(ranurasPorBloque * TAMANIO_RANURA);
+			}
+		}
+
+		ByteBuffer bloque(int ranura) {
+			return bloques[ranura >>> desplazamientoBloque];
+		}
+
+		int posicion(int ranura) {
+			return (ranura & mascaraBloque) * TAMANIO_RANURA;
+		}
+	}
+}
@@ -0,0 +1,328 @@
+package persistencia.repositorio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import dominio.GarantiaExtendida;
+import dominio.Producto;
+import dominio.metrica.Metricas;
+import dominio.metrica.Temporizador;
+import persistencia.repositorio.PaginacionEnMemoria.ClaveFecha;
+
+/**
+ * Productos y garantias en memoria, para trabajar sin base de datos. Todo se guarda en mapas concurrentes sin
+ * bloqueos: la garantia de cada producto se inserta con putIfAbsent sobre el codigo, que decide cual gana si dos
+ * hilos agregan a la vez la del mismo producto, y las busquedas por paginas usan indices ordenados por cliente y
+ * por fechas. Una instantanea periodica en un archivo local permite recuperar el contenido despues de reiniciar;
+ * se pierde lo agregado despues de la ultima instantanea si el proceso termina sin cerrar el almacen.
+ */
+public class AlmacenEnMemoria {
+
+	private static final Logger LOGGER = Logger.getLogger(AlmacenEnMemoria.class);
+	private static final int MARCA_INSTANTANEA = 0x54444d31;
+	private static final int TAMANIO_BUFFER = 64 * 1024;
+	private static final long SIN_FECHA = Long.MIN_VALUE;
+	private static final Temporizador TIEMPO_INSTANTANEA = Metricas.temporizador("memoria.instantanea");
+
+	private final ConcurrentMap<String, Producto> productos = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Registro> garantias = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ConcurrentSkipListMap<Long, GarantiaExtendida>> porNombreCliente = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<ClaveFecha, GarantiaExtendida> porFechaSolicitud = new ConcurrentSkipListMap<>();
+	private final ConcurrentSkipListMap<ClaveFecha, GarantiaExtendida> porFechaFin = new ConcurrentSkipListMap<>();
+	private final AtomicLong ultimoId = new AtomicLong();
+
+	private final Object bloqueoProgramacion = new Object();
+	private ScheduledExecutorService programador;
+	private Path archivoInstantanea;
+
+	/**
+	 * Permite crear un almacen con el contenido de una instantanea guardada con guardar
+	 * @param archivo
+	 * @return
+	 * @throws IOException si el archivo no se puede leer o no es una instantanea
+	 */
+	public static AlmacenEnMemoria cargar(Path archivo) throws IOException {
+
+		AlmacenEnMemoria almacen = new AlmacenEnMemoria();
+		try (InputStream entrada = Files.newInputStream(archivo);
+				DataInputStream datos = new DataInputStream(new BufferedInputStream(entrada, TAMANIO_BUFFER))) {
+			if (datos.readInt() != MARCA_INSTANTANEA) {
+				throw new IOException("El archivo " + archivo + " no es una instantanea del almacen en memoria");
+			}
+			while (datos.readBoolean()) {
+				Producto producto = leerProducto(datos);
+				almacen.productos.put(producto.getCodigo(), producto);
+			}
+			while (datos.readBoolean()) {
+				long id = datos.readLong();
+				Producto producto = leerProducto(datos);
+				GarantiaExtendida garantia = new GarantiaExtendida(producto, leerFecha(datos), leerFecha(datos), datos.readDouble(),
+						leerTexto(datos));
+				almacen.registrar(new Registro(id, garantia));
+				almacen.ultimoId.accumulateAndGet(id, Math::max);
+			}
+		}
+		return almacen;
+	}
+
+	/**
+	 * Permite escribir una instantanea del contenido en el archivo. Se escribe primero en un archivo temporal que
+	 * reemplaza al anterior solo cuando esta completo, por lo que una caida durante la escritura conserva la
+	 * instantanea previa
+	 * @param archivo
+	 * @throws IOException
+	 */
+	public synchronized void guardar(Path archivo) throws IOException {
+
+		long inicio = TIEMPO_INSTANTANEA.iniciar();
+		try {
+			Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+			try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				DataOutputStream datos = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal), TAMANIO_BUFFER));
+				escribir(datos);
+				datos.flush();
+				canal.force(true);
+			}
+			Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			TIEMPO_INSTANTANEA.detener(inicio);
+		}
+	}
+
+	/**
+	 * Permite guardar una instantanea en el archivo cada periodo, en un hilo propio, y otra al cerrar el almacen
+	 * @param archivo
+	 * @param periodo
+	 * @param unidad
+	 */
+	public void programarInstantaneas(Path archivo, long periodo, TimeUnit unidad) {
+
+		synchronized (bloqueoProgramacion) {
+			if (programador != null) {
+				throw new IllegalStateException("Las instantaneas ya estan programadas en " + archivoInstantanea);
+			}
+			archivoInstantanea = archivo;
+			programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+				Thread hilo = new Thread(tarea, "instantaneas-almacen-memoria");
+				hilo.setDaemon(true);
+				return hilo;
+			});
+			programador.scheduleWithFixedDelay(() -> {
+				try {
+					guardar(archivo);
+				} catch (IOException | RuntimeException e) {
+					LOGGER.warn("No se pudo guardar la instantanea del almacen en " + archivo + ", se reintentara", e);
+				}
+			}, periodo, periodo, unidad);
+		}
+	}
+
+	/**
+	 * Detiene las instantaneas programadas y guarda la ultima
+	 * @throws IOException si no se pudo guardar la ultima instantanea
+	 */
+	public void cerrar() throws IOException {
+
+		ScheduledExecutorService actual;
+		Path archivo;
+		synchronized (bloqueoProgramacion) {
+			actual = programador;
+			archivo = archivoInstantanea;
+			programador = null;
+			archivoInstantanea = null;
+		}
+		if (actual == null) {
+			return;
+		}
+		actual.shutdown();
+		try {
+			actual.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		guardar(archivo);
+	}
+
+	Producto obtenerProducto(String codigo) {
+		return productos.get(codigo);
+	}
+
+	/**
+	 * @return false si ya existe un producto con el mismo codigo
+	 */
+	boolean agregarProducto(Producto producto) {
+		return productos.putIfAbsent(producto.getCodigo(), producto) == null;
+	}
+
+	Registro obtenerGarantia(String codigo) {
+		return garantias.get(codigo);
+	}
+
+	/**
+	 * @return el registro de la garantia, o null si el producto ya tenia garantia
+	 */
+	Registro agregarGarantia(GarantiaExtendida garantia) {
+
+		Registro registro = new Registro(ultimoId.incrementAndGet(), garantia);
+		return registrar(registro) ? registro : null;
+	}
+
+	void quitarGarantia(Registro registro) {
+
+		GarantiaExtendida garantia = registro.getGarantia();
+		if (garantias.remove(garantia.getProducto().getCodigo(), registro)) {
+			NavigableMap<Long, GarantiaExtendida> delCliente = garantia.getNombreCliente() == null ? null
+					: porNombreCliente.get(garantia.getNombreCliente());
+			if (delCliente != null) {
+				delCliente.remove(registro.getId());
+			}
+			if (garantia.getFechaSolicitudGarantia() != null) {
+				porFechaSolicitud.remove(new ClaveFecha(garantia.getFechaSolicitudGarantia().getTime(), registro.getId()));
+			}
+			if (garantia.getFechaFinGarantia() != null) {
+				porFechaFin.remove(new ClaveFecha(garantia.getFechaFinGarantia().getTime(), registro.getId()));
+			}
+		}
+	}
+
+	Collection<Registro> garantias() {
+		return garantias.values();
+	}
+
+	NavigableMap<Long, GarantiaExtendida> garantiasDelCliente(String nombreCliente) {
+
+		NavigableMap<Long, GarantiaExtendida> delCliente = nombreCliente == null ? null : porNombreCliente.get(nombreCliente);
+		return delCliente != null ? delCliente : Collections.<Long, GarantiaExtendida>emptyNavigableMap();
+	}
+
+	NavigableMap<ClaveFecha, GarantiaExtendida> garantiasPorFechaSolicitud() {
+		return porFechaSolicitud;
+	}
+
+	NavigableMap<ClaveFecha, GarantiaExtendida> garantiasPorFechaFin() {
+		return porFechaFin;
+	}
+
+	/**
+	 * El putIfAbsent sobre el codigo es el que decide; los indices se actualizan despues
+	 */
+	private boolean registrar(Registro registro) {
+
+		GarantiaExtendida garantia = registro.getGarantia();
+		if (garantias.putIfAbsent(garantia.getProducto().getCodigo(), registro) != null) {
+			return false;
+		}
+		if (garantia.getNombreCliente() != null) {
+			porNombreCliente.computeIfAbsent(garantia.getNombreCliente(), nombre -> new ConcurrentSkipListMap<>())
+					.put(registro.getId(), garantia);
+		}
+		if (garantia.getFechaSolicitudGarantia() != null) {
+			porFechaSolicitud.put(new ClaveFecha(garantia.getFechaSolicitudGarantia().getTime(), registro.getId()), garantia);
+		}
+		if (garantia.getFechaFinGarantia() != null) {
+			porFechaFin.put(new ClaveFecha(garantia.getFechaFinGarantia().getTime(), registro.getId()), garantia);
+		}
+		return true;
+	}
+
+	/**
+	 * Los mapas se recorren mientras otros hilos escriben, asi que cada seccion termina con una marca en lugar de
+	 * empezar con una cantidad
+	 */
+	private void escribir(DataOutputStream datos) throws IOException {
+
+		datos.writeInt(MARCA_INSTANTANEA);
+		for (Producto producto : productos.values()) {
+			datos.writeBoolean(true);
+			escribirProducto(datos, producto);
+		}
+		datos.writeBoolean(false);
+		for (Registro registro : garantias.values()) {
+			GarantiaExtendida garantia = registro.getGarantia();
+			datos.writeBoolean(true);
+			datos.writeLong(registro.getId());
+			escribirProducto(datos, garantia.getProducto());
+			escribirFecha(datos, garantia.getFechaSolicitudGarantia());
+			escribirFecha(datos, garantia.getFechaFinGarantia());
+			datos.writeDouble(garantia.getPrecioGarantia());
+			escribirTexto(datos, garantia.getNombreCliente());
+		}
+		datos.writeBoolean(false);
+	}
+
+	private static void escribirProducto(DataOutputStream datos, Producto producto) throws IOException {
+		datos.writeUTF(producto.getCodigo());
+		escribirTexto(datos, producto.getNombre());
+		datos.writeDouble(producto.getPrecio());
+	}
+
+	private static Producto leerProducto(DataInputStream datos) throws IOException {
+		return new Producto(datos.readUTF(), leerTexto(datos), datos.readDouble());
+	}
+
+	private static void escribirFecha(DataOutputStream datos, Date fecha) throws IOException {
+		datos.writeLong(fecha == null ? SIN_FECHA : fecha.getTime());
+	}
+
+	private static Date leerFecha(DataInputStream datos) throws IOException {
+		long fecha = datos.readLong();
+		return fecha == SIN_FECHA ? null : new Date(fecha);
+	}
+
+	private static void escribirTexto(DataOutputStream datos, String texto) throws IOException {
+		datos.writeBoolean(texto != null);
+		if (texto != null) {
+			datos.writeUTF(texto);
+		}
+	}
+
+	private static String leerTexto(DataInputStream datos) throws IOException {
+		return datos.readBoolean() ? datos.readUTF() : null;
+	}
+
+	/**
+	 * Una garantia con el id que conserva el orden en que se agrego, como el id de la tabla
+	 */
+	static final class Registro {
+
+		private final long id;
+		private final GarantiaExtendida garantia;
+
+		Registro(long id, GarantiaExtendida garantia) {
+			this.id = id;
+			this.garantia = garantia;
+		}
+
+		long getId() {
+			return id;
+		}
+
+		GarantiaExtendida getGarantia() {
+			return garantia;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package persistencia.repositorio;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.zip.CRC32;
+
+/**
+ * Codifica la clave de la ultima fila de una pagina (un valor de ordenamiento y el id) como un texto opaco,
+ * para que la pagina siguiente empiece justo despues de esa fila en el indice. La continuacion lleva una huella
+ * de los parametros de la consulta (el cliente o el rango de fechas), y no sirve para otra consulta del mismo tipo
+ */
+final class Continuacion {
+
+	static final char POR_NOMBRE_CLIENTE = 'C';
+	static final char POR_FECHA_SOLICITUD = 'F';
+	static final char POR_FECHA_FIN = 'V';
+	static final int TAMANIO_MAXIMO_PAGINA = 1000;
+
+	private final char tipo;
+	private final long huella;
+	private final long valor;
+	private final long id;
+
+	/**
+	 * @param tipo
+	 * @param parametros parametros de la consulta, de parametrosCliente o parametrosRango
+	 * @param valor
+	 * @param id
+	 */
+	Continuacion(char tipo, String parametros, long valor, long id) {
+		this(tipo, huella(parametros), valor, id);
+	}
+
+	private Continuacion(char tipo, long huella, long valor, long id) {
+		this.tipo = tipo;
+		this.huella = huella;
+		this.valor = valor;
+		this.id = id;
+	}
+
+	String codificar() {
+		String clave = tipo + ":" + huella + ":" + valor + ":" + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(clave.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * @param texto continuacion recibida
+	 * @param tipo el tipo de consulta que la genero
+	 * @param parametros los parametros de la consulta que la genero
+	 * @return
+	 */
+	static Continuacion decodificar(String texto, char tipo, String parametros) {
+
+		try {
+			String[] partes = new String(Base64.getUrlDecoder().decode(texto), StandardCharsets.US_ASCII).split(":");
+			if (partes.length == 4 && partes[0].length() == 1 && partes[0].charAt(0) == tipo
+					&& Long.parseLong(partes[1]) == huella(parametros)) {
+				return new Continuacion(tipo, huella(parametros), Long.parseLong(partes[2]), Long.parseLong(partes[3]));
+			}
+		} catch (IllegalArgumentException e) {
+			// NumberFormatException o Base64 invalido, se reporta abajo
+		}
+		throw new IllegalArgumentException("Continuacion invalida: " + texto);
+	}
+
+	static String parametrosCliente(String nombreCliente) {
+		return String.valueOf(nombreCliente);
+	}
+
+	static String parametrosRango(Date desde, Date hasta) {
+		return desde.getTime() + ":" + hasta.getTime();
+	}
+
+	private static long huella(String parametros) {
+		CRC32 crc = new CRC32();
+		crc.update(parametros.getBytes(StandardCharsets.UTF_8));
+		return crc.getValue();
+	}
+
+	static void validarTamanio(int tamanio) {
+		if (tamanio < 1 || tamanio > TAMANIO_MAXIMO_PAGINA) {
+			throw new IllegalArgumentException("El tamano de pagina debe estar entre 1 y " + TAMANIO_MAXIMO_PAGINA + ": " + tamanio);
+		}
+	}
+
+	long getValor() {
+		return valor;
+	}
+
+	long getId() {
+		return id;
+	}
+}
@@ -0,0 +1,34 @@
+package persistencia.repositorio;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+final class Lotes {
+
+	/**
+	 * Cantidad maxima de parametros en una clausula IN y de filas por lote de inserciones
+	 */
+	static final int TAMANIO_LOTE = 500;
+
+	private Lotes() {}
+
+	static <T> List<List<T>> dividir(Collection<T> elementos, int tamanioLote) {
+
+		List<List<T>> lotes = new ArrayList<>();
+		List<T> lote = new ArrayList<>(Math.min(tamanioLote, elementos.size()));
+
+		for (T elemento : elementos) {
+			lote.add(elemento);
+			if (lote.size() == tamanioLote) {
+				lotes.add(lote);
+				lote = new ArrayList<>(tamanioLote);
+			}
+		}
+		if (!lote.isEmpty()) {
+			lotes.add(lote);
+		}
+
+		return lotes;
+	}
+}
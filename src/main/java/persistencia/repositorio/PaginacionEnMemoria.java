@@ -0,0 +1,143 @@
+package persistencia.repositorio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.function.Function;
+
+import dominio.GarantiaExtendida;
+import dominio.Pagina;
+
+/**
+ * Paginacion por clave sobre indices ordenados en memoria, con las mismas continuaciones que las consultas JPA
+ */
+final class PaginacionEnMemoria {
+
+	private PaginacionEnMemoria() {
+	}
+
+	/**
+	 * @param indice garantias del cliente por id
+	 * @param nombreCliente
+	 * @return las garantias que siguen a la continuacion
+	 */
+	private static <V> NavigableMap<Long, V> despuesDeContinuacion(NavigableMap<Long, V> indice, String nombreCliente, String continuacion) {
+		if (continuacion == null) {
+			return indice;
+		}
+		return indice.tailMap(Continuacion.decodificar(continuacion, Continuacion.POR_NOMBRE_CLIENTE,
+				Continuacion.parametrosCliente(nombreCliente)).getId(), false);
+	}
+
+	/**
+	 * Pagina las garantias de un cliente, con continuaciones que solo sirven para el mismo cliente
+	 */
+	static <V> Pagina<GarantiaExtendida> paginarCliente(NavigableMap<Long, V> indice, String nombreCliente, String continuacion,
+			int tamanio, Function<V, GarantiaExtendida> leer) {
+
+		Continuacion.validarTamanio(tamanio);
+		String parametros = Continuacion.parametrosCliente(nombreCliente);
+		return paginar(despuesDeContinuacion(indice, nombreCliente, continuacion), tamanio, leer,
+				id -> new Continuacion(Continuacion.POR_NOMBRE_CLIENTE, parametros, 0, id));
+	}
+
+	/**
+	 * Pagina las garantias de un rango de fechas, con continuaciones que solo sirven para el mismo rango
+	 */
+	static <V> Pagina<GarantiaExtendida> paginarRango(NavigableMap<ClaveFecha, V> indice, Date desde, Date hasta,
+			String continuacion, int tamanio, char tipo, Function<V, GarantiaExtendida> leer) {
+
+		Continuacion.validarTamanio(tamanio);
+		String parametros = Continuacion.parametrosRango(desde, hasta);
+		return paginar(rangoDeFechas(indice, desde, hasta, continuacion, tipo), tamanio, leer,
+				clave -> new Continuacion(tipo, parametros, clave.getFecha(), clave.getId()));
+	}
+
+	/**
+	 * @param indice garantias por fecha e id
+	 * @param desde inclusive
+	 * @param hasta exclusive
+	 * @return las garantias del rango que siguen a la continuacion
+	 */
+	private static <V> NavigableMap<ClaveFecha, V> rangoDeFechas(NavigableMap<ClaveFecha, V> indice, Date desde, Date hasta,
+			String continuacion, char tipo) {
+
+		ClaveFecha inicio = new ClaveFecha(desde.getTime(), Long.MIN_VALUE);
+		boolean incluirInicio = true;
+		if (continuacion != null) {
+			Continuacion clave = Continuacion.decodificar(continuacion, tipo, Continuacion.parametrosRango(desde, hasta));
+			ClaveFecha ultima = new ClaveFecha(clave.getValor(), clave.getId());
+			if (ultima.compareTo(inicio) >= 0) {
+				inicio = ultima;
+				incluirInicio = false;
+			}
+		}
+		ClaveFecha fin = new ClaveFecha(hasta.getTime(), Long.MIN_VALUE);
+		if (inicio.compareTo(fin) >= 0) {
+			return Collections.emptyNavigableMap();
+		}
+		return indice.subMap(inicio, incluirInicio, fin, false);
+	}
+
+	/**
+	 * Toma del indice una garantia de mas para saber si hay una pagina siguiente
+	 * @param leer obtiene la garantia de cada valor del indice
+	 * @param continuacion crea la continuacion a partir de la clave de la ultima garantia de la pagina
+	 */
+	private static <K, V> Pagina<GarantiaExtendida> paginar(NavigableMap<K, V> indice, int tamanio, Function<V, GarantiaExtendida> leer,
+			Function<K, Continuacion> continuacion) {
+
+		Continuacion.validarTamanio(tamanio);
+		List<GarantiaExtendida> garantias = new ArrayList<>(tamanio);
+		K ultima = null;
+		for (Map.Entry<K, V> entrada : indice.entrySet()) {
+			if (garantias.size() == tamanio) {
+				return new Pagina<>(garantias, continuacion.apply(ultima).codificar());
+			}
+			garantias.add(leer.apply(entrada.getValue()));
+			ultima = entrada.getKey();
+		}
+		return new Pagina<>(garantias, null);
+	}
+
+	/**
+	 * Clave de los indices por fecha; el id desempata las garantias con la misma fecha
+	 */
+	static final class ClaveFecha implements Comparable<ClaveFecha> {
+
+		private final long fecha;
+		private final long id;
+
+		ClaveFecha(long fecha, long id) {
+			this.fecha = fecha;
+			this.id = id;
+		}
+
+		long getFecha() {
+			return fecha;
+		}
+
+		long getId() {
+			return id;
+		}
+
+		@Override
+		public int compareTo(ClaveFecha otra) {
+			int porFecha = Long.compare(fecha, otra.fecha);
+			return porFecha != 0 ? porFecha : Long.compare(id, otra.id);
+		}
+
+		@Override
+		public boolean equals(Object otro) {
+			return otro instanceof ClaveFecha && compareTo((ClaveFecha) otro) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(fecha) * 31 + Long.hashCode(id);
+		}
+	}
+}
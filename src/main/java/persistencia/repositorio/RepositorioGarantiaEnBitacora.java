@@ -0,0 +1,470 @@
+package persistencia.repositorio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+import dominio.GarantiaExtendida;
+import dominio.Pagina;
+import dominio.Producto;
+import dominio.Vendedor;
+import dominio.excepcion.GarantiaExtendidaException;
+import dominio.metrica.Metricas;
+import dominio.metrica.Temporizador;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import persistencia.repositorio.PaginacionEnMemoria.ClaveFecha;
+import persistencia.repositorio.SegmentoBitacora.Registro;
+
+/**
+ * Repositorio de garantias sobre una bitacora binaria de solo escritura al final, sin base de datos. Cada
+ * garantia es un registro de tamanio fijo que se agrega al segmento activo con una sola escritura secuencial en
+ * un archivo mapeado en memoria; un indice en memoria del codigo del producto a la posicion de su registro
+ * responde las consultas sin salir del proceso, y se reconstruye recorriendo los segmentos al abrir la bitacora.
+ * Un lote se escribe como registros encadenados que solo cuentan si el ultimo quedo completo; un lote que no
+ * termino se descarta al empezar el siguiente.
+ * <p>
+ * Los registros de lotes interrumpidos y las copias dejadas por una compactacion que no termino ocupan espacio
+ * sin estar en el indice; compactar copia los registros vivos de los segmentos que los tienen al segmento activo
+ * y borra esos segmentos. Sin sincronizar cada escritura, lo agregado sobrevive a la caida del proceso pero no a
+ * la del sistema operativo: un registro a medias al final de un segmento se descarta al abrir la bitacora.
+ */
+public class RepositorioGarantiaEnBitacora implements RepositorioGarantiaExtendida, Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(RepositorioGarantiaEnBitacora.class);
+
+	private static final String PREFIJO = "garantias-";
+	private static final String EXTENSION = ".bitacora";
+
+	private static final Temporizador TEMPORIZADOR_AGREGAR = Metricas.temporizador("bitacora.GarantiaExtendida.agregar");
+	private static final Temporizador TEMPORIZADOR_COMPACTAR = Metricas.temporizador("bitacora.GarantiaExtendida.compactar");
+
+	private final Path directorio;
+	private final int registrosPorSegmento;
+	private final boolean sincronizar;
+
+	private final ReentrantLock escritura = new ReentrantLock();
+	private final byte[] registro = new byte[SegmentoBitacora.TAMANIO_REGISTRO];
+	private final List<byte[]> lote = new ArrayList<>();
+	private final ConcurrentMap<Integer, SegmentoBitacora> segmentos = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Long> posiciones = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ConcurrentSkipListMap<Long, String>> porNombreCliente = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<ClaveFecha, String> porFechaSolicitud = new ConcurrentSkipListMap<>();
+	private final ConcurrentSkipListMap<ClaveFecha, String> porFechaFin = new ConcurrentSkipListMap<>();
+
+	private SegmentoBitacora activo;
+	private long ultimoId;
+	private boolean cerrado;
+
+	private RepositorioGarantiaEnBitacora(Path directorio, int registrosPorSegmento, boolean sincronizar) {
+		this.directorio = directorio;
+		this.registrosPorSegmento = registrosPorSegmento;
+		this.sincronizar = sincronizar;
+	}
+
+	/**
+	 * Abre la bitacora del directorio, o la crea si no existe, y reconstruye los indices recorriendo sus segmentos
+	 * @param registrosPorSegmento capacidad de cada segmento nuevo
+	 * @param sincronizar si cada garantia se lleva al disco antes de confirmarse
+	 */
+	public static RepositorioGarantiaEnBitacora abrir(Path directorio, int registrosPorSegmento, boolean sincronizar)
+			throws IOException {
+
+		if (registrosPorSegmento < 1) {
+			throw new IllegalArgumentException("Un segmento debe tener espacio para al menos un registro");
+		}
+		Files.createDirectories(directorio);
+		RepositorioGarantiaEnBitacora repositorio = new RepositorioGarantiaEnBitacora(directorio, registrosPorSegmento, sincronizar);
+		repositorio.recuperar();
+		return repositorio;
+	}
+
+	@Override
+	public Producto obtenerProductoConGarantiaPorCodigo(String codigo) {
+
+		GarantiaExtendida garantia = leer(codigo);
+		return garantia == null ? null : garantia.getProducto();
+	}
+
+	@Override
+	public boolean existeGarantia(String codigo) {
+		return posiciones.containsKey(codigo);
+	}
+
+	@Override
+	public void agregar(GarantiaExtendida garantia) {
+		agregarTodas(Collections.singletonList(garantia));
+	}
+
+	@Override
+	public GarantiaExtendida obtener(String codigo) {
+		return leer(codigo);
+	}
+
+	@Override
+	public Set<String> obtenerCodigosConGarantia(Collection<String> codigos) {
+
+		Set<String> codigosConGarantia = new HashSet<>();
+		for (String codigo : codigos) {
+			if (posiciones.containsKey(codigo)) {
+				codigosConGarantia.add(codigo);
+			}
+		}
+		return codigosConGarantia;
+	}
+
+	/**
+	 * Los duplicados se buscan y todo el lote se codifica antes de escribir el primer registro, asi que una garantia
+	 * duplicada o con un texto que no cabe en su campo rechaza el lote sin dejar nada en la bitacora; si la escritura
+	 * falla a medias, lo escrito no entra al indice
+	 */
+	@Override
+	public void agregarTodas(Collection<GarantiaExtendida> garantias) {
+
+		if (garantias.isEmpty()) {
+			return;
+		}
+		long inicio = TEMPORIZADOR_AGREGAR.iniciar();
+		escritura.lock();
+		try {
+			verificarAbierta();
+			Set<String> codigos = new HashSet<>();
+			for (GarantiaExtendida garantia : garantias) {
+				String codigo = garantia.getProducto().getCodigo();
+				if (posiciones.containsKey(codigo) || !codigos.add(codigo)) {
+					throw new GarantiaExtendidaException(Vendedor.EL_PRODUCTO_TIENE_GARANTIA);
+				}
+			}
+			while (lote.size() < garantias.size()) {
+				lote.add(new byte[SegmentoBitacora.TAMANIO_REGISTRO]);
+			}
+			int i = 0;
+			for (GarantiaExtendida garantia : garantias) {
+				SegmentoBitacora.codificar(garantia, ultimoId + i + 1, i == 0, i < garantias.size() - 1, lote.get(i));
+				i++;
+			}
+			List<Long> escritas = new ArrayList<>(garantias.size());
+			Set<SegmentoBitacora> modificados = new HashSet<>();
+			for (i = 0; i < garantias.size(); i++) {
+				ultimoId++;
+				escritas.add(escribir(lote.get(i)));
+				modificados.add(activo);
+			}
+			if (sincronizar) {
+				for (SegmentoBitacora segmento : modificados) {
+					segmento.sincronizar();
+				}
+			}
+			long id = ultimoId - garantias.size();
+			i = 0;
+			for (GarantiaExtendida garantia : garantias) {
+				publicar(++id, escritas.get(i++), garantia);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			escritura.unlock();
+			TEMPORIZADOR_AGREGAR.detener(inicio);
+		}
+	}
+
+	/**
+	 * Recorre los segmentos en el orden en que se escribieron, leyendo solo los registros vivos
+	 */
+	@Override
+	public long recorrer(Consumer<GarantiaExtendida> consumidor) {
+
+		long cantidad = 0;
+		for (SegmentoBitacora segmento : new TreeMap<>(segmentos).values()) {
+			int fin = segmento.getSiguiente();
+			for (int posicion = 0; posicion < fin; posicion += SegmentoBitacora.TAMANIO_REGISTRO) {
+				Registro leido = segmento.leer(posicion);
+				if (leido != null && Long.valueOf(posicion(segmento.getNumero(), posicion))
+						.equals(posiciones.get(leido.getGarantia().getProducto().getCodigo()))) {
+					consumidor.accept(leido.getGarantia());
+					cantidad++;
+				}
+			}
+		}
+		return cantidad;
+	}
+
+	@Override
+	public Pagina<GarantiaExtendida> buscarPorNombreCliente(String nombreCliente, String continuacion, int tamanio) {
+
+		NavigableMap<Long, String> codigos = porNombreCliente.get(nombreCliente);
+		if (codigos == null) {
+			codigos = Collections.emptyNavigableMap();
+		}
+		return PaginacionEnMemoria.paginarCliente(codigos, nombreCliente, continuacion, tamanio, this::leer);
+	}
+
+	@Override
+	public Pagina<GarantiaExtendida> buscarPorFechaSolicitud(Date desde, Date hasta, String continuacion, int tamanio) {
+		return buscarPorRangoDeFechas(porFechaSolicitud, desde, hasta, continuacion, tamanio, Continuacion.POR_FECHA_SOLICITUD);
+	}
+
+	@Override
+	public Pagina<GarantiaExtendida> buscarPorFechaFin(Date desde, Date hasta, String continuacion, int tamanio) {
+		return buscarPorRangoDeFechas(porFechaFin, desde, hasta, continuacion, tamanio, Continuacion.POR_FECHA_FIN);
+	}
+
+	/**
+	 * Copia al segmento activo los registros vivos de cada segmento con registros muertos y borra el segmento.
+	 * Las copias se sincronizan antes de borrar, asi que una compactacion interrumpida solo deja registros repetidos
+	 * que la siguiente apertura descarta
+	 * @return cantidad de segmentos compactados
+	 */
+	public int compactar() {
+
+		long inicio = TEMPORIZADOR_COMPACTAR.iniciar();
+		escritura.lock();
+		try {
+			verificarAbierta();
+			int compactados = 0;
+			for (SegmentoBitacora segmento : new TreeMap<>(segmentos).values()) {
+				if (segmento != activo && segmento.getVivos() < segmento.getEscritos()) {
+					compactar(segmento);
+					compactados++;
+				}
+			}
+			return compactados;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			escritura.unlock();
+			TEMPORIZADOR_COMPACTAR.detener(inicio);
+		}
+	}
+
+	/**
+	 * Lleva al disco los segmentos y deja de aceptar garantias
+	 */
+	@Override
+	public void close() {
+
+		escritura.lock();
+		try {
+			if (!cerrado) {
+				cerrado = true;
+				for (SegmentoBitacora segmento : segmentos.values()) {
+					segmento.sincronizar();
+				}
+			}
+		} finally {
+			escritura.unlock();
+		}
+	}
+
+	/**
+	 * @return cantidad de segmentos de la bitacora
+	 */
+	public int getSegmentos() {
+		return segmentos.size();
+	}
+
+	private void recuperar() throws IOException {
+
+		TreeMap<Integer, Path> archivos = new TreeMap<>();
+		try (DirectoryStream<Path> contenido = Files.newDirectoryStream(directorio, PREFIJO + "*" + EXTENSION)) {
+			for (Path archivo : contenido) {
+				String nombre = archivo.getFileName().toString();
+				archivos.put(Integer.valueOf(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSION.length())), archivo);
+			}
+		}
+		List<Pendiente> lote = new ArrayList<>();
+		for (Path archivo : archivos.values()) {
+			String nombre = archivo.getFileName().toString();
+			SegmentoBitacora segmento = SegmentoBitacora.abrir(archivo,
+					Integer.parseInt(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSION.length())), registrosPorSegmento);
+			segmentos.put(segmento.getNumero(), segmento);
+			activo = segmento;
+			boolean completo = segmento.recuperar((posicion, leido) -> {
+				ultimoId = Math.max(ultimoId, leido.getId());
+				if (leido.isInicia()) {
+					descartarLote(lote);
+				}
+				lote.add(new Pendiente(posicion(segmento.getNumero(), posicion), leido));
+				if (!leido.isContinua()) {
+					for (Pendiente pendiente : lote) {
+						recuperarRegistro(pendiente);
+					}
+					lote.clear();
+				}
+			});
+			if (!completo) {
+				LOGGER.warn("Se descarto el final incompleto del segmento " + archivo);
+				descartarLote(lote);
+			}
+		}
+		descartarLote(lote);
+		if (activo == null) {
+			activo = crearSegmento(1);
+		}
+	}
+
+	private void recuperarRegistro(Pendiente pendiente) {
+
+		GarantiaExtendida garantia = pendiente.registro.getGarantia();
+		if (posiciones.containsKey(garantia.getProducto().getCodigo())) {
+			// Copia de una compactacion que no alcanzo a borrar el segmento original
+			return;
+		}
+		publicar(pendiente.registro.getId(), pendiente.posicion, garantia);
+	}
+
+	private void descartarLote(List<Pendiente> lote) {
+
+		if (!lote.isEmpty()) {
+			LOGGER.warn("Se descartaron " + lote.size() + " garantias de un lote que no se termino de escribir");
+			lote.clear();
+		}
+	}
+
+	private long escribir(byte[] contenido) throws IOException {
+
+		if (activo.lleno()) {
+			activo = crearSegmento(activo.getNumero() + 1);
+		}
+		return posicion(activo.getNumero(), activo.escribir(contenido));
+	}
+
+	private SegmentoBitacora crearSegmento(int numero) throws IOException {
+
+		SegmentoBitacora segmento = SegmentoBitacora.abrir(directorio.resolve(String.format("%s%08d%s", PREFIJO, numero, EXTENSION)),
+				numero, registrosPorSegmento);
+		segmentos.put(numero, segmento);
+		return segmento;
+	}
+
+	private void compactar(SegmentoBitacora segmento) throws IOException {
+
+		List<String> copiados = new ArrayList<>();
+		List<Long> copias = new ArrayList<>();
+		Set<SegmentoBitacora> modificados = new HashSet<>();
+		for (int posicion = 0; posicion < segmento.getSiguiente(); posicion += SegmentoBitacora.TAMANIO_REGISTRO) {
+			segmento.leer(posicion, registro);
+			Registro leido = SegmentoBitacora.decodificar(registro);
+			String codigo = leido == null ? null : leido.getGarantia().getProducto().getCodigo();
+			if (codigo != null && Long.valueOf(posicion(segmento.getNumero(), posicion)).equals(posiciones.get(codigo))) {
+				SegmentoBitacora.desligarDelLote(registro);
+				copias.add(escribir(registro));
+				copiados.add(codigo);
+				modificados.add(activo);
+			}
+		}
+		for (SegmentoBitacora modificado : modificados) {
+			modificado.sincronizar();
+		}
+		for (int i = 0; i < copias.size(); i++) {
+			posiciones.put(copiados.get(i), copias.get(i));
+			segmentos.get(numero(copias.get(i))).registrarVivo();
+		}
+		// Las lecturas que ya tenian la posicion anterior esperan el bloqueo de escritura y la vuelven a buscar
+		segmentos.remove(segmento.getNumero());
+		segmento.borrar();
+	}
+
+	private void publicar(long id, long posicion, GarantiaExtendida garantia) {
+
+		String codigo = garantia.getProducto().getCodigo();
+		posiciones.put(codigo, posicion);
+		segmentos.get(numero(posicion)).registrarVivo();
+		if (garantia.getNombreCliente() != null) {
+			porNombreCliente.computeIfAbsent(garantia.getNombreCliente(), nombre -> new ConcurrentSkipListMap<>()).put(id, codigo);
+		}
+		if (garantia.getFechaSolicitudGarantia() != null) {
+			porFechaSolicitud.put(new ClaveFecha(garantia.getFechaSolicitudGarantia().getTime(), id), codigo);
+		}
+		if (garantia.getFechaFinGarantia() != null) {
+			porFechaFin.put(new ClaveFecha(garantia.getFechaFinGarantia().getTime(), id), codigo);
+		}
+	}
+
+	private GarantiaExtendida leer(String codigo) {
+
+		Long posicion = posiciones.get(codigo);
+		if (posicion == null) {
+			return null;
+		}
+		SegmentoBitacora segmento = segmentos.get(numero(posicion));
+		if (segmento == null) {
+			// Una compactacion movio el registro despues de leer su posicion; con el bloqueo de escritura ya termino
+			// y el indice y los segmentos coinciden
+			escritura.lock();
+			try {
+				posicion = posiciones.get(codigo);
+				if (posicion == null) {
+					return null;
+				}
+				segmento = segmentos.get(numero(posicion));
+				if (segmento == null) {
+					throw new IllegalStateException("La garantia del producto " + codigo + " esta en un segmento que no existe");
+				}
+			} finally {
+				escritura.unlock();
+			}
+		}
+		Registro leido = segmento.leer(desplazamiento(posicion));
+		if (leido == null) {
+			throw new IllegalStateException("El registro de la garantia del producto " + codigo + " esta corrupto");
+		}
+		return leido.getGarantia();
+	}
+
+	private void verificarAbierta() {
+		if (cerrado) {
+			throw new IllegalStateException("La bitacora de garantias esta cerrada");
+		}
+	}
+
+	private Pagina<GarantiaExtendida> buscarPorRangoDeFechas(NavigableMap<ClaveFecha, String> indice, Date desde, Date hasta,
+			String continuacion, int tamanio, char tipo) {
+
+		return PaginacionEnMemoria.paginarRango(indice, desde, hasta, continuacion, tamanio, tipo, this::leer);
+	}
+
+	private static long posicion(int numero, int desplazamiento) {
+		return (long) numero << 32 | desplazamiento;
+	}
+
+	private static int numero(long posicion) {
+		return (int) (posicion >>> 32);
+	}
+
+	private static int desplazamiento(long posicion) {
+		return (int) posicion;
+	}
+
+	/**
+	 * Registro de un lote que espera al ultimo registro del lote para entrar al indice
+	 */
+	private static final class Pendiente {
+
+		private final long posicion;
+		private final Registro registro;
+
+		Pendiente(long posicion, Registro registro) {
+			this.posicion = posicion;
+			this.registro = registro;
+		}
+	}
+}
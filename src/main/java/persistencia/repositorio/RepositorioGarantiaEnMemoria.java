@@ -0,0 +1,138 @@
+package persistencia.repositorio;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.persistence.NoResultException;
+
+import dominio.GarantiaExtendida;
+import dominio.Pagina;
+import dominio.Producto;
+import dominio.Vendedor;
+import dominio.excepcion.GarantiaExtendidaException;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import persistencia.repositorio.AlmacenEnMemoria.Registro;
+import persistencia.repositorio.PaginacionEnMemoria.ClaveFecha;
+
+/**
+ * Repositorio de garantias sobre el almacen en memoria. Como no hay transacciones, cada garantia queda visible
+ * para los demas hilos al agregarse, y una garantia duplicada se rechaza con la misma GarantiaExtendidaException
+ * que produce la restriccion unica de la base de datos
+ */
+public class RepositorioGarantiaEnMemoria implements RepositorioGarantiaExtendida {
+
+	private final AlmacenEnMemoria almacen;
+
+	public RepositorioGarantiaEnMemoria(AlmacenEnMemoria almacen) {
+		this.almacen = almacen;
+	}
+
+	@Override
+	public Producto obtenerProductoConGarantiaPorCodigo(String codigo) {
+
+		Registro registro = almacen.obtenerGarantia(codigo);
+		return registro == null ? null : registro.getGarantia().getProducto();
+	}
+
+	@Override
+	public boolean existeGarantia(String codigo) {
+		return almacen.obtenerGarantia(codigo) != null;
+	}
+
+	@Override
+	public void agregar(GarantiaExtendida garantia) {
+		agregarRegistro(garantia);
+	}
+
+	@Override
+	public GarantiaExtendida obtener(String codigo) {
+
+		Registro registro = almacen.obtenerGarantia(codigo);
+		return registro == null ? null : registro.getGarantia();
+	}
+
+	@Override
+	public Set<String> obtenerCodigosConGarantia(Collection<String> codigos) {
+
+		Set<String> codigosConGarantia = new HashSet<>();
+		for (String codigo : codigos) {
+			if (almacen.obtenerGarantia(codigo) != null) {
+				codigosConGarantia.add(codigo);
+			}
+		}
+		return codigosConGarantia;
+	}
+
+	/**
+	 * Si alguna garantia falla se quitan las que ya se habian agregado, como al deshacer la transaccion del lote
+	 */
+	@Override
+	public void agregarTodas(Collection<GarantiaExtendida> garantias) {
+
+		List<Registro> agregadas = new ArrayList<>(garantias.size());
+		try {
+			for (GarantiaExtendida garantia : garantias) {
+				agregadas.add(agregarRegistro(garantia));
+			}
+		} catch (RuntimeException e) {
+			for (Registro registro : agregadas) {
+				almacen.quitarGarantia(registro);
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public long recorrer(Consumer<GarantiaExtendida> consumidor) {
+
+		long cantidad = 0;
+		for (Registro registro : almacen.garantias()) {
+			consumidor.accept(registro.getGarantia());
+			cantidad++;
+		}
+		return cantidad;
+	}
+
+	@Override
+	public Pagina<GarantiaExtendida> buscarPorNombreCliente(String nombreCliente, String continuacion, int tamanio) {
+
+		return PaginacionEnMemoria.paginarCliente(almacen.garantiasDelCliente(nombreCliente), nombreCliente, continuacion, tamanio,
+				garantia -> garantia);
+	}
+
+	@Override
+	public Pagina<GarantiaExtendida> buscarPorFechaSolicitud(Date desde, Date hasta, String continuacion, int tamanio) {
+		return buscarPorRangoDeFechas(almacen.garantiasPorFechaSolicitud(), desde, hasta, continuacion, tamanio,
+				Continuacion.POR_FECHA_SOLICITUD);
+	}
+
+	@Override
+	public Pagina<GarantiaExtendida> buscarPorFechaFin(Date desde, Date hasta, String continuacion, int tamanio) {
+		return buscarPorRangoDeFechas(almacen.garantiasPorFechaFin(), desde, hasta, continuacion, tamanio, Continuacion.POR_FECHA_FIN);
+	}
+
+	private Registro agregarRegistro(GarantiaExtendida garantia) {
+
+		String codigo = garantia.getProducto().getCodigo();
+		if (almacen.obtenerProducto(codigo) == null) {
+			throw new NoResultException("No existe un producto con el codigo " + codigo);
+		}
+		Registro registro = almacen.agregarGarantia(garantia);
+		if (registro == null) {
+			throw new GarantiaExtendidaException(Vendedor.EL_PRODUCTO_TIENE_GARANTIA);
+		}
+		return registro;
+	}
+
+	private static Pagina<GarantiaExtendida> buscarPorRangoDeFechas(NavigableMap<ClaveFecha, GarantiaExtendida> indice, Date desde,
+			Date hasta, String continuacion, int tamanio, char tipo) {
+
+		return PaginacionEnMemoria.paginarRango(indice, desde, hasta, continuacion, tamanio, tipo, garantia -> garantia);
+	}
+}
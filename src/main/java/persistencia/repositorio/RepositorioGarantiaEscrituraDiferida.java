@@ -0,0 +1,404 @@
+package persistencia.repositorio;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import dominio.GarantiaExtendida;
+import dominio.Pagina;
+import dominio.Producto;
+import dominio.Vendedor;
+import dominio.excepcion.GarantiaExtendidaException;
+import dominio.metrica.Contador;
+import dominio.metrica.Metricas;
+import dominio.metrica.Temporizador;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.UnidadDeTrabajo;
+
+/**
+ * Agrupa en pocas transacciones las garantias que muchos hilos agregan a la vez. Cada garantia espera en una cola
+ * acotada hasta que un hilo confirmador la escribe junto con las demas, cuando el grupo llega a su tamanio o vence
+ * la espera maxima desde la primera. El futuro de cada garantia se completa solo despues de confirmar su grupo, de
+ * modo que nunca se reconoce una garantia que no quedo en la base de datos. Mientras esperan, las garantias cuentan
+ * como existentes para no aceptar otra garantia del mismo producto. Las vistas creadas con conRepositorio comparten
+ * la cola y el hilo confirmador, y solo cambian el repositorio con el que se consulta.
+ */
+public class RepositorioGarantiaEscrituraDiferida implements RepositorioGarantiaExtendida {
+
+	private static final long ESPERA_CIERRE_MILISEGUNDOS = 100;
+	private static final Temporizador TIEMPO_GRUPO = Metricas.temporizador("escrituraDiferida.GarantiaExtendida.grupo");
+	private static final Contador GARANTIAS_CONFIRMADAS = Metricas.contador("escrituraDiferida.GarantiaExtendida.confirmadas");
+	private static final Contador GARANTIAS_RECHAZADAS = Metricas.contador("escrituraDiferida.GarantiaExtendida.rechazadas");
+	private static final Contador GRUPOS_FALLIDOS = Metricas.contador("escrituraDiferida.GarantiaExtendida.gruposFallidos");
+
+	private final RepositorioGarantiaExtendida repositorio;
+	private final RepositorioGarantiaExtendida repositorioConfirmacion;
+	private final UnidadDeTrabajo unidadDeTrabajo;
+	private final int tamanioGrupo;
+	private final long esperaMaximaNanos;
+	private final BlockingQueue<Pendiente> cola;
+	private final ConcurrentMap<String, Pendiente> pendientes;
+	private final Thread confirmador;
+	private final RepositorioGarantiaEscrituraDiferida principal;
+	private volatile boolean cerrado;
+
+	public RepositorioGarantiaEscrituraDiferida(RepositorioGarantiaExtendida repositorio, UnidadDeTrabajo unidadDeTrabajo,
+			int capacidad, int tamanioGrupo, long esperaMaxima, TimeUnit unidad) {
+		this(repositorio, repositorio, unidadDeTrabajo, capacidad, tamanioGrupo, esperaMaxima, unidad);
+	}
+
+	/**
+	 * @param repositorio atiende las consultas en la transaccion del hilo que las hace
+	 * @param repositorioConfirmacion escribe cada grupo en la transaccion del hilo confirmador
+	 * @param unidadDeTrabajo transaccion del hilo confirmador
+	 * @param capacidad garantias que pueden esperar a la vez; si la cola esta llena la garantia se rechaza
+	 * @param tamanioGrupo garantias que se confirman como maximo en una transaccion
+	 * @param esperaMaxima tiempo que se espera a completar un grupo antes de confirmarlo
+	 * @param unidad
+	 */
+	public RepositorioGarantiaEscrituraDiferida(RepositorioGarantiaExtendida repositorio, RepositorioGarantiaExtendida repositorioConfirmacion,
+			UnidadDeTrabajo unidadDeTrabajo, int capacidad, int tamanioGrupo, long esperaMaxima, TimeUnit unidad) {
+
+		if (tamanioGrupo < 1) {
+			throw new IllegalArgumentException("El tamanio del grupo debe ser positivo: " + tamanioGrupo);
+		}
+		this.repositorio = repositorio;
+		this.repositorioConfirmacion = repositorioConfirmacion;
+		this.unidadDeTrabajo = unidadDeTrabajo;
+		this.tamanioGrupo = tamanioGrupo;
+		this.esperaMaximaNanos = unidad.toNanos(esperaMaxima);
+		this.cola = new ArrayBlockingQueue<>(capacidad);
+		this.pendientes = new ConcurrentHashMap<>();
+		this.principal = this;
+		this.confirmador = new Thread(this::confirmarGrupos, "escritura-diferida-garantias");
+		this.confirmador.setDaemon(true);
+		this.confirmador.start();
+	}
+
+	private RepositorioGarantiaEscrituraDiferida(RepositorioGarantiaEscrituraDiferida principal, RepositorioGarantiaExtendida repositorio) {
+
+		this.repositorio = repositorio;
+		this.repositorioConfirmacion = principal.repositorioConfirmacion;
+		this.unidadDeTrabajo = principal.unidadDeTrabajo;
+		this.tamanioGrupo = principal.tamanioGrupo;
+		this.esperaMaximaNanos = principal.esperaMaximaNanos;
+		this.cola = principal.cola;
+		this.pendientes = principal.pendientes;
+		this.principal = principal;
+		this.confirmador = principal.confirmador;
+	}
+
+	/**
+	 * Permite obtener una vista que comparte la cola, las garantias pendientes y el hilo confirmador, pero consulta
+	 * con el repositorio dado, por ejemplo el de la transaccion de otro sistema de persistencia
+	 * @param repositorio
+	 * @return
+	 */
+	public RepositorioGarantiaEscrituraDiferida conRepositorio(RepositorioGarantiaExtendida repositorio) {
+		return new RepositorioGarantiaEscrituraDiferida(principal, repositorio);
+	}
+
+	/**
+	 * Permite agregar una garantia sin esperar a que se confirme
+	 * @param garantia
+	 * @return se completa cuando la garantia quedo confirmada en la base de datos, o con el error que impidio
+	 * guardarla; con GarantiaExtendidaException si el producto ya tiene garantia y con RejectedExecutionException
+	 * si la cola esta llena o el repositorio esta cerrado
+	 */
+	public CompletableFuture<Void> agregarDiferida(GarantiaExtendida garantia) {
+
+		Pendiente pendiente = new Pendiente(garantia);
+		if (estaCerrada()) {
+			return rechazar(pendiente, new RejectedExecutionException("La escritura diferida de garantias esta cerrada"));
+		}
+		String codigo = pendiente.getCodigo();
+		// La garantia se registra como pendiente antes de consultar la base de datos y deja de estarlo solo despues de
+		// confirmarse, asi que en ningun momento dos garantias del mismo producto pasan la verificacion
+		if (pendientes.putIfAbsent(codigo, pendiente) != null) {
+			return rechazar(pendiente, new GarantiaExtendidaException(Vendedor.EL_PRODUCTO_TIENE_GARANTIA));
+		}
+		try {
+			if (repositorio.existeGarantia(codigo)) {
+				pendientes.remove(codigo, pendiente);
+				return rechazar(pendiente, new GarantiaExtendidaException(Vendedor.EL_PRODUCTO_TIENE_GARANTIA));
+			}
+		} catch (RuntimeException e) {
+			pendientes.remove(codigo, pendiente);
+			throw e;
+		}
+		if (!cola.offer(pendiente)) {
+			pendientes.remove(codigo, pendiente);
+			return rechazar(pendiente, new RejectedExecutionException("La cola de escritura diferida de garantias esta llena"));
+		}
+		if (estaCerrada() && cola.remove(pendiente)) {
+			// Se cerro mientras se encolaba y el confirmador ya no la va a atender
+			completar(pendiente, new RejectedExecutionException("La escritura diferida de garantias esta cerrada"));
+		}
+		return pendiente.resultado;
+	}
+
+	/**
+	 * Espera a que la garantia quede confirmada en la base de datos. La garantia se confirma en la transaccion del
+	 * hilo confirmador y no en la de quien la agrega, asi que deshacer la transaccion propia no la deshace
+	 */
+	@Override
+	public void agregar(GarantiaExtendida garantia) {
+		try {
+			agregarDiferida(garantia).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Los lotes ya se escriben con inserciones por lotes, por eso van directo al repositorio en la transaccion
+	 * del hilo actual
+	 */
+	@Override
+	public void agregarTodas(Collection<GarantiaExtendida> garantias) {
+
+		for (GarantiaExtendida garantia : garantias) {
+			if (pendientes.containsKey(garantia.getProducto().getCodigo())) {
+				throw new GarantiaExtendidaException(Vendedor.EL_PRODUCTO_TIENE_GARANTIA);
+			}
+		}
+		repositorio.agregarTodas(garantias);
+	}
+
+	@Override
+	public Producto obtenerProductoConGarantiaPorCodigo(String codigo) {
+
+		Pendiente pendiente = pendientes.get(codigo);
+		return pendiente != null ? pendiente.garantia.getProducto() : repositorio.obtenerProductoConGarantiaPorCodigo(codigo);
+	}
+
+	@Override
+	public boolean existeGarantia(String codigo) {
+		return pendientes.containsKey(codigo) || repositorio.existeGarantia(codigo);
+	}
+
+	@Override
+	public GarantiaExtendida obtener(String codigo) {
+
+		Pendiente pendiente = pendientes.get(codigo);
+		return pendiente != null ? pendiente.garantia : repositorio.obtener(codigo);
+	}
+
+	@Override
+	public Set<String> obtenerCodigosConGarantia(Collection<String> codigos) {
+
+		Set<String> codigosConGarantia = new HashSet<>(repositorio.obtenerCodigosConGarantia(codigos));
+		for (String codigo : codigos) {
+			if (pendientes.containsKey(codigo)) {
+				codigosConGarantia.add(codigo);
+			}
+		}
+		return codigosConGarantia;
+	}
+
+	/**
+	 * Solo recorre las garantias ya confirmadas
+	 */
+	@Override
+	public long recorrer(Consumer<GarantiaExtendida> consumidor) {
+		return repositorio.recorrer(consumidor);
+	}
+
+	@Override
+	public Pagina<GarantiaExtendida> buscarPorNombreCliente(String nombreCliente, String continuacion, int tamanio) {
+		return repositorio.buscarPorNombreCliente(nombreCliente, continuacion, tamanio);
+	}
+
+	@Override
+	public Pagina<GarantiaExtendida> buscarPorFechaSolicitud(Date desde, Date hasta, String continuacion, int tamanio) {
+		return repositorio.buscarPorFechaSolicitud(desde, hasta, continuacion, tamanio);
+	}
+
+	@Override
+	public Pagina<GarantiaExtendida> buscarPorFechaFin(Date desde, Date hasta, String continuacion, int tamanio) {
+		return repositorio.buscarPorFechaFin(desde, hasta, continuacion, tamanio);
+	}
+
+	/**
+	 * Permite saber cuantas garantias esperan a ser confirmadas
+	 * @return
+	 */
+	public int getPendientes() {
+		return pendientes.size();
+	}
+
+	/**
+	 * Permite saber si la escritura diferida ya no acepta garantias
+	 * @return
+	 */
+	public boolean estaCerrada() {
+		return principal.cerrado;
+	}
+
+	/**
+	 * Deja de aceptar garantias, confirma las que ya estaban en la cola y detiene el hilo confirmador. Cerrar una
+	 * vista cierra tambien el repositorio del que se obtuvo
+	 * @throws InterruptedException si se interrumpe mientras espera al confirmador
+	 */
+	public void cerrar() throws InterruptedException {
+
+		principal.cerrado = true;
+		confirmador.join();
+		List<Pendiente> restantes = new ArrayList<>();
+		cola.drainTo(restantes);
+		for (Pendiente pendiente : restantes) {
+			completar(pendiente, new RejectedExecutionException("La escritura diferida de garantias esta cerrada"));
+		}
+	}
+
+	/**
+	 * La conexion del hilo confirmador se conserva entre grupos y se devuelve al detenerse; el contexto de persistencia
+	 * se vacia al confirmar cada grupo
+	 */
+	private void confirmarGrupos() {
+		try {
+			atenderCola();
+		} finally {
+			unidadDeTrabajo.cerrar();
+		}
+	}
+
+	private void atenderCola() {
+
+		List<Pendiente> grupo = new ArrayList<>(tamanioGrupo);
+		while (!cerrado || !cola.isEmpty()) {
+			try {
+				Pendiente primera = cola.poll(ESPERA_CIERRE_MILISEGUNDOS, TimeUnit.MILLISECONDS);
+				if (primera == null) {
+					continue;
+				}
+				grupo.add(primera);
+				completarGrupo(grupo);
+			} catch (InterruptedException e) {
+				// Sin el hilo confirmador nadie atenderia la cola, asi que se cierra y se confirma lo que ya se tomo
+				cerrado = true;
+			}
+			try {
+				if (!grupo.isEmpty()) {
+					confirmar(grupo);
+				}
+			} finally {
+				grupo.clear();
+			}
+		}
+	}
+
+	private void completarGrupo(List<Pendiente> grupo) throws InterruptedException {
+
+		long limite = System.nanoTime() + esperaMaximaNanos;
+		while (grupo.size() < tamanioGrupo) {
+			cola.drainTo(grupo, tamanioGrupo - grupo.size());
+			long restante = limite - System.nanoTime();
+			if (grupo.size() >= tamanioGrupo || restante <= 0) {
+				return;
+			}
+			Pendiente siguiente = cola.poll(restante, TimeUnit.NANOSECONDS);
+			if (siguiente == null) {
+				return;
+			}
+			grupo.add(siguiente);
+		}
+	}
+
+	/**
+	 * Si el grupo falla se confirma cada garantia por separado, para que una garantia invalida no haga fallar a las demas
+	 */
+	private void confirmar(List<Pendiente> grupo) {
+
+		RuntimeException error = escribir(grupo);
+		if (error == null) {
+			for (Pendiente pendiente : grupo) {
+				completar(pendiente, null);
+			}
+		} else if (grupo.size() == 1) {
+			completar(grupo.get(0), error);
+		} else {
+			GRUPOS_FALLIDOS.incrementar();
+			for (Pendiente pendiente : grupo) {
+				confirmar(Collections.singletonList(pendiente));
+			}
+		}
+	}
+
+	private RuntimeException escribir(List<Pendiente> grupo) {
+
+		List<GarantiaExtendida> garantias = new ArrayList<>(grupo.size());
+		for (Pendiente pendiente : grupo) {
+			garantias.add(pendiente.garantia);
+		}
+		long inicio = TIEMPO_GRUPO.iniciar();
+		try {
+			unidadDeTrabajo.iniciar();
+			repositorioConfirmacion.agregarTodas(garantias);
+			unidadDeTrabajo.terminar();
+			return null;
+		} catch (RuntimeException e) {
+			// Si falla la confirmacion no se sabe si el grupo quedo guardado, y se informa como no guardado
+			deshacer(e);
+			return e;
+		} finally {
+			TIEMPO_GRUPO.detener(inicio);
+		}
+	}
+
+	private void deshacer(RuntimeException causa) {
+		try {
+			unidadDeTrabajo.deshacer();
+		} catch (RuntimeException e) {
+			causa.addSuppressed(e);
+		}
+	}
+
+	private void completar(Pendiente pendiente, RuntimeException error) {
+
+		pendientes.remove(pendiente.getCodigo(), pendiente);
+		if (error == null) {
+			GARANTIAS_CONFIRMADAS.incrementar();
+			pendiente.resultado.complete(null);
+		} else {
+			GARANTIAS_RECHAZADAS.incrementar();
+			pendiente.resultado.completeExceptionally(error);
+		}
+	}
+
+	private static CompletableFuture<Void> rechazar(Pendiente pendiente, RuntimeException error) {
+		GARANTIAS_RECHAZADAS.incrementar();
+		pendiente.resultado.completeExceptionally(error);
+		return pendiente.resultado;
+	}
+
+	private static final class Pendiente {
+
+		private final GarantiaExtendida garantia;
+		private final CompletableFuture<Void> resultado = new CompletableFuture<>();
+
+		private Pendiente(GarantiaExtendida garantia) {
+			this.garantia = garantia;
+		}
+
+		private String getCodigo() {
+			return garantia.getProducto().getCodigo();
+		}
+	}
+}
@@ -1,59 +1,476 @@
 package persistencia.repositorio;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
 import javax.persistence.EntityManager;
-import javax.persistence.Query;
+import javax.persistence.NoResultException;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.exception.ConstraintViolationException;
+
 import dominio.Producto;
 import dominio.GarantiaExtendida;
+import dominio.Pagina;
+import dominio.Vendedor;
+import dominio.metrica.Metricas;
+import dominio.metrica.Temporizador;
+import dominio.excepcion.GarantiaExtendidaException;
 import dominio.repositorio.RepositorioProducto;
 import dominio.repositorio.RepositorioGarantiaExtendida;
-import persistencia.builder.ProductoBuilder;
 import persistencia.entitad.ProductoEntity;
 import persistencia.entitad.GarantiaExtendidaEntity;
+import persistencia.filtro.FiltroGarantias;
 import persistencia.repositorio.jpa.RepositorioProductoJPA;
 
 public class RepositorioGarantiaPersistente implements RepositorioGarantiaExtendida {
 
 	private static final String CODIGO = "codigo";
-	private static final String GARANTIA_EXTENDIDA_FIND_BY_CODIGO = "GarantiaExtendida.findByCodigo";
+	private static final String CODIGOS = "codigos";
+	private static final String GARANTIA_EXTENDIDA_FIND_RESUMEN_BY_CODIGO = "GarantiaExtendida.findResumenByCodigo";
+	private static final String GARANTIA_EXTENDIDA_FIND_PRODUCTO_BY_CODIGO = "GarantiaExtendida.findProductoByCodigo";
+	private static final String GARANTIA_EXTENDIDA_FIND_CODIGOS_BY_CODIGOS = "GarantiaExtendida.findCodigosByCodigos";
+	private static final String GARANTIA_EXTENDIDA_FIND_CODIGOS = "GarantiaExtendida.findCodigos";
+	private static final String GARANTIA_EXTENDIDA_EXISTS_BY_CODIGO = "GarantiaExtendida.existsByCodigo";
+	private static final String GARANTIA_EXTENDIDA_FIND_RESUMENES = "GarantiaExtendida.findResumenes";
+	private static final String GARANTIA_EXTENDIDA_FIND_PAGINA_BY_NOMBRE_CLIENTE = "GarantiaExtendida.findPaginaByNombreCliente";
+	private static final String GARANTIA_EXTENDIDA_FIND_PAGINA_BY_FECHA_SOLICITUD = "GarantiaExtendida.findPaginaByFechaSolicitud";
+	private static final String GARANTIA_EXTENDIDA_FIND_PAGINA_BY_FECHA_FIN = "GarantiaExtendida.findPaginaByFechaFin";
+	private static final String NOMBRE_CLIENTE = "nombreCliente";
+	private static final String ULTIMO_ID = "ultimoId";
+	private static final String ULTIMA_FECHA = "ultimaFecha";
+	private static final String DESDE = "desde";
+	private static final String HASTA = "hasta";
+	private static final int COLUMNA_ID = 0;
+	private static final int COLUMNA_FECHA_SOLICITUD = 4;
+	private static final int COLUMNA_FECHA_FIN = 5;
+	private static final int TAMANIO_FETCH = Integer.getInteger("tienda.garantias.tamanioFetch", 1000);
+	private static final Temporizador TIEMPO_FIND_RESUMEN_BY_CODIGO = Metricas.temporizador("consulta." + GARANTIA_EXTENDIDA_FIND_RESUMEN_BY_CODIGO);
+	private static final Temporizador TIEMPO_FIND_PRODUCTO_BY_CODIGO = Metricas.temporizador("consulta." + GARANTIA_EXTENDIDA_FIND_PRODUCTO_BY_CODIGO);
+	private static final Temporizador TIEMPO_FIND_CODIGOS_BY_CODIGOS = Metricas.temporizador("consulta." + GARANTIA_EXTENDIDA_FIND_CODIGOS_BY_CODIGOS);
+	private static final Temporizador TIEMPO_EXISTS_BY_CODIGO = Metricas.temporizador("consulta." + GARANTIA_EXTENDIDA_EXISTS_BY_CODIGO);
+	private static final Temporizador TIEMPO_FIND_RESUMENES = Metricas.temporizador("consulta." + GARANTIA_EXTENDIDA_FIND_RESUMENES);
+	private static final Temporizador TIEMPO_FIND_PAGINA_BY_NOMBRE_CLIENTE = Metricas.temporizador("consulta." + GARANTIA_EXTENDIDA_FIND_PAGINA_BY_NOMBRE_CLIENTE);
+	private static final Temporizador TIEMPO_FIND_PAGINA_BY_FECHA_SOLICITUD = Metricas.temporizador("consulta." + GARANTIA_EXTENDIDA_FIND_PAGINA_BY_FECHA_SOLICITUD);
+	private static final Temporizador TIEMPO_FIND_PAGINA_BY_FECHA_FIN = Metricas.temporizador("consulta." + GARANTIA_EXTENDIDA_FIND_PAGINA_BY_FECHA_FIN);
+	private static final Temporizador TIEMPO_INSERCIONES = Metricas.temporizador("consulta.GarantiaExtendida.insertar");
 
-	private EntityManager entityManager;
+	private Supplier<EntityManager> entityManager;
 
 	private RepositorioProductoJPA repositorioProductoJPA;
+	
+	private FiltroGarantias filtroGarantias;
+
+	public RepositorioGarantiaPersistente(EntityManager entityManager) {
+		this(() -> entityManager, null);
+	}
 
+	/**
+	 * @param entityManager
+	 * @param repositorioProducto no se usa: las entidades de producto se obtienen siempre con el mismo EntityManager
+	 * @deprecated usar {@link #RepositorioGarantiaPersistente(EntityManager)}
+	 */
+	@Deprecated
 	public RepositorioGarantiaPersistente(EntityManager entityManager, RepositorioProducto repositorioProducto) {
+		this(entityManager);
+	}
+
+	/**
+	 * @param entityManager proveedor del EntityManager a usar en cada operacion, por ejemplo el del hilo actual
+	 * @param filtroGarantias
+	 */
+	public RepositorioGarantiaPersistente(Supplier<EntityManager> entityManager, FiltroGarantias filtroGarantias) {
 		this.entityManager = entityManager;
-		this.repositorioProductoJPA = (RepositorioProductoJPA) repositorioProducto;
+		this.repositorioProductoJPA = new RepositorioProductoPersistente(entityManager);
+		this.filtroGarantias = filtroGarantias;
 	}
 
 	@Override
 	public void agregar(GarantiaExtendida garantia) {
 		GarantiaExtendidaEntity garantiaEntity = buildGarantiaExtendidaEntity(garantia);
-		entityManager.persist(garantiaEntity);
-		
+		entityManager.get().persist(garantiaEntity);
+		enviarInserciones();
+		registrarEnFiltro(Collections.singletonList(garantia.getProducto().getCodigo()));
+	}
+	
+	@Override
+	public void agregarTodas(Collection<GarantiaExtendida> garantias) {
+
+		List<String> codigos = new ArrayList<>(garantias.size());
+		for (GarantiaExtendida garantia : garantias) {
+			codigos.add(garantia.getProducto().getCodigo());
+		}
+		Map<String, ProductoEntity> productoEntities = repositorioProductoJPA.obtenerProductoEntitiesPorCodigos(codigos);
+		for (String codigo : codigos) {
+			if (!productoEntities.containsKey(codigo)) {
+				throw new NoResultException("No existe un producto con el codigo " + codigo);
+			}
+		}
+
+		registrarEnFiltro(codigos);
+		List<GarantiaExtendidaEntity> enviadas = new ArrayList<>(Lotes.TAMANIO_LOTE);
+		for (List<GarantiaExtendida> lote : Lotes.dividir(garantias, Lotes.TAMANIO_LOTE)) {
+			for (GarantiaExtendida garantia : lote) {
+				GarantiaExtendidaEntity garantiaEntity = buildGarantiaExtendidaEntity(garantia, productoEntities.get(garantia.getProducto().getCodigo()));
+				entityManager.get().persist(garantiaEntity);
+				enviadas.add(garantiaEntity);
+			}
+			// Se envia el lote como un batch JDBC y se sacan del contexto de persistencia solo las garantias enviadas,
+			// no lo que el llamador ya tenia cargado
+			enviarInserciones();
+			for (GarantiaExtendidaEntity garantiaEntity : enviadas) {
+				entityManager.get().detach(garantiaEntity);
+			}
+			enviadas.clear();
+		}
+	}
+	
+	@Override
+	public Set<String> obtenerCodigosConGarantia(Collection<String> codigos) {
+
+		Set<String> codigosConGarantia = new HashSet<>();
+		for (List<String> lote : Lotes.dividir(descartarSinGarantia(codigos), Lotes.TAMANIO_LOTE)) {
+			TypedQuery<String> query = entityManager.get().createNamedQuery(GARANTIA_EXTENDIDA_FIND_CODIGOS_BY_CODIGOS, String.class);
+			query.setParameter(CODIGOS, lote);
+			long inicio = TIEMPO_FIND_CODIGOS_BY_CODIGOS.iniciar();
+			try {
+				codigosConGarantia.addAll(query.getResultList());
+			} finally {
+				TIEMPO_FIND_CODIGOS_BY_CODIGOS.detener(inicio);
+			}
+		}
+		return codigosConGarantia;
 	}
 	
 	@Override
 	public Producto obtenerProductoConGarantiaPorCodigo(String codigo) {
 		
-		GarantiaExtendidaEntity garantiaEntity = obtenerGarantiaEntityPorCodigo(codigo);
-		return ProductoBuilder.convertirADominio(garantiaEntity != null ? garantiaEntity.getProducto() : null);
+		if (filtroGarantias != null && !filtroGarantias.podriaContener(codigo)) {
+			return null;
+		}
+		
+		Producto producto = obtenerPrimero(GARANTIA_EXTENDIDA_FIND_PRODUCTO_BY_CODIGO, Producto.class, codigo, TIEMPO_FIND_PRODUCTO_BY_CODIGO);
+		if (producto == null && filtroGarantias != null) {
+			filtroGarantias.registrarFalsoPositivo();
+		}
+		return producto;
 	}
 	
-	@SuppressWarnings("rawtypes")
-	private GarantiaExtendidaEntity obtenerGarantiaEntityPorCodigo(String codigo) {
+	@Override
+	public boolean existeGarantia(String codigo) {
 
-		Query query = entityManager.createNamedQuery(GARANTIA_EXTENDIDA_FIND_BY_CODIGO);
+		if (filtroGarantias != null && !filtroGarantias.podriaContener(codigo)) {
+			return false;
+		}
+
+		TypedQuery<Long> query = entityManager.get().createNamedQuery(GARANTIA_EXTENDIDA_EXISTS_BY_CODIGO, Long.class);
 		query.setParameter(CODIGO, codigo);
+		query.setMaxResults(1);
 
-		List resultList = query.getResultList();
+		long inicio = TIEMPO_EXISTS_BY_CODIGO.iniciar();
+		boolean existe;
+		try {
+			existe = !query.getResultList().isEmpty();
+		} finally {
+			TIEMPO_EXISTS_BY_CODIGO.detener(inicio);
+		}
+		if (!existe && filtroGarantias != null) {
+			filtroGarantias.registrarFalsoPositivo();
+		}
+		return existe;
+	}
+	
+	/**
+	 * Permite reconstruir el filtro de garantias recorriendo los codigos con garantia sin cargarlos todos en memoria
+	 */
+	public void reconstruirFiltroGarantias() {
+
+		ScrollableResults codigos = entityManager.get().unwrap(Session.class)
+				.getNamedQuery(GARANTIA_EXTENDIDA_FIND_CODIGOS)
+				.setFetchSize(TAMANIO_FETCH)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			filtroGarantias.reconstruir(iterar(codigos));
+		} finally {
+			codigos.close();
+		}
+	}
+	
+	/**
+	 * Recorre las garantias con un cursor de solo avance, leyendo columnas en lugar de entidades para que el
+	 * contexto de persistencia no crezca con cada fila
+	 */
+	@Override
+	public long recorrer(Consumer<GarantiaExtendida> consumidor) {
 
-		return !resultList.isEmpty() ? (GarantiaExtendidaEntity) resultList.get(0) : null;
+		long inicio = TIEMPO_FIND_RESUMENES.iniciar();
+		ScrollableResults filas = entityManager.get().unwrap(Session.class)
+				.getNamedQuery(GARANTIA_EXTENDIDA_FIND_RESUMENES)
+				.setFetchSize(TAMANIO_FETCH)
+				.setReadOnly(true)
+				.setCacheMode(CacheMode.IGNORE)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		long cantidad = 0;
+		try {
+			while (filas.next()) {
+				consumidor.accept(convertirResumen(filas.get(), 0));
+				cantidad++;
+			}
+		} finally {
+			filas.close();
+			TIEMPO_FIND_RESUMENES.detener(inicio);
+		}
+		return cantidad;
+	}
+	
+	/**
+	 * Busca con paginacion por clave: cada pagina continua despues del id de la ultima fila en el indice
+	 * (nombreCliente, id), sin OFFSET, por lo que todas las paginas cuestan lo mismo. La consulta ordena por
+	 * nombreCliente e id, como el indice, para que la base de datos lo recorra en orden en vez de recorrer la clave primaria
+	 */
+	@Override
+	public Pagina<GarantiaExtendida> buscarPorNombreCliente(String nombreCliente, String continuacion, int tamanio) {
+
+		Continuacion.validarTamanio(tamanio);
+		String parametros = Continuacion.parametrosCliente(nombreCliente);
+		long ultimoId = continuacion == null ? Long.MIN_VALUE
+				: Continuacion.decodificar(continuacion, Continuacion.POR_NOMBRE_CLIENTE, parametros).getId();
+
+		TypedQuery<Object[]> query = entityManager.get().createNamedQuery(GARANTIA_EXTENDIDA_FIND_PAGINA_BY_NOMBRE_CLIENTE, Object[].class);
+		query.setParameter(NOMBRE_CLIENTE, nombreCliente);
+		query.setParameter(ULTIMO_ID, ultimoId);
+
+		return obtenerPagina(query, tamanio, Continuacion.POR_NOMBRE_CLIENTE, parametros, -1, TIEMPO_FIND_PAGINA_BY_NOMBRE_CLIENTE);
+	}
+	
+	/**
+	 * Busca con paginacion por clave sobre el indice (fechaSolicitudGarantia, id); el id desempata las garantias
+	 * solicitadas en el mismo instante. La condicion fechaSolicitudGarantia >= ultimaFecha es redundante, pero
+	 * permite que el recorrido del indice empiece en la ultima fila y no en el inicio del rango
+	 */
+	@Override
+	public Pagina<GarantiaExtendida> buscarPorFechaSolicitud(Date desde, Date hasta, String continuacion, int tamanio) {
+		return buscarPorRangoDeFechas(GARANTIA_EXTENDIDA_FIND_PAGINA_BY_FECHA_SOLICITUD, desde, hasta, continuacion, tamanio,
+				Continuacion.POR_FECHA_SOLICITUD, COLUMNA_FECHA_SOLICITUD, TIEMPO_FIND_PAGINA_BY_FECHA_SOLICITUD);
+	}
+	
+	/**
+	 * Igual que buscarPorFechaSolicitud, sobre el indice (fechaFinGarantia, id)
+	 */
+	@Override
+	public Pagina<GarantiaExtendida> buscarPorFechaFin(Date desde, Date hasta, String continuacion, int tamanio) {
+		return buscarPorRangoDeFechas(GARANTIA_EXTENDIDA_FIND_PAGINA_BY_FECHA_FIN, desde, hasta, continuacion, tamanio,
+				Continuacion.POR_FECHA_FIN, COLUMNA_FECHA_FIN, TIEMPO_FIND_PAGINA_BY_FECHA_FIN);
+	}
+	
+	private Pagina<GarantiaExtendida> buscarPorRangoDeFechas(String consulta, Date desde, Date hasta, String continuacion, int tamanio,
+			char tipo, int columnaFecha, Temporizador temporizador) {
+
+		Continuacion.validarTamanio(tamanio);
+		String parametros = Continuacion.parametrosRango(desde, hasta);
+		Date ultimaFecha = desde;
+		long ultimoId = Long.MIN_VALUE;
+		if (continuacion != null) {
+			Continuacion clave = Continuacion.decodificar(continuacion, tipo, parametros);
+			ultimaFecha = new Date(clave.getValor());
+			ultimoId = clave.getId();
+		}
+
+		TypedQuery<Object[]> query = entityManager.get().createNamedQuery(consulta, Object[].class);
+		query.setParameter(DESDE, desde);
+		query.setParameter(HASTA, hasta);
+		query.setParameter(ULTIMA_FECHA, ultimaFecha);
+		query.setParameter(ULTIMO_ID, ultimoId);
+
+		return obtenerPagina(query, tamanio, tipo, parametros, columnaFecha, temporizador);
+	}
+	
+	/**
+	 * @param parametros parametros de la consulta a los que queda atada la continuacion
+	 * @param columnaFecha columna de la fecha de ordenamiento que se guarda en la continuacion, o -1 si solo se ordena por id
+	 */
+	private static Pagina<GarantiaExtendida> obtenerPagina(TypedQuery<Object[]> query, int tamanio, char tipo, String parametros,
+			int columnaFecha, Temporizador temporizador) {
+
+		// Se pide una fila de mas para saber si hay una pagina siguiente sin contar
+		query.setMaxResults(tamanio + 1);
+		long inicio = temporizador.iniciar();
+		List<Object[]> filas;
+		try {
+			filas = query.getResultList();
+		} finally {
+			temporizador.detener(inicio);
+		}
+
+		List<GarantiaExtendida> garantias = new ArrayList<>(Math.min(filas.size(), tamanio));
+		for (int i = 0; i < filas.size() && i < tamanio; i++) {
+			garantias.add(convertirResumen(filas.get(i), 1));
+		}
+		String continuacion = null;
+		if (filas.size() > tamanio) {
+			Object[] ultima = filas.get(tamanio - 1);
+			long valor = columnaFecha >= 0 ? ((Date) ultima[columnaFecha]).getTime() : 0;
+			continuacion = new Continuacion(tipo, parametros, valor, (Long) ultima[COLUMNA_ID]).codificar();
+		}
+		return new Pagina<>(garantias, continuacion);
+	}
+	
+	/**
+	 * Convierte las columnas codigo, nombre y precio del producto, fechas, precio y cliente de la garantia,
+	 * empezando en la posicion dada
+	 */
+	private static GarantiaExtendida convertirResumen(Object[] fila, int desde) {
+		Producto producto = new Producto((String) fila[desde], (String) fila[desde + 1], (Double) fila[desde + 2]);
+		return new GarantiaExtendida(producto, (Date) fila[desde + 3], (Date) fila[desde + 4], (Double) fila[desde + 5], (String) fila[desde + 6]);
+	}
+	
+	private Collection<String> descartarSinGarantia(Collection<String> codigos) {
+
+		if (filtroGarantias == null) {
+			return codigos;
+		}
+		List<String> posiblesConGarantia = new ArrayList<>();
+		for (String codigo : codigos) {
+			if (filtroGarantias.podriaContener(codigo)) {
+				posiblesConGarantia.add(codigo);
+			}
+		}
+		return posiblesConGarantia;
+	}
+	
+	/**
+	 * Envia las inserciones pendientes para que la restriccion unica sobre el producto detecte dentro de la
+	 * transaccion una garantia creada en paralelo por otro hilo o proceso. Las demas violaciones de restricciones
+	 * no son garantias duplicadas y se propagan sin cambios
+	 */
+	private void enviarInserciones() {
+		long inicio = TIEMPO_INSERCIONES.iniciar();
+		try {
+			entityManager.get().flush();
+		} catch (PersistenceException e) {
+			if (esGarantiaDuplicada(e)) {
+				throw new GarantiaExtendidaException(Vendedor.EL_PRODUCTO_TIENE_GARANTIA);
+			}
+			throw e;
+		} finally {
+			TIEMPO_INSERCIONES.detener(inicio);
+		}
+	}
+	
+	private static boolean esGarantiaDuplicada(Throwable error) {
+		for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+			if (causa instanceof ConstraintViolationException) {
+				// La base de datos puede agregar al nombre el esquema o el indice que respalda la restriccion
+				String restriccion = ((ConstraintViolationException) causa).getConstraintName();
+				return restriccion != null && restriccion.toUpperCase(Locale.ROOT).contains(GarantiaExtendidaEntity.UK_GARANTIA_PRODUCTO);
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Los codigos se registran de inmediato, para que la misma transaccion vea sus garantias, y otra vez al
+	 * confirmarla, porque una reconstruccion del filtro que lea la tabla antes de la confirmacion no los incluye
+	 */
+	private void registrarEnFiltro(Collection<String> codigos) {
+
+		if (filtroGarantias == null) {
+			return;
+		}
+		for (String codigo : codigos) {
+			filtroGarantias.agregar(codigo);
+		}
+		final FiltroGarantias filtro = filtroGarantias;
+		entityManager.get().unwrap(Session.class).getTransaction().registerSynchronization(new Synchronization() {
+
+			@Override
+			public void beforeCompletion() {
+				// Solo interesa el resultado de la transaccion
+			}
+
+			@Override
+			public void afterCompletion(int estado) {
+				if (estado == Status.STATUS_COMMITTED) {
+					for (String codigo : codigos) {
+						filtro.agregar(codigo);
+					}
+				}
+			}
+		});
+	}
+	
+	private static Iterator<String> iterar(final ScrollableResults resultados) {
+
+		return new Iterator<String>() {
+
+			private Boolean hayMas;
+
+			@Override
+			public boolean hasNext() {
+				if (hayMas == null) {
+					hayMas = resultados.next();
+				}
+				return hayMas;
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				hayMas = null;
+				return (String) resultados.get(0);
+			}
+		};
+	}
+	
+	/**
+	 * Las lecturas por codigo usan proyecciones, que no crean entidades administradas ni copias para detectar cambios
+	 */
+	private <T> T obtenerPrimero(String consulta, Class<T> tipo, String codigo, Temporizador temporizador) {
+
+		TypedQuery<T> query = entityManager.get().createNamedQuery(consulta, tipo);
+		query.setParameter(CODIGO, codigo);
+		query.setMaxResults(1);
+
+		long inicio = temporizador.iniciar();
+		List<T> resultList;
+		try {
+			resultList = query.getResultList();
+		} finally {
+			temporizador.detener(inicio);
+		}
+
+		return !resultList.isEmpty() ? resultList.get(0) : null;
 	}
 
 	private GarantiaExtendidaEntity buildGarantiaExtendidaEntity(GarantiaExtendida garantia) {
 
-		ProductoEntity productoEntity = repositorioProductoJPA.obtenerProductoEntityPorCodigo(garantia.getProducto().getCodigo());
+		ProductoEntity productoEntity = repositorioProductoJPA.obtenerReferenciaPorCodigo(garantia.getProducto().getCodigo());
+
+		return buildGarantiaExtendidaEntity(garantia, productoEntity);
+	}
+
+	private GarantiaExtendidaEntity buildGarantiaExtendidaEntity(GarantiaExtendida garantia, ProductoEntity productoEntity) {
 
 		GarantiaExtendidaEntity garantiaEntity = new GarantiaExtendidaEntity();
 		garantiaEntity.setProducto(productoEntity);
@@ -69,12 +486,9 @@ public class RepositorioGarantiaPersistente implements RepositorioGarantiaExtend
 	@Override
 	public GarantiaExtendida obtener(String codigo) {
 		
-		GarantiaExtendidaEntity garantiaEntity = obtenerGarantiaEntityPorCodigo(codigo);
+		Object[] fila = obtenerPrimero(GARANTIA_EXTENDIDA_FIND_RESUMEN_BY_CODIGO, Object[].class, codigo, TIEMPO_FIND_RESUMEN_BY_CODIGO);
 
-		return new GarantiaExtendida(ProductoBuilder.convertirADominio(garantiaEntity.getProducto()),
-				garantiaEntity.getFechaSolicitudGarantia(),garantiaEntity.getFechaFinGarantia(),garantiaEntity.getPrecio(),
-				garantiaEntity.getNombreCliente()
-				);
+		return fila != null ? convertirResumen(fila, 0) : null;
 	}
 
 	
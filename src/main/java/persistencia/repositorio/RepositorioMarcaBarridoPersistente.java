@@ -0,0 +1,53 @@
+package persistencia.repositorio;
+
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+
+import dominio.MarcaBarrido;
+import dominio.repositorio.RepositorioMarcaBarrido;
+import persistencia.entitad.MarcaBarridoEntity;
+
+public class RepositorioMarcaBarridoPersistente implements RepositorioMarcaBarrido {
+
+	private Supplier<EntityManager> entityManager;
+
+	/**
+	 * @param entityManager proveedor del EntityManager a usar en cada operacion, por ejemplo el del hilo actual
+	 */
+	public RepositorioMarcaBarridoPersistente(Supplier<EntityManager> entityManager) {
+		this.entityManager = entityManager;
+	}
+
+	@Override
+	public MarcaBarrido obtener(String nombre) {
+
+		MarcaBarridoEntity marcaEntity = entityManager.get().find(MarcaBarridoEntity.class, nombre);
+		if (marcaEntity == null) {
+			return null;
+		}
+		return new MarcaBarrido(marcaEntity.getNombre(), marcaEntity.getProcesadoHasta(), marcaEntity.getVentanaHasta(),
+				marcaEntity.getContinuacion());
+	}
+
+	/**
+	 * Actualiza la entidad leida en la misma transaccion, de modo que su version detecta un barrido concurrente
+	 */
+	@Override
+	public void guardar(MarcaBarrido marca) {
+
+		MarcaBarridoEntity marcaEntity = entityManager.get().find(MarcaBarridoEntity.class, marca.getNombre());
+		boolean nueva = marcaEntity == null;
+		if (nueva) {
+			marcaEntity = new MarcaBarridoEntity();
+			marcaEntity.setNombre(marca.getNombre());
+		}
+		marcaEntity.setProcesadoHasta(marca.getProcesadoHasta());
+		marcaEntity.setVentanaHasta(marca.getVentanaHasta());
+		marcaEntity.setContinuacion(marca.getContinuacion());
+		if (nueva) {
+			entityManager.get().persist(marcaEntity);
+		}
+	}
+
+}
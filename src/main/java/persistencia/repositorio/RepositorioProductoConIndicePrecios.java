@@ -0,0 +1,103 @@
+package persistencia.repositorio;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import dominio.Producto;
+import dominio.repositorio.RepositorioProducto;
+import dominio.repositorio.UnidadDeTrabajo;
+import persistencia.indice.IndicePrecios;
+
+/**
+ * Repositorio de productos que responde los precios con el indice de precios fuera del heap. Si un codigo no
+ * esta en el indice, el precio se consulta en el repositorio delegado y se agrega al indice; los productos
+ * completos siempre se consultan en el delegado.
+ * El indice es compartido por todo el proceso: con la unidad de trabajo, un precio leido dentro de la transaccion del
+ * llamador se agrega solo cuando esa transaccion se confirma.
+ */
+public class RepositorioProductoConIndicePrecios implements RepositorioProducto {
+
+	private final RepositorioProducto delegado;
+	private final IndicePrecios indice;
+	private final UnidadDeTrabajo unidadDeTrabajo;
+
+	private final LongAdder aciertos = new LongAdder();
+	private final LongAdder fallos = new LongAdder();
+
+	/**
+	 * Para un delegado que solo lee datos confirmados: los precios leidos se agregan de inmediato
+	 * @param delegado
+	 * @param indice
+	 */
+	public RepositorioProductoConIndicePrecios(RepositorioProducto delegado, IndicePrecios indice) {
+		this(delegado, indice, null);
+	}
+
+	/**
+	 * @param delegado
+	 * @param indice
+	 * @param unidadDeTrabajo la de las transacciones en las que lee el delegado, o null si solo lee datos confirmados
+	 */
+	public RepositorioProductoConIndicePrecios(RepositorioProducto delegado, IndicePrecios indice, UnidadDeTrabajo unidadDeTrabajo) {
+		this.delegado = delegado;
+		this.indice = indice;
+		this.unidadDeTrabajo = unidadDeTrabajo;
+	}
+
+	@Override
+	public Producto obtenerPorCodigo(String codigo) {
+		return delegado.obtenerPorCodigo(codigo);
+	}
+
+	@Override
+	public double obtenerPrecioPorCodigo(String codigo) {
+
+		double precio = indice.obtener(codigo);
+		if (!Double.isNaN(precio)) {
+			aciertos.increment();
+			return precio;
+		}
+		fallos.increment();
+		// Si un precio se invalida entre la consulta y la confirmacion, la consulta pudo leer el anterior y no se guarda
+		final long version = indice.getVersion();
+		final double leido = delegado.obtenerPrecioPorCodigo(codigo);
+		Runnable actualizar = () -> indice.actualizarSiVigente(codigo, leido, version);
+		if (unidadDeTrabajo == null) {
+			actualizar.run();
+		} else {
+			unidadDeTrabajo.alConfirmar(actualizar);
+		}
+		return leido;
+	}
+
+	/**
+	 * El producto no se agrega al indice hasta que se consulte su precio y se confirme la transaccion de esa
+	 * consulta
+	 */
+	@Override
+	public void agregar(Producto producto) {
+		delegado.agregar(producto);
+	}
+
+	@Override
+	public Map<String, Producto> obtenerPorCodigos(Collection<String> codigos) {
+		return delegado.obtenerPorCodigos(codigos);
+	}
+
+	/**
+	 * Permite olvidar el precio de un producto, por ejemplo cuando cambia
+	 * @param codigo
+	 */
+	public void invalidar(String codigo) {
+		indice.invalidar(codigo);
+	}
+
+	public long getAciertos() {
+		return aciertos.sum();
+	}
+
+	public long getFallos() {
+		return fallos.sum();
+	}
+}
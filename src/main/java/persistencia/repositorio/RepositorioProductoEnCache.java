@@ -0,0 +1,356 @@
+package persistencia.repositorio;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import dominio.Producto;
+import dominio.repositorio.RepositorioProducto;
+import dominio.repositorio.UnidadDeTrabajo;
+
+/**
+ * Repositorio de productos de lectura a traves de cache: guarda hasta una cantidad maxima de productos
+ * con desalojo LRU y tiempo de vida, y agrupa las cargas concurrentes de un mismo codigo en una sola
+ * consulta al repositorio delegado.
+ * Si el delegado lee dentro de la transaccion del llamador, con la unidad de trabajo los productos leidos se
+ * guardan en la cache solo cuando esa transaccion se confirma, para que otros hilos no vean productos que aun no se
+ * han confirmado o que se deshacen. Por lo mismo, un hilo con una transaccion activa lee en su propio contexto y no
+ * espera ni comparte las cargas de otros hilos: veria lo que otra transaccion aun no confirma, y no lo que la suya
+ * agrego.
+ */
+public class RepositorioProductoEnCache implements RepositorioProducto {
+
+	public static final int CAPACIDAD_PREDETERMINADA = 10000;
+	public static final long MINUTOS_DE_VIDA_PREDETERMINADOS = 10;
+
+	private final RepositorioProducto delegado;
+	private final UnidadDeTrabajo unidadDeTrabajo;
+	private final long nanosDeVida;
+	private final Map<String, Entrada> entradas;
+	private final ConcurrentMap<String, FutureTask<Producto>> cargasEnCurso = new ConcurrentHashMap<>();
+
+	private final LongAdder aciertos = new LongAdder();
+	private final LongAdder fallos = new LongAdder();
+	private final LongAdder desalojos = new LongAdder();
+
+	/**
+	 * Cantidad de invalidaciones, protegida por el bloqueo de entradas. Un producto leido antes de una invalidacion
+	 * no se guarda
+	 */
+	private long version;
+
+	/**
+	 * Para un delegado que solo lee datos confirmados: los productos leidos se guardan de inmediato
+	 * @param delegado
+	 */
+	public RepositorioProductoEnCache(RepositorioProducto delegado) {
+		this(delegado, null);
+	}
+
+	/**
+	 * @param delegado
+	 * @param unidadDeTrabajo la de las transacciones en las que lee el delegado
+	 */
+	public RepositorioProductoEnCache(RepositorioProducto delegado, UnidadDeTrabajo unidadDeTrabajo) {
+		this(delegado, unidadDeTrabajo, CAPACIDAD_PREDETERMINADA, MINUTOS_DE_VIDA_PREDETERMINADOS, TimeUnit.MINUTES);
+	}
+
+	public RepositorioProductoEnCache(RepositorioProducto delegado, int capacidad, long tiempoDeVida, TimeUnit unidad) {
+		this(delegado, null, capacidad, tiempoDeVida, unidad);
+	}
+
+	/**
+	 * @param delegado
+	 * @param unidadDeTrabajo la de las transacciones en las que lee el delegado, o null si solo lee datos confirmados
+	 * @param capacidad
+	 * @param tiempoDeVida
+	 * @param unidad
+	 */
+	public RepositorioProductoEnCache(RepositorioProducto delegado, UnidadDeTrabajo unidadDeTrabajo, final int capacidad,
+			long tiempoDeVida, TimeUnit unidad) {
+
+		this.delegado = delegado;
+		this.unidadDeTrabajo = unidadDeTrabajo;
+		this.nanosDeVida = unidad.toNanos(tiempoDeVida);
+		this.entradas = new LinkedHashMap<String, Entrada>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entrada> masAntigua) {
+				boolean desalojar = size() > capacidad;
+				if (desalojar) {
+					desalojos.increment();
+				}
+				return desalojar;
+			}
+		};
+	}
+
+	@Override
+	public Producto obtenerPorCodigo(String codigo) {
+
+		Producto producto = buscarVigente(codigo);
+		if (producto != null) {
+			aciertos.increment();
+			return producto;
+		}
+		fallos.increment();
+		return cargar(codigo);
+	}
+
+	@Override
+	public Map<String, Producto> obtenerPorCodigos(Collection<String> codigos) {
+
+		Map<String, Producto> productos = new HashMap<>();
+		List<String> faltantes = new ArrayList<>();
+		for (String codigo : codigos) {
+			Producto producto = buscarVigente(codigo);
+			if (producto != null) {
+				aciertos.increment();
+				productos.put(codigo, producto);
+			} else {
+				fallos.increment();
+				faltantes.add(codigo);
+			}
+		}
+
+		if (!faltantes.isEmpty()) {
+			productos.putAll(cargarTodos(faltantes));
+		}
+		return productos;
+	}
+
+	/**
+	 * El producto se invalida de inmediato y no se guarda hasta que se vuelva a leer. Si la transaccion se deshace,
+	 * las lecturas que lo vieron dentro de ella no se guardan
+	 */
+	@Override
+	public void agregar(Producto producto) {
+		delegado.agregar(producto);
+		invalidar(producto.getCodigo());
+	}
+
+	/**
+	 * Permite sacar un producto de la cache, por ejemplo cuando cambia su precio
+	 * @param codigo
+	 */
+	public void invalidar(String codigo) {
+		synchronized (entradas) {
+			cargasEnCurso.remove(codigo);
+			entradas.remove(codigo);
+			version++;
+		}
+	}
+
+	public long getAciertos() {
+		return aciertos.sum();
+	}
+
+	public long getFallos() {
+		return fallos.sum();
+	}
+
+	public long getDesalojos() {
+		return desalojos.sum();
+	}
+
+	public int getTamanio() {
+		synchronized (entradas) {
+			return entradas.size();
+		}
+	}
+
+	private Producto buscarVigente(String codigo) {
+
+		synchronized (entradas) {
+			Entrada entrada = entradas.get(codigo);
+			if (entrada == null) {
+				return null;
+			}
+			if (entrada.expiraEn - System.nanoTime() <= 0) {
+				entradas.remove(codigo);
+				return null;
+			}
+			return entrada.producto;
+		}
+	}
+
+	private long versionActual() {
+		synchronized (entradas) {
+			return version;
+		}
+	}
+
+	private Producto cargar(final String codigo) {
+
+		if (leeEnTransaccion()) {
+			long versionAntesDeLeer = versionActual();
+			Producto producto = delegado.obtenerPorCodigo(codigo);
+			if (producto != null) {
+				guardarAlConfirmar(Collections.singletonMap(codigo, producto), versionAntesDeLeer);
+			}
+			return producto;
+		}
+		FutureTask<Producto> carga = new FutureTask<>(() -> delegado.obtenerPorCodigo(codigo));
+		long versionAntesDeLeer = versionActual();
+		FutureTask<Producto> enCurso = cargasEnCurso.putIfAbsent(codigo, carga);
+		if (enCurso == null) {
+			enCurso = carga;
+			carga.run();
+		}
+
+		try {
+			Producto producto = enCurso.get();
+			if (enCurso == carga) {
+				cargasEnCurso.remove(codigo, carga);
+				if (producto != null) {
+					guardarAlConfirmar(Collections.singletonMap(codigo, producto), versionAntesDeLeer);
+				}
+			}
+			return producto;
+		} catch (ExecutionException e) {
+			cargasEnCurso.remove(codigo, carga);
+			throw propagar(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Cada codigo se registra como carga en curso, igual que en cargar, para que una invalidacion durante la consulta
+	 * impida guardar su resultado y los hilos que piden el mismo codigo esperen esta consulta en vez de repetirla.
+	 * Los codigos que otro hilo ya esta cargando se esperan y no se consultan otra vez
+	 */
+	private Map<String, Producto> cargarTodos(List<String> codigos) {
+
+		if (leeEnTransaccion()) {
+			long versionAntesDeLeer = versionActual();
+			Map<String, Producto> leidos = new HashMap<>();
+			for (Map.Entry<String, Producto> producto : delegado.obtenerPorCodigos(codigos).entrySet()) {
+				if (producto.getValue() != null) {
+					leidos.put(producto.getKey(), producto.getValue());
+				}
+			}
+			if (!leidos.isEmpty()) {
+				guardarAlConfirmar(leidos, versionAntesDeLeer);
+			}
+			return leidos;
+		}
+		List<String> propios = new ArrayList<>();
+		Map<String, FutureTask<Producto>> cargas = new LinkedHashMap<>();
+		long versionAntesDeLeer = versionActual();
+		FutureTask<Map<String, Producto>> lote = new FutureTask<>(() -> delegado.obtenerPorCodigos(propios));
+		for (String codigo : codigos) {
+			FutureTask<Producto> carga = new FutureTask<>(() -> {
+				try {
+					return lote.get().get(codigo);
+				} catch (ExecutionException e) {
+					throw propagar(e.getCause());
+				}
+			});
+			FutureTask<Producto> enCurso = cargasEnCurso.putIfAbsent(codigo, carga);
+			if (enCurso == null) {
+				enCurso = carga;
+				propios.add(codigo);
+			}
+			cargas.put(codigo, enCurso);
+		}
+
+		try {
+			if (!propios.isEmpty()) {
+				lote.run();
+				for (String codigo : propios) {
+					cargas.get(codigo).run();
+				}
+			}
+			Map<String, Producto> cargados = new HashMap<>();
+			for (Map.Entry<String, FutureTask<Producto>> carga : cargas.entrySet()) {
+				Producto producto = carga.getValue().get();
+				if (producto != null) {
+					cargados.put(carga.getKey(), producto);
+				}
+			}
+			Map<String, Producto> leidos = new HashMap<>();
+			for (String codigo : propios) {
+				Producto producto = cargados.get(codigo);
+				if (producto != null) {
+					leidos.put(codigo, producto);
+				}
+			}
+			if (!leidos.isEmpty()) {
+				guardarAlConfirmar(leidos, versionAntesDeLeer);
+			}
+			return cargados;
+		} catch (ExecutionException e) {
+			throw propagar(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} finally {
+			for (String codigo : propios) {
+				cargasEnCurso.remove(codigo, cargas.get(codigo));
+			}
+		}
+	}
+
+	private boolean leeEnTransaccion() {
+		return unidadDeTrabajo != null && unidadDeTrabajo.enTransaccion();
+	}
+
+	/**
+	 * Guarda los productos leidos cuando se confirma la transaccion en la que se leyeron, salvo que algun producto se
+	 * haya invalidado desde antes de leerlos, porque la lectura pudo ver sus datos anteriores. Como la version es una
+	 * sola, una invalidacion de otro codigo solo cuesta volver a leerlos
+	 */
+	private void guardarAlConfirmar(Map<String, Producto> productos, long versionAntesDeLeer) {
+
+		Runnable guardar = () -> {
+			synchronized (entradas) {
+				if (version == versionAntesDeLeer) {
+					long expiraEn = System.nanoTime() + nanosDeVida;
+					for (Map.Entry<String, Producto> producto : productos.entrySet()) {
+						entradas.put(producto.getKey(), new Entrada(producto.getValue(), expiraEn));
+					}
+				}
+			}
+		};
+		if (unidadDeTrabajo == null) {
+			guardar.run();
+		} else {
+			unidadDeTrabajo.alConfirmar(guardar);
+		}
+	}
+
+	private static RuntimeException propagar(Throwable causa) {
+		if (causa instanceof RuntimeException) {
+			return (RuntimeException) causa;
+		}
+		if (causa instanceof Error) {
+			throw (Error) causa;
+		}
+		return new IllegalStateException(causa);
+	}
+
+	private static final class Entrada {
+
+		private final Producto producto;
+		private final long expiraEn;
+
+		Entrada(Producto producto, long expiraEn) {
+			this.producto = producto;
+			this.expiraEn = expiraEn;
+		}
+	}
+}
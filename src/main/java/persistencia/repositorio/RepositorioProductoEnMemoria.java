@@ -0,0 +1,53 @@
+package persistencia.repositorio;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.EntityExistsException;
+import javax.persistence.NoResultException;
+
+import dominio.Producto;
+import dominio.repositorio.RepositorioProducto;
+
+/**
+ * Repositorio de productos sobre el almacen en memoria. Reporta los mismos errores que el repositorio persistente
+ */
+public class RepositorioProductoEnMemoria implements RepositorioProducto {
+
+	private final AlmacenEnMemoria almacen;
+
+	public RepositorioProductoEnMemoria(AlmacenEnMemoria almacen) {
+		this.almacen = almacen;
+	}
+
+	@Override
+	public Producto obtenerPorCodigo(String codigo) {
+
+		Producto producto = almacen.obtenerProducto(codigo);
+		if (producto == null) {
+			throw new NoResultException("No existe un producto con el codigo " + codigo);
+		}
+		return producto;
+	}
+
+	@Override
+	public void agregar(Producto producto) {
+		if (!almacen.agregarProducto(producto)) {
+			throw new EntityExistsException("Ya existe un producto con el codigo " + producto.getCodigo());
+		}
+	}
+
+	@Override
+	public Map<String, Producto> obtenerPorCodigos(Collection<String> codigos) {
+
+		Map<String, Producto> productos = new HashMap<>();
+		for (String codigo : codigos) {
+			Producto producto = almacen.obtenerProducto(codigo);
+			if (producto != null) {
+				productos.put(codigo, producto);
+			}
+		}
+		return productos;
+	}
+}
@@ -1,9 +1,25 @@
 package persistencia.repositorio;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.Supplier;
+
 import javax.persistence.EntityManager;
+import javax.persistence.NoResultException;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 
 import dominio.Producto;
+import dominio.metrica.Metricas;
+import dominio.metrica.Temporizador;
 import dominio.repositorio.RepositorioProducto;
 import persistencia.builder.ProductoBuilder;
 import persistencia.entitad.ProductoEntity;
@@ -12,11 +28,27 @@ import persistencia.repositorio.jpa.RepositorioProductoJPA;
 public class RepositorioProductoPersistente implements RepositorioProducto, RepositorioProductoJPA {
 
 	private static final String CODIGO = "codigo";
+	private static final String CODIGOS = "codigos";
 	private static final String PRODUCTO_FIND_BY_CODIGO = "Producto.findByCodigo";
+	private static final String PRODUCTO_FIND_BY_CODIGOS = "Producto.findByCodigos";
+	private static final String PRODUCTO_FIND_PRECIO_BY_CODIGO = "Producto.findPrecioByCodigo";
+	private static final String PRODUCTO_FIND_PRECIOS = "Producto.findPrecios";
+	private static final int TAMANIO_FETCH = Integer.getInteger("tienda.productos.tamanioFetch", 1000);
+	private static final Temporizador TIEMPO_FIND_BY_CODIGO = Metricas.temporizador("consulta." + PRODUCTO_FIND_BY_CODIGO);
+	private static final Temporizador TIEMPO_FIND_BY_CODIGOS = Metricas.temporizador("consulta." + PRODUCTO_FIND_BY_CODIGOS);
+	private static final Temporizador TIEMPO_FIND_PRECIO_BY_CODIGO = Metricas.temporizador("consulta." + PRODUCTO_FIND_PRECIO_BY_CODIGO);
+	private static final Temporizador TIEMPO_FIND_PRECIOS = Metricas.temporizador("consulta." + PRODUCTO_FIND_PRECIOS);
 	
-	private EntityManager entityManager;
+	private Supplier<EntityManager> entityManager;
 
 	public RepositorioProductoPersistente(EntityManager entityManager) {
+		this(() -> entityManager);
+	}
+
+	/**
+	 * @param entityManager proveedor del EntityManager a usar en cada operacion, por ejemplo el del hilo actual
+	 */
+	public RepositorioProductoPersistente(Supplier<EntityManager> entityManager) {
 		this.entityManager = entityManager;
 	}
 
@@ -27,18 +59,111 @@ public class RepositorioProductoPersistente implements RepositorioProducto, Repo
 		return ProductoBuilder.convertirADominio(productoEntity);
 	}
 	
+	/**
+	 * Consulta solo la columna del precio, sin construir la entidad ni el producto
+	 */
+	@Override
+	public double obtenerPrecioPorCodigo(String codigo) {
+
+		TypedQuery<Double> query = entityManager.get().createNamedQuery(PRODUCTO_FIND_PRECIO_BY_CODIGO, Double.class);
+		query.setParameter(CODIGO, codigo);
+
+		long inicio = TIEMPO_FIND_PRECIO_BY_CODIGO.iniciar();
+		try {
+			return query.getSingleResult();
+		} finally {
+			TIEMPO_FIND_PRECIO_BY_CODIGO.detener(inicio);
+		}
+	}
+
+	/**
+	 * Permite recorrer el codigo y el precio de todos los productos, leyendo por bloques sin cargarlos en memoria
+	 * @param consumidor recibe el codigo y el precio de cada producto
+	 * @return cantidad de productos recorridos
+	 */
+	public long recorrerPrecios(ObjDoubleConsumer<String> consumidor) {
+
+		long inicio = TIEMPO_FIND_PRECIOS.iniciar();
+		ScrollableResults filas = entityManager.get().unwrap(Session.class)
+				.getNamedQuery(PRODUCTO_FIND_PRECIOS)
+				.setFetchSize(TAMANIO_FETCH)
+				.setReadOnly(true)
+				.setCacheMode(CacheMode.IGNORE)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		long cantidad = 0;
+		try {
+			while (filas.next()) {
+				consumidor.accept((String) filas.get(0), (Double) filas.get(1));
+				cantidad++;
+			}
+		} finally {
+			filas.close();
+			TIEMPO_FIND_PRECIOS.detener(inicio);
+		}
+		return cantidad;
+	}
+	
 	@Override
 	public ProductoEntity obtenerProductoEntityPorCodigo(String codigo) {
 		
-		Query query = entityManager.createNamedQuery(PRODUCTO_FIND_BY_CODIGO);
+		Query query = entityManager.get().createNamedQuery(PRODUCTO_FIND_BY_CODIGO);
 		query.setParameter(CODIGO, codigo);
 
-		return (ProductoEntity) query.getSingleResult();
+		long inicio = TIEMPO_FIND_BY_CODIGO.iniciar();
+		try {
+			return (ProductoEntity) query.getSingleResult();
+		} finally {
+			TIEMPO_FIND_BY_CODIGO.detener(inicio);
+		}
+	}
+
+	@Override
+	public ProductoEntity obtenerReferenciaPorCodigo(String codigo) {
+
+		// Hibernate resuelve el codigo con los productos ya cargados y solo consulta el id si no lo encuentra
+		ProductoEntity productoEntity = entityManager.get().unwrap(Session.class)
+				.bySimpleNaturalId(ProductoEntity.class)
+				.getReference(codigo);
+		if (productoEntity == null) {
+			throw new NoResultException("No existe un producto con el codigo " + codigo);
+		}
+		return productoEntity;
+	}
+
+	@Override
+	public Map<String, Producto> obtenerPorCodigos(Collection<String> codigos) {
+
+		Map<String, Producto> productos = new HashMap<>();
+		for (ProductoEntity productoEntity : obtenerProductoEntitiesPorCodigos(codigos).values()) {
+			productos.put(productoEntity.getCodigo(), ProductoBuilder.convertirADominio(productoEntity));
+		}
+		return productos;
+	}
+
+	@Override
+	public Map<String, ProductoEntity> obtenerProductoEntitiesPorCodigos(Collection<String> codigos) {
+
+		Map<String, ProductoEntity> productoEntities = new HashMap<>();
+		for (List<String> lote : Lotes.dividir(codigos, Lotes.TAMANIO_LOTE)) {
+			TypedQuery<ProductoEntity> query = entityManager.get().createNamedQuery(PRODUCTO_FIND_BY_CODIGOS, ProductoEntity.class);
+			query.setParameter(CODIGOS, lote);
+			long inicio = TIEMPO_FIND_BY_CODIGOS.iniciar();
+			List<ProductoEntity> resultado;
+			try {
+				resultado = query.getResultList();
+			} finally {
+				TIEMPO_FIND_BY_CODIGOS.detener(inicio);
+			}
+			for (ProductoEntity productoEntity : resultado) {
+				productoEntities.put(productoEntity.getCodigo(), productoEntity);
+			}
+		}
+		return productoEntities;
 	}
 
 	@Override
 	public void agregar(Producto producto) {
-		entityManager.persist(ProductoBuilder.convertirAEntity(producto));
+		entityManager.get().persist(ProductoBuilder.convertirAEntity(producto));
 	}	
 
 	
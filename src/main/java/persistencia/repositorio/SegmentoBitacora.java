@@ -0,0 +1,315 @@
+package persistencia.repositorio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.zip.CRC32;
+
+import dominio.GarantiaExtendida;
+import dominio.Producto;
+
+/**
+ * Un archivo de la bitacora de garantias, mapeado en memoria y dividido en registros de tamanio fijo. Los
+ * registros se escriben uno tras otro y nunca se modifican; cada uno termina con el CRC32 de su contenido, de
+ * modo que un registro escrito a medias se reconoce al recorrer el segmento. Un registro que empieza en cero
+ * marca el final de lo escrito, porque el archivo se crea con su tamanio completo y lleno de ceros.
+ * Las escrituras y el estado del segmento se protegen con el bloqueo del repositorio; las lecturas no bloquean.
+ */
+final class SegmentoBitacora {
+
+	static final int TAMANIO_REGISTRO = 512;
+
+	private static final int MARCA = 0x47415231;
+	private static final byte INICIA = 1;
+	private static final byte CONTINUA = 2;
+	private static final long SIN_FECHA = Long.MIN_VALUE;
+	private static final byte SIN_TEXTO = -1;
+
+	private static final int POSICION_BANDERAS = 4;
+	private static final int POSICION_ID = 8;
+	private static final int POSICION_FECHA_SOLICITUD = 16;
+	private static final int POSICION_FECHA_FIN = 24;
+	private static final int POSICION_PRECIO_GARANTIA = 32;
+	private static final int POSICION_PRECIO_PRODUCTO = 40;
+	private static final int POSICION_CODIGO = 48;
+	private static final int POSICION_NOMBRE_PRODUCTO = 80;
+	private static final int POSICION_NOMBRE_CLIENTE = 280;
+	private static final int POSICION_CRC = TAMANIO_REGISTRO - 4;
+
+	private static final int MAXIMO_CODIGO = POSICION_NOMBRE_PRODUCTO - POSICION_CODIGO - 1;
+	private static final int MAXIMO_NOMBRE = POSICION_NOMBRE_CLIENTE - POSICION_NOMBRE_PRODUCTO - 1;
+
+	private final int numero;
+	private final Path archivo;
+	private final MappedByteBuffer mapa;
+	private final ByteBuffer escritura;
+
+	private volatile int siguiente;
+	private int escritos;
+	private int vivos;
+
+	private SegmentoBitacora(int numero, Path archivo, MappedByteBuffer mapa) {
+		this.numero = numero;
+		this.archivo = archivo;
+		this.mapa = mapa;
+		this.escritura = mapa.duplicate();
+	}
+
+	/**
+	 * Mapea el archivo del segmento, creandolo con capacidad para la cantidad de registros indicada si no existe
+	 * @param registros capacidad de un segmento nuevo; un segmento existente conserva la suya
+	 */
+	static SegmentoBitacora abrir(Path archivo, int numero, int registros) throws IOException {
+
+		try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+
+			long tamanio = canal.size() >= TAMANIO_REGISTRO ? canal.size() - canal.size() % TAMANIO_REGISTRO
+					: (long) registros * TAMANIO_REGISTRO;
+			return new SegmentoBitacora(numero, archivo, canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanio));
+		}
+	}
+
+	/**
+	 * Recorre los registros escritos hasta el primer registro vacio. Si encuentra un registro incompleto o con un
+	 * CRC que no coincide, lo considera el final de una escritura interrumpida y lo borra junto con lo que le sigue
+	 * @return false si se trunco el final del segmento
+	 */
+	boolean recuperar(Lector lector) {
+
+		byte[] registro = new byte[TAMANIO_REGISTRO];
+		int posicion = 0;
+		while (posicion < mapa.capacity()) {
+			leer(posicion, registro);
+			if (vacio(registro)) {
+				break;
+			}
+			Registro leido = decodificar(registro);
+			if (leido == null) {
+				truncar(posicion);
+				return false;
+			}
+			escritos++;
+			lector.leer(posicion, leido);
+			posicion += TAMANIO_REGISTRO;
+		}
+		siguiente = posicion;
+		return true;
+	}
+
+	boolean lleno() {
+		return siguiente == mapa.capacity();
+	}
+
+	/**
+	 * Escribe el registro a continuacion del ultimo, con una sola escritura secuencial
+	 * @return la posicion del registro dentro del segmento
+	 */
+	int escribir(byte[] registro) {
+
+		int posicion = siguiente;
+		escritura.position(posicion);
+		escritura.put(registro);
+		escritos++;
+		siguiente = posicion + TAMANIO_REGISTRO;
+		return posicion;
+	}
+
+	/**
+	 * @return el registro de la posicion, o null si esta incompleto o corrupto
+	 */
+	Registro leer(int posicion) {
+
+		byte[] registro = new byte[TAMANIO_REGISTRO];
+		leer(posicion, registro);
+		return decodificar(registro);
+	}
+
+	void leer(int posicion, byte[] registro) {
+
+		ByteBuffer lectura = mapa.duplicate();
+		lectura.position(posicion);
+		lectura.get(registro);
+	}
+
+	/**
+	 * Lleva al disco las paginas modificadas del segmento
+	 */
+	void sincronizar() {
+		mapa.force();
+	}
+
+	void borrar() throws IOException {
+		Files.deleteIfExists(archivo);
+	}
+
+	void registrarVivo() {
+		vivos++;
+	}
+
+	int getNumero() {
+		return numero;
+	}
+
+	int getSiguiente() {
+		return siguiente;
+	}
+
+	int getEscritos() {
+		return escritos;
+	}
+
+	int getVivos() {
+		return vivos;
+	}
+
+	/**
+	 * Codifica la garantia en un registro de tamanio fijo
+	 * @param inicia si el registro es el primero de un lote
+	 * @param continua si el lote sigue en el siguiente registro
+	 * @throws IllegalArgumentException si algun texto no cabe en su campo
+	 */
+	static void codificar(GarantiaExtendida garantia, long id, boolean inicia, boolean continua, byte[] registro) {
+
+		Arrays.fill(registro, (byte) 0);
+		ByteBuffer destino = ByteBuffer.wrap(registro);
+		Producto producto = garantia.getProducto();
+		destino.putInt(0, MARCA);
+		destino.put(POSICION_BANDERAS, (byte) ((inicia ? INICIA : 0) | (continua ? CONTINUA : 0)));
+		destino.putLong(POSICION_ID, id);
+		destino.putLong(POSICION_FECHA_SOLICITUD, fecha(garantia.getFechaSolicitudGarantia()));
+		destino.putLong(POSICION_FECHA_FIN, fecha(garantia.getFechaFinGarantia()));
+		destino.putDouble(POSICION_PRECIO_GARANTIA, garantia.getPrecioGarantia());
+		destino.putDouble(POSICION_PRECIO_PRODUCTO, producto.getPrecio());
+		escribirTexto(destino, POSICION_CODIGO, MAXIMO_CODIGO, producto.getCodigo());
+		escribirTexto(destino, POSICION_NOMBRE_PRODUCTO, MAXIMO_NOMBRE, producto.getNombre());
+		escribirTexto(destino, POSICION_NOMBRE_CLIENTE, MAXIMO_NOMBRE, garantia.getNombreCliente());
+		destino.putInt(POSICION_CRC, crc(registro));
+	}
+
+	/**
+	 * Convierte la copia de un registro de un lote en una garantia independiente, recalculando su CRC
+	 */
+	static void desligarDelLote(byte[] registro) {
+
+		ByteBuffer destino = ByteBuffer.wrap(registro);
+		destino.put(POSICION_BANDERAS, INICIA);
+		destino.putInt(POSICION_CRC, crc(registro));
+	}
+
+	static Registro decodificar(byte[] registro) {
+
+		ByteBuffer origen = ByteBuffer.wrap(registro);
+		if (origen.getInt(0) != MARCA || origen.getInt(POSICION_CRC) != crc(registro)) {
+			return null;
+		}
+		Producto producto = new Producto(leerTexto(origen, POSICION_CODIGO), leerTexto(origen, POSICION_NOMBRE_PRODUCTO),
+				origen.getDouble(POSICION_PRECIO_PRODUCTO));
+		GarantiaExtendida garantia = new GarantiaExtendida(producto, fecha(origen.getLong(POSICION_FECHA_SOLICITUD)),
+				fecha(origen.getLong(POSICION_FECHA_FIN)), origen.getDouble(POSICION_PRECIO_GARANTIA),
+				leerTexto(origen, POSICION_NOMBRE_CLIENTE));
+		byte banderas = origen.get(POSICION_BANDERAS);
+		return new Registro(origen.getLong(POSICION_ID), (banderas & INICIA) != 0, (banderas & CONTINUA) != 0, garantia);
+	}
+
+	private void truncar(int desde) {
+
+		ByteBuffer borrado = mapa.duplicate();
+		borrado.position(desde);
+		while (borrado.hasRemaining()) {
+			borrado.put((byte) 0);
+		}
+		mapa.force();
+		siguiente = desde;
+	}
+
+	private static boolean vacio(byte[] registro) {
+		return ByteBuffer.wrap(registro).getInt(0) == 0;
+	}
+
+	private static int crc(byte[] registro) {
+
+		CRC32 crc = new CRC32();
+		crc.update(registro, 0, POSICION_CRC);
+		return (int) crc.getValue();
+	}
+
+	private static void escribirTexto(ByteBuffer destino, int posicion, int maximo, String texto) {
+
+		if (texto == null) {
+			destino.put(posicion, SIN_TEXTO);
+			return;
+		}
+		byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > maximo) {
+			throw new IllegalArgumentException("El texto '" + texto + "' excede los " + maximo + " bytes de su campo en la bitacora");
+		}
+		destino.put(posicion, (byte) bytes.length);
+		for (int i = 0; i < bytes.length; i++) {
+			destino.put(posicion + 1 + i, bytes[i]);
+		}
+	}
+
+	private static String leerTexto(ByteBuffer origen, int posicion) {
+
+		int longitud = origen.get(posicion) & 0xFF;
+		if (longitud == (SIN_TEXTO & 0xFF)) {
+			return null;
+		}
+		return new String(origen.array(), posicion + 1, longitud, StandardCharsets.UTF_8);
+	}
+
+	private static long fecha(Date fecha) {
+		return fecha == null ? SIN_FECHA : fecha.getTime();
+	}
+
+	private static Date fecha(long fecha) {
+		return fecha == SIN_FECHA ? null : new Date(fecha);
+	}
+
+	/**
+	 * Recibe cada registro valido al recuperar un segmento
+	 */
+	interface Lector {
+
+		void leer(int posicion, Registro registro);
+	}
+
+	static final class Registro {
+
+		private final long id;
+		private final boolean inicia;
+		private final boolean continua;
+		private final GarantiaExtendida garantia;
+
+		Registro(long id, boolean inicia, boolean continua, GarantiaExtendida garantia) {
+			this.id = id;
+			this.inicia = inicia;
+			this.continua = continua;
+			this.garantia = garantia;
+		}
+
+		long getId() {
+			return id;
+		}
+
+		boolean isInicia() {
+			return inicia;
+		}
+
+		boolean isContinua() {
+			return continua;
+		}
+
+		GarantiaExtendida getGarantia() {
+			return garantia;
+		}
+	}
+}
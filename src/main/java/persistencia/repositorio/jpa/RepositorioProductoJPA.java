@@ -1,5 +1,8 @@
 package persistencia.repositorio.jpa;
 
+import java.util.Collection;
+import java.util.Map;
+
 import persistencia.entitad.ProductoEntity;
 
 public interface RepositorioProductoJPA {
@@ -10,5 +13,20 @@ public interface RepositorioProductoJPA {
 	 * @return
 	 */
 	ProductoEntity obtenerProductoEntityPorCodigo(String codigo);
+	
+	/**
+	 * Permite obtener un producto entity por un codigo para asociarlo a otra entidad, sin consultar la base de
+	 * datos si ya esta cargado en el contexto de persistencia
+	 * @param codigo
+	 * @return
+	 */
+	ProductoEntity obtenerReferenciaPorCodigo(String codigo);
+	
+	/**
+	 * Permite obtener los producto entity de varios codigos indexados por codigo
+	 * @param codigos
+	 * @return
+	 */
+	Map<String, ProductoEntity> obtenerProductoEntitiesPorCodigos(Collection<String> codigos);
 
 }
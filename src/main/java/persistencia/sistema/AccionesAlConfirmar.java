@@ -0,0 +1,44 @@
+package persistencia.sistema;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.hibernate.Session;
+
+/**
+ * Registra acciones que se ejecutan despues de confirmar la transaccion de un EntityManager
+ */
+final class AccionesAlConfirmar {
+
+	private AccionesAlConfirmar() {
+	}
+
+	/**
+	 * Ejecuta la accion al confirmar la transaccion activa del EntityManager y la descarta si se deshace. Sin
+	 * EntityManager o sin transaccion activa la ejecuta de inmediato
+	 * @param entityManager puede ser null
+	 * @param accion
+	 */
+	static void registrar(EntityManager entityManager, final Runnable accion) {
+
+		if (entityManager == null || !entityManager.getTransaction().isActive()) {
+			accion.run();
+			return;
+		}
+		entityManager.unwrap(Session.class).getTransaction().registerSynchronization(new Synchronization() {
+
+			@Override
+			public void beforeCompletion() {
+				// Solo interesa el resultado de la transaccion
+			}
+
+			@Override
+			public void afterCompletion(int estado) {
+				if (estado == Status.STATUS_COMMITTED) {
+					accion.run();
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,122 @@
+package persistencia.sistema;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+
+import dominio.repositorio.UnidadDeTrabajo;
+import persistencia.conexion.ConexionJPA;
+
+/**
+ * Unidad de trabajo para un unico hilo que toma una conexion del pool al crearse y la conserva hasta cerrarse, de
+ * modo que nunca espera una conexion libre. Sirve a un hilo del que dependen otros hilos que ya tienen conexiones,
+ * como el confirmador de la escritura diferida. Confirmar vacia el contexto de persistencia y deshacer lo descarta,
+ * pero ninguno devuelve la conexion.
+ */
+public class ConexionDedicada implements UnidadDeTrabajo {
+
+	private final ConexionJPA conexionJPA = new ConexionJPA();
+
+	private final Supplier<EntityManager> entityManagerActual = this::entityManager;
+
+	private Connection conexion;
+
+	private EntityManager entityManager;
+
+	public ConexionDedicada() {
+		this.conexion = conexionJPA.obtenerConexion();
+	}
+
+	/**
+	 * Permite obtener el proveedor del EntityManager actual, para construir repositorios
+	 * @return
+	 */
+	public Supplier<EntityManager> getEntityManager() {
+		return entityManagerActual;
+	}
+
+	@Override
+	public void iniciar() {
+		entityManager().getTransaction().begin();
+	}
+
+	/**
+	 * Confirma y vacia el contexto de persistencia, que se conserva entre transacciones y creceria con cada entidad
+	 * que se lee
+	 */
+	@Override
+	public void terminar() {
+
+		EntityManager actual = entityManager();
+		actual.getTransaction().commit();
+		actual.clear();
+	}
+
+	@Override
+	public void deshacer() {
+
+		if (entityManager != null) {
+			try {
+				if (entityManager.getTransaction().isActive()) {
+					entityManager.getTransaction().rollback();
+				}
+			} finally {
+				cerrarEntityManager();
+			}
+		}
+	}
+
+	@Override
+	public boolean enTransaccion() {
+		return entityManager != null && entityManager.getTransaction().isActive();
+	}
+
+	@Override
+	public void alConfirmar(Runnable accion) {
+		AccionesAlConfirmar.registrar(entityManager, accion);
+	}
+
+	/**
+	 * Devuelve la conexion al pool. El siguiente uso toma otra
+	 */
+	@Override
+	public void cerrar() {
+
+		try {
+			cerrarEntityManager();
+		} finally {
+			if (conexion != null) {
+				try {
+					conexion.close();
+				} catch (SQLException e) {
+					throw new PersistenceException("No se pudo devolver la conexion al pool", e);
+				} finally {
+					conexion = null;
+				}
+			}
+		}
+	}
+
+	private void cerrarEntityManager() {
+
+		EntityManager actual = entityManager;
+		entityManager = null;
+		if (actual != null && actual.isOpen()) {
+			actual.close();
+		}
+	}
+
+	private EntityManager entityManager() {
+
+		if (conexion == null) {
+			conexion = conexionJPA.obtenerConexion();
+		}
+		if (entityManager == null) {
+			entityManager = conexionJPA.createEntityManager(conexion);
+		}
+		return entityManager;
+	}
+}
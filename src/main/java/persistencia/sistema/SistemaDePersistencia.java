@@ -1,34 +1,486 @@
 package persistencia.sistema;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 import javax.persistence.EntityManager;
 
+import dominio.concurrencia.BloqueosPorCodigo;
 import dominio.repositorio.RepositorioProducto;
 import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioMarcaBarrido;
+import dominio.repositorio.UnidadDeTrabajo;
+import persistencia.conexion.CacheSegundoNivel;
 import persistencia.conexion.ConexionJPA;
+import persistencia.filtro.FiltroGarantias;
+import persistencia.importacion.ImportadorProductos;
+import persistencia.indice.IndicePrecios;
+import persistencia.importacion.ProgresoImportacion;
+import persistencia.repositorio.AlmacenEnMemoria;
+import persistencia.repositorio.RepositorioProductoConIndicePrecios;
+import persistencia.repositorio.RepositorioProductoEnCache;
+import persistencia.repositorio.RepositorioProductoEnMemoria;
 import persistencia.repositorio.RepositorioProductoPersistente;
 import persistencia.repositorio.RepositorioGarantiaPersistente;
+import persistencia.repositorio.RepositorioGarantiaEscrituraDiferida;
+import persistencia.repositorio.RepositorioGarantiaEnMemoria;
+import persistencia.repositorio.RepositorioGarantiaEnBitacora;
+import persistencia.repositorio.RepositorioMarcaBarridoPersistente;
 
-public class SistemaDePersistencia {
+/**
+ * Punto de acceso a los repositorios. Cada hilo que usa un mismo sistema de persistencia trabaja con su propio
+ * EntityManager y su propia transaccion, de modo que los repositorios y el Vendedor se pueden compartir entre hilos.
+ * Con la propiedad del sistema tienda.persistencia.modo=memoria los productos y garantias se guardan en memoria, sin
+ * base de datos ni transacciones, y si se define tienda.memoria.instantanea se recuperan de ese archivo al iniciar.
+ * Con tienda.persistencia.modo=bitacora los productos siguen en la base de datos y las garantias se guardan en la
+ * bitacora del directorio tienda.bitacora.directorio, fuera de las transacciones.
+ */
+public class SistemaDePersistencia implements UnidadDeTrabajo {
 
-	private EntityManager entityManager;
+	public static final String MODO = "tienda.persistencia.modo";
+	public static final String MODO_MEMORIA = "memoria";
+	public static final String ARCHIVO_INSTANTANEA = "tienda.memoria.instantanea";
+	public static final String MODO_BITACORA = "bitacora";
+	public static final String DIRECTORIO_BITACORA = "tienda.bitacora.directorio";
+	public static final String PRODUCTOS_EN_CACHE = "tienda.productos.cache";
 
-	public SistemaDePersistencia() {
-		this.entityManager = new ConexionJPA().createEntityManager();
-	}
+	private static final long CANTIDAD_ESPERADA_GARANTIAS = Long.getLong("tienda.filtro.cantidadEsperada", 1000000L);
+	private static final double TASA_FALSOS_POSITIVOS = Double.parseDouble(System.getProperty("tienda.filtro.tasaFalsosPositivos", "0.01"));
+	private static final int CAPACIDAD_ESCRITURA_DIFERIDA = Integer.getInteger("tienda.escrituraDiferida.capacidad", 10000);
+	private static final int TAMANIO_GRUPO_ESCRITURA_DIFERIDA = Integer.getInteger("tienda.escrituraDiferida.tamanioGrupo", 100);
+	private static final long ESPERA_MAXIMA_ESCRITURA_DIFERIDA = Long.getLong("tienda.escrituraDiferida.esperaMaxima", 2L);
+	private static final long PERIODO_INSTANTANEA = Long.getLong("tienda.memoria.periodoInstantanea", 60L);
+	private static final int REGISTROS_POR_SEGMENTO = Integer.getInteger("tienda.bitacora.registrosPorSegmento", 65536);
+	private static final boolean SINCRONIZAR_BITACORA = Boolean.getBoolean("tienda.bitacora.sincronizar");
+	private static final long CANTIDAD_ESPERADA_PRODUCTOS = Long.getLong("tienda.indicePrecios.cantidadEsperada", 100000L);
+
+	private static final Object BLOQUEO_FILTRO = new Object();
+	private static final Object BLOQUEO_ALMACEN = new Object();
+	private static final Object BLOQUEO_BITACORA = new Object();
+	private static final Object BLOQUEO_INDICE_PRECIOS = new Object();
+	private static final Object BLOQUEO_ESCRITURA_DIFERIDA = new Object();
+	
+	/**
+	 * El filtro describe la base de datos compartida, por eso vive lo mismo que la EntityManagerFactory
+	 */
+	private static volatile FiltroGarantias filtroGarantias;
+	
+	/**
+	 * Igual que la EntityManagerFactory, el almacen en memoria es unico por proceso hasta que se apaga
+	 */
+	private static volatile AlmacenEnMemoria almacenEnMemoria;
+	
+	/**
+	 * La bitacora de garantias tambien es unica por proceso, porque su indice describe los archivos del directorio
+	 */
+	private static volatile RepositorioGarantiaEnBitacora bitacoraGarantias;
+	
+	/**
+	 * Como el filtro, el indice de precios describe la tabla de productos compartida
+	 */
+	private static volatile IndicePrecios indicePrecios;
+	
+	/**
+	 * La escritura diferida ocupa un hilo y una conexion del pool, por eso es unica por proceso y se cierra antes que el pool
+	 */
+	private static volatile RepositorioGarantiaEscrituraDiferida escrituraDiferida;
+	
+	private final boolean enMemoria = MODO_MEMORIA.equals(System.getProperty(MODO));
+	
+	private final boolean enBitacora = MODO_BITACORA.equals(System.getProperty(MODO));
+	
+	private final boolean productosEnCache = Boolean.getBoolean(PRODUCTOS_EN_CACHE);
+
+	private final ConexionJPA conexionJPA = new ConexionJPA();
+	
+	private final ThreadLocal<EntityManager> entityManagers = new ThreadLocal<>();
+	
+	private final Supplier<EntityManager> entityManagerDelHilo = this::entityManager;
+	
+	private RepositorioProductoEnCache repositorioProductosEnCache;
+	
+	private RepositorioProductoConIndicePrecios repositorioProductosConIndicePrecios;
 
+	/**
+	 * Permite obtener el repositorio de productos. Con la propiedad tienda.productos.cache en true, y los productos
+	 * en la base de datos, es el repositorio con cache de lectura
+	 * @return
+	 */
 	public RepositorioProducto obtenerRepositorioProductos() {
-		return new RepositorioProductoPersistente(entityManager);
+		if (productosEnCache && !enMemoria) {
+			return obtenerRepositorioProductosEnCache();
+		}
+		return repositorioProductos();
+	}
+	
+	/**
+	 * Permite obtener el repositorio de productos con cache de lectura, compartido por este sistema de persistencia
+	 * @return
+	 */
+	public synchronized RepositorioProductoEnCache obtenerRepositorioProductosEnCache() {
+		if (repositorioProductosEnCache == null) {
+			repositorioProductosEnCache = new RepositorioProductoEnCache(repositorioProductos(), this);
+		}
+		return repositorioProductosEnCache;
+	}
+	
+	/**
+	 * Permite obtener el repositorio de productos que responde los precios con el indice de precios fuera del heap,
+	 * compartido por este sistema de persistencia. El indice se carga desde la tabla de productos la primera vez, y
+	 * los precios que se consulten despues dentro de una transaccion se agregan al confirmarla
+	 * @return
+	 */
+	public synchronized RepositorioProductoConIndicePrecios obtenerRepositorioProductosConIndicePrecios() {
+		verificarModoJPA("El indice de precios");
+		if (repositorioProductosConIndicePrecios == null) {
+			repositorioProductosConIndicePrecios = new RepositorioProductoConIndicePrecios(repositorioProductos(), obtenerIndicePrecios(), this);
+		}
+		return repositorioProductosConIndicePrecios;
+	}
+	
+	/**
+	 * Permite desalojar un producto de la cache de segundo nivel, de la cache de lectura y del indice de precios,
+	 * por ejemplo despues de cambiar su precio
+	 * @param codigo
+	 */
+	public void desalojarProducto(String codigo) {
+		
+		if (!enMemoria) {
+			new CacheSegundoNivel().desalojarProducto(codigo);
+		}
+		IndicePrecios indice = indicePrecios;
+		if (indice != null) {
+			indice.invalidar(codigo);
+		}
+		synchronized (this) {
+			if (repositorioProductosEnCache != null) {
+				repositorioProductosEnCache.invalidar(codigo);
+			}
+		}
+	}
+	
+	/**
+	 * Permite obtener un importador de catalogos que confirma cada bloque de productos en su propia transaccion
+	 * del hilo actual, por lo que no se debe usar con una transaccion ya iniciada
+	 * @param tamanioBloque
+	 * @param progreso puede ser null
+	 * @return
+	 */
+	public ImportadorProductos obtenerImportadorProductos(int tamanioBloque, ProgresoImportacion progreso) {
+		verificarModoJPA("El importador de productos");
+		return new ImportadorProductos(entityManagerDelHilo, this, tamanioBloque, progreso);
 	}
 	
 	public RepositorioGarantiaExtendida obtenerRepositorioGarantia() {
-		return new RepositorioGarantiaPersistente(entityManager, this.obtenerRepositorioProductos());
+		if (enMemoria) {
+			return new RepositorioGarantiaEnMemoria(almacenEnMemoria());
+		}
+		if (enBitacora) {
+			return bitacoraGarantias();
+		}
+		return new RepositorioGarantiaPersistente(entityManagerDelHilo, obtenerFiltroGarantias());
+	}
+	
+	/**
+	 * Permite obtener el repositorio de garantias que confirma en grupos las garantias agregadas por muchos hilos.
+	 * La cola y el hilo confirmador son unicos por proceso; las consultas se hacen en la transaccion de este sistema
+	 * de persistencia. La espera maxima de cada grupo se configura en milisegundos. El hilo confirmador ocupa una
+	 * conexion del pool hasta que se apaga, para que los hilos que esperan su confirmacion dentro de una transaccion
+	 * no lo dejen sin conexion
+	 * @return
+	 */
+	public RepositorioGarantiaEscrituraDiferida obtenerRepositorioGarantiaEscrituraDiferida() {
+		verificarGarantiasJPA("La escritura diferida de garantias");
+		return escrituraDiferida().conRepositorio(obtenerRepositorioGarantia());
+	}
+	
+	public RepositorioMarcaBarrido obtenerRepositorioMarcasBarrido() {
+		verificarModoJPA("El repositorio de marcas de barrido");
+		return new RepositorioMarcaBarridoPersistente(entityManagerDelHilo);
+	}
+	
+	/**
+	 * Permite obtener el filtro con los codigos de producto que tienen garantia, para consultar su tasa de falsos positivos
+	 * @return
+	 */
+	public FiltroGarantias obtenerFiltroGarantias() {
+		
+		verificarGarantiasJPA("El filtro de garantias");
+		FiltroGarantias filtro = filtroGarantias;
+		if (filtro == null) {
+			synchronized (BLOQUEO_FILTRO) {
+				filtro = filtroGarantias;
+				if (filtro == null) {
+					filtro = new FiltroGarantias(CANTIDAD_ESPERADA_GARANTIAS, TASA_FALSOS_POSITIVOS);
+					new RepositorioGarantiaPersistente(entityManagerDelHilo, filtro).reconstruirFiltroGarantias();
+					filtroGarantias = filtro;
+				}
+			}
+		}
+		return filtro;
+	}
+	
+	/**
+	 * Permite reconstruir el filtro de garantias desde la tabla de garantias
+	 */
+	public void reconstruirFiltroGarantias() {
+		verificarGarantiasJPA("El filtro de garantias");
+		new RepositorioGarantiaPersistente(entityManagerDelHilo, obtenerFiltroGarantias()).reconstruirFiltroGarantias();
 	}
 
+	/**
+	 * Inicia una transaccion en el contexto de persistencia del hilo actual. En memoria no hay transacciones.
+	 * Los bloqueos por codigo que tome el Vendedor se retienen hasta terminar o deshacer la transaccion
+	 */
+	@Override
 	public void iniciar() {
-		entityManager.getTransaction().begin();
+		if (!enMemoria) {
+			entityManager().getTransaction().begin();
+		}
+		BloqueosPorCodigo.iniciarRetencion();
 	}
 
+	/**
+	 * Confirma la transaccion del hilo actual y libera sus bloqueos por codigo
+	 */
+	@Override
 	public void terminar() {
-		entityManager.getTransaction().commit();
+		try {
+			if (!enMemoria) {
+				entityManager().getTransaction().commit();
+			}
+		} finally {
+			BloqueosPorCodigo.liberarRetenidos();
+		}
+	}
+	
+	/**
+	 * Deshace la transaccion del hilo actual y descarta su contexto de persistencia, que despues de un error
+	 * de la base de datos no se puede seguir usando. En memoria cada operacion se aplica al ejecutarse y no hay
+	 * nada que deshacer
+	 */
+	@Override
+	public void deshacer() {
+		
+		EntityManager entityManager = entityManagers.get();
+		if (entityManager != null) {
+			try {
+				if (entityManager.getTransaction().isActive()) {
+					entityManager.getTransaction().rollback();
+				}
+			} finally {
+				cerrar();
+			}
+		}
+		BloqueosPorCodigo.liberarRetenidos();
+	}
+	
+	/**
+	 * Permite cerrar el contexto de persistencia del hilo actual, liberando los bloqueos por codigo que aun retenga
+	 */
+	@Override
+	public void cerrar() {
+		
+		BloqueosPorCodigo.liberarRetenidos();
+		EntityManager entityManager = entityManagers.get();
+		entityManagers.remove();
+		if (entityManager != null && entityManager.isOpen()) {
+			entityManager.close();
+		}
+	}
+	
+	/**
+	 * En memoria no hay transacciones
+	 */
+	@Override
+	public boolean enTransaccion() {
+		
+		EntityManager entityManager = enMemoria ? null : entityManagers.get();
+		return entityManager != null && entityManager.getTransaction().isActive();
+	}
+	
+	/**
+	 * Las acciones se registran en la transaccion del contexto de persistencia del hilo actual. En memoria no hay
+	 * transacciones y se ejecutan de inmediato
+	 */
+	@Override
+	public void alConfirmar(Runnable accion) {
+		AccionesAlConfirmar.registrar(enMemoria ? null : entityManagers.get(), accion);
+	}
+	
+	/**
+	 * Permite cerrar la EntityManagerFactory compartida y su pool de conexiones, por ejemplo al detener la aplicacion.
+	 * Antes se confirman las garantias pendientes de la escritura diferida. El almacen en memoria guarda su ultima
+	 * instantanea y se descarta, igual que la bitacora de garantias despues de llevar sus segmentos al disco
+	 */
+	public static void apagar() {
+		synchronized (BLOQUEO_ESCRITURA_DIFERIDA) {
+			RepositorioGarantiaEscrituraDiferida escritura = escrituraDiferida;
+			escrituraDiferida = null;
+			if (escritura != null) {
+				try {
+					escritura.cerrar();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Se interrumpio la confirmacion de las garantias pendientes", e);
+				}
+			}
+		}
+		synchronized (BLOQUEO_FILTRO) {
+			filtroGarantias = null;
+			ConexionJPA.cerrar();
+		}
+		synchronized (BLOQUEO_INDICE_PRECIOS) {
+			indicePrecios = null;
+		}
+		synchronized (BLOQUEO_ALMACEN) {
+			AlmacenEnMemoria almacen = almacenEnMemoria;
+			almacenEnMemoria = null;
+			if (almacen != null) {
+				try {
+					almacen.cerrar();
+				} catch (IOException e) {
+					throw new UncheckedIOException("No se pudo guardar la instantanea del almacen en memoria", e);
+				}
+			}
+		}
+		synchronized (BLOQUEO_BITACORA) {
+			RepositorioGarantiaEnBitacora bitacora = bitacoraGarantias;
+			bitacoraGarantias = null;
+			if (bitacora != null) {
+				bitacora.close();
+			}
+		}
+	}
+	
+	private RepositorioProducto repositorioProductos() {
+		if (enMemoria) {
+			return new RepositorioProductoEnMemoria(almacenEnMemoria());
+		}
+		return new RepositorioProductoPersistente(entityManagerDelHilo);
+	}
+	
+	private IndicePrecios obtenerIndicePrecios() {
+		
+		IndicePrecios indice = indicePrecios;
+		if (indice == null) {
+			synchronized (BLOQUEO_INDICE_PRECIOS) {
+				indice = indicePrecios;
+				if (indice == null) {
+					indice = new IndicePrecios(CANTIDAD_ESPERADA_PRODUCTOS);
+					// Se carga fuera de la transaccion del hilo, que podria tener productos sin confirmar
+					EntityManager entityManager = conexionJPA.createEntityManager();
+					try {
+						new RepositorioProductoPersistente(entityManager).recorrerPrecios(indice::actualizar);
+					} finally {
+						entityManager.close();
+					}
+					indicePrecios = indice;
+				}
+			}
+		}
+		return indice;
+	}
+	
+	private RepositorioGarantiaEscrituraDiferida escrituraDiferida() {
+		
+		RepositorioGarantiaEscrituraDiferida escritura = escrituraDiferida;
+		if (escritura == null || escritura.estaCerrada()) {
+			synchronized (BLOQUEO_ESCRITURA_DIFERIDA) {
+				escritura = escrituraDiferida;
+				if (escritura == null || escritura.estaCerrada()) {
+					ConexionDedicada confirmacion = new ConexionDedicada();
+					RepositorioGarantiaExtendida repositorioConfirmacion = new RepositorioGarantiaPersistente(confirmacion.getEntityManager(),
+							obtenerFiltroGarantias());
+					escritura = new RepositorioGarantiaEscrituraDiferida(obtenerRepositorioGarantia(), repositorioConfirmacion,
+							confirmacion, CAPACIDAD_ESCRITURA_DIFERIDA, TAMANIO_GRUPO_ESCRITURA_DIFERIDA,
+							ESPERA_MAXIMA_ESCRITURA_DIFERIDA, TimeUnit.MILLISECONDS);
+					escrituraDiferida = escritura;
+				}
+			}
+		}
+		return escritura;
+	}
+	
+	private static AlmacenEnMemoria almacenEnMemoria() {
+		
+		AlmacenEnMemoria almacen = almacenEnMemoria;
+		if (almacen == null) {
+			synchronized (BLOQUEO_ALMACEN) {
+				almacen = almacenEnMemoria;
+				if (almacen == null) {
+					almacen = crearAlmacenEnMemoria();
+					almacenEnMemoria = almacen;
+				}
+			}
+		}
+		return almacen;
+	}
+	
+	private static AlmacenEnMemoria crearAlmacenEnMemoria() {
+		
+		String nombreArchivo = System.getProperty(ARCHIVO_INSTANTANEA);
+		if (nombreArchivo == null) {
+			return new AlmacenEnMemoria();
+		}
+		Path archivo = Paths.get(nombreArchivo);
+		try {
+			AlmacenEnMemoria almacen = Files.exists(archivo) ? AlmacenEnMemoria.cargar(archivo) : new AlmacenEnMemoria();
+			almacen.programarInstantaneas(archivo, PERIODO_INSTANTANEA, TimeUnit.SECONDS);
+			return almacen;
+		} catch (IOException e) {
+			throw new UncheckedIOException("No se pudo cargar la instantanea del almacen en memoria " + archivo, e);
+		}
+	}
+	
+	private static RepositorioGarantiaEnBitacora bitacoraGarantias() {
+		
+		RepositorioGarantiaEnBitacora bitacora = bitacoraGarantias;
+		if (bitacora == null) {
+			synchronized (BLOQUEO_BITACORA) {
+				bitacora = bitacoraGarantias;
+				if (bitacora == null) {
+					Path directorio = Paths.get(System.getProperty(DIRECTORIO_BITACORA, "bitacora"));
+					try {
+						bitacora = RepositorioGarantiaEnBitacora.abrir(directorio, REGISTROS_POR_SEGMENTO, SINCRONIZAR_BITACORA);
+					} catch (IOException e) {
+						throw new UncheckedIOException("No se pudo abrir la bitacora de garantias " + directorio, e);
+					}
+					bitacoraGarantias = bitacora;
+				}
+			}
+		}
+		return bitacora;
+	}
+	
+	/**
+	 * Las operaciones que leen la tabla de garantias no sirven cuando las garantias estan en la bitacora
+	 */
+	private void verificarGarantiasJPA(String operacion) {
+		verificarModoJPA(operacion);
+		if (enBitacora) {
+			throw new UnsupportedOperationException(operacion + " solo esta disponible con las garantias en la base de datos");
+		}
+	}
+	
+	private void verificarModoJPA(String operacion) {
+		if (enMemoria) {
+			throw new UnsupportedOperationException(operacion + " solo esta disponible con persistencia JPA");
+		}
+	}
+	
+	private EntityManager entityManager() {
+		
+		EntityManager entityManager = entityManagers.get();
+		if (entityManager == null) {
+			entityManager = conexionJPA.createEntityManager();
+			entityManagers.set(entityManager);
+		}
+		return entityManager;
 	}
 }
@@ -0,0 +1,134 @@
+package dominio.integracion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dominio.BarredorVencimientos;
+import dominio.GarantiaExtendida;
+import dominio.Producto;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioProducto;
+import persistencia.sistema.SistemaDePersistencia;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class BarredorVencimientosTest {
+
+	private static final String DANILO_ROMAN = "Danilo Roman";
+	private static final long INICIO = 1534377600000L;
+	private static final int ANTICIPACION_DIAS = 3;
+	private static final int TAMANIO_LOTE = 2;
+
+	private SistemaDePersistencia sistemaPersistencia;
+	private RepositorioGarantiaExtendida repositorioGarantia;
+	private List<String> notificadas;
+
+	@Before
+	public void setUp() {
+
+		// Empieza con una base de datos sin marcas ni garantias
+		SistemaDePersistencia.apagar();
+		sistemaPersistencia = new SistemaDePersistencia();
+		RepositorioProducto repositorioProducto = sistemaPersistencia.obtenerRepositorioProductos();
+		repositorioGarantia = sistemaPersistencia.obtenerRepositorioGarantia();
+		notificadas = new ArrayList<>();
+
+		// una garantia ya vencida y una que termina cada dia de los proximos diez
+		List<GarantiaExtendida> garantias = new ArrayList<>();
+		sistemaPersistencia.iniciar();
+		for (int dia = -1; dia <= 10; dia++) {
+			Producto producto = new ProductoTestDataBuilder().conCodigo("VEN" + dia).build();
+			repositorioProducto.agregar(producto);
+			garantias.add(new GarantiaExtendida(producto, dia(-100), dia(dia), 1000, DANILO_ROMAN));
+		}
+		repositorioGarantia.agregarTodas(garantias);
+		sistemaPersistencia.terminar();
+		sistemaPersistencia.cerrar();
+	}
+
+	@After
+	public void tearDown() {
+		sistemaPersistencia.cerrar();
+		SistemaDePersistencia.apagar();
+	}
+
+	@Test
+	public void buscarPorFechaFinTest() {
+
+		// act
+		List<GarantiaExtendida> garantias = repositorioGarantia.buscarPorFechaFin(dia(2), dia(5), null, 10).getElementos();
+
+		// assert
+		assertEquals(3, garantias.size());
+		assertEquals("VEN2", garantias.get(0).getProducto().getCodigo());
+		assertEquals("VEN4", garantias.get(2).getProducto().getCodigo());
+	}
+
+	@Test
+	public void barridosIncrementalesTest() {
+
+		// act
+		long primerBarrido = barredor(0, this::registrar).barrer();
+		long segundoBarrido = barredor(5, this::registrar).barrer();
+		long tercerBarrido = barredor(5, this::registrar).barrer();
+
+		// assert
+		assertEquals(3, primerBarrido);
+		assertEquals(5, segundoBarrido);
+		assertEquals(0, tercerBarrido);
+		assertEquals(Arrays.asList("VEN0", "VEN1", "VEN2", "VEN3", "VEN4", "VEN5", "VEN6", "VEN7"), notificadas);
+	}
+
+	@Test
+	public void reanudarDesdeElUltimoLoteConfirmadoTest() {
+
+		// arrange
+		barredor(0, this::registrar).barrer();
+		notificadas.clear();
+		try {
+			barredor(5, garantia -> {
+				if (garantia.getProducto().getCodigo().equals("VEN5")) {
+					throw new IllegalStateException("Servicio de correo no disponible");
+				}
+				registrar(garantia);
+			}).barrer();
+			fail();
+		} catch (IllegalStateException e) {
+			// el lote con VEN5 se deshizo
+		}
+
+		// act
+		long notificadasAlReanudar = barredor(5, this::registrar).barrer();
+
+		// assert
+		assertEquals(3, notificadasAlReanudar);
+		assertEquals(Arrays.asList("VEN3", "VEN4", "VEN5", "VEN6", "VEN7"), notificadas);
+	}
+
+	private BarredorVencimientos barredor(int diaActual, Consumer<GarantiaExtendida> notificador) {
+		Clock reloj = Clock.fixed(Instant.ofEpochMilli(dia(diaActual).getTime()), ZoneId.systemDefault());
+		return new BarredorVencimientos(repositorioGarantia, sistemaPersistencia.obtenerRepositorioMarcasBarrido(), sistemaPersistencia,
+				notificador, ANTICIPACION_DIAS, TimeUnit.DAYS, TAMANIO_LOTE, reloj);
+	}
+
+	private void registrar(GarantiaExtendida garantia) {
+		notificadas.add(garantia.getProducto().getCodigo());
+	}
+
+	private static Date dia(int dia) {
+		return new Date(INICIO + TimeUnit.DAYS.toMillis(dia));
+	}
+}
@@ -0,0 +1,262 @@
+package dominio.integracion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.PreparedStatement;
+import java.util.Date;
+
+import javax.persistence.EntityManager;
+import javax.persistence.NoResultException;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dominio.Vendedor;
+import dominio.integracion.ContadorSentencias.Sentencias;
+import dominio.repositorio.RepositorioProducto;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import persistencia.conexion.CacheSegundoNivel;
+import persistencia.conexion.ConexionJPA;
+import persistencia.entitad.ProductoEntity;
+import persistencia.repositorio.RepositorioProductoEnCache;
+import persistencia.sistema.SistemaDePersistencia;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class CacheSegundoNivelTest {
+
+	private static final String CODIGO = "F01TSA0150";
+	private static final String OTRO_CODIGO = "F01TSA0151";
+	private static final double PRECIO_ORIGINAL = 780000;
+	private static final double PRECIO_NUEVO = 820000;
+	private static final String DANILO_ROMAN = "Danilo Roman";
+
+	private SistemaDePersistencia sistemaPersistencia;
+	private RepositorioProducto repositorioProducto;
+	private CacheSegundoNivel cacheSegundoNivel = new CacheSegundoNivel();
+
+	@Before
+	public void setUp() {
+
+		ContadorSentencias.instalar();
+		sistemaPersistencia = new SistemaDePersistencia();
+		repositorioProducto = sistemaPersistencia.obtenerRepositorioProductos();
+
+		sistemaPersistencia.iniciar();
+		repositorioProducto.agregar(new ProductoTestDataBuilder().conCodigo(CODIGO).conPrecio(PRECIO_ORIGINAL).build());
+		sistemaPersistencia.terminar();
+		sistemaPersistencia.cerrar();
+	}
+
+	@After
+	public void tearDown() {
+		sistemaPersistencia.cerrar();
+		ContadorSentencias.desinstalar();
+	}
+
+	@Test
+	public void productoSeLeeDeLaCacheEnOtroContextoTest() {
+
+		// arrange
+		obtenerEnContextoNuevo();
+
+		// act
+		Sentencias sentencias = ContadorSentencias.registrar(this::obtenerEnContextoNuevo);
+
+		// assert
+		sentencias.verificarMaximo("select", 0);
+		assertTrue(cacheSegundoNivel.getTasaAciertos(CacheSegundoNivel.REGION_CONSULTAS_PRODUCTO) > 0);
+		assertTrue(cacheSegundoNivel.getTasaAciertos(CacheSegundoNivel.REGION_PRODUCTOS) > 0);
+	}
+
+	@Test
+	public void desalojarProductoCambiadoPorFueraDeJPATest() {
+
+		// arrange
+		obtenerEnContextoNuevo();
+		cambiarPrecioConJDBC(PRECIO_NUEVO);
+		assertEquals(PRECIO_ORIGINAL, obtenerEnContextoNuevo(), 0);
+
+		// act
+		sistemaPersistencia.desalojarProducto(CODIGO);
+
+		// assert
+		assertEquals(PRECIO_NUEVO, obtenerEnContextoNuevo(), 0);
+	}
+
+	@Test
+	public void desalojarProductoConCodigoCambiadoPorFueraDeJPATest() {
+
+		// arrange
+		obtenerEnContextoNuevo();
+		cambiarCodigoConJDBC(OTRO_CODIGO);
+		obtenerEnContextoNuevo();
+
+		// act
+		sistemaPersistencia.desalojarProducto(CODIGO);
+
+		// assert
+		try {
+			obtenerEnContextoNuevo();
+			fail();
+		} catch (NoResultException e) {
+			sistemaPersistencia.cerrar();
+		}
+		try {
+			assertEquals(OTRO_CODIGO, repositorioProducto.obtenerPorCodigo(OTRO_CODIGO).getCodigo());
+		} finally {
+			sistemaPersistencia.cerrar();
+		}
+	}
+
+	@Test
+	public void desalojarProductoDesalojaSuCodigoDeLaRegionDeIdsNaturalesTest() {
+
+		// arrange
+		obtenerPorIdNaturalEnContextoNuevo();
+		Ehcache productosPorCodigo = cacheSegundoNivel.obtenerCache(CacheSegundoNivel.REGION_PRODUCTOS_POR_CODIGO);
+		assertEquals(1, productosPorCodigo.getSize());
+
+		// act
+		sistemaPersistencia.desalojarProducto(CODIGO);
+
+		// assert
+		assertEquals(0, productosPorCodigo.getSize());
+	}
+
+	@Test
+	public void generarGarantiaConRepositorioDeProductosEnCacheTest() {
+
+		// arrange
+		System.setProperty(SistemaDePersistencia.PRODUCTOS_EN_CACHE, "true");
+		SistemaDePersistencia sistemaConCache = new SistemaDePersistencia();
+		System.clearProperty(SistemaDePersistencia.PRODUCTOS_EN_CACHE);
+		RepositorioProducto productosEnCache = sistemaConCache.obtenerRepositorioProductos();
+		Vendedor vendedor = new Vendedor(productosEnCache, sistemaConCache.obtenerRepositorioGarantia(), new Date());
+
+		try {
+			// act
+			sistemaConCache.iniciar();
+			vendedor.generarGarantia(CODIGO, DANILO_ROMAN);
+			sistemaConCache.terminar();
+
+			// assert
+			assertTrue(productosEnCache instanceof RepositorioProductoEnCache);
+			assertTrue(vendedor.tieneGarantia(CODIGO));
+		} finally {
+			sistemaConCache.cerrar();
+		}
+	}
+
+	@Test
+	public void productoLeidoEnUnaTransaccionDeshechaNoQuedaEnLaCacheDeLecturaTest() {
+
+		// arrange
+		RepositorioProductoEnCache productosEnCache = sistemaPersistencia.obtenerRepositorioProductosEnCache();
+		sistemaPersistencia.iniciar();
+		productosEnCache.agregar(new ProductoTestDataBuilder().conCodigo(OTRO_CODIGO).build());
+		productosEnCache.obtenerPorCodigo(OTRO_CODIGO);
+		assertEquals(0, productosEnCache.getTamanio());
+
+		// act
+		sistemaPersistencia.deshacer();
+
+		// assert
+		assertEquals(0, productosEnCache.getTamanio());
+		try {
+			productosEnCache.obtenerPorCodigo(OTRO_CODIGO);
+			fail();
+		} catch (NoResultException e) {
+			assertEquals(0, productosEnCache.getTamanio());
+		}
+	}
+
+	@Test
+	public void productoLeidoEnUnaTransaccionSeGuardaAlConfirmarTest() {
+
+		// arrange
+		RepositorioProductoEnCache productosEnCache = sistemaPersistencia.obtenerRepositorioProductosEnCache();
+		sistemaPersistencia.iniciar();
+		productosEnCache.agregar(new ProductoTestDataBuilder().conCodigo(OTRO_CODIGO).build());
+		productosEnCache.obtenerPorCodigo(OTRO_CODIGO);
+
+		// act
+		sistemaPersistencia.terminar();
+
+		// assert
+		assertEquals(1, productosEnCache.getTamanio());
+		assertEquals(OTRO_CODIGO, productosEnCache.obtenerPorCodigo(OTRO_CODIGO).getCodigo());
+		assertEquals(1, productosEnCache.getAciertos());
+	}
+
+	@Test
+	public void limitesDeLasRegionesDesdePersistenceXmlTest() {
+
+		// act
+		CacheConfiguration productos = cacheSegundoNivel.obtenerCache(CacheSegundoNivel.REGION_PRODUCTOS).getCacheConfiguration();
+		CacheConfiguration consultas = cacheSegundoNivel.obtenerCache(CacheSegundoNivel.REGION_CONSULTAS_PRODUCTO).getCacheConfiguration();
+
+		// assert
+		assertEquals(10000, productos.getMaxEntriesLocalHeap());
+		assertEquals(3600, productos.getTimeToLiveSeconds());
+		assertEquals(600, consultas.getTimeToLiveSeconds());
+	}
+
+	private double obtenerEnContextoNuevo() {
+		try {
+			return repositorioProducto.obtenerPorCodigo(CODIGO).getPrecio();
+		} finally {
+			sistemaPersistencia.cerrar();
+		}
+	}
+
+	private void obtenerPorIdNaturalEnContextoNuevo() {
+
+		EntityManager entityManager = ConexionJPA.obtenerEntityManagerFactory().createEntityManager();
+		try {
+			entityManager.unwrap(Session.class).bySimpleNaturalId(ProductoEntity.class).load(CODIGO);
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	private void cambiarPrecioConJDBC(double precio) {
+
+		EntityManager entityManager = ConexionJPA.obtenerEntityManagerFactory().createEntityManager();
+		try {
+			entityManager.getTransaction().begin();
+			entityManager.unwrap(Session.class).doWork(conexion -> {
+				try (PreparedStatement sentencia = conexion.prepareStatement("UPDATE Producto SET precio = ? WHERE codigo = ?")) {
+					sentencia.setDouble(1, precio);
+					sentencia.setString(2, CODIGO);
+					sentencia.executeUpdate();
+				}
+			});
+			entityManager.getTransaction().commit();
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	private void cambiarCodigoConJDBC(String codigo) {
+
+		EntityManager entityManager = ConexionJPA.obtenerEntityManagerFactory().createEntityManager();
+		try {
+			entityManager.getTransaction().begin();
+			entityManager.unwrap(Session.class).doWork(conexion -> {
+				try (PreparedStatement sentencia = conexion.prepareStatement("UPDATE Producto SET codigo = ? WHERE codigo = ?")) {
+					sentencia.setString(1, codigo);
+					sentencia.setString(2, CODIGO);
+					sentencia.executeUpdate();
+				}
+			});
+			entityManager.getTransaction().commit();
+		} finally {
+			entityManager.close();
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package dominio.integracion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+
+import persistencia.conexion.ConexionJPA;
+import persistencia.sistema.SistemaDePersistencia;
+
+/**
+ * Registra las sentencias SQL que Hibernate prepara mientras se ejecuta un escenario, para que las pruebas de
+ * integracion acoten cuantas consultas cuesta cada operacion. Las inserciones enviadas en un mismo batch JDBC
+ * se preparan, y se cuentan, una sola vez. Tambien cuenta las conexiones que los EntityManager toman del pool.
+ */
+public class ContadorSentencias implements StatementInspector {
+
+	private static final long serialVersionUID = 1L;
+	private static final String STATEMENT_INSPECTOR = "hibernate.session_factory.statement_inspector";
+	private static final String GENERAR_ESTADISTICAS = "hibernate.generate_statistics";
+	private static final ContadorSentencias INSTANCIA = new ContadorSentencias();
+
+	private final List<String> sentencias = Collections.synchronizedList(new ArrayList<>());
+	private volatile boolean registrando;
+
+	private ContadorSentencias() {
+	}
+
+	/**
+	 * Crea de nuevo la EntityManagerFactory compartida con el contador instalado
+	 */
+	public static void instalar() {
+		SistemaDePersistencia.apagar();
+		Map<String, Object> propiedades = new HashMap<>();
+		propiedades.put(STATEMENT_INSPECTOR, INSTANCIA);
+		propiedades.put(GENERAR_ESTADISTICAS, "true");
+		ConexionJPA.configurar(propiedades);
+	}
+
+	public static void desinstalar() {
+		SistemaDePersistencia.apagar();
+		ConexionJPA.configurar(Collections.<String, Object>emptyMap());
+	}
+
+	/**
+	 * Ejecuta el escenario y retorna las sentencias que preparo y las conexiones que tomo
+	 * @param escenario
+	 * @return
+	 */
+	public static Sentencias registrar(Runnable escenario) {
+
+		synchronized (INSTANCIA) {
+			Statistics estadisticas = ConexionJPA.obtenerEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+			long conexionesAntes = estadisticas.getConnectCount();
+			INSTANCIA.sentencias.clear();
+			INSTANCIA.registrando = true;
+			try {
+				escenario.run();
+			} finally {
+				INSTANCIA.registrando = false;
+			}
+			return new Sentencias(new ArrayList<>(INSTANCIA.sentencias), estadisticas.getConnectCount() - conexionesAntes);
+		}
+	}
+
+	@Override
+	public String inspect(String sql) {
+		if (registrando) {
+			sentencias.add(sql);
+		}
+		return sql;
+	}
+
+	public static class Sentencias {
+
+		private final List<String> sentencias;
+		private final long conexiones;
+
+		private Sentencias(List<String> sentencias, long conexiones) {
+			this.sentencias = sentencias;
+			this.conexiones = conexiones;
+		}
+
+		/**
+		 * @param tipo primera palabra de la sentencia, como select, insert, update, delete o call
+		 * @return
+		 */
+		public List<String> delTipo(String tipo) {
+
+			List<String> delTipo = new ArrayList<>();
+			for (String sentencia : sentencias) {
+				if (sentencia.trim().toLowerCase(Locale.ROOT).startsWith(tipo.toLowerCase(Locale.ROOT))) {
+					delTipo.add(sentencia);
+				}
+			}
+			return delTipo;
+		}
+
+		public Sentencias verificarMaximo(String tipo, int maximo) {
+
+			List<String> delTipo = delTipo(tipo);
+			if (delTipo.size() > maximo) {
+				throw new AssertionError(String.format("Se esperaban como maximo %d sentencias %s y hubo %d:%n%s", maximo, tipo,
+						delTipo.size(), listar(delTipo)));
+			}
+			return this;
+		}
+
+		public List<String> getSentencias() {
+			return sentencias;
+		}
+
+		/**
+		 * Cantidad de veces que los EntityManager del escenario tomaron una conexion del pool
+		 * @return
+		 */
+		public long getConexiones() {
+			return conexiones;
+		}
+
+		@Override
+		public String toString() {
+			return listar(sentencias);
+		}
+
+		private static String listar(List<String> sentencias) {
+
+			StringBuilder lista = new StringBuilder();
+			for (String sentencia : sentencias) {
+				lista.append("  ").append(sentencia).append(System.lineSeparator());
+			}
+			return lista.toString();
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package dominio.integracion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dominio.GarantiaExtendida;
+import dominio.Producto;
+import dominio.Vendedor;
+import dominio.excepcion.GarantiaExtendidaException;
+import dominio.integracion.ContadorSentencias.Sentencias;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioProducto;
+import persistencia.repositorio.RepositorioGarantiaEscrituraDiferida;
+import persistencia.repositorio.RepositorioGarantiaPersistente;
+import persistencia.sistema.ConexionDedicada;
+import persistencia.sistema.SistemaDePersistencia;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class EscrituraDiferidaTest {
+
+	private static final int HILOS = 32;
+	private static final int CANTIDAD_PRODUCTOS = 200;
+	private static final String DANILO_ROMAN = "Danilo Roman";
+
+	private SistemaDePersistencia sistemaPersistencia;
+
+	private RepositorioProducto repositorioProducto;
+	private RepositorioGarantiaEscrituraDiferida repositorioGarantia;
+
+	@Before
+	public void setUp() {
+
+		ContadorSentencias.instalar();
+		sistemaPersistencia = new SistemaDePersistencia();
+		repositorioProducto = sistemaPersistencia.obtenerRepositorioProductos();
+		repositorioGarantia = sistemaPersistencia.obtenerRepositorioGarantiaEscrituraDiferida();
+
+		sistemaPersistencia.iniciar();
+		for (int i = 0; i < CANTIDAD_PRODUCTOS; i++) {
+			repositorioProducto.agregar(new ProductoTestDataBuilder().conCodigo(codigo(i)).build());
+		}
+		sistemaPersistencia.terminar();
+	}
+
+	@After
+	public void tearDown() {
+		sistemaPersistencia.cerrar();
+		SistemaDePersistencia.apagar();
+		ContadorSentencias.desinstalar();
+	}
+
+	@Test
+	public void garantiasConcurrentesSeConfirmanEnGruposTest() throws Exception {
+
+		// arrange
+		Vendedor vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
+		AtomicInteger creadas = new AtomicInteger();
+		AtomicInteger rechazadas = new AtomicInteger();
+
+		// act
+		Sentencias sentencias = ContadorSentencias.registrar(() -> solicitarDosVecesCadaProducto(vendedor, creadas, rechazadas));
+
+		// assert
+		assertEquals(CANTIDAD_PRODUCTOS, creadas.get());
+		assertEquals(CANTIDAD_PRODUCTOS, rechazadas.get());
+		assertEquals(0, repositorioGarantia.getPendientes());
+		RepositorioGarantiaExtendida repositorioPersistente = sistemaPersistencia.obtenerRepositorioGarantia();
+		for (int i = 0; i < CANTIDAD_PRODUCTOS; i++) {
+			assertTrue(repositorioPersistente.existeGarantia(codigo(i)));
+		}
+		// Cada grupo se inserta con un solo batch JDBC
+		assertTrue(sentencias.delTipo("insert").size() < CANTIDAD_PRODUCTOS / 2);
+	}
+
+	@Test
+	public void apagarConfirmaLasGarantiasPendientesYCierraLaEscrituraTest() throws Exception {
+
+		// arrange
+		Producto producto = repositorioProducto.obtenerPorCodigo(codigo(0));
+		GarantiaExtendida garantia = new GarantiaExtendida(producto, new Date(), new Date(), producto.getPrecio() * 0.1, DANILO_ROMAN);
+		SistemaDePersistencia otroSistema = new SistemaDePersistencia();
+		RepositorioGarantiaEscrituraDiferida otroRepositorio = otroSistema.obtenerRepositorioGarantiaEscrituraDiferida();
+		CompletableFuture<Void> confirmacion = repositorioGarantia.agregarDiferida(garantia);
+
+		// act
+		SistemaDePersistencia.apagar();
+
+		// assert
+		confirmacion.get(30, TimeUnit.SECONDS);
+		assertTrue(otroRepositorio.estaCerrada());
+		assertTrue(repositorioGarantia.estaCerrada());
+		try {
+			otroRepositorio.agregarDiferida(garantia).join();
+			fail();
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+	}
+
+	@Test
+	public void elContextoDelConfirmadorNoCreceEntreGruposTest() throws Exception {
+
+		// arrange - un grupo por garantia
+		ConexionDedicada confirmacion = new ConexionDedicada();
+		RepositorioGarantiaExtendida repositorioConfirmacion = new RepositorioGarantiaPersistente(confirmacion.getEntityManager(),
+				sistemaPersistencia.obtenerFiltroGarantias());
+		RepositorioGarantiaEscrituraDiferida escritura = new RepositorioGarantiaEscrituraDiferida(sistemaPersistencia.obtenerRepositorioGarantia(),
+				repositorioConfirmacion, confirmacion, CANTIDAD_PRODUCTOS, 1, 1, TimeUnit.MILLISECONDS);
+		int maximoAdministradas = 0;
+
+		// act
+		try {
+			for (int i = 0; i < CANTIDAD_PRODUCTOS; i++) {
+				Producto producto = repositorioProducto.obtenerPorCodigo(codigo(i));
+				escritura.agregarDiferida(new GarantiaExtendida(producto, new Date(), new Date(), producto.getPrecio() * 0.1, DANILO_ROMAN))
+						.get(30, TimeUnit.SECONDS);
+				// El futuro se completa despues de confirmar, y el confirmador espera el siguiente grupo sin usar el contexto
+				int administradas = confirmacion.getEntityManager().get().unwrap(Session.class).getStatistics().getEntityCount();
+				maximoAdministradas = Math.max(maximoAdministradas, administradas);
+			}
+		} finally {
+			escritura.cerrar();
+		}
+
+		// assert
+		assertEquals(0, maximoAdministradas);
+	}
+
+	private void solicitarDosVecesCadaProducto(Vendedor vendedor, AtomicInteger creadas, AtomicInteger rechazadas) {
+
+		CountDownLatch salida = new CountDownLatch(HILOS);
+		ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+		try {
+			List<Future<?>> resultados = new ArrayList<>();
+			for (int hilo = 0; hilo < HILOS; hilo++) {
+				final int desplazamiento = hilo;
+				resultados.add(hilos.submit(() -> {
+					salida.countDown();
+					salida.await();
+					try {
+						for (int i = desplazamiento; i < 2 * CANTIDAD_PRODUCTOS; i += HILOS) {
+							sistemaPersistencia.iniciar();
+							try {
+								vendedor.generarGarantia(codigo(i % CANTIDAD_PRODUCTOS), DANILO_ROMAN);
+								sistemaPersistencia.terminar();
+								creadas.incrementAndGet();
+							} catch (GarantiaExtendidaException e) {
+								assertEquals(Vendedor.EL_PRODUCTO_TIENE_GARANTIA, e.getMessage());
+								sistemaPersistencia.deshacer();
+								rechazadas.incrementAndGet();
+							}
+						}
+					} finally {
+						sistemaPersistencia.cerrar();
+					}
+					return null;
+				}));
+			}
+			for (Future<?> resultado : resultados) {
+				resultado.get();
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		} finally {
+			hilos.shutdown();
+		}
+	}
+
+	private static String codigo(int consecutivo) {
+		return String.format("F01TD%05d", consecutivo);
+	}
+}
@@ -0,0 +1,98 @@
+package dominio.integracion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dominio.GarantiaExtendida;
+import dominio.Producto;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioProducto;
+import persistencia.exportacion.ExportadorGarantiasCsv;
+import persistencia.sistema.SistemaDePersistencia;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class ExportadorGarantiasCsvTest {
+
+	private static final int CANTIDAD_GARANTIAS = 3000;
+
+	private SistemaDePersistencia sistemaPersistencia;
+	private RepositorioProducto repositorioProducto;
+	private RepositorioGarantiaExtendida repositorioGarantia;
+
+	@Before
+	public void setUp() {
+
+		// Empieza con una base de datos vacia para conocer todas las filas exportadas
+		SistemaDePersistencia.apagar();
+		sistemaPersistencia = new SistemaDePersistencia();
+		repositorioProducto = sistemaPersistencia.obtenerRepositorioProductos();
+		repositorioGarantia = sistemaPersistencia.obtenerRepositorioGarantia();
+	}
+
+	@After
+	public void tearDown() {
+		sistemaPersistencia.cerrar();
+		SistemaDePersistencia.apagar();
+	}
+
+	@Test
+	public void exportarTodasLasGarantiasTest() throws Exception {
+
+		// arrange
+		List<GarantiaExtendida> garantias = new ArrayList<>();
+		sistemaPersistencia.iniciar();
+		for (int i = 0; i < CANTIDAD_GARANTIAS; i++) {
+			Producto producto = new ProductoTestDataBuilder().conCodigo("EXP" + i).build();
+			repositorioProducto.agregar(producto);
+			garantias.add(new GarantiaExtendida(producto, new Date(), new Date(), 10000, "Cliente " + i));
+		}
+		repositorioGarantia.agregarTodas(garantias);
+		sistemaPersistencia.terminar();
+		sistemaPersistencia.cerrar();
+		ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+		// act
+		long cantidad = new ExportadorGarantiasCsv(repositorioGarantia).exportar(salida);
+
+		// assert
+		String[] lineas = new String(salida.toByteArray(), StandardCharsets.UTF_8).split("\n");
+		assertEquals(CANTIDAD_GARANTIAS, cantidad);
+		assertEquals(CANTIDAD_GARANTIAS + 1, lineas.length);
+		assertEquals(ExportadorGarantiasCsv.ENCABEZADO, lineas[0]);
+	}
+
+	@Test
+	public void exportarCamposConSeparadorTest() throws Exception {
+
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().conCodigo("EXP-CSV").conNombre("Computador \"Lenovo\", 8GB").conPrecio(12500000).build();
+		Date solicitud = new GregorianCalendar(2018, Calendar.AUGUST, 16, 10, 30, 0).getTime();
+		Date fin = new GregorianCalendar(2019, Calendar.APRIL, 6).getTime();
+		sistemaPersistencia.iniciar();
+		repositorioProducto.agregar(producto);
+		repositorioGarantia.agregar(new GarantiaExtendida(producto, solicitud, fin, 2500000, "Mu\u00f1oz, Ana"));
+		sistemaPersistencia.terminar();
+		sistemaPersistencia.cerrar();
+		ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+		// act
+		new ExportadorGarantiasCsv(repositorioGarantia).exportar(salida);
+
+		// assert
+		String csv = new String(salida.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue(csv, csv.endsWith("\"Mu\u00f1oz, Ana\",EXP-CSV,\"Computador \"\"Lenovo\"\", 8GB\",12500000,"
+				+ "2018-08-16 10:30:00,2019-04-06 00:00:00,2500000\n"));
+	}
+}
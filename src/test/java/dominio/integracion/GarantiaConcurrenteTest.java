@@ -0,0 +1,243 @@
+package dominio.integracion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dominio.GarantiaExtendida;
+import dominio.Producto;
+import dominio.Vendedor;
+import dominio.VendedorAsincrono;
+import dominio.excepcion.GarantiaExtendidaException;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioProducto;
+import persistencia.sistema.SistemaDePersistencia;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class GarantiaConcurrenteTest {
+
+	private static final int HILOS = 64;
+	private static final int SOLICITUDES_POR_HILO = 20;
+	private static final int CANTIDAD_PRODUCTOS = 16;
+	private static final String DANILO_ROMAN = "Danilo Roman";
+
+	private SistemaDePersistencia sistemaPersistencia;
+
+	private RepositorioProducto repositorioProducto;
+	private RepositorioGarantiaExtendida repositorioGarantia;
+
+	@Before
+	public void setUp() {
+
+		sistemaPersistencia = new SistemaDePersistencia();
+
+		repositorioProducto = sistemaPersistencia.obtenerRepositorioProductos();
+		repositorioGarantia = sistemaPersistencia.obtenerRepositorioGarantia();
+
+		sistemaPersistencia.iniciar();
+		for (int i = 0; i < CANTIDAD_PRODUCTOS; i++) {
+			repositorioProducto.agregar(new ProductoTestDataBuilder().conCodigo(codigo(i)).build());
+		}
+		sistemaPersistencia.terminar();
+	}
+
+	@After
+	public void tearDown() {
+		sistemaPersistencia.cerrar();
+		SistemaDePersistencia.apagar();
+	}
+
+	@Test
+	public void unaSolaGarantiaPorProductoConHilosConcurrentesTest() throws Exception {
+
+		// arrange
+		final Vendedor vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
+		final CountDownLatch salida = new CountDownLatch(HILOS);
+		final AtomicInteger creadas = new AtomicInteger();
+		final AtomicInteger rechazadas = new AtomicInteger();
+		ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+
+		// act
+		List<Future<Void>> resultados = new ArrayList<>();
+		for (int hilo = 0; hilo < HILOS; hilo++) {
+			final int desplazamiento = hilo;
+			resultados.add(hilos.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					salida.countDown();
+					salida.await();
+					try {
+						for (int i = 0; i < SOLICITUDES_POR_HILO; i++) {
+							sistemaPersistencia.iniciar();
+							try {
+								vendedor.generarGarantia(codigo((desplazamiento + i) % CANTIDAD_PRODUCTOS), DANILO_ROMAN);
+								sistemaPersistencia.terminar();
+								creadas.incrementAndGet();
+							} catch (GarantiaExtendidaException e) {
+								assertEquals(Vendedor.EL_PRODUCTO_TIENE_GARANTIA, e.getMessage());
+								sistemaPersistencia.deshacer();
+								rechazadas.incrementAndGet();
+							}
+						}
+					} finally {
+						sistemaPersistencia.cerrar();
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> resultado : resultados) {
+			resultado.get();
+		}
+		hilos.shutdown();
+
+		// assert
+		assertEquals(CANTIDAD_PRODUCTOS, creadas.get());
+		assertEquals(HILOS * SOLICITUDES_POR_HILO - CANTIDAD_PRODUCTOS, rechazadas.get());
+		for (int i = 0; i < CANTIDAD_PRODUCTOS; i++) {
+			assertTrue(repositorioGarantia.existeGarantia(codigo(i)));
+		}
+	}
+
+	@Test
+	public void unaSolaGarantiaPorProductoConSolicitudesAsincronasTest() {
+
+		// arrange
+		VendedorAsincrono vendedor = new VendedorAsincrono(new Vendedor(repositorioProducto, repositorioGarantia, new Date()), sistemaPersistencia);
+		int creadas = 0;
+		int rechazadas = 0;
+
+		// act
+		List<CompletableFuture<GarantiaExtendida>> resultados = new ArrayList<>();
+		for (int i = 0; i < HILOS; i++) {
+			resultados.add(vendedor.generarGarantiaAsync(codigo(i % CANTIDAD_PRODUCTOS), DANILO_ROMAN, 30, TimeUnit.SECONDS));
+		}
+		for (CompletableFuture<GarantiaExtendida> resultado : resultados) {
+			try {
+				resultado.join();
+				creadas++;
+			} catch (CompletionException e) {
+				assertTrue(e.getCause() instanceof GarantiaExtendidaException);
+				assertEquals(Vendedor.EL_PRODUCTO_TIENE_GARANTIA, e.getCause().getMessage());
+				rechazadas++;
+			}
+		}
+
+		// assert
+		assertEquals(CANTIDAD_PRODUCTOS, creadas);
+		assertEquals(HILOS - CANTIDAD_PRODUCTOS, rechazadas);
+	}
+
+	@Test
+	public void otraTransaccionEsperaLaConfirmacionDelMismoCodigoTest() throws Exception {
+
+		// arrange
+		final Vendedor vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
+		ExecutorService hilo = Executors.newSingleThreadExecutor();
+		sistemaPersistencia.iniciar();
+		vendedor.generarGarantia(codigo(0), DANILO_ROMAN);
+
+		try {
+			Future<String> otra = hilo.submit(() -> {
+				sistemaPersistencia.iniciar();
+				try {
+					vendedor.generarGarantia(codigo(0), DANILO_ROMAN);
+					sistemaPersistencia.terminar();
+					return null;
+				} catch (GarantiaExtendidaException e) {
+					sistemaPersistencia.deshacer();
+					return e.getMessage();
+				} finally {
+					sistemaPersistencia.cerrar();
+				}
+			});
+			Thread.sleep(100);
+			boolean terminoAntesDeConfirmar = otra.isDone();
+
+			// act
+			sistemaPersistencia.terminar();
+
+			// assert
+			assertFalse(terminoAntesDeConfirmar);
+			assertEquals(Vendedor.EL_PRODUCTO_TIENE_GARANTIA, otra.get(30, TimeUnit.SECONDS));
+		} finally {
+			hilo.shutdownNow();
+		}
+	}
+
+	@Test
+	public void garantiaConfirmadaDespuesDeReconstruirElFiltroSeEncuentraTest() throws Exception {
+
+		// arrange
+		Producto producto = repositorioProducto.obtenerPorCodigo(codigo(0));
+		GarantiaExtendida garantia = new GarantiaExtendida(producto, new Date(), new Date(), producto.getPrecio() * 0.1, DANILO_ROMAN);
+		ExecutorService hilo = Executors.newSingleThreadExecutor();
+		sistemaPersistencia.iniciar();
+		repositorioGarantia.agregar(garantia);
+
+		try {
+			hilo.submit(() -> {
+				try {
+					sistemaPersistencia.reconstruirFiltroGarantias();
+				} finally {
+					sistemaPersistencia.cerrar();
+				}
+			}).get(30, TimeUnit.SECONDS);
+
+			// act
+			sistemaPersistencia.terminar();
+
+			// assert
+			assertTrue(repositorioGarantia.existeGarantia(codigo(0)));
+		} finally {
+			hilo.shutdownNow();
+		}
+	}
+
+	@Test
+	public void restriccionUnicaRechazaGarantiaDuplicadaTest() {
+
+		// arrange
+		Producto producto = repositorioProducto.obtenerPorCodigo(codigo(0));
+		GarantiaExtendida garantia = new GarantiaExtendida(producto, new Date(), new Date(), producto.getPrecio() * 0.1, DANILO_ROMAN);
+		sistemaPersistencia.iniciar();
+		repositorioGarantia.agregar(garantia);
+		sistemaPersistencia.terminar();
+
+		// act
+		sistemaPersistencia.iniciar();
+		try {
+			repositorioGarantia.agregarTodas(Collections.singletonList(garantia));
+			fail();
+		} catch (GarantiaExtendidaException e) {
+			// assert
+			assertEquals(Vendedor.EL_PRODUCTO_TIENE_GARANTIA, e.getMessage());
+		} finally {
+			sistemaPersistencia.deshacer();
+		}
+	}
+
+	private static String codigo(int consecutivo) {
+		return String.format("F01TS%05d", consecutivo);
+	}
+}
@@ -0,0 +1,197 @@
+package dominio.integracion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dominio.Producto;
+import dominio.integracion.ContadorSentencias.Sentencias;
+import dominio.repositorio.RepositorioProducto;
+import persistencia.importacion.ImportacionException;
+import persistencia.importacion.ImportadorProductos;
+import persistencia.sistema.SistemaDePersistencia;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class ImportadorProductosTest {
+
+	private static final int TAMANIO_BLOQUE = 100;
+	private static final int CANTIDAD_PRODUCTOS = 250;
+
+	private SistemaDePersistencia sistemaPersistencia;
+	private RepositorioProducto repositorioProducto;
+	private List<Long> avance;
+
+	@Before
+	public void setUp() {
+
+		ContadorSentencias.instalar();
+		sistemaPersistencia = new SistemaDePersistencia();
+		repositorioProducto = sistemaPersistencia.obtenerRepositorioProductos();
+		avance = new ArrayList<>();
+	}
+
+	@After
+	public void tearDown() {
+		sistemaPersistencia.cerrar();
+		ContadorSentencias.desinstalar();
+	}
+
+	@Test
+	public void importarPorBloquesTest() {
+
+		// arrange
+		ImportadorProductos importador = importador();
+
+		// act
+		Sentencias sentencias = ContadorSentencias.registrar(() -> importador.importar(productos("IMP", CANTIDAD_PRODUCTOS, -1)));
+
+		// assert
+		assertEquals(3, avance.size());
+		assertEquals(250L, (long) avance.get(2));
+		// cada bloque prepara una sola sentencia insert y la envia en batches JDBC, y los ids se reservan de a 50
+		sentencias.verificarMaximo("insert", 3)
+				.verificarMaximo("call", 6);
+		assertNotNull(obtener("IMP0"));
+		assertNotNull(obtener("IMP249"));
+	}
+
+	@Test
+	public void reanudarDespuesDeUnFalloTest() {
+
+		// arrange
+		ImportadorProductos importador = importador();
+		long confirmados = 0;
+		try {
+			importador.importar(productos("REA", CANTIDAD_PRODUCTOS, 150));
+			fail();
+		} catch (ImportacionException e) {
+			confirmados = e.getProductosConfirmados();
+		}
+
+		// act
+		long total = importador.importar(productos("REA", CANTIDAD_PRODUCTOS, -1), confirmados);
+
+		// assert
+		assertEquals(100, confirmados);
+		assertEquals(CANTIDAD_PRODUCTOS, total);
+		assertNotNull(obtener("REA99"));
+		assertNotNull(obtener("REA100"));
+		assertNotNull(obtener("REA249"));
+	}
+
+	@Test
+	public void importarCsvTest() {
+
+		// arrange
+		String csv = "codigo,nombre,precio\n"
+				+ "CSV01,\"Computador Lenovo, 8GB\",780000\n"
+				+ "\n"
+				+ "CSV02,Impresora HP,420000.5\n";
+
+		// act
+		long total = importador().importarCsv(new StringReader(csv), 0);
+
+		// assert
+		assertEquals(2, total);
+		assertEquals("Computador Lenovo, 8GB", obtener("CSV01").getNombre());
+		assertEquals(420000.5, obtener("CSV02").getPrecio(), 0);
+	}
+
+	@Test
+	public void importarCsvConLineaInvalidaTest() {
+
+		// arrange
+		String csv = "CSV10,Mouse,50000\nCSV11,Teclado,barato\n";
+
+		try {
+			// act
+			importador().importarCsv(new StringReader(csv), 0);
+			fail();
+		} catch (ImportacionException e) {
+			// assert
+			assertEquals(0, e.getProductosConfirmados());
+			assertTrue(e.getMessage().contains("linea 2"));
+		}
+	}
+
+	@Test
+	public void importarCsvCierraElArchivoAunqueFalleTest() {
+
+		// arrange
+		CsvQueRegistraCierre csv = new CsvQueRegistraCierre("CSV20,Mouse,50000\nCSV21,Teclado,barato\n");
+
+		try {
+			// act
+			importador().importarCsv(csv, 0);
+			fail();
+		} catch (ImportacionException e) {
+			// assert
+			assertTrue(csv.cerrado);
+		}
+	}
+
+	private ImportadorProductos importador() {
+		return sistemaPersistencia.obtenerImportadorProductos(TAMANIO_BLOQUE, (confirmados, porSegundo) -> avance.add(confirmados));
+	}
+
+	private Producto obtener(String codigo) {
+		try {
+			return repositorioProducto.obtenerPorCodigo(codigo);
+		} finally {
+			sistemaPersistencia.cerrar();
+		}
+	}
+
+	/**
+	 * Genera los productos uno a uno, como un archivo que se lee por partes, y falla en la posicion dada
+	 */
+	private static Iterator<Producto> productos(String prefijo, int cantidad, int posicionFallo) {
+
+		return new Iterator<Producto>() {
+
+			private int posicion;
+
+			@Override
+			public boolean hasNext() {
+				return posicion < cantidad;
+			}
+
+			@Override
+			public Producto next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				if (posicion == posicionFallo) {
+					throw new IllegalStateException("Fuente no disponible");
+				}
+				return new ProductoTestDataBuilder().conCodigo(prefijo + posicion++).build();
+			}
+		};
+	}
+
+	private static class CsvQueRegistraCierre extends StringReader {
+
+		private boolean cerrado;
+
+		CsvQueRegistraCierre(String csv) {
+			super(csv);
+		}
+
+		@Override
+		public void close() {
+			cerrado = true;
+			super.close();
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package dominio.integracion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dominio.GarantiaExtendida;
+import dominio.Pagina;
+import dominio.Producto;
+import dominio.integracion.ContadorSentencias.Sentencias;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioProducto;
+import persistencia.conexion.ConexionJPA;
+import persistencia.sistema.SistemaDePersistencia;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class PaginacionGarantiasTest {
+
+	private static final String DANILO_ROMAN = "Danilo Roman";
+	private static final String ANA_MUNOZ = "Ana Munoz";
+	private static final int GARANTIAS_DANILO = 25;
+	private static final int GARANTIAS_ANA = 5;
+	private static final long INICIO = 1534400000000L;
+
+	private SistemaDePersistencia sistemaPersistencia;
+	private RepositorioGarantiaExtendida repositorioGarantia;
+
+	@Before
+	public void setUp() {
+
+		ContadorSentencias.instalar();
+		sistemaPersistencia = new SistemaDePersistencia();
+		RepositorioProducto repositorioProducto = sistemaPersistencia.obtenerRepositorioProductos();
+		repositorioGarantia = sistemaPersistencia.obtenerRepositorioGarantia();
+
+		List<GarantiaExtendida> garantias = new ArrayList<>();
+		sistemaPersistencia.iniciar();
+		for (int i = 0; i < GARANTIAS_DANILO + GARANTIAS_ANA; i++) {
+			Producto producto = new ProductoTestDataBuilder().conCodigo("PAG" + i).build();
+			repositorioProducto.agregar(producto);
+			// cada dos garantias comparten la fecha de solicitud
+			garantias.add(new GarantiaExtendida(producto, minuto(i / 2), minuto(i / 2), 1000, i < GARANTIAS_DANILO ? DANILO_ROMAN : ANA_MUNOZ));
+		}
+		repositorioGarantia.agregarTodas(garantias);
+		sistemaPersistencia.terminar();
+		sistemaPersistencia.cerrar();
+	}
+
+	@After
+	public void tearDown() {
+		sistemaPersistencia.cerrar();
+		ContadorSentencias.desinstalar();
+	}
+
+	@Test
+	public void buscarPorNombreClienteTest() {
+
+		// act
+		Pagina<GarantiaExtendida> primera = repositorioGarantia.buscarPorNombreCliente(DANILO_ROMAN, null, 10);
+		Pagina<GarantiaExtendida> segunda = repositorioGarantia.buscarPorNombreCliente(DANILO_ROMAN, primera.getContinuacion(), 10);
+		Pagina<GarantiaExtendida> tercera = repositorioGarantia.buscarPorNombreCliente(DANILO_ROMAN, segunda.getContinuacion(), 10);
+
+		// assert
+		assertEquals(10, primera.getElementos().size());
+		assertEquals(10, segunda.getElementos().size());
+		assertEquals(5, tercera.getElementos().size());
+		assertFalse(tercera.tieneSiguiente());
+		assertEquals("PAG0", primera.getElementos().get(0).getProducto().getCodigo());
+		assertEquals("PAG24", tercera.getElementos().get(4).getProducto().getCodigo());
+		Set<String> codigos = new HashSet<>();
+		for (Pagina<GarantiaExtendida> pagina : Arrays.asList(primera, segunda, tercera)) {
+			for (GarantiaExtendida garantia : pagina.getElementos()) {
+				assertEquals(DANILO_ROMAN, garantia.getNombreCliente());
+				codigos.add(garantia.getProducto().getCodigo());
+			}
+		}
+		assertEquals(GARANTIAS_DANILO, codigos.size());
+	}
+
+	@Test
+	public void buscarPorFechaSolicitudConFechasRepetidasTest() {
+
+		// arrange - del minuto 3 al 11 hay 16 garantias, y cada pagina de 3 corta entre dos con la misma fecha
+		List<GarantiaExtendida> garantias = new ArrayList<>();
+		String continuacion = null;
+		int paginas = 0;
+
+		// act
+		do {
+			Pagina<GarantiaExtendida> pagina = repositorioGarantia.buscarPorFechaSolicitud(minuto(3), minuto(11), continuacion, 3);
+			garantias.addAll(pagina.getElementos());
+			continuacion = pagina.getContinuacion();
+			paginas++;
+		} while (continuacion != null);
+
+		// assert
+		assertEquals(16, garantias.size());
+		assertEquals(6, paginas);
+		Set<String> codigos = new HashSet<>();
+		for (int i = 0; i < garantias.size(); i++) {
+			codigos.add(garantias.get(i).getProducto().getCodigo());
+			if (i > 0) {
+				assertFalse(garantias.get(i).getFechaSolicitudGarantia().before(garantias.get(i - 1).getFechaSolicitudGarantia()));
+			}
+		}
+		assertEquals(16, codigos.size());
+	}
+
+	@Test
+	public void paginaSiguienteNoUsaOffsetTest() {
+
+		// arrange
+		String continuacion = repositorioGarantia.buscarPorNombreCliente(DANILO_ROMAN, null, 20).getContinuacion();
+
+		// act
+		Sentencias sentencias = ContadorSentencias.registrar(() -> repositorioGarantia.buscarPorNombreCliente(DANILO_ROMAN, continuacion, 20));
+
+		// assert
+		sentencias.verificarMaximo("select", 1);
+		for (String sentencia : sentencias.delTipo("select")) {
+			assertFalse(sentencia, sentencia.toLowerCase().contains("offset"));
+		}
+	}
+
+	@Test
+	public void buscarSinResultadosTest() {
+
+		// act
+		Pagina<GarantiaExtendida> pagina = repositorioGarantia.buscarPorNombreCliente("Sin Garantias", null, 10);
+
+		// assert
+		assertTrue(pagina.getElementos().isEmpty());
+		assertNull(pagina.getContinuacion());
+	}
+
+	@Test
+	public void continuacionDeOtraConsultaTest() {
+
+		// arrange
+		String continuacion = repositorioGarantia.buscarPorNombreCliente(DANILO_ROMAN, null, 10).getContinuacion();
+
+		try {
+			// act
+			repositorioGarantia.buscarPorFechaSolicitud(minuto(0), minuto(20), continuacion, 10);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// assert
+			assertTrue(e.getMessage().startsWith("Continuacion invalida"));
+		}
+	}
+
+	@Test
+	public void buscarPorNombreClienteRecorreElIndiceDelClienteTest() throws SQLException {
+
+		// arrange
+		Sentencias sentencias = ContadorSentencias.registrar(() -> repositorioGarantia.buscarPorNombreCliente(DANILO_ROMAN, null, 10));
+		String consulta = sentencias.delTipo("select").get(0);
+
+		// act
+		String plan;
+		try (Connection conexion = new ConexionJPA().obtenerConexion();
+				PreparedStatement explain = conexion.prepareStatement("EXPLAIN " + consulta)) {
+			explain.setString(1, DANILO_ROMAN);
+			explain.setLong(2, Long.MIN_VALUE);
+			explain.setInt(3, 11);
+			try (ResultSet resultado = explain.executeQuery()) {
+				resultado.next();
+				plan = resultado.getString(1);
+			}
+		}
+
+		// assert
+		assertTrue(plan, plan.contains("IDX_GARANTIA_CLIENTE"));
+		assertTrue(plan, plan.contains("index sorted"));
+	}
+
+	@Test
+	public void continuacionDeOtroClienteTest() {
+
+		// arrange
+		String continuacion = repositorioGarantia.buscarPorNombreCliente(DANILO_ROMAN, null, 10).getContinuacion();
+
+		try {
+			// act
+			repositorioGarantia.buscarPorNombreCliente(ANA_MUNOZ, continuacion, 10);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// assert
+			assertTrue(e.getMessage().startsWith("Continuacion invalida"));
+		}
+	}
+
+	@Test
+	public void continuacionDeOtroRangoDeFechasTest() {
+
+		// arrange
+		String continuacion = repositorioGarantia.buscarPorFechaSolicitud(minuto(0), minuto(20), null, 10).getContinuacion();
+
+		try {
+			// act
+			repositorioGarantia.buscarPorFechaSolicitud(minuto(0), minuto(10), continuacion, 10);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// assert
+			assertTrue(e.getMessage().startsWith("Continuacion invalida"));
+		}
+	}
+
+	private static Date minuto(int minuto) {
+		return new Date(INICIO + TimeUnit.MINUTES.toMillis(minuto));
+	}
+}
@@ -0,0 +1,128 @@
+package dominio.integracion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.sql.PreparedStatement;
+
+import javax.persistence.EntityManager;
+import javax.persistence.NoResultException;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dominio.integracion.ContadorSentencias.Sentencias;
+import dominio.repositorio.RepositorioProducto;
+import persistencia.conexion.ConexionJPA;
+import persistencia.repositorio.RepositorioProductoConIndicePrecios;
+import persistencia.sistema.SistemaDePersistencia;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class RepositorioProductoConIndicePreciosTest {
+
+	private static final String CODIGO = "F01TSA0150";
+	private static final String OTRO_CODIGO = "F01TSA0151";
+	private static final double PRECIO_ORIGINAL = 780000;
+	private static final double PRECIO_NUEVO = 820000;
+
+	private SistemaDePersistencia sistemaPersistencia;
+
+	@Before
+	public void setUp() {
+
+		ContadorSentencias.instalar();
+		sistemaPersistencia = new SistemaDePersistencia();
+		RepositorioProducto repositorioProducto = sistemaPersistencia.obtenerRepositorioProductos();
+
+		sistemaPersistencia.iniciar();
+		repositorioProducto.agregar(new ProductoTestDataBuilder().conCodigo(CODIGO).conPrecio(PRECIO_ORIGINAL).build());
+		sistemaPersistencia.terminar();
+		sistemaPersistencia.cerrar();
+	}
+
+	@After
+	public void tearDown() {
+		sistemaPersistencia.cerrar();
+		ContadorSentencias.desinstalar();
+	}
+
+	@Test
+	public void precioSeLeeDelIndiceSinConsultarLaBaseDeDatosTest() {
+
+		// arrange
+		RepositorioProductoConIndicePrecios repositorioConIndice = sistemaPersistencia.obtenerRepositorioProductosConIndicePrecios();
+		sistemaPersistencia.cerrar();
+		cambiarPrecioConJDBC(PRECIO_NUEVO);
+		double[] precio = new double[1];
+
+		// act
+		Sentencias sentencias = ContadorSentencias.registrar(() -> precio[0] = repositorioConIndice.obtenerPrecioPorCodigo(CODIGO));
+
+		// assert
+		sentencias.verificarMaximo("select", 0);
+		assertEquals(PRECIO_ORIGINAL, precio[0], 0);
+		sistemaPersistencia.desalojarProducto(CODIGO);
+		assertEquals(PRECIO_NUEVO, repositorioConIndice.obtenerPrecioPorCodigo(CODIGO), 0);
+	}
+
+	@Test
+	public void precioDeUnProductoDeshechoNoQuedaEnElIndiceTest() {
+
+		// arrange
+		RepositorioProductoConIndicePrecios repositorioConIndice = sistemaPersistencia.obtenerRepositorioProductosConIndicePrecios();
+		sistemaPersistencia.iniciar();
+		repositorioConIndice.agregar(new ProductoTestDataBuilder().conCodigo(OTRO_CODIGO).conPrecio(PRECIO_NUEVO).build());
+		assertEquals(PRECIO_NUEVO, repositorioConIndice.obtenerPrecioPorCodigo(OTRO_CODIGO), 0);
+
+		// act
+		sistemaPersistencia.deshacer();
+
+		// assert
+		try {
+			repositorioConIndice.obtenerPrecioPorCodigo(OTRO_CODIGO);
+			fail();
+		} catch (NoResultException e) {
+			assertEquals(2, repositorioConIndice.getFallos());
+		}
+	}
+
+	@Test
+	public void precioLeidoEnUnaTransaccionSeIndexaAlConfirmarTest() {
+
+		// arrange
+		RepositorioProductoConIndicePrecios repositorioConIndice = sistemaPersistencia.obtenerRepositorioProductosConIndicePrecios();
+		sistemaPersistencia.iniciar();
+		repositorioConIndice.agregar(new ProductoTestDataBuilder().conCodigo(OTRO_CODIGO).conPrecio(PRECIO_NUEVO).build());
+		repositorioConIndice.obtenerPrecioPorCodigo(OTRO_CODIGO);
+
+		// act
+		sistemaPersistencia.terminar();
+		sistemaPersistencia.cerrar();
+		double[] precio = new double[1];
+		Sentencias sentencias = ContadorSentencias.registrar(() -> precio[0] = repositorioConIndice.obtenerPrecioPorCodigo(OTRO_CODIGO));
+
+		// assert
+		sentencias.verificarMaximo("select", 0);
+		assertEquals(PRECIO_NUEVO, precio[0], 0);
+	}
+
+	private void cambiarPrecioConJDBC(double precio) {
+
+		EntityManager entityManager = ConexionJPA.obtenerEntityManagerFactory().createEntityManager();
+		try {
+			entityManager.getTransaction().begin();
+			entityManager.unwrap(Session.class).doWork(conexion -> {
+				try (PreparedStatement sentencia = conexion.prepareStatement("UPDATE Producto SET precio = ? WHERE codigo = ?")) {
+					sentencia.setDouble(1, precio);
+					sentencia.setString(2, CODIGO);
+					sentencia.executeUpdate();
+				}
+			});
+			entityManager.getTransaction().commit();
+		} finally {
+			entityManager.close();
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package dominio.integracion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dominio.ResultadoGarantia;
+import dominio.SolicitudGarantia;
+import dominio.Vendedor;
+import dominio.excepcion.GarantiaExtendidaException;
+import dominio.integracion.ContadorSentencias.Sentencias;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioProducto;
+import persistencia.sistema.SistemaDePersistencia;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class SentenciasGarantiaTest {
+
+	private static final String DANILO_ROMAN = "Danilo Roman";
+	private static final int CANTIDAD_PRODUCTOS = 40;
+
+	private SistemaDePersistencia sistemaPersistencia;
+
+	private RepositorioProducto repositorioProducto;
+	private RepositorioGarantiaExtendida repositorioGarantia;
+	private Vendedor vendedor;
+
+	@Before
+	public void setUp() {
+
+		ContadorSentencias.instalar();
+		sistemaPersistencia = new SistemaDePersistencia();
+
+		repositorioProducto = sistemaPersistencia.obtenerRepositorioProductos();
+		repositorioGarantia = sistemaPersistencia.obtenerRepositorioGarantia();
+		vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
+
+		sistemaPersistencia.iniciar();
+		for (int i = 0; i < CANTIDAD_PRODUCTOS; i++) {
+			repositorioProducto.agregar(new ProductoTestDataBuilder().conCodigo(codigo(i)).build());
+		}
+		sistemaPersistencia.terminar();
+		sistemaPersistencia.cerrar();
+	}
+
+	@After
+	public void tearDown() {
+		sistemaPersistencia.cerrar();
+		ContadorSentencias.desinstalar();
+	}
+
+	@Test
+	public void generarGarantiaCuestaUnSelectYUnInsertTest() {
+
+		// act - el filtro de garantias evita consultar si existe una garantia para un producto nuevo
+		Sentencias sentencias = ContadorSentencias.registrar(() -> generarGarantia(codigo(0)));
+
+		// assert
+		sentencias.verificarMaximo("select", 1)
+				.verificarMaximo("insert", 1)
+				.verificarMaximo("update", 0)
+				.verificarMaximo("delete", 0);
+	}
+
+	@Test
+	public void unaTransaccionTomaUnaSolaConexionTest() {
+
+		// act - al confirmar no se toma otra conexion para restaurar el autocommit
+		Sentencias sentencias = ContadorSentencias.registrar(() -> {
+			generarGarantia(codigo(0));
+			sistemaPersistencia.cerrar();
+		});
+
+		// assert
+		assertEquals(1, sentencias.getConexiones());
+	}
+
+	@Test
+	public void generarGarantiaRepetidaNoInsertaTest() {
+
+		// arrange
+		generarGarantia(codigo(0));
+
+		// act
+		Sentencias sentencias = ContadorSentencias.registrar(() -> {
+			try {
+				generarGarantia(codigo(0));
+				fail();
+			} catch (GarantiaExtendidaException e) {
+				assertEquals(Vendedor.EL_PRODUCTO_TIENE_GARANTIA, e.getMessage());
+			}
+		});
+
+		// assert
+		sentencias.verificarMaximo("select", 1)
+				.verificarMaximo("insert", 0);
+	}
+
+	@Test
+	public void generarGarantiasPorLoteSinConsultasPorSolicitudTest() {
+
+		// arrange
+		List<SolicitudGarantia> solicitudes = new ArrayList<>();
+		for (int i = 0; i < CANTIDAD_PRODUCTOS; i++) {
+			solicitudes.add(new SolicitudGarantia(codigo(i), DANILO_ROMAN));
+		}
+		List<ResultadoGarantia> resultados = new ArrayList<>();
+
+		// act
+		Sentencias sentencias = ContadorSentencias.registrar(() -> {
+			sistemaPersistencia.iniciar();
+			resultados.addAll(vendedor.generarGarantias(solicitudes));
+			sistemaPersistencia.terminar();
+		});
+
+		// assert
+		for (ResultadoGarantia resultado : resultados) {
+			assertTrue(resultado.fueCreada());
+		}
+		// las garantias del lote se insertan con una sola sentencia enviada en batches JDBC
+		sentencias.verificarMaximo("select", 2)
+				.verificarMaximo("insert", 1)
+				.verificarMaximo("update", 0);
+	}
+
+	@Test
+	public void leerGarantiaCuestaUnSelectTest() {
+
+		// arrange
+		generarGarantia(codigo(0));
+		sistemaPersistencia.cerrar();
+
+		// act - las proyecciones traen el producto en el mismo select, sin cargarlo aparte
+		Sentencias sentencias = ContadorSentencias.registrar(() -> {
+			assertEquals(DANILO_ROMAN, repositorioGarantia.obtener(codigo(0)).getNombreCliente());
+			assertEquals(codigo(0), repositorioGarantia.obtenerProductoConGarantiaPorCodigo(codigo(0)).getCodigo());
+		});
+
+		// assert
+		sentencias.verificarMaximo("select", 2);
+	}
+
+	@Test
+	public void verificarMaximoListaLasSentenciasTest() {
+
+		// arrange
+		Sentencias sentencias = ContadorSentencias.registrar(() -> {
+			repositorioProducto.obtenerPorCodigo(codigo(1));
+			repositorioProducto.obtenerPorCodigo(codigo(2));
+		});
+
+		// act
+		try {
+			sentencias.verificarMaximo("select", 1);
+			fail();
+		} catch (AssertionError e) {
+			// assert
+			assertTrue(e.getMessage().contains("hubo 2"));
+			assertTrue(e.getMessage().contains("from Producto"));
+		}
+	}
+
+	private void generarGarantia(String codigo) {
+
+		sistemaPersistencia.iniciar();
+		try {
+			vendedor.generarGarantia(codigo, DANILO_ROMAN);
+			sistemaPersistencia.terminar();
+		} catch (RuntimeException e) {
+			sistemaPersistencia.deshacer();
+			throw e;
+		}
+	}
+
+	private static String codigo(int consecutivo) {
+		return String.format("F01TS%05d", consecutivo);
+	}
+}
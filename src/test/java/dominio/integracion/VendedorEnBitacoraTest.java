@@ -0,0 +1,35 @@
+package dominio.integracion;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
+import persistencia.sistema.SistemaDePersistencia;
+
+/**
+ * Los mismos escenarios de VendedorTest con las garantias en la bitacora. Cada prueba usa un directorio nuevo,
+ * que se define antes del setUp de VendedorTest porque la bitacora se abre al obtener el repositorio
+ */
+public class VendedorEnBitacoraTest extends VendedorTest {
+
+	@Rule
+	public TemporaryFolder carpeta = new TemporaryFolder() {
+		@Override
+		protected void before() throws Throwable {
+			super.before();
+			System.setProperty(SistemaDePersistencia.DIRECTORIO_BITACORA, getRoot().toString());
+		}
+	};
+
+	@BeforeClass
+	public static void usarBitacora() {
+		System.setProperty(SistemaDePersistencia.MODO, SistemaDePersistencia.MODO_BITACORA);
+	}
+
+	@AfterClass
+	public static void restaurarModo() {
+		System.clearProperty(SistemaDePersistencia.MODO);
+		System.clearProperty(SistemaDePersistencia.DIRECTORIO_BITACORA);
+	}
+}
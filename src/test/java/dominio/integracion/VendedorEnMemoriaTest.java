@@ -0,0 +1,61 @@
+package dominio.integracion;
+
+import java.util.Date;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dominio.Producto;
+import dominio.Vendedor;
+import persistencia.sistema.SistemaDePersistencia;
+import testdatabuilder.ProductoTestDataBuilder;
+
+/**
+ * Los mismos escenarios de VendedorTest con los repositorios en memoria
+ */
+public class VendedorEnMemoriaTest extends VendedorTest {
+
+	private static final String DANILO_ROMAN = "Danilo Roman";
+
+	@Rule
+	public TemporaryFolder carpeta = new TemporaryFolder();
+
+	@BeforeClass
+	public static void usarMemoria() {
+		System.setProperty(SistemaDePersistencia.MODO, SistemaDePersistencia.MODO_MEMORIA);
+	}
+
+	@AfterClass
+	public static void restaurarModo() {
+		System.clearProperty(SistemaDePersistencia.MODO);
+	}
+
+	@Test
+	public void garantiaSobreviveAlReinicioTest() {
+
+		// arrange
+		SistemaDePersistencia.apagar();
+		System.setProperty(SistemaDePersistencia.ARCHIVO_INSTANTANEA, carpeta.getRoot().toPath().resolve("tienda.instantanea").toString());
+		try {
+			SistemaDePersistencia antes = new SistemaDePersistencia();
+			Producto producto = new ProductoTestDataBuilder().build();
+			antes.obtenerRepositorioProductos().agregar(producto);
+			new Vendedor(antes.obtenerRepositorioProductos(), antes.obtenerRepositorioGarantia(), new Date())
+					.generarGarantia(producto.getCodigo(), DANILO_ROMAN);
+
+			// act
+			SistemaDePersistencia.apagar();
+			SistemaDePersistencia despues = new SistemaDePersistencia();
+
+			// assert
+			Assert.assertEquals(DANILO_ROMAN, despues.obtenerRepositorioGarantia().obtener(producto.getCodigo()).getNombreCliente());
+			SistemaDePersistencia.apagar();
+		} finally {
+			System.clearProperty(SistemaDePersistencia.ARCHIVO_INSTANTANEA);
+		}
+	}
+}
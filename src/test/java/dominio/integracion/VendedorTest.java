@@ -2,8 +2,10 @@ package dominio.integracion;
 
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -12,6 +14,8 @@ import org.junit.Test;
 
 import dominio.Vendedor;
 import dominio.Producto;
+import dominio.ResultadoGarantia;
+import dominio.SolicitudGarantia;
 import dominio.excepcion.GarantiaExtendidaException;
 import dominio.repositorio.RepositorioProducto;
 import dominio.repositorio.RepositorioGarantiaExtendida;
@@ -38,6 +42,8 @@ public class VendedorTest {
 	
 	private static final String CODIGO_PRODUCTO_ERRONEO = "A1I2450759";
 	
+	private static final String CODIGO_PRODUCTO_CON_GARANTIA = "F01TSA0151";
+	
 	private SistemaDePersistencia sistemaPersistencia;
 	
 	private RepositorioProducto repositorioProducto;
@@ -58,6 +64,8 @@ public class VendedorTest {
 	@After
 	public void tearDown() {
 		sistemaPersistencia.terminar();
+		sistemaPersistencia.cerrar();
+		SistemaDePersistencia.apagar();
 	}
 
 	@Test
@@ -264,4 +272,37 @@ public class VendedorTest {
 			Assert.assertNull(repositorioGarantia.obtenerProductoConGarantiaPorCodigo(producto.getCodigo()));
 		}
 	}
+	
+	@Test
+	public void generarGarantiasPorLoteTest() {
+
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().build();
+		Producto productoConTresVocales = new ProductoTestDataBuilder().conCodigo(CODIGO_PRODUCTO_CON_TRES_VOCALES).build();
+		Producto productoConGarantia = new ProductoTestDataBuilder().conCodigo(CODIGO_PRODUCTO_CON_GARANTIA).build();
+		repositorioProducto.agregar(producto);
+		repositorioProducto.agregar(productoConTresVocales);
+		repositorioProducto.agregar(productoConGarantia);
+		
+		Vendedor vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
+		vendedor.generarGarantia(CODIGO_PRODUCTO_CON_GARANTIA, DANILO_ROMAN);
+
+		// act
+		List<ResultadoGarantia> resultados = vendedor.generarGarantias(Arrays.asList(
+				new SolicitudGarantia(producto.getCodigo(), DANILO_ROMAN),
+				new SolicitudGarantia(CODIGO_PRODUCTO_CON_TRES_VOCALES, DANILO_ROMAN),
+				new SolicitudGarantia(CODIGO_PRODUCTO_ERRONEO, DANILO_ROMAN),
+				new SolicitudGarantia(CODIGO_PRODUCTO_CON_GARANTIA, DANILO_ROMAN),
+				new SolicitudGarantia(producto.getCodigo(), DANILO_ROMAN)));
+
+		// assert
+		Assert.assertEquals(5, resultados.size());
+		Assert.assertTrue(resultados.get(0).fueCreada());
+		Assert.assertEquals(Vendedor.ESTE_PRODUCTo_HO_CUENTA_CON_GARANTIA_EXTENDIDA, resultados.get(1).getMotivoRechazo());
+		Assert.assertEquals(Vendedor.NO_SE_ENCUETRA_UN_PRODUCTO_CON_ESTE_CODIGO, resultados.get(2).getMotivoRechazo());
+		Assert.assertEquals(Vendedor.EL_PRODUCTO_TIENE_GARANTIA, resultados.get(3).getMotivoRechazo());
+		Assert.assertEquals(Vendedor.EL_PRODUCTO_TIENE_GARANTIA, resultados.get(4).getMotivoRechazo());
+		Assert.assertEquals(DANILO_ROMAN, repositorioGarantia.obtener(producto.getCodigo()).getNombreCliente());
+		Assert.assertNull(repositorioGarantia.obtenerProductoConGarantiaPorCodigo(CODIGO_PRODUCTO_CON_TRES_VOCALES));
+	}
 }
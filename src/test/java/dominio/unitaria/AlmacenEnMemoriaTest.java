@@ -0,0 +1,173 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dominio.GarantiaExtendida;
+import dominio.Pagina;
+import dominio.Producto;
+import dominio.excepcion.GarantiaExtendidaException;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioProducto;
+import persistencia.repositorio.AlmacenEnMemoria;
+import persistencia.repositorio.RepositorioGarantiaEnMemoria;
+import persistencia.repositorio.RepositorioProductoEnMemoria;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class AlmacenEnMemoriaTest {
+
+	private static final String CODIGO = "F01TSA0150";
+	private static final String DANILO_ROMAN = "Danilo Roman";
+	private static final int HILOS = 16;
+	private static final int CANTIDAD_GARANTIAS = 25;
+	private static final long UN_DIA = TimeUnit.DAYS.toMillis(1);
+
+	@Rule
+	public TemporaryFolder carpeta = new TemporaryFolder();
+
+	@Test
+	public void unaSolaGarantiaPorProductoConHilosConcurrentesTest() throws Exception {
+
+		// arrange
+		AlmacenEnMemoria almacen = new AlmacenEnMemoria();
+		Producto producto = new ProductoTestDataBuilder().conCodigo(CODIGO).build();
+		new RepositorioProductoEnMemoria(almacen).agregar(producto);
+		RepositorioGarantiaExtendida repositorio = new RepositorioGarantiaEnMemoria(almacen);
+		CountDownLatch salida = new CountDownLatch(HILOS);
+		AtomicInteger creadas = new AtomicInteger();
+		ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+
+		// act
+		List<Future<?>> resultados = new ArrayList<>();
+		for (int i = 0; i < HILOS; i++) {
+			resultados.add(hilos.submit(() -> {
+				salida.countDown();
+				salida.await();
+				try {
+					repositorio.agregar(new GarantiaExtendida(producto, DANILO_ROMAN));
+					creadas.incrementAndGet();
+				} catch (GarantiaExtendidaException e) {
+					// Otro hilo agrego primero la garantia
+				}
+				return null;
+			}));
+		}
+		for (Future<?> resultado : resultados) {
+			resultado.get();
+		}
+		hilos.shutdown();
+
+		// assert
+		assertEquals(1, creadas.get());
+		assertEquals(1, repositorio.recorrer(garantia -> { }));
+	}
+
+	@Test
+	public void lasGarantiasSobrevivenAUnaInstantaneaTest() throws IOException {
+
+		// arrange
+		Path archivo = carpeta.getRoot().toPath().resolve("tienda.instantanea");
+		AlmacenEnMemoria almacen = new AlmacenEnMemoria();
+		RepositorioProducto repositorioProducto = new RepositorioProductoEnMemoria(almacen);
+		RepositorioGarantiaExtendida repositorio = new RepositorioGarantiaEnMemoria(almacen);
+		for (int i = 0; i < CANTIDAD_GARANTIAS; i++) {
+			Producto producto = new ProductoTestDataBuilder().conCodigo(codigo(i)).build();
+			repositorioProducto.agregar(producto);
+			repositorio.agregar(new GarantiaExtendida(producto, new Date(i * UN_DIA), null, i, DANILO_ROMAN));
+		}
+		repositorioProducto.agregar(new ProductoTestDataBuilder().conCodigo(CODIGO).build());
+
+		// act
+		almacen.guardar(archivo);
+		AlmacenEnMemoria recuperado = AlmacenEnMemoria.cargar(archivo);
+
+		// assert
+		RepositorioGarantiaExtendida repositorioRecuperado = new RepositorioGarantiaEnMemoria(recuperado);
+		assertEquals(CODIGO, new RepositorioProductoEnMemoria(recuperado).obtenerPorCodigo(CODIGO).getCodigo());
+		assertFalse(repositorioRecuperado.existeGarantia(CODIGO));
+		GarantiaExtendida garantia = repositorioRecuperado.obtener(codigo(3));
+		assertEquals(DANILO_ROMAN, garantia.getNombreCliente());
+		assertEquals(3, garantia.getPrecioGarantia(), 0);
+		assertNull(garantia.getFechaFinGarantia());
+		assertEquals(codigos(repositorio.buscarPorNombreCliente(DANILO_ROMAN, null, CANTIDAD_GARANTIAS)),
+				codigos(repositorioRecuperado.buscarPorNombreCliente(DANILO_ROMAN, null, CANTIDAD_GARANTIAS)));
+		Pagina<GarantiaExtendida> primera = repositorioRecuperado.buscarPorFechaSolicitud(new Date(0), new Date(10 * UN_DIA), null, 4);
+		Pagina<GarantiaExtendida> segunda = repositorioRecuperado.buscarPorFechaSolicitud(new Date(0), new Date(10 * UN_DIA),
+				primera.getContinuacion(), 4);
+		assertEquals(codigo(4), segunda.getElementos().get(0).getProducto().getCodigo());
+	}
+
+	@Test
+	public void continuacionDeOtroClienteTest() {
+
+		// arrange
+		AlmacenEnMemoria almacen = new AlmacenEnMemoria();
+		RepositorioProducto repositorioProducto = new RepositorioProductoEnMemoria(almacen);
+		RepositorioGarantiaExtendida repositorio = new RepositorioGarantiaEnMemoria(almacen);
+		for (int i = 0; i < 2; i++) {
+			Producto producto = new ProductoTestDataBuilder().conCodigo(codigo(i)).build();
+			repositorioProducto.agregar(producto);
+			repositorio.agregar(new GarantiaExtendida(producto, new Date(i * UN_DIA), null, i, DANILO_ROMAN));
+		}
+		String continuacion = repositorio.buscarPorNombreCliente(DANILO_ROMAN, null, 1).getContinuacion();
+
+		// act
+		try {
+			repositorio.buscarPorNombreCliente("Ana Munoz", continuacion, 1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// assert
+			assertTrue(e.getMessage().startsWith("Continuacion invalida"));
+		}
+	}
+
+	@Test
+	public void archivoQueNoEsInstantaneaTest() throws IOException {
+
+		// arrange
+		Path archivo = carpeta.newFile("otro.csv").toPath();
+		Files.write(archivo, "codigo,nombre,precio".getBytes(StandardCharsets.US_ASCII));
+
+		// act
+		try {
+			AlmacenEnMemoria.cargar(archivo);
+			fail();
+		} catch (IOException e) {
+			// assert
+			assertTrue(e.getMessage().contains("no es una instantanea"));
+		}
+	}
+
+	private static List<String> codigos(Pagina<GarantiaExtendida> pagina) {
+		List<String> codigos = new ArrayList<>();
+		for (GarantiaExtendida garantia : pagina.getElementos()) {
+			codigos.add(garantia.getProducto().getCodigo());
+		}
+		return codigos;
+	}
+
+	private static String codigo(int consecutivo) {
+		return String.format("F01TM%05d", consecutivo);
+	}
+}
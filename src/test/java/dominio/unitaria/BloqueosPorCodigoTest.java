@@ -0,0 +1,312 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Test;
+
+import dominio.concurrencia.BloqueosPorCodigo;
+import dominio.excepcion.GarantiaExtendidaException;
+
+public class BloqueosPorCodigoTest {
+
+	private static final String CODIGO = "F01TSA0150";
+	private static final int HILOS = 8;
+	private static final int REPETICIONES = 2000;
+
+	@Test
+	public void cantidadSegmentosPotenciaDeDosTest() {
+
+		// arrange - act
+		BloqueosPorCodigo bloqueos = new BloqueosPorCodigo(1000, false);
+
+		// assert
+		assertEquals(1024, bloqueos.getCantidadSegmentos());
+		assertEquals(1, new BloqueosPorCodigo(1, true).getCantidadSegmentos());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void cantidadSegmentosInvalidaTest() {
+
+		// act
+		new BloqueosPorCodigo(0, false);
+	}
+
+	@Test
+	public void mismoCodigoSeSerializaTest() throws Exception {
+
+		// arrange
+		BloqueosPorCodigo bloqueos = new BloqueosPorCodigo(16, false);
+		AtomicInteger dentro = new AtomicInteger();
+		AtomicInteger maximoDentro = new AtomicInteger();
+		ExecutorService ejecutor = Executors.newFixedThreadPool(HILOS);
+
+		// act
+		try {
+			for (int i = 0; i < HILOS; i++) {
+				ejecutor.submit(() -> {
+					for (int j = 0; j < REPETICIONES; j++) {
+						Lock bloqueo = bloqueos.adquirir(CODIGO);
+						try {
+							maximoDentro.accumulateAndGet(dentro.incrementAndGet(), Math::max);
+							dentro.decrementAndGet();
+						} finally {
+							bloqueo.unlock();
+						}
+					}
+				});
+			}
+		} finally {
+			ejecutor.shutdown();
+			assertTrue(ejecutor.awaitTermination(30, TimeUnit.SECONDS));
+		}
+
+		// assert
+		assertEquals(1, maximoDentro.get());
+		assertEquals(HILOS * REPETICIONES, bloqueos.getAdquisiciones());
+	}
+
+	@Test
+	public void codigosEnSegmentosDistintosNoSeBloqueanTest() throws Exception {
+
+		// arrange
+		BloqueosPorCodigo bloqueos = new BloqueosPorCodigo(16, false);
+		String otroCodigo = buscarCodigoEnOtroSegmento(bloqueos, CODIGO);
+		Lock bloqueo = bloqueos.adquirir(CODIGO);
+		ExecutorService ejecutor = Executors.newSingleThreadExecutor();
+
+		try {
+			// act
+			Future<Boolean> adquirido = ejecutor.submit(() -> {
+				Lock otro = bloqueos.adquirir(otroCodigo);
+				otro.unlock();
+				return true;
+			});
+
+			// assert
+			assertTrue(adquirido.get(5, TimeUnit.SECONDS));
+			assertEquals(0, bloqueos.getEsperas());
+		} finally {
+			bloqueo.unlock();
+			ejecutor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void registraEsperasTest() throws Exception {
+
+		// arrange
+		BloqueosPorCodigo bloqueos = new BloqueosPorCodigo(16, true);
+		CountDownLatch esperando = new CountDownLatch(1);
+		Lock bloqueo = bloqueos.adquirir(CODIGO);
+		ExecutorService ejecutor = Executors.newSingleThreadExecutor();
+
+		try {
+			Future<?> otro = ejecutor.submit(() -> {
+				esperando.countDown();
+				bloqueos.adquirir(CODIGO).unlock();
+			});
+			esperando.await();
+			Thread.sleep(50);
+
+			// act
+			bloqueo.unlock();
+			otro.get(5, TimeUnit.SECONDS);
+		} finally {
+			ejecutor.shutdownNow();
+		}
+
+		// assert
+		assertEquals(2, bloqueos.getAdquisiciones());
+		assertEquals(1, bloqueos.getEsperas());
+		assertTrue(bloqueos.getMaximaEspera(TimeUnit.MILLISECONDS) >= 40);
+		assertEquals(bloqueos.getMaximaEspera(TimeUnit.NANOSECONDS), bloqueos.getTiempoTotalEspera(TimeUnit.NANOSECONDS));
+	}
+
+	@Test
+	public void bloqueoJustoNoSeAdelantaALosQueEsperanTest() throws Exception {
+
+		// arrange
+		BloqueosPorCodigo bloqueos = new BloqueosPorCodigo(16, true);
+		ReentrantLock bloqueo = (ReentrantLock) bloqueos.adquirir(CODIGO);
+		AtomicInteger llegada = new AtomicInteger();
+		ExecutorService ejecutor = Executors.newSingleThreadExecutor();
+
+		try {
+			Future<Integer> otro = ejecutor.submit(() -> {
+				Lock adquirido = bloqueos.adquirir(CODIGO);
+				try {
+					return llegada.incrementAndGet();
+				} finally {
+					adquirido.unlock();
+				}
+			});
+			while (!bloqueo.hasQueuedThreads()) {
+				Thread.yield();
+			}
+
+			// act - se vuelve a pedir el bloqueo antes de que el hilo que espera alcance a tomarlo
+			bloqueo.unlock();
+			Lock otraVez = bloqueos.adquirir(CODIGO);
+			int propio = llegada.incrementAndGet();
+			otraVez.unlock();
+
+			// assert
+			assertEquals(1, otro.get(5, TimeUnit.SECONDS).intValue());
+			assertEquals(2, propio);
+		} finally {
+			ejecutor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void retieneElBloqueoHastaTerminarLaUnidadDeTrabajoTest() throws Exception {
+
+		// arrange
+		BloqueosPorCodigo bloqueos = new BloqueosPorCodigo(16, false);
+		ExecutorService ejecutor = Executors.newSingleThreadExecutor();
+		BloqueosPorCodigo.iniciarRetencion();
+
+		try {
+			BloqueosPorCodigo.liberarAlTerminar(bloqueos.adquirir(CODIGO));
+			Future<?> otro = ejecutor.submit(() -> bloqueos.adquirir(CODIGO).unlock());
+			Thread.sleep(50);
+			boolean libreAntesDeTerminar = otro.isDone();
+
+			// act
+			BloqueosPorCodigo.liberarRetenidos();
+			otro.get(5, TimeUnit.SECONDS);
+
+			// assert
+			assertFalse(libreAntesDeTerminar);
+			assertEquals(1, bloqueos.getEsperas());
+		} finally {
+			BloqueosPorCodigo.liberarRetenidos();
+			ejecutor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void sinUnidadDeTrabajoLiberaDeInmediatoTest() throws Exception {
+
+		// arrange
+		BloqueosPorCodigo bloqueos = new BloqueosPorCodigo(16, false);
+		ExecutorService ejecutor = Executors.newSingleThreadExecutor();
+
+		try {
+			// act
+			BloqueosPorCodigo.liberarAlTerminar(bloqueos.adquirir(CODIGO));
+			ejecutor.submit(() -> bloqueos.adquirir(CODIGO).unlock()).get(5, TimeUnit.SECONDS);
+
+			// assert
+			assertEquals(0, bloqueos.getEsperas());
+		} finally {
+			ejecutor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void segmentosRetenidosEnOrdenInversoNoSeBloqueanParaSiempreTest() throws Exception {
+
+		// arrange - cada unidad de trabajo retiene un segmento y despues pide el que retiene la otra
+		BloqueosPorCodigo bloqueos = new BloqueosPorCodigo(16, false, 200, TimeUnit.MILLISECONDS);
+		String otroCodigo = buscarCodigoEnOtroSegmento(bloqueos, CODIGO);
+		CountDownLatch retenidos = new CountDownLatch(2);
+		ExecutorService ejecutor = Executors.newFixedThreadPool(2);
+
+		try {
+			// act
+			Future<Boolean> primera = ejecutor.submit(() -> retenerYPedir(bloqueos, CODIGO, otroCodigo, retenidos));
+			Future<Boolean> segunda = ejecutor.submit(() -> retenerYPedir(bloqueos, otroCodigo, CODIGO, retenidos));
+			boolean primeraCompleta = primera.get(5, TimeUnit.SECONDS);
+			boolean segundaCompleta = segunda.get(5, TimeUnit.SECONDS);
+
+			// assert
+			assertFalse(primeraCompleta && segundaCompleta);
+			assertTrue(bloqueos.getEsperasAgotadas() >= 1);
+			bloqueos.adquirir(CODIGO).unlock();
+			bloqueos.adquirir(otroCodigo).unlock();
+		} finally {
+			ejecutor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void adquirirTodosLiberaLoAdquiridoSiSeAgotaLaEsperaTest() throws Exception {
+
+		// arrange
+		BloqueosPorCodigo bloqueos = new BloqueosPorCodigo(16, false, 50, TimeUnit.MILLISECONDS);
+		String otroCodigo = buscarCodigoEnOtroSegmento(bloqueos, CODIGO);
+		String ocupado = bloqueos.segmento(CODIGO) > bloqueos.segmento(otroCodigo) ? CODIGO : otroCodigo;
+		String libre = ocupado.equals(CODIGO) ? otroCodigo : CODIGO;
+		ExecutorService ejecutor = Executors.newSingleThreadExecutor();
+		Lock bloqueo = bloqueos.adquirir(ocupado);
+
+		try {
+			// act
+			Future<String> motivo = ejecutor.submit(() -> {
+				try {
+					bloqueos.adquirirTodos(Arrays.asList(libre, ocupado));
+					return null;
+				} catch (GarantiaExtendidaException e) {
+					return e.getMessage();
+				}
+			});
+
+			// assert
+			assertEquals(BloqueosPorCodigo.SE_AGOTO_LA_ESPERA, motivo.get(5, TimeUnit.SECONDS));
+			ejecutor.submit(() -> bloqueos.adquirir(libre).unlock()).get(5, TimeUnit.SECONDS);
+			assertEquals(1, bloqueos.getEsperas());
+		} finally {
+			bloqueo.unlock();
+			ejecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Retiene el segmento de un codigo, espera a que la otra unidad de trabajo retenga el suyo y pide el segmento del
+	 * otro codigo
+	 * @return si consiguio ambos segmentos
+	 */
+	private static boolean retenerYPedir(BloqueosPorCodigo bloqueos, String retenido, String pedido, CountDownLatch retenidos)
+			throws InterruptedException {
+
+		BloqueosPorCodigo.iniciarRetencion();
+		try {
+			BloqueosPorCodigo.liberarAlTerminar(bloqueos.adquirir(retenido));
+			retenidos.countDown();
+			retenidos.await();
+			for (Lock bloqueo : bloqueos.adquirirTodos(Collections.singleton(pedido))) {
+				BloqueosPorCodigo.liberarAlTerminar(bloqueo);
+			}
+			return true;
+		} catch (GarantiaExtendidaException e) {
+			assertEquals(BloqueosPorCodigo.SE_AGOTO_LA_ESPERA, e.getMessage());
+			return false;
+		} finally {
+			BloqueosPorCodigo.liberarRetenidos();
+		}
+	}
+
+	private static String buscarCodigoEnOtroSegmento(BloqueosPorCodigo bloqueos, String codigo) {
+
+		for (int i = 0;; i++) {
+			String candidato = String.format("F01TS%05d", i);
+			if (bloqueos.segmento(candidato) != bloqueos.segmento(codigo)) {
+				return candidato;
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import dominio.Vendedor;
+import dominio.calendario.CalculadoraFechaFinGarantia;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioProducto;
+
+public class CalculadoraFechaFinGarantiaTest {
+
+	private static final int[] DIAS_GARANTIA = {0, 1, 2, 3, 4, 5, 6, 7, 8, 13, 14, 100, 200};
+	private static final int[] HORAS = {0, 23};
+	private static final String[] ZONAS = {"America/Bogota", "Europe/Madrid"};
+
+	@Test
+	public void calculoCerradoIgualAlRecorridoDiaADiaTest() {
+
+		TimeZone zonaOriginal = TimeZone.getDefault();
+		try {
+			for (String zona : ZONAS) {
+				TimeZone.setDefault(TimeZone.getTimeZone(zona));
+				compararDesde2016Hasta2030();
+			}
+		} finally {
+			TimeZone.setDefault(zonaOriginal);
+		}
+	}
+
+	@Test
+	public void calculoConFechasSinHoraTest() {
+
+		// arrange
+		LocalDate solicitud = LocalDate.of(2018, 8, 16);
+
+		// act
+		LocalDate fin = CalculadoraFechaFinGarantia.calcular(solicitud, 199);
+
+		// assert
+		assertEquals(LocalDate.of(2019, 4, 5), fin);
+	}
+
+	private void compararDesde2016Hasta2030() {
+
+		RepositorioProducto repositorioProducto = mock(RepositorioProducto.class);
+		RepositorioGarantiaExtendida repositorioGarantia = mock(RepositorioGarantiaExtendida.class);
+
+		Calendar calendario = Calendar.getInstance();
+		calendario.clear();
+		calendario.set(2016, Calendar.JANUARY, 1);
+
+		while (calendario.get(Calendar.YEAR) <= 2030) {
+			for (int hora : HORAS) {
+				calendario.set(Calendar.HOUR_OF_DAY, hora);
+				Date fechaSolicitud = calendario.getTime();
+				Vendedor vendedor = new Vendedor(repositorioProducto, repositorioGarantia, fechaSolicitud);
+				for (int dias : DIAS_GARANTIA) {
+					// act - assert
+					assertEquals(fechaSolicitud + " + " + dias, calcularRecorriendoDiaADia(fechaSolicitud, dias),
+							vendedor.calcularFechaFinGarantia(dias));
+				}
+			}
+			calendario.set(Calendar.HOUR_OF_DAY, 0);
+			calendario.add(Calendar.DATE, 1);
+		}
+	}
+
+	/**
+	 * Implementacion original de Vendedor.calcularFechaFinGarantia, usada como referencia
+	 */
+	private Date calcularRecorriendoDiaADia(Date fechaSolicitudGarantia, int diasExtensionGarantia) {
+
+		diasExtensionGarantia = diasExtensionGarantia - 1;
+		Calendar calendario = Calendar.getInstance();
+		calendario.setTime(fechaSolicitudGarantia);
+		for (int i = 0; i < diasExtensionGarantia; i++) {
+			calendario.add(Calendar.DATE, 1);
+			if (calendario.get(Calendar.DAY_OF_WEEK) == Calendar.MONDAY) {
+				calendario.add(Calendar.DATE, 1);
+			}
+		}
+		if (calendario.get(Calendar.DAY_OF_WEEK) == Calendar.SUNDAY) {
+			calendario.add(Calendar.DATE, 2);
+		}
+		return calendario.getTime();
+	}
+}
@@ -0,0 +1,93 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+import dominio.Vendedor;
+import dominio.calendario.CalendarioHabil;
+import dominio.calendario.CalendarioHabilIndexado;
+import dominio.calendario.CalendarioLunesNoHabil;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioProducto;
+
+public class CalendarioHabilIndexadoTest {
+
+	private static final int[] DIAS_CONTADOS = {0, 1, 2, 5, 6, 7, 12, 99, 199, 400};
+	private static final LocalDate PRIMERO_DE_ENERO_2019 = LocalDate.of(2019, 1, 1);
+	private static final LocalDate SOLICITUD_JUEVES = LocalDate.of(2018, 12, 27);
+
+	@Test
+	public void sinFestivosIgualAlCalendarioPredeterminadoTest() {
+
+		// arrange
+		CalendarioHabil predeterminado = new CalendarioLunesNoHabil();
+		CalendarioHabil indexado = CalendarioHabilIndexado.conFestivos(Collections.<LocalDate>emptyList());
+
+		for (LocalDate solicitud = LocalDate.of(2016, 1, 1); solicitud.getYear() <= 2030; solicitud = solicitud.plusDays(1)) {
+			for (int dias : DIAS_CONTADOS) {
+				// act - assert
+				assertEquals(solicitud + " + " + dias, predeterminado.calcularFechaFin(solicitud, dias), indexado.calcularFechaFin(solicitud, dias));
+			}
+		}
+	}
+
+	@Test
+	public void festivoNoSeCuentaTest() {
+
+		// arrange
+		CalendarioHabilIndexado calendario = CalendarioHabilIndexado.conFestivos(Arrays.asList(LocalDate.of(2018, 12, 28)));
+
+		// act
+		LocalDate fechaFin = calendario.calcularFechaFin(SOLICITUD_JUEVES, 2);
+
+		// assert
+		assertFalse(calendario.esDiaContado(LocalDate.of(2018, 12, 28)));
+		assertEquals(PRIMERO_DE_ENERO_2019, fechaFin);
+	}
+
+	@Test
+	public void vencimientoEnDomingoSaltaLunesYFestivoTest() {
+
+		// arrange
+		CalendarioHabilIndexado calendario = CalendarioHabilIndexado.conFestivos(Arrays.asList(PRIMERO_DE_ENERO_2019));
+
+		// act
+		LocalDate fechaFin = calendario.calcularFechaFin(SOLICITUD_JUEVES, 3);
+
+		// assert
+		assertEquals(LocalDate.of(2019, 1, 2), fechaFin);
+	}
+
+	@Test
+	public void vendedorUsaElCalendarioHabilTest() {
+
+		// arrange
+		ZoneId zona = ZoneId.systemDefault();
+		Date fechaSolicitud = Date.from(SOLICITUD_JUEVES.atTime(10, 30).atZone(zona).toInstant());
+		CalendarioHabil calendario = CalendarioHabilIndexado.conFestivos(Arrays.asList(PRIMERO_DE_ENERO_2019));
+		Vendedor vendedor = new Vendedor(mock(RepositorioProducto.class), mock(RepositorioGarantiaExtendida.class), fechaSolicitud, calendario);
+
+		// act
+		Date fechaFin = vendedor.calcularFechaFinGarantia(4);
+
+		// assert
+		assertEquals(LocalDateTime.of(2019, 1, 2, 10, 30), LocalDateTime.ofInstant(fechaFin.toInstant(), zona));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void calendarioSinDiasDeVencimientoTest() {
+		new CalendarioHabilIndexado(EnumSet.allOf(DayOfWeek.class), Collections.<DayOfWeek>emptySet(), Collections.<LocalDate>emptyList());
+	}
+}
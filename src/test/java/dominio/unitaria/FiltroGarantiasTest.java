@@ -0,0 +1,80 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import persistencia.filtro.FiltroGarantias;
+
+public class FiltroGarantiasTest {
+
+	private static final int CANTIDAD_ESPERADA = 100000;
+	private static final double TASA_FALSOS_POSITIVOS = 0.01;
+	private static final String CODIGO = "F01TSA0150";
+	private static final String OTRO_CODIGO = "F01TSA0151";
+
+	@Test
+	public void codigoAgregadoSiempreSeEncuentraTest() {
+
+		// arrange
+		FiltroGarantias filtro = new FiltroGarantias(CANTIDAD_ESPERADA, TASA_FALSOS_POSITIVOS);
+
+		// act
+		for (int i = 0; i < CANTIDAD_ESPERADA; i++) {
+			filtro.agregar(codigo(i));
+		}
+
+		// assert
+		for (int i = 0; i < CANTIDAD_ESPERADA; i++) {
+			assertTrue(filtro.podriaContener(codigo(i)));
+		}
+	}
+
+	@Test
+	public void tasaDeFalsosPositivosCercanaALaEsperadaTest() {
+
+		// arrange
+		FiltroGarantias filtro = new FiltroGarantias(CANTIDAD_ESPERADA, TASA_FALSOS_POSITIVOS);
+		for (int i = 0; i < CANTIDAD_ESPERADA; i++) {
+			filtro.agregar(codigo(i));
+		}
+
+		// act
+		int falsosPositivos = 0;
+		for (int i = CANTIDAD_ESPERADA; i < 2 * CANTIDAD_ESPERADA; i++) {
+			if (filtro.podriaContener(codigo(i))) {
+				falsosPositivos++;
+				filtro.registrarFalsoPositivo();
+			}
+		}
+
+		// assert
+		double tasaMedida = (double) falsosPositivos / CANTIDAD_ESPERADA;
+		assertTrue("tasa medida " + tasaMedida, tasaMedida < 2 * TASA_FALSOS_POSITIVOS);
+		assertEquals(TASA_FALSOS_POSITIVOS, filtro.getTasaFalsosPositivosEstimada(), TASA_FALSOS_POSITIVOS / 2);
+		assertEquals(1.0, filtro.getTasaFalsosPositivosObservada(), 0);
+	}
+
+	@Test
+	public void reconstruirDescartaCodigosQueYaNoEstanTest() {
+
+		// arrange
+		FiltroGarantias filtro = new FiltroGarantias(CANTIDAD_ESPERADA, TASA_FALSOS_POSITIVOS);
+		filtro.agregar(CODIGO);
+
+		// act
+		filtro.reconstruir(Arrays.asList(OTRO_CODIGO).iterator());
+
+		// assert
+		assertFalse(filtro.podriaContener(CODIGO));
+		assertTrue(filtro.podriaContener(OTRO_CODIGO));
+	}
+
+	private static String codigo(int consecutivo) {
+		return String.format("P%09d", consecutivo);
+	}
+}
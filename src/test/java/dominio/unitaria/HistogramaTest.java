@@ -0,0 +1,87 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import dominio.metrica.Histograma;
+
+public class HistogramaTest {
+
+	private static final double ERROR_RELATIVO = 1.0 / 16;
+
+	@Test
+	public void valoresPequeniosExactosTest() {
+
+		// arrange
+		Histograma histograma = new Histograma();
+
+		// act
+		for (long valor = 1; valor <= 10; valor++) {
+			histograma.registrar(valor);
+		}
+
+		// assert
+		assertEquals(10, histograma.getCantidad());
+		assertEquals(5.5, histograma.getPromedio(), 0);
+		assertEquals(5, histograma.getPercentil(50));
+		assertEquals(10, histograma.getPercentil(100));
+		assertEquals(10, histograma.getMaximo());
+	}
+
+	@Test
+	public void percentilesDentroDelErrorRelativoTest() {
+
+		// arrange
+		Histograma histograma = new Histograma();
+		int cantidad = 100000;
+
+		// act
+		for (long valor = 1; valor <= cantidad; valor++) {
+			histograma.registrar(valor * 1000);
+		}
+
+		// assert
+		for (double percentil : new double[] {50, 90, 99, 99.9}) {
+			long esperado = (long) Math.ceil(percentil / 100 * cantidad) * 1000;
+			long obtenido = histograma.getPercentil(percentil);
+			assertTrue(percentil + ": " + obtenido, obtenido >= esperado);
+			assertTrue(percentil + ": " + obtenido, obtenido <= esperado * (1 + ERROR_RELATIVO));
+		}
+		assertEquals(cantidad * 1000L, histograma.getPercentil(100));
+	}
+
+	@Test
+	public void valoresExtremosTest() {
+
+		// arrange
+		Histograma histograma = new Histograma();
+
+		// act
+		histograma.registrar(-5);
+		histograma.registrar(Long.MAX_VALUE);
+
+		// assert
+		assertEquals(0, histograma.getPercentil(50));
+		assertEquals(Long.MAX_VALUE, histograma.getPercentil(100));
+	}
+
+	@Test
+	public void instantaneaNoCambiaTest() {
+
+		// arrange
+		Histograma histograma = new Histograma();
+		histograma.registrar(100);
+
+		// act
+		Histograma instantanea = histograma.instantanea();
+		histograma.registrar(200);
+		histograma.reiniciar();
+
+		// assert
+		assertEquals(1, instantanea.getCantidad());
+		assertEquals(100, instantanea.getMaximo());
+		assertEquals(0, histograma.getCantidad());
+	}
+}
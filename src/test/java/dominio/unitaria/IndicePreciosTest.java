@@ -0,0 +1,117 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import persistencia.indice.IndicePrecios;
+
+public class IndicePreciosTest {
+
+	private static final String CODIGO = "F01TSA0150";
+	private static final String CODIGO_LARGO = "F01TSA0150F01TSA0150";
+	private static final double PRECIO = 650000;
+	private static final double NUEVO_PRECIO = 400000;
+	private static final int CANTIDAD_PRODUCTOS = 20000;
+
+	@Test
+	public void codigoDesconocidoNoTienePrecioTest() {
+
+		// arrange
+		IndicePrecios indice = new IndicePrecios(10);
+		indice.actualizar(CODIGO, PRECIO);
+
+		// act
+		double precio = indice.obtener("F01TSA0151");
+
+		// assert
+		assertTrue(Double.isNaN(precio));
+	}
+
+	@Test
+	public void actualizarCambiaElPrecioTest() {
+
+		// arrange
+		IndicePrecios indice = new IndicePrecios(10);
+		indice.actualizar(CODIGO, PRECIO);
+
+		// act
+		indice.actualizar(CODIGO, NUEVO_PRECIO);
+
+		// assert
+		assertEquals(NUEVO_PRECIO, indice.obtener(CODIGO), 0);
+		assertEquals(1, indice.getCantidad());
+	}
+
+	@Test
+	public void elIndiceCreceMasAllaDeLaCantidadEsperadaTest() {
+
+		// arrange
+		IndicePrecios indice = new IndicePrecios(10);
+		long tamanioInicial = indice.getTamanioEnBytes();
+
+		// act
+		for (int i = 0; i < CANTIDAD_PRODUCTOS; i++) {
+			indice.actualizar(codigo(i), i);
+		}
+
+		// assert
+		assertEquals(CANTIDAD_PRODUCTOS, indice.getCantidad());
+		assertTrue(indice.getTamanioEnBytes() > tamanioInicial);
+		for (int i = 0; i < CANTIDAD_PRODUCTOS; i++) {
+			assertEquals(i, indice.obtener(codigo(i)), 0);
+		}
+	}
+
+	@Test
+	public void invalidarOlvidaElPrecioTest() {
+
+		// arrange
+		IndicePrecios indice = new IndicePrecios(10);
+		indice.actualizar(CODIGO, PRECIO);
+
+		// act
+		indice.invalidar(CODIGO);
+
+		// assert
+		assertTrue(Double.isNaN(indice.obtener(CODIGO)));
+	}
+
+	@Test
+	public void precioLeidoAntesDeUnaInvalidacionNoSeGuardaTest() {
+
+		// arrange
+		IndicePrecios indice = new IndicePrecios(10);
+		long version = indice.getVersion();
+		indice.invalidar(CODIGO);
+
+		// act
+		boolean guardado = indice.actualizarSiVigente(CODIGO, PRECIO, version);
+
+		// assert
+		assertFalse(guardado);
+		assertTrue(Double.isNaN(indice.obtener(CODIGO)));
+		assertTrue(indice.actualizarSiVigente(CODIGO, PRECIO, indice.getVersion()));
+		assertEquals(PRECIO, indice.obtener(CODIGO), 0);
+	}
+
+	@Test
+	public void codigoDemasiadoLargoNoSeIndexaTest() {
+
+		// arrange
+		IndicePrecios indice = new IndicePrecios(10);
+
+		// act
+		boolean indexado = indice.actualizar(CODIGO_LARGO, PRECIO);
+
+		// assert
+		assertFalse(indexado);
+		assertTrue(Double.isNaN(indice.obtener(CODIGO_LARGO)));
+	}
+
+	private static String codigo(int consecutivo) {
+		return String.format("F01TP%05d", consecutivo);
+	}
+}
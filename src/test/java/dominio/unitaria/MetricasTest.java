@@ -0,0 +1,213 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.persistence.NoResultException;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import dominio.GarantiaExtendida;
+import dominio.Producto;
+import dominio.SolicitudGarantia;
+import dominio.Vendedor;
+import dominio.calendario.CalendarioLunesNoHabil;
+import dominio.concurrencia.BloqueosPorCodigo;
+import dominio.excepcion.GarantiaExtendidaException;
+import dominio.metrica.Metricas;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioProducto;
+import dominio.repositorio.UnidadDeTrabajo;
+import dominio.tarifa.MotorTarifas;
+import dominio.tarifa.ReglaTarifa;
+import dominio.tarifa.TablaTarifas;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class MetricasTest {
+
+	private static final String DANILO_ROMAN = "Danilo Roman";
+	private static final String CODIGO_NO_EXISTE = "F01TSA9999";
+
+	@After
+	public void tearDown() {
+		Metricas.habilitar(true);
+	}
+
+	@Test
+	public void cuentaResultadosDeGenerarGarantiaTest() {
+
+		// arrange
+		Producto productoCaro = new ProductoTestDataBuilder().conCodigo("F01TSA0150").conPrecio(600000).build();
+		Producto productoBarato = new ProductoTestDataBuilder().conCodigo("F01TSA0151").conPrecio(400000).build();
+		RepositorioProducto repositorioProducto = mock(RepositorioProducto.class);
+		RepositorioGarantiaExtendida repositorioGarantia = mock(RepositorioGarantiaExtendida.class);
+		when(repositorioProducto.obtenerPorCodigo(productoCaro.getCodigo())).thenReturn(productoCaro);
+		when(repositorioProducto.obtenerPorCodigo(productoBarato.getCodigo())).thenReturn(productoBarato);
+		when(repositorioProducto.obtenerPorCodigo(CODIGO_NO_EXISTE)).thenThrow(new NoResultException());
+		when(repositorioGarantia.existeGarantia(productoCaro.getCodigo())).thenReturn(false, true);
+		Vendedor vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
+
+		long segundoTramo = Metricas.contador("garantia.creada.tramo1").getValor();
+		long primerTramo = Metricas.contador("garantia.creada.tramo0").getValor();
+		long tieneGarantia = Metricas.contador("garantia.rechazada.tieneGarantia").getValor();
+		long noEncontrado = Metricas.contador("garantia.rechazada.productoNoEncontrado").getValor();
+		long sinGarantiaExtendida = Metricas.contador("garantia.rechazada.sinGarantiaExtendida").getValor();
+		long generadas = Metricas.temporizador("vendedor.generarGarantia").getCantidad();
+
+		// act
+		vendedor.generarGarantia(productoCaro.getCodigo(), DANILO_ROMAN);
+		vendedor.generarGarantia(productoBarato.getCodigo(), DANILO_ROMAN);
+		intentarGenerarGarantia(vendedor, productoCaro.getCodigo());
+		intentarGenerarGarantia(vendedor, CODIGO_NO_EXISTE);
+		intentarGenerarGarantia(vendedor, "E01TIA0150");
+
+		// assert
+		assertEquals(segundoTramo + 1, Metricas.contador("garantia.creada.tramo1").getValor());
+		assertEquals(primerTramo + 1, Metricas.contador("garantia.creada.tramo0").getValor());
+		assertEquals(tieneGarantia + 1, Metricas.contador("garantia.rechazada.tieneGarantia").getValor());
+		assertEquals(noEncontrado + 1, Metricas.contador("garantia.rechazada.productoNoEncontrado").getValor());
+		assertEquals(sinGarantiaExtendida + 1, Metricas.contador("garantia.rechazada.sinGarantiaExtendida").getValor());
+		assertEquals(generadas + 5, Metricas.temporizador("vendedor.generarGarantia").getCantidad());
+	}
+
+	@Test
+	public void cuentaLasSolicitudesDeUnLoteNoGuardadoTest() {
+
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().conCodigo("F01TSA0150").build();
+		Producto otroProducto = new ProductoTestDataBuilder().conCodigo("F01TSA0151").build();
+		RepositorioProducto repositorioProducto = mock(RepositorioProducto.class);
+		RepositorioGarantiaExtendida repositorioGarantia = mock(RepositorioGarantiaExtendida.class);
+		Map<String, Producto> productos = new HashMap<>();
+		productos.put(producto.getCodigo(), producto);
+		productos.put(otroProducto.getCodigo(), otroProducto);
+		when(repositorioProducto.obtenerPorCodigos(anyCollectionOf(String.class))).thenReturn(productos);
+		doThrow(new GarantiaExtendidaException(Vendedor.EL_PRODUCTO_TIENE_GARANTIA))
+				.when(repositorioGarantia).agregarTodas(anyCollectionOf(GarantiaExtendida.class));
+		Vendedor vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
+		long loteNoGuardado = Metricas.contador("garantia.rechazada.loteNoGuardado").getValor();
+
+		// act
+		vendedor.generarGarantias(Arrays.asList(new SolicitudGarantia(producto.getCodigo(), DANILO_ROMAN),
+				new SolicitudGarantia(otroProducto.getCodigo(), DANILO_ROMAN)));
+
+		// assert
+		assertEquals(loteNoGuardado + 2, Metricas.contador("garantia.rechazada.loteNoGuardado").getValor());
+	}
+
+	@Test
+	public void cuentaLasGarantiasCreadasPorTramoTest() {
+
+		// arrange - una tabla de tres tramos
+		MotorTarifas motorTarifas = new MotorTarifas(new TablaTarifas(Arrays.asList(
+				new ReglaTarifa(100000, 0.05, 50),
+				new ReglaTarifa(500000, 0.1, 100),
+				new ReglaTarifa(Double.POSITIVE_INFINITY, 0.2, 200))));
+		Map<String, Producto> productos = new HashMap<>();
+		for (Producto producto : Arrays.asList(
+				new ProductoTestDataBuilder().conCodigo("F01TSA0150").conPrecio(50000).build(),
+				new ProductoTestDataBuilder().conCodigo("F01TSA0151").conPrecio(400000).build(),
+				new ProductoTestDataBuilder().conCodigo("F01TSA0152").conPrecio(600000).build())) {
+			productos.put(producto.getCodigo(), producto);
+		}
+		RepositorioProducto repositorioProducto = mock(RepositorioProducto.class);
+		when(repositorioProducto.obtenerPorCodigos(anyCollectionOf(String.class))).thenReturn(productos);
+		Vendedor vendedor = new Vendedor(repositorioProducto, mock(RepositorioGarantiaExtendida.class), new Date(),
+				new CalendarioLunesNoHabil(), BloqueosPorCodigo.compartidos(), motorTarifas);
+		long[] creadas = new long[3];
+		for (int tramo = 0; tramo < creadas.length; tramo++) {
+			creadas[tramo] = Metricas.contador("garantia.creada.tramo" + tramo).getValor();
+		}
+
+		// act
+		vendedor.generarGarantias(Arrays.asList(new SolicitudGarantia("F01TSA0150", DANILO_ROMAN),
+				new SolicitudGarantia("F01TSA0151", DANILO_ROMAN), new SolicitudGarantia("F01TSA0152", DANILO_ROMAN)));
+
+		// assert
+		for (int tramo = 0; tramo < creadas.length; tramo++) {
+			assertEquals(creadas[tramo] + 1, Metricas.contador("garantia.creada.tramo" + tramo).getValor());
+		}
+	}
+
+	@Test
+	public void cuentaLaGarantiaCreadaAlConfirmarSuTransaccionTest() {
+
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().conCodigo("F01TSA0150").conPrecio(400000).build();
+		RepositorioProducto repositorioProducto = mock(RepositorioProducto.class);
+		when(repositorioProducto.obtenerPorCodigo(producto.getCodigo())).thenReturn(producto);
+		UnidadDeTrabajo unidadDeTrabajo = mock(UnidadDeTrabajo.class);
+		Vendedor vendedor = new Vendedor(repositorioProducto, mock(RepositorioGarantiaExtendida.class), new Date())
+				.conUnidadDeTrabajo(unidadDeTrabajo);
+		long creadas = Metricas.contador("garantia.creada.tramo0").getValor();
+		vendedor.generarGarantia(producto.getCodigo(), DANILO_ROMAN);
+		assertEquals(creadas, Metricas.contador("garantia.creada.tramo0").getValor());
+		ArgumentCaptor<Runnable> alConfirmar = ArgumentCaptor.forClass(Runnable.class);
+		verify(unidadDeTrabajo).alConfirmar(alConfirmar.capture());
+
+		// act
+		alConfirmar.getValue().run();
+
+		// assert
+		assertEquals(creadas + 1, Metricas.contador("garantia.creada.tramo0").getValor());
+	}
+
+	@Test
+	public void metricasDeshabilitadasNoRegistranTest() {
+
+		// arrange
+		Metricas.habilitar(false);
+		long cantidad = Metricas.temporizador("prueba.deshabilitada").getCantidad();
+
+		// act
+		long inicio = Metricas.temporizador("prueba.deshabilitada").iniciar();
+		Metricas.temporizador("prueba.deshabilitada").detener(inicio);
+		Metricas.contador("prueba.deshabilitada").incrementar();
+
+		// assert
+		assertEquals(cantidad, Metricas.temporizador("prueba.deshabilitada").getCantidad());
+		assertEquals(0, Metricas.contador("prueba.deshabilitada").getValor());
+	}
+
+	@Test
+	public void publicaMetricasEnJMXTest() throws Exception {
+
+		// arrange
+		MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+		long inicio = Metricas.temporizador("prueba.jmx").iniciar();
+		Metricas.temporizador("prueba.jmx").detener(inicio);
+
+		// act
+		Object cantidad = servidor.getAttribute(new ObjectName("tienda.metricas:type=Temporizador,name=prueba.jmx"), "Cantidad");
+		Object resumen = servidor.getAttribute(new ObjectName("tienda.metricas:type=Metricas"), "Resumen");
+
+		// assert
+		assertEquals(1L, cantidad);
+		assertTrue(resumen.toString().contains("prueba.jmx cantidad=1"));
+	}
+
+	private static void intentarGenerarGarantia(Vendedor vendedor, String codigo) {
+		try {
+			vendedor.generarGarantia(codigo, DANILO_ROMAN);
+			fail();
+		} catch (GarantiaExtendidaException e) {
+			// esperado
+		}
+	}
+}
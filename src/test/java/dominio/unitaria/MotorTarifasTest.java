@@ -0,0 +1,160 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dominio.tarifa.MotorTarifas;
+import dominio.tarifa.ReglaTarifa;
+import dominio.tarifa.TablaTarifas;
+
+public class MotorTarifasTest {
+
+	private static final String TARIFAS = "categoria,hasta,porcentaje,dias\n"
+			+ "# tramos generales\n"
+			+ "general,500000,0.1,100\n"
+			+ "general,*,0.2,200\n"
+			+ "\n"
+			+ "computadores,1000000,0.15,150\n"
+			+ "computadores,*,0.25,365\n";
+	private static final String NUEVAS_TARIFAS = "general,300000,0.05,60\n"
+			+ "general,*,0.3,250\n";
+
+	@Rule
+	public TemporaryFolder carpeta = new TemporaryFolder();
+
+	@Test
+	public void tablaPredeterminadaConservaElLimiteDe500000Test() {
+
+		// arrange
+		TablaTarifas tabla = TablaTarifas.PREDETERMINADA;
+
+		// act
+		int tramoHasta500000 = tabla.buscarTramo(500000);
+		int tramoMayorA500000 = tabla.buscarTramo(500001);
+
+		// assert
+		assertEquals(0.1, tabla.getPorcentaje(tramoHasta500000), 0);
+		assertEquals(100, tabla.getDias(tramoHasta500000));
+		assertEquals(0.2, tabla.getPorcentaje(tramoMayorA500000), 0);
+		assertEquals(200, tabla.getDias(tramoMayorA500000));
+	}
+
+	@Test
+	public void buscarTramoEnTablaDeVariosTramosTest() {
+
+		// arrange
+		TablaTarifas tabla = new TablaTarifas(Arrays.asList(
+				new ReglaTarifa(Double.POSITIVE_INFINITY, 0.3, 400),
+				new ReglaTarifa(100000, 0.05, 30),
+				new ReglaTarifa(1000000, 0.2, 200),
+				new ReglaTarifa(500000, 0.1, 100)));
+
+		// act - assert
+		assertEquals(4, tabla.getCantidadTramos());
+		assertEquals(0, tabla.buscarTramo(0));
+		assertEquals(0, tabla.buscarTramo(100000));
+		assertEquals(1, tabla.buscarTramo(100000.5));
+		assertEquals(1, tabla.buscarTramo(500000));
+		assertEquals(2, tabla.buscarTramo(999999));
+		assertEquals(3, tabla.buscarTramo(1000001));
+		assertEquals(400, tabla.getDias(tabla.buscarTramo(Double.MAX_VALUE)));
+	}
+
+	@Test
+	public void tablaSinTramoMasAltoNoEsValidaTest() {
+
+		// act
+		try {
+			new TablaTarifas(Arrays.asList(new ReglaTarifa(500000, 0.1, 100)));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// assert
+		}
+	}
+
+	@Test
+	public void tablaConTramosRepetidosNoEsValidaTest() {
+
+		// act
+		try {
+			new TablaTarifas(Arrays.asList(
+					new ReglaTarifa(500000, 0.1, 100),
+					new ReglaTarifa(500000, 0.15, 150),
+					new ReglaTarifa(Double.POSITIVE_INFINITY, 0.2, 200)));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// assert
+		}
+	}
+
+	@Test
+	public void categoriaSinTablaUsaLaGeneralTest() throws IOException {
+
+		// arrange
+		MotorTarifas motor = MotorTarifas.desdeArchivo(escribir(TARIFAS));
+
+		// act
+		TablaTarifas computadores = motor.getTabla("computadores");
+		TablaTarifas celulares = motor.getTabla("celulares");
+
+		// assert
+		assertEquals(365, computadores.getDias(computadores.buscarTramo(2000000)));
+		assertSame(motor.getTabla(), celulares);
+	}
+
+	@Test
+	public void recargarReemplazaLasTarifasTest() throws IOException {
+
+		// arrange
+		Path archivo = escribir(TARIFAS);
+		MotorTarifas motor = MotorTarifas.desdeArchivo(archivo);
+		TablaTarifas anterior = motor.getTabla();
+		Files.write(archivo, NUEVAS_TARIFAS.getBytes(StandardCharsets.UTF_8));
+
+		// act
+		boolean recargada = motor.recargar();
+
+		// assert
+		assertTrue(recargada);
+		TablaTarifas tabla = motor.getTabla();
+		assertEquals(0.3, tabla.getPorcentaje(tabla.buscarTramo(400000)), 0);
+		assertSame(tabla, motor.getTabla("computadores"));
+		assertEquals(0.1, anterior.getPorcentaje(anterior.buscarTramo(400000)), 0);
+	}
+
+	@Test
+	public void archivoInvalidoConservaLasTarifasVigentesTest() throws IOException {
+
+		// arrange
+		Path archivo = escribir(TARIFAS);
+		MotorTarifas motor = MotorTarifas.desdeArchivo(archivo);
+		TablaTarifas vigente = motor.getTabla();
+		Files.write(archivo, "computadores,*,0.2,200\n".getBytes(StandardCharsets.UTF_8));
+
+		// act
+		boolean recargada = motor.recargar();
+
+		// assert
+		assertFalse(recargada);
+		assertSame(vigente, motor.getTabla());
+	}
+
+	private Path escribir(String contenido) throws IOException {
+		Path archivo = carpeta.newFile("tarifas.csv").toPath();
+		Files.write(archivo, contenido.getBytes(StandardCharsets.UTF_8));
+		return archivo;
+	}
+}
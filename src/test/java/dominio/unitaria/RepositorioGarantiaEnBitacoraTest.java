@@ -0,0 +1,193 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dominio.GarantiaExtendida;
+import dominio.Pagina;
+import dominio.Vendedor;
+import dominio.excepcion.GarantiaExtendidaException;
+import persistencia.repositorio.RepositorioGarantiaEnBitacora;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class RepositorioGarantiaEnBitacoraTest {
+
+	private static final String DANILO_ROMAN = "Danilo Roman";
+	private static final String CODIGO = "F01TSA0150";
+	private static final String OTRO_CODIGO = "F01TSA0151";
+	private static final String TERCER_CODIGO = "F01TSA0152";
+	private static final int REGISTROS_POR_SEGMENTO = 2;
+	private static final int TAMANIO_REGISTRO = 512;
+	private static final long UN_DIA = TimeUnit.DAYS.toMillis(1);
+
+	@Rule
+	public TemporaryFolder carpeta = new TemporaryFolder();
+
+	private Path directorio;
+
+	@Before
+	public void setUp() {
+		directorio = carpeta.getRoot().toPath();
+	}
+
+	@Test
+	public void lasGarantiasSeRecuperanAlAbrirLaBitacoraTest() throws IOException {
+
+		// arrange
+		RepositorioGarantiaEnBitacora repositorio = abrir();
+		for (int i = 0; i < 5; i++) {
+			repositorio.agregar(new GarantiaExtendida(new ProductoTestDataBuilder().conCodigo(codigo(i)).build(),
+					new Date(i * UN_DIA), null, i, DANILO_ROMAN));
+		}
+		repositorio.close();
+
+		// act
+		RepositorioGarantiaEnBitacora recuperado = abrir();
+
+		// assert
+		assertEquals(3, recuperado.getSegmentos());
+		assertEquals(5, recuperado.recorrer(garantia -> { }));
+		GarantiaExtendida garantia = recuperado.obtener(codigo(3));
+		assertEquals(DANILO_ROMAN, garantia.getNombreCliente());
+		assertEquals(3, garantia.getPrecioGarantia(), 0);
+		assertEquals(new Date(3 * UN_DIA), garantia.getFechaSolicitudGarantia());
+		assertNull(garantia.getFechaFinGarantia());
+		Pagina<GarantiaExtendida> primera = recuperado.buscarPorNombreCliente(DANILO_ROMAN, null, 2);
+		Pagina<GarantiaExtendida> segunda = recuperado.buscarPorNombreCliente(DANILO_ROMAN, primera.getContinuacion(), 2);
+		assertEquals(codigo(2), segunda.getElementos().get(0).getProducto().getCodigo());
+		assertEquals(2, recuperado.buscarPorFechaSolicitud(new Date(UN_DIA), new Date(3 * UN_DIA), null, 10).getElementos().size());
+	}
+
+	@Test
+	public void garantiaDuplicadaRechazaElLoteCompletoTest() throws IOException {
+
+		// arrange
+		RepositorioGarantiaEnBitacora repositorio = abrir();
+		repositorio.agregar(garantia(CODIGO));
+
+		// act
+		try {
+			repositorio.agregarTodas(Arrays.asList(garantia(OTRO_CODIGO), garantia(CODIGO)));
+			fail();
+		} catch (GarantiaExtendidaException e) {
+			// assert
+			assertEquals(Vendedor.EL_PRODUCTO_TIENE_GARANTIA, e.getMessage());
+			assertFalse(repositorio.existeGarantia(OTRO_CODIGO));
+			assertEquals(1, repositorio.recorrer(garantia -> { }));
+		}
+	}
+
+	@Test
+	public void textoQueNoCabeRechazaElLoteSinEscribirloTest() throws IOException {
+
+		// arrange
+		RepositorioGarantiaEnBitacora repositorio = abrir();
+		repositorio.agregar(garantia(CODIGO));
+		GarantiaExtendida nombreLargo = new GarantiaExtendida(new ProductoTestDataBuilder().conCodigo(TERCER_CODIGO).build(),
+				String.join("", Collections.nCopies(TAMANIO_REGISTRO, "a")));
+
+		// act
+		try {
+			repositorio.agregarTodas(Arrays.asList(garantia(OTRO_CODIGO), nombreLargo));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// assert
+			repositorio.agregar(garantia(TERCER_CODIGO));
+			repositorio.close();
+			RepositorioGarantiaEnBitacora reabierto = abrir();
+			assertEquals(1, reabierto.getSegmentos());
+			assertEquals(2, reabierto.recorrer(garantia -> { }));
+			assertFalse(reabierto.existeGarantia(OTRO_CODIGO));
+			assertEquals(DANILO_ROMAN, reabierto.obtener(TERCER_CODIGO).getNombreCliente());
+		}
+	}
+
+	@Test
+	public void seTruncaElRegistroEscritoAMediasTest() throws IOException {
+
+		// arrange
+		RepositorioGarantiaEnBitacora repositorio = abrir();
+		repositorio.agregar(garantia(CODIGO));
+		repositorio.agregar(garantia(OTRO_CODIGO));
+		repositorio.close();
+		danarRegistro(1, 1);
+
+		// act
+		RepositorioGarantiaEnBitacora recuperado = abrir();
+		recuperado.agregar(garantia(TERCER_CODIGO));
+		recuperado.close();
+
+		// assert
+		RepositorioGarantiaEnBitacora reabierto = abrir();
+		assertTrue(reabierto.existeGarantia(CODIGO));
+		assertFalse(reabierto.existeGarantia(OTRO_CODIGO));
+		assertEquals(DANILO_ROMAN, reabierto.obtener(TERCER_CODIGO).getNombreCliente());
+		assertEquals(1, reabierto.getSegmentos());
+	}
+
+	@Test
+	public void loteIncompletoSeDescartaYSeCompactaTest() throws IOException {
+
+		// arrange
+		RepositorioGarantiaEnBitacora repositorio = abrir();
+		repositorio.agregar(garantia(CODIGO));
+		repositorio.agregarTodas(Arrays.asList(garantia(OTRO_CODIGO), garantia(TERCER_CODIGO)));
+		repositorio.close();
+		danarRegistro(2, 0);
+		RepositorioGarantiaEnBitacora recuperado = abrir();
+
+		// act
+		int compactados = recuperado.compactar();
+		recuperado.close();
+
+		// assert
+		assertEquals(1, compactados);
+		RepositorioGarantiaEnBitacora reabierto = abrir();
+		assertEquals(1, reabierto.getSegmentos());
+		assertEquals(1, reabierto.recorrer(garantia -> { }));
+		assertEquals(DANILO_ROMAN, reabierto.obtener(CODIGO).getNombreCliente());
+		assertFalse(reabierto.existeGarantia(OTRO_CODIGO));
+		assertFalse(reabierto.existeGarantia(TERCER_CODIGO));
+	}
+
+	private RepositorioGarantiaEnBitacora abrir() throws IOException {
+		return RepositorioGarantiaEnBitacora.abrir(directorio, REGISTROS_POR_SEGMENTO, false);
+	}
+
+	/**
+	 * Simula una escritura interrumpida cambiando un byte del nombre del producto del registro
+	 */
+	private void danarRegistro(int segmento, int registro) throws IOException {
+
+		Path archivo = directorio.resolve(String.format("garantias-%08d.bitacora", segmento));
+		try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+			canal.write(ByteBuffer.wrap(new byte[] { 0x7f }), registro * TAMANIO_REGISTRO + 100);
+		}
+	}
+
+	private static GarantiaExtendida garantia(String codigo) {
+		return new GarantiaExtendida(new ProductoTestDataBuilder().conCodigo(codigo).build(), DANILO_ROMAN);
+	}
+
+	private static String codigo(int consecutivo) {
+		return String.format("F01TB%05d", consecutivo);
+	}
+}
@@ -0,0 +1,165 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import dominio.GarantiaExtendida;
+import dominio.Vendedor;
+import dominio.excepcion.GarantiaExtendidaException;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.UnidadDeTrabajo;
+import persistencia.repositorio.RepositorioGarantiaEscrituraDiferida;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class RepositorioGarantiaEscrituraDiferidaTest {
+
+	private static final String CODIGO = "F01TSA0150";
+	private static final String OTRO_CODIGO = "F01TSA0151";
+	private static final int TAMANIO_GRUPO = 10;
+
+	@Test
+	public void garantiaPendienteCuentaComoExistenteTest() throws Exception {
+
+		// arrange
+		RepositorioGarantiaExtendida delegado = mock(RepositorioGarantiaExtendida.class);
+		CountDownLatch escribiendo = new CountDownLatch(1);
+		CountDownLatch continuar = new CountDownLatch(1);
+		doAnswer(invocacion -> {
+			escribiendo.countDown();
+			continuar.await();
+			return null;
+		}).when(delegado).agregarTodas(anyCollectionOf(GarantiaExtendida.class));
+		RepositorioGarantiaEscrituraDiferida repositorio = crear(delegado, mock(UnidadDeTrabajo.class), 0);
+
+		// act
+		CompletableFuture<Void> primera = repositorio.agregarDiferida(garantia(CODIGO));
+		escribiendo.await();
+		CompletableFuture<Void> duplicada = repositorio.agregarDiferida(garantia(CODIGO));
+		boolean existeMientrasSeEscribe = repositorio.existeGarantia(CODIGO);
+		boolean confirmadaAntesDeTerminar = primera.isDone();
+		continuar.countDown();
+		primera.join();
+		repositorio.cerrar();
+
+		// assert
+		assertTrue(existeMientrasSeEscribe);
+		assertFalse(confirmadaAntesDeTerminar);
+		assertEquals(Vendedor.EL_PRODUCTO_TIENE_GARANTIA, causa(duplicada).getMessage());
+		assertEquals(0, repositorio.getPendientes());
+	}
+
+	@Test
+	public void garantiaNoSeReconoceSiFallaLaConfirmacionTest() throws Exception {
+
+		// arrange
+		RepositorioGarantiaExtendida delegado = mock(RepositorioGarantiaExtendida.class);
+		UnidadDeTrabajo unidadDeTrabajo = mock(UnidadDeTrabajo.class);
+		IllegalStateException caida = new IllegalStateException("Se perdio la conexion");
+		doThrow(caida).when(unidadDeTrabajo).terminar();
+		RepositorioGarantiaEscrituraDiferida repositorio = crear(delegado, unidadDeTrabajo, 0);
+
+		// act
+		CompletableFuture<Void> resultado = repositorio.agregarDiferida(garantia(CODIGO));
+		Throwable error = causa(resultado);
+		repositorio.cerrar();
+
+		// assert
+		assertSame(caida, error);
+		verify(unidadDeTrabajo).deshacer();
+		assertFalse(repositorio.existeGarantia(CODIGO));
+	}
+
+	@Test
+	public void grupoFallidoSeConfirmaPorSeparadoTest() throws Exception {
+
+		// arrange
+		RepositorioGarantiaExtendida delegado = mock(RepositorioGarantiaExtendida.class);
+		List<Integer> tamaniosEscritos = Collections.synchronizedList(new ArrayList<>());
+		doAnswer(invocacion -> {
+			Collection<?> garantias = (Collection<?>) invocacion.getArguments()[0];
+			tamaniosEscritos.add(garantias.size());
+			for (Object garantia : garantias) {
+				if (((GarantiaExtendida) garantia).getProducto().getCodigo().equals(OTRO_CODIGO)) {
+					throw new GarantiaExtendidaException(Vendedor.EL_PRODUCTO_TIENE_GARANTIA);
+				}
+			}
+			return null;
+		}).when(delegado).agregarTodas(anyCollectionOf(GarantiaExtendida.class));
+		RepositorioGarantiaEscrituraDiferida repositorio = crear(delegado, mock(UnidadDeTrabajo.class), 1000);
+
+		// act
+		List<CompletableFuture<Void>> resultados = new ArrayList<>();
+		for (int i = 0; i < TAMANIO_GRUPO - 1; i++) {
+			resultados.add(repositorio.agregarDiferida(garantia("F01TSB" + String.format("%04d", i))));
+		}
+		CompletableFuture<Void> invalida = repositorio.agregarDiferida(garantia(OTRO_CODIGO));
+		for (CompletableFuture<Void> resultado : resultados) {
+			resultado.join();
+		}
+		Throwable error = causa(invalida);
+		repositorio.cerrar();
+
+		// assert
+		assertEquals(Integer.valueOf(TAMANIO_GRUPO), tamaniosEscritos.get(0));
+		assertEquals(1 + TAMANIO_GRUPO, tamaniosEscritos.size());
+		assertTrue(error instanceof GarantiaExtendidaException);
+	}
+
+	@Test
+	public void repositorioCerradoRechazaGarantiasTest() throws Exception {
+
+		// arrange
+		RepositorioGarantiaExtendida delegado = mock(RepositorioGarantiaExtendida.class);
+		RepositorioGarantiaEscrituraDiferida repositorio = crear(delegado, mock(UnidadDeTrabajo.class), 0);
+		repositorio.cerrar();
+
+		// act
+		try {
+			repositorio.agregar(garantia(CODIGO));
+			fail();
+		} catch (RejectedExecutionException e) {
+			// assert
+			verify(delegado, never()).agregarTodas(anyCollectionOf(GarantiaExtendida.class));
+		}
+	}
+
+	private static RepositorioGarantiaEscrituraDiferida crear(RepositorioGarantiaExtendida delegado, UnidadDeTrabajo unidadDeTrabajo,
+			long esperaMaxima) {
+		return new RepositorioGarantiaEscrituraDiferida(delegado, unidadDeTrabajo, 100, TAMANIO_GRUPO, esperaMaxima, TimeUnit.MILLISECONDS);
+	}
+
+	private static GarantiaExtendida garantia(String codigo) {
+		return new GarantiaExtendida(new ProductoTestDataBuilder().conCodigo(codigo).build());
+	}
+
+	private static Throwable causa(CompletableFuture<Void> resultado) {
+		try {
+			resultado.join();
+			fail();
+			return null;
+		} catch (CompletionException e) {
+			return e.getCause();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import javax.persistence.EntityManager;
+import javax.persistence.NoResultException;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.Session;
+import org.hibernate.SimpleNaturalIdLoadAccess;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.Test;
+
+import dominio.GarantiaExtendida;
+import dominio.Producto;
+import dominio.Vendedor;
+import dominio.excepcion.GarantiaExtendidaException;
+import persistencia.entitad.GarantiaExtendidaEntity;
+import persistencia.entitad.ProductoEntity;
+import persistencia.repositorio.RepositorioGarantiaPersistente;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class RepositorioGarantiaPersistenteTest {
+
+	private static final String DANILO_ROMAN = "Danilo Roman";
+
+	@Test
+	public void garantiaDuplicadaSeRechazaTest() {
+
+		// arrange
+		EntityManager entityManager = entityManagerConProducto();
+		doThrow(violacion("\"PUBLIC.UK_GARANTIA_PRODUCTO_INDEX_4 ON PUBLIC.GARANTIAEXTENDIDA(ID_PRODUCTO) VALUES (1, 1)\""))
+				.when(entityManager).flush();
+		RepositorioGarantiaPersistente repositorioGarantia = new RepositorioGarantiaPersistente(entityManager);
+
+		// act
+		try {
+			repositorioGarantia.agregar(garantia());
+			fail();
+		} catch (GarantiaExtendidaException e) {
+			// assert
+			assertEquals(Vendedor.EL_PRODUCTO_TIENE_GARANTIA, e.getMessage());
+		}
+	}
+
+	@Test
+	public void otraRestriccionNoEsGarantiaDuplicadaTest() {
+
+		// arrange
+		EntityManager entityManager = entityManagerConProducto();
+		PersistenceException violacion = violacion("FK_GARANTIA_PRODUCTO");
+		doThrow(violacion).when(entityManager).flush();
+		RepositorioGarantiaPersistente repositorioGarantia = new RepositorioGarantiaPersistente(entityManager);
+
+		// act
+		try {
+			repositorioGarantia.agregar(garantia());
+			fail();
+		} catch (GarantiaExtendidaException e) {
+			fail();
+		} catch (PersistenceException e) {
+			// assert
+			assertSame(violacion, e);
+		}
+	}
+
+	@Test
+	public void agregarTodasConProductoInexistenteNoInsertaTest() {
+
+		// arrange
+		EntityManager entityManager = entityManagerConProductos();
+		RepositorioGarantiaPersistente repositorioGarantia = new RepositorioGarantiaPersistente(entityManager);
+
+		// act
+		try {
+			repositorioGarantia.agregarTodas(Collections.singletonList(garantia()));
+			fail();
+		} catch (NoResultException e) {
+			// assert
+			verify(entityManager, never()).persist(any());
+		}
+	}
+
+	@Test
+	public void agregarTodasSoloSacaDelContextoLasGarantiasEnviadasTest() {
+
+		// arrange
+		GarantiaExtendida garantia = garantia();
+		ProductoEntity productoEntity = new ProductoEntity();
+		productoEntity.setCodigo(garantia.getProducto().getCodigo());
+		EntityManager entityManager = entityManagerConProductos(productoEntity);
+		RepositorioGarantiaPersistente repositorioGarantia = new RepositorioGarantiaPersistente(entityManager);
+
+		// act
+		repositorioGarantia.agregarTodas(Collections.singletonList(garantia));
+
+		// assert
+		verify(entityManager).persist(isA(GarantiaExtendidaEntity.class));
+		verify(entityManager).detach(isA(GarantiaExtendidaEntity.class));
+		verify(entityManager, never()).detach(productoEntity);
+		verify(entityManager, never()).clear();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static EntityManager entityManagerConProductos(ProductoEntity... productoEntities) {
+		EntityManager entityManager = mock(EntityManager.class);
+		TypedQuery<ProductoEntity> query = mock(TypedQuery.class);
+		when(entityManager.createNamedQuery("Producto.findByCodigos", ProductoEntity.class)).thenReturn(query);
+		when(query.getResultList()).thenReturn(Arrays.asList(productoEntities));
+		return entityManager;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static EntityManager entityManagerConProducto() {
+		EntityManager entityManager = mock(EntityManager.class);
+		Session sesion = mock(Session.class);
+		SimpleNaturalIdLoadAccess<ProductoEntity> productos = mock(SimpleNaturalIdLoadAccess.class);
+		when(entityManager.unwrap(Session.class)).thenReturn(sesion);
+		when(sesion.bySimpleNaturalId(ProductoEntity.class)).thenReturn(productos);
+		when(productos.getReference(anyString())).thenReturn(new ProductoEntity());
+		return entityManager;
+	}
+
+	private static PersistenceException violacion(String restriccion) {
+		return new PersistenceException(new ConstraintViolationException("could not execute batch", new SQLException(), restriccion));
+	}
+
+	private static GarantiaExtendida garantia() {
+		Producto producto = new ProductoTestDataBuilder().build();
+		return new GarantiaExtendida(producto, new Date(), new Date(), producto.getPrecio() * 0.1, DANILO_ROMAN);
+	}
+}
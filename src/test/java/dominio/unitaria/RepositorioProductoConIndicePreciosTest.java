@@ -0,0 +1,143 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.persistence.NoResultException;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import dominio.repositorio.RepositorioProducto;
+import dominio.repositorio.UnidadDeTrabajo;
+import persistencia.indice.IndicePrecios;
+import persistencia.repositorio.RepositorioProductoConIndicePrecios;
+
+public class RepositorioProductoConIndicePreciosTest {
+
+	private static final String CODIGO = "F01TSA0150";
+	private static final String CODIGO_INEXISTENTE = "A1I2450759";
+	private static final double PRECIO = 650000;
+	private static final double NUEVO_PRECIO = 400000;
+
+	@Test
+	public void segundaConsultaSaleDelIndiceTest() {
+
+		// arrange
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPrecioPorCodigo(CODIGO)).thenReturn(PRECIO);
+		RepositorioProductoConIndicePrecios repositorio = new RepositorioProductoConIndicePrecios(delegado, new IndicePrecios(10));
+
+		// act
+		repositorio.obtenerPrecioPorCodigo(CODIGO);
+		double precio = repositorio.obtenerPrecioPorCodigo(CODIGO);
+
+		// assert
+		assertEquals(PRECIO, precio, 0);
+		verify(delegado, times(1)).obtenerPrecioPorCodigo(CODIGO);
+		assertEquals(1, repositorio.getAciertos());
+		assertEquals(1, repositorio.getFallos());
+	}
+
+	@Test
+	public void invalidarVuelveAConsultarElPrecioTest() {
+
+		// arrange
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPrecioPorCodigo(CODIGO)).thenReturn(PRECIO, NUEVO_PRECIO);
+		RepositorioProductoConIndicePrecios repositorio = new RepositorioProductoConIndicePrecios(delegado, new IndicePrecios(10));
+		repositorio.obtenerPrecioPorCodigo(CODIGO);
+
+		// act
+		repositorio.invalidar(CODIGO);
+		double precio = repositorio.obtenerPrecioPorCodigo(CODIGO);
+
+		// assert
+		assertEquals(NUEVO_PRECIO, precio, 0);
+		verify(delegado, times(2)).obtenerPrecioPorCodigo(CODIGO);
+	}
+
+	@Test
+	public void precioInvalidadoDuranteLaConsultaNoSeIndexaTest() {
+
+		// arrange
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		IndicePrecios indice = new IndicePrecios(10);
+		RepositorioProductoConIndicePrecios repositorio = new RepositorioProductoConIndicePrecios(delegado, indice);
+		when(delegado.obtenerPrecioPorCodigo(CODIGO)).thenAnswer(invocacion -> {
+			repositorio.invalidar(CODIGO);
+			return PRECIO;
+		}).thenReturn(NUEVO_PRECIO);
+
+		// act
+		repositorio.obtenerPrecioPorCodigo(CODIGO);
+		double precio = repositorio.obtenerPrecioPorCodigo(CODIGO);
+
+		// assert
+		assertEquals(NUEVO_PRECIO, precio, 0);
+		verify(delegado, times(2)).obtenerPrecioPorCodigo(CODIGO);
+	}
+
+	@Test
+	public void productoInexistenteNoSeIndexaTest() {
+
+		// arrange
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPrecioPorCodigo(CODIGO_INEXISTENTE)).thenThrow(new NoResultException());
+		IndicePrecios indice = new IndicePrecios(10);
+		RepositorioProductoConIndicePrecios repositorio = new RepositorioProductoConIndicePrecios(delegado, indice);
+
+		// act
+		try {
+			repositorio.obtenerPrecioPorCodigo(CODIGO_INEXISTENTE);
+			fail();
+		} catch (NoResultException e) {
+			// assert
+			assertEquals(0, indice.getCantidad());
+		}
+	}
+
+	@Test
+	public void precioLeidoEnUnaTransaccionSeIndexaAlConfirmarlaTest() {
+
+		// arrange
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPrecioPorCodigo(CODIGO)).thenReturn(PRECIO);
+		IndicePrecios indice = new IndicePrecios(10);
+		UnidadDeTrabajo unidadDeTrabajo = mock(UnidadDeTrabajo.class);
+		RepositorioProductoConIndicePrecios repositorio = new RepositorioProductoConIndicePrecios(delegado, indice, unidadDeTrabajo);
+		repositorio.obtenerPrecioPorCodigo(CODIGO);
+		assertEquals(0, indice.getCantidad());
+		ArgumentCaptor<Runnable> alConfirmar = ArgumentCaptor.forClass(Runnable.class);
+		verify(unidadDeTrabajo).alConfirmar(alConfirmar.capture());
+
+		// act
+		alConfirmar.getValue().run();
+
+		// assert
+		assertEquals(PRECIO, indice.obtener(CODIGO), 0);
+	}
+
+	@Test
+	public void precioLeidoEnUnaTransaccionDeshechaNoSeIndexaTest() {
+
+		// arrange - la unidad de trabajo nunca confirma
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPrecioPorCodigo(CODIGO)).thenReturn(PRECIO);
+		IndicePrecios indice = new IndicePrecios(10);
+		RepositorioProductoConIndicePrecios repositorio = new RepositorioProductoConIndicePrecios(delegado, indice,
+				mock(UnidadDeTrabajo.class));
+
+		// act
+		repositorio.obtenerPrecioPorCodigo(CODIGO);
+		repositorio.obtenerPrecioPorCodigo(CODIGO);
+
+		// assert
+		assertEquals(0, indice.getCantidad());
+		verify(delegado, times(2)).obtenerPrecioPorCodigo(CODIGO);
+	}
+}
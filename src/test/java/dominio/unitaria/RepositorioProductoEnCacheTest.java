@@ -0,0 +1,388 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.NoResultException;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import dominio.Producto;
+import dominio.repositorio.RepositorioProducto;
+import dominio.repositorio.UnidadDeTrabajo;
+import persistencia.repositorio.RepositorioProductoEnCache;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class RepositorioProductoEnCacheTest {
+
+	private static final String CODIGO_INEXISTENTE = "A1I2450759";
+	private static final String OTRO_CODIGO = "F01TSA0151";
+	private static final int HILOS = 8;
+
+	@Test
+	public void segundaLecturaSaleDeLaCacheTest() {
+
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().build();
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPorCodigo(producto.getCodigo())).thenReturn(producto);
+		RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado);
+
+		// act
+		repositorio.obtenerPorCodigo(producto.getCodigo());
+		Producto enCache = repositorio.obtenerPorCodigo(producto.getCodigo());
+
+		// assert
+		assertSame(producto, enCache);
+		verify(delegado, times(1)).obtenerPorCodigo(producto.getCodigo());
+		assertEquals(1, repositorio.getAciertos());
+		assertEquals(1, repositorio.getFallos());
+	}
+
+	@Test
+	public void agregarInvalidaElProductoTest() {
+
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().build();
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPorCodigo(producto.getCodigo())).thenReturn(producto);
+		RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado);
+		repositorio.obtenerPorCodigo(producto.getCodigo());
+
+		// act
+		repositorio.agregar(producto);
+		repositorio.obtenerPorCodigo(producto.getCodigo());
+
+		// assert
+		verify(delegado).agregar(producto);
+		verify(delegado, times(2)).obtenerPorCodigo(producto.getCodigo());
+	}
+
+	@Test
+	public void desalojaElMenosUsadoRecientementeTest() {
+
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().build();
+		Producto otroProducto = new ProductoTestDataBuilder().conCodigo(OTRO_CODIGO).build();
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPorCodigo(producto.getCodigo())).thenReturn(producto);
+		when(delegado.obtenerPorCodigo(OTRO_CODIGO)).thenReturn(otroProducto);
+		RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado, 1, 1, TimeUnit.HOURS);
+
+		// act
+		repositorio.obtenerPorCodigo(producto.getCodigo());
+		repositorio.obtenerPorCodigo(OTRO_CODIGO);
+		repositorio.obtenerPorCodigo(producto.getCodigo());
+
+		// assert
+		verify(delegado, times(2)).obtenerPorCodigo(producto.getCodigo());
+		assertEquals(2, repositorio.getDesalojos());
+		assertEquals(1, repositorio.getTamanio());
+	}
+
+	@Test
+	public void productoVencidoSeVuelveACargarTest() throws InterruptedException {
+
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().build();
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPorCodigo(producto.getCodigo())).thenReturn(producto);
+		RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado, 10, 1, TimeUnit.MILLISECONDS);
+
+		// act
+		repositorio.obtenerPorCodigo(producto.getCodigo());
+		Thread.sleep(5);
+		repositorio.obtenerPorCodigo(producto.getCodigo());
+
+		// assert
+		verify(delegado, times(2)).obtenerPorCodigo(producto.getCodigo());
+	}
+
+	@Test
+	public void productoInexistenteNoSeGuardaTest() {
+
+		// arrange
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPorCodigo(CODIGO_INEXISTENTE)).thenThrow(new NoResultException());
+		RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado);
+
+		// act
+		for (int i = 0; i < 2; i++) {
+			try {
+				repositorio.obtenerPorCodigo(CODIGO_INEXISTENTE);
+				fail();
+			} catch (NoResultException e) {
+				// assert
+				assertEquals(0, repositorio.getTamanio());
+			}
+		}
+		verify(delegado, times(2)).obtenerPorCodigo(CODIGO_INEXISTENTE);
+	}
+
+	@Test
+	public void cargasConcurrentesDelMismoCodigoConsultanUnaVezTest() throws Exception {
+
+		// arrange
+		final Producto producto = new ProductoTestDataBuilder().build();
+		final CountDownLatch todosEsperando = new CountDownLatch(HILOS);
+		final AtomicInteger consultas = new AtomicInteger();
+		RepositorioProducto delegado = new RepositorioProductoLento(producto, consultas);
+		final RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado);
+		ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+
+		// act
+		List<Future<Producto>> resultados = new ArrayList<>();
+		for (int i = 0; i < HILOS; i++) {
+			resultados.add(hilos.submit(() -> {
+				todosEsperando.countDown();
+				todosEsperando.await();
+				return repositorio.obtenerPorCodigo(producto.getCodigo());
+			}));
+		}
+
+		// assert
+		for (Future<Producto> resultado : resultados) {
+			assertSame(producto, resultado.get());
+		}
+		hilos.shutdown();
+		assertEquals(1, consultas.get());
+	}
+
+	@Test
+	public void productoInvalidadoDuranteUnaCargaPorLotesNoSeGuardaTest() {
+
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().build();
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado);
+		when(delegado.obtenerPorCodigos(anyCollectionOf(String.class))).thenAnswer(invocacion -> {
+			repositorio.invalidar(producto.getCodigo());
+			return Collections.singletonMap(producto.getCodigo(), producto);
+		});
+
+		// act
+		Map<String, Producto> productos = repositorio.obtenerPorCodigos(Collections.singletonList(producto.getCodigo()));
+
+		// assert
+		assertSame(producto, productos.get(producto.getCodigo()));
+		assertEquals(0, repositorio.getTamanio());
+	}
+
+	@Test
+	public void cargaPorLotesGuardaLosProductosTest() {
+
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().build();
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPorCodigos(anyCollectionOf(String.class)))
+				.thenReturn(Collections.singletonMap(producto.getCodigo(), producto));
+		RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado);
+		repositorio.obtenerPorCodigos(Arrays.asList(producto.getCodigo(), CODIGO_INEXISTENTE));
+
+		// act
+		Producto enCache = repositorio.obtenerPorCodigo(producto.getCodigo());
+
+		// assert
+		assertSame(producto, enCache);
+		assertEquals(1, repositorio.getTamanio());
+		verify(delegado, never()).obtenerPorCodigo(producto.getCodigo());
+	}
+
+	@Test
+	public void productoLeidoEnUnaTransaccionSeGuardaAlConfirmarlaTest() {
+
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().build();
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPorCodigo(producto.getCodigo())).thenReturn(producto);
+		UnidadDeTrabajo unidadDeTrabajo = mock(UnidadDeTrabajo.class);
+		RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado, unidadDeTrabajo);
+		repositorio.obtenerPorCodigo(producto.getCodigo());
+		assertEquals(0, repositorio.getTamanio());
+
+		// act
+		confirmar(unidadDeTrabajo);
+
+		// assert
+		assertSame(producto, repositorio.obtenerPorCodigo(producto.getCodigo()));
+		assertEquals(1, repositorio.getTamanio());
+		verify(delegado, times(1)).obtenerPorCodigo(producto.getCodigo());
+	}
+
+	@Test
+	public void productoLeidoEnUnaTransaccionDeshechaNoSeGuardaTest() {
+
+		// arrange - la unidad de trabajo nunca confirma
+		Producto producto = new ProductoTestDataBuilder().build();
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPorCodigo(producto.getCodigo())).thenReturn(producto);
+		RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado, mock(UnidadDeTrabajo.class));
+
+		// act
+		repositorio.obtenerPorCodigo(producto.getCodigo());
+		repositorio.obtenerPorCodigo(producto.getCodigo());
+
+		// assert
+		assertEquals(0, repositorio.getTamanio());
+		verify(delegado, times(2)).obtenerPorCodigo(producto.getCodigo());
+	}
+
+	@Test
+	public void productoInvalidadoAntesDeConfirmarNoSeGuardaTest() {
+
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().build();
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPorCodigos(anyCollectionOf(String.class)))
+				.thenReturn(Collections.singletonMap(producto.getCodigo(), producto));
+		UnidadDeTrabajo unidadDeTrabajo = mock(UnidadDeTrabajo.class);
+		RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado, unidadDeTrabajo);
+		repositorio.obtenerPorCodigos(Collections.singletonList(producto.getCodigo()));
+		repositorio.invalidar(producto.getCodigo());
+
+		// act
+		confirmar(unidadDeTrabajo);
+
+		// assert
+		assertEquals(0, repositorio.getTamanio());
+	}
+
+	@Test
+	public void hiloEnTransaccionNoUsaLaCargaDeOtroHiloTest() throws Exception {
+
+		// arrange - la primera lectura queda en curso hasta que lee el segundo hilo
+		Producto deOtraTransaccion = new ProductoTestDataBuilder().build();
+		Producto propio = new ProductoTestDataBuilder().build();
+		CountDownLatch leyendo = new CountDownLatch(1);
+		CountDownLatch seguir = new CountDownLatch(1);
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPorCodigo(propio.getCodigo())).thenAnswer(invocacion -> {
+			leyendo.countDown();
+			seguir.await();
+			return deOtraTransaccion;
+		}).thenReturn(propio);
+		UnidadDeTrabajo unidadDeTrabajo = mock(UnidadDeTrabajo.class);
+		when(unidadDeTrabajo.enTransaccion()).thenReturn(true);
+		RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado, unidadDeTrabajo);
+		ExecutorService ejecutor = Executors.newFixedThreadPool(2);
+
+		try {
+			Future<Producto> otro = ejecutor.submit(() -> repositorio.obtenerPorCodigo(propio.getCodigo()));
+			leyendo.await(5, TimeUnit.SECONDS);
+
+			// act
+			Producto leido = ejecutor.submit(() -> repositorio.obtenerPorCodigo(propio.getCodigo())).get(5, TimeUnit.SECONDS);
+			seguir.countDown();
+
+			// assert
+			assertSame(propio, leido);
+			assertSame(deOtraTransaccion, otro.get(5, TimeUnit.SECONDS));
+		} finally {
+			seguir.countDown();
+			ejecutor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void hiloEnTransaccionNoUsaLaCargaPorLotesDeOtroHiloTest() throws Exception {
+
+		// arrange - la primera lectura queda en curso hasta que lee el segundo hilo
+		Producto deOtraTransaccion = new ProductoTestDataBuilder().build();
+		Producto propio = new ProductoTestDataBuilder().build();
+		List<String> codigos = Collections.singletonList(propio.getCodigo());
+		CountDownLatch leyendo = new CountDownLatch(1);
+		CountDownLatch seguir = new CountDownLatch(1);
+		RepositorioProducto delegado = mock(RepositorioProducto.class);
+		when(delegado.obtenerPorCodigos(anyCollectionOf(String.class))).thenAnswer(invocacion -> {
+			leyendo.countDown();
+			seguir.await();
+			return Collections.singletonMap(propio.getCodigo(), deOtraTransaccion);
+		}).thenReturn(Collections.singletonMap(propio.getCodigo(), propio));
+		UnidadDeTrabajo unidadDeTrabajo = mock(UnidadDeTrabajo.class);
+		when(unidadDeTrabajo.enTransaccion()).thenReturn(true);
+		RepositorioProductoEnCache repositorio = new RepositorioProductoEnCache(delegado, unidadDeTrabajo);
+		ExecutorService ejecutor = Executors.newFixedThreadPool(2);
+
+		try {
+			Future<Map<String, Producto>> otro = ejecutor.submit(() -> repositorio.obtenerPorCodigos(codigos));
+			leyendo.await(5, TimeUnit.SECONDS);
+
+			// act
+			Map<String, Producto> leidos = ejecutor.submit(() -> repositorio.obtenerPorCodigos(codigos)).get(5, TimeUnit.SECONDS);
+			seguir.countDown();
+
+			// assert
+			assertSame(propio, leidos.get(propio.getCodigo()));
+			assertSame(deOtraTransaccion, otro.get(5, TimeUnit.SECONDS).get(propio.getCodigo()));
+		} finally {
+			seguir.countDown();
+			ejecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Ejecuta las acciones que el repositorio registro para cuando se confirme la transaccion
+	 */
+	private static void confirmar(UnidadDeTrabajo unidadDeTrabajo) {
+
+		ArgumentCaptor<Runnable> acciones = ArgumentCaptor.forClass(Runnable.class);
+		verify(unidadDeTrabajo, atLeastOnce()).alConfirmar(acciones.capture());
+		for (Runnable accion : acciones.getAllValues()) {
+			accion.run();
+		}
+	}
+
+	private static class RepositorioProductoLento implements RepositorioProducto {
+
+		private final Producto producto;
+		private final AtomicInteger consultas;
+
+		RepositorioProductoLento(Producto producto, AtomicInteger consultas) {
+			this.producto = producto;
+			this.consultas = consultas;
+		}
+
+		@Override
+		public Producto obtenerPorCodigo(String codigo) {
+			consultas.incrementAndGet();
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return producto;
+		}
+
+		@Override
+		public void agregar(Producto producto) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Map<String, Producto> obtenerPorCodigos(Collection<String> codigos) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
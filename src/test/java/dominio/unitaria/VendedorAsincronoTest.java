@@ -0,0 +1,187 @@
+package dominio.unitaria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dominio.GarantiaExtendida;
+import dominio.Producto;
+import dominio.Vendedor;
+import dominio.VendedorAsincrono;
+import dominio.excepcion.GarantiaExtendidaException;
+import dominio.repositorio.RepositorioGarantiaExtendida;
+import dominio.repositorio.RepositorioProducto;
+import dominio.repositorio.UnidadDeTrabajo;
+import testdatabuilder.ProductoTestDataBuilder;
+
+public class VendedorAsincronoTest {
+
+	private static final String DANILO_ROMAN = "Danilo Roman";
+
+	private RepositorioProducto repositorioProducto;
+	private RepositorioGarantiaExtendida repositorioGarantia;
+	private UnidadDeTrabajo unidadDeTrabajo;
+	private ExecutorService ejecutor;
+	private VendedorAsincrono vendedorAsincrono;
+	private Producto producto;
+
+	@Before
+	public void setUp() {
+
+		producto = new ProductoTestDataBuilder().build();
+		repositorioProducto = mock(RepositorioProducto.class);
+		repositorioGarantia = mock(RepositorioGarantiaExtendida.class);
+		unidadDeTrabajo = mock(UnidadDeTrabajo.class);
+		ejecutor = Executors.newSingleThreadExecutor();
+
+		when(repositorioProducto.obtenerPorCodigo(producto.getCodigo())).thenReturn(producto);
+
+		Vendedor vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
+		vendedorAsincrono = new VendedorAsincrono(vendedor, unidadDeTrabajo, ejecutor);
+	}
+
+	@After
+	public void tearDown() {
+		ejecutor.shutdownNow();
+	}
+
+	@Test
+	public void generarGarantiaAsyncTest() throws Exception {
+
+		// act
+		GarantiaExtendida garantia = vendedorAsincrono.generarGarantiaAsync(producto.getCodigo(), DANILO_ROMAN).get(5, TimeUnit.SECONDS);
+
+		// assert
+		assertSame(producto, garantia.getProducto());
+		verify(repositorioGarantia).agregar(garantia);
+		verify(unidadDeTrabajo).iniciar();
+		verify(unidadDeTrabajo).terminar();
+		verify(unidadDeTrabajo).cerrar();
+		verify(unidadDeTrabajo, never()).deshacer();
+	}
+
+	@Test
+	public void generarGarantiaAsyncConservaExcepcionTest() throws Exception {
+
+		// arrange
+		when(repositorioGarantia.existeGarantia(producto.getCodigo())).thenReturn(true);
+
+		// act
+		CompletableFuture<GarantiaExtendida> resultado = vendedorAsincrono.generarGarantiaAsync(producto.getCodigo(), DANILO_ROMAN);
+
+		// assert
+		try {
+			resultado.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof GarantiaExtendidaException);
+			assertEquals(Vendedor.EL_PRODUCTO_TIENE_GARANTIA, e.getCause().getMessage());
+		}
+		verify(unidadDeTrabajo).deshacer();
+		verify(unidadDeTrabajo, never()).terminar();
+		verify(unidadDeTrabajo).cerrar();
+	}
+
+	@Test
+	public void generarGarantiaAsyncVencidaTest() throws Exception {
+
+		// arrange
+		CountDownLatch interrumpido = bloquearConsultaHastaInterrupcion();
+
+		// act
+		CompletableFuture<GarantiaExtendida> resultado = vendedorAsincrono.generarGarantiaAsync(producto.getCodigo(), DANILO_ROMAN, 50, TimeUnit.MILLISECONDS);
+
+		// assert
+		try {
+			resultado.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		assertTrue(interrumpido.await(5, TimeUnit.SECONDS));
+		verify(unidadDeTrabajo, timeout(5000)).deshacer();
+		verify(unidadDeTrabajo, timeout(5000)).cerrar();
+		verify(unidadDeTrabajo, never()).terminar();
+	}
+
+	@Test
+	public void generarGarantiaAsyncVencidaDuranteLaConfirmacionTest() throws Exception {
+
+		// arrange
+		CountDownLatch confirmando = new CountDownLatch(1);
+		CountDownLatch vencida = new CountDownLatch(1);
+		doAnswer(invocacion -> {
+			confirmando.countDown();
+			vencida.await();
+			return null;
+		}).when(unidadDeTrabajo).terminar();
+		CompletableFuture<GarantiaExtendida> resultado = vendedorAsincrono.generarGarantiaAsync(producto.getCodigo(), DANILO_ROMAN, 200, TimeUnit.MILLISECONDS);
+		assertTrue(confirmando.await(5, TimeUnit.SECONDS));
+
+		// act - el vencimiento y la cancelacion llegan mientras se confirma
+		Thread.sleep(400);
+		boolean cancelada = resultado.cancel(true);
+		vencida.countDown();
+
+		// assert
+		assertFalse(cancelada);
+		GarantiaExtendida garantia = resultado.get(5, TimeUnit.SECONDS);
+		assertSame(producto, garantia.getProducto());
+		verify(unidadDeTrabajo, timeout(5000)).cerrar();
+		verify(unidadDeTrabajo, never()).deshacer();
+	}
+
+	@Test
+	public void cancelarGarantiaAsyncTest() throws Exception {
+
+		// arrange
+		CountDownLatch interrumpido = bloquearConsultaHastaInterrupcion();
+		CompletableFuture<GarantiaExtendida> resultado = vendedorAsincrono.generarGarantiaAsync(producto.getCodigo(), DANILO_ROMAN);
+		verify(repositorioGarantia, timeout(5000)).existeGarantia(producto.getCodigo());
+
+		// act
+		resultado.cancel(true);
+
+		// assert
+		assertTrue(resultado.isCancelled());
+		assertTrue(interrumpido.await(5, TimeUnit.SECONDS));
+		verify(unidadDeTrabajo, timeout(5000)).deshacer();
+		verify(unidadDeTrabajo, timeout(5000)).cerrar();
+		verify(unidadDeTrabajo, never()).terminar();
+	}
+
+	private CountDownLatch bloquearConsultaHastaInterrupcion() {
+
+		CountDownLatch interrumpido = new CountDownLatch(1);
+		when(repositorioGarantia.existeGarantia(producto.getCodigo())).thenAnswer(invocacion -> {
+			try {
+				new CountDownLatch(1).await();
+			} catch (InterruptedException e) {
+				interrumpido.countDown();
+			}
+			return false;
+		});
+		return interrumpido;
+	}
+}
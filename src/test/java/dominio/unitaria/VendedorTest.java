@@ -1,16 +1,28 @@
 package dominio.unitaria;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 import org.junit.Test;
 
+import dominio.GarantiaExtendida;
 import dominio.Vendedor;
 import dominio.Producto;
+import dominio.ResultadoGarantia;
+import dominio.SolicitudGarantia;
+import dominio.excepcion.GarantiaExtendidaException;
 import dominio.repositorio.RepositorioProducto;
 import dominio.repositorio.RepositorioGarantiaExtendida;
 import testdatabuilder.ProductoTestDataBuilder;
@@ -33,7 +45,7 @@ public class VendedorTest {
 		RepositorioGarantiaExtendida repositorioGarantia = mock(RepositorioGarantiaExtendida.class);
 		RepositorioProducto repositorioProducto = mock(RepositorioProducto.class);
 		
-		when(repositorioGarantia.obtenerProductoConGarantiaPorCodigo(producto.getCodigo())).thenReturn(producto);
+		when(repositorioGarantia.existeGarantia(producto.getCodigo())).thenReturn(true);
 		
 		Vendedor vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
 		
@@ -55,7 +67,7 @@ public class VendedorTest {
 		RepositorioGarantiaExtendida repositorioGarantia = mock(RepositorioGarantiaExtendida.class);
 		RepositorioProducto repositorioProducto = mock(RepositorioProducto.class);
 		
-		when(repositorioGarantia.obtenerProductoConGarantiaPorCodigo(producto.getCodigo())).thenReturn(null);
+		when(repositorioGarantia.existeGarantia(producto.getCodigo())).thenReturn(false);
 		
 		Vendedor vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
 		
@@ -181,4 +193,50 @@ public class VendedorTest {
 		assertFalse(precioProductoMenorA500000);
 	}
 	
+	@Test
+	public void cotizarGarantiaSoloConsultaElPrecioTest() {
+		
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().conPrecio(PRECIO_600000).build();
+		
+		RepositorioGarantiaExtendida repositorioGarantia = mock(RepositorioGarantiaExtendida.class);
+		RepositorioProducto repositorioProducto = mock(RepositorioProducto.class);
+		
+		when(repositorioProducto.obtenerPrecioPorCodigo(producto.getCodigo())).thenReturn(PRECIO_600000);
+		
+		Vendedor vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
+		
+		// act
+		double precioGarantia = vendedor.cotizarGarantia(producto.getCodigo());
+		
+		//assert
+		assertEquals(PRECIO_600000 * 0.2, precioGarantia, 0);
+		verify(repositorioProducto, never()).obtenerPorCodigo(producto.getCodigo());
+	}
+	
+	@Test
+	public void loteConGarantiaCreadaEnParaleloSeRechazaTest() {
+		
+		// arrange
+		Producto producto = new ProductoTestDataBuilder().conCodigo(CODIGO_CON_DOS_VOCALES).build();
+		
+		RepositorioGarantiaExtendida repositorioGarantia = mock(RepositorioGarantiaExtendida.class);
+		RepositorioProducto repositorioProducto = mock(RepositorioProducto.class);
+		
+		when(repositorioProducto.obtenerPorCodigos(anyCollectionOf(String.class))).thenReturn(Collections.singletonMap(producto.getCodigo(), producto));
+		doThrow(new GarantiaExtendidaException(Vendedor.EL_PRODUCTO_TIENE_GARANTIA)).when(repositorioGarantia).agregarTodas(anyCollectionOf(GarantiaExtendida.class));
+		
+		Vendedor vendedor = new Vendedor(repositorioProducto, repositorioGarantia, new Date());
+		
+		// act
+		List<ResultadoGarantia> resultados = vendedor.generarGarantias(Arrays.asList(
+				new SolicitudGarantia(producto.getCodigo(), "Danilo Roman"),
+				new SolicitudGarantia(CODIGO_CON_TRES_VOCALES, "Danilo Roman")));
+		
+		//assert
+		assertFalse(resultados.get(0).fueCreada());
+		assertEquals(Vendedor.EL_LOTE_NO_SE_GUARDO, resultados.get(0).getMotivoRechazo());
+		assertEquals(Vendedor.ESTE_PRODUCTo_HO_CUENTA_CON_GARANTIA_EXTENDIDA, resultados.get(1).getMotivoRechazo());
+	}
+	
 }